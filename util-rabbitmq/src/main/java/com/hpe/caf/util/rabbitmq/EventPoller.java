@@ -15,6 +15,8 @@
  */
 package com.hpe.caf.util.rabbitmq;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +29,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class EventPoller<T> implements Runnable
 {
+    /**
+     * The maximum number of events handled between checks of whether the EventPoller should terminate.
+     */
+    private static final int MAX_DRAIN = 64;
     private final int pollPeriod;
     /**
      * All events for the Thread to handle.
@@ -34,6 +40,7 @@ public class EventPoller<T> implements Runnable
     private final BlockingQueue<Event<T>> eventQueue;
     private final AtomicBoolean running = new AtomicBoolean(true);
     private final T eventHandler;
+    private final List<Event<T>> drained = new ArrayList<>(MAX_DRAIN);
 
     /**
      * Create a new EventPoller.
@@ -51,7 +58,8 @@ public class EventPoller<T> implements Runnable
 
     /**
      * Start a thread that will poll with the period specified when the object was created. Each event received will be handed off to the
-     * event handler which inheriting classes specify. This thread will properly query and re-raise the interrupt flag.
+     * event handler which inheriting classes specify, along with any further events already waiting on the queue, up to a limit. This
+     * thread will properly query and re-raise the interrupt flag.
      */
     @Override
     public void run()
@@ -60,10 +68,16 @@ public class EventPoller<T> implements Runnable
             try {
                 Event<T> event = eventQueue.poll(pollPeriod, TimeUnit.SECONDS);
                 if (event != null) {
-                    event.handleEvent(eventHandler);
+                    drained.add(event);
+                    eventQueue.drainTo(drained, MAX_DRAIN - 1);
+                    for (final Event<T> e : drained) {
+                        e.handleEvent(eventHandler);
+                    }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+            } finally {
+                drained.clear();
             }
         }
     }
@@ -77,11 +91,39 @@ public class EventPoller<T> implements Runnable
     }
 
     /**
-     * Signal the termination of the EventPoller. It will terminate at the next possible opportunity. If the EventPoller is not running
-     * this has no effect.
+     * @return the implementation that handles events
+     */
+    protected final T getEventHandler()
+    {
+        return eventHandler;
+    }
+
+    /**
+     * @return the period, in seconds, in which the event queue is polled
+     */
+    protected final int getPollPeriod()
+    {
+        return pollPeriod;
+    }
+
+    /**
+     * @return true until the EventPoller has been signalled to terminate
+     */
+    protected final boolean isRunning()
+    {
+        return running.get();
+    }
+
+    /**
+     * Signal the termination of the EventPoller. It will terminate at the next possible opportunity, which is immediately if it is
+     * waiting on an {@link MpscBlockingQueue}, or otherwise once its poll period has elapsed. If the EventPoller is not running this has
+     * no effect.
      */
     public final void shutdown()
     {
         running.set(false);
+        if (eventQueue instanceof MpscBlockingQueue) {
+            ((MpscBlockingQueue<Event<T>>) eventQueue).wakeConsumer();
+        }
     }
 }
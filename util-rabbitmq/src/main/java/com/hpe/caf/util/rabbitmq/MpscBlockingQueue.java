@@ -0,0 +1,334 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.util.rabbitmq;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded, lock-free, multi-producer single-consumer BlockingQueue, intended as the event queue of an EventPoller.
+ * <p>
+ * Elements are held in a linked list of fixed size array chunks. Producers claim a slot with a single atomic increment and write the
+ * element into it, so offering an element never takes a lock and only allocates when a new chunk is needed. The consumer reads the
+ * slots in order, parking when the queue is empty and being unparked by the next producer.
+ * <p>
+ * Only one thread may remove elements from the queue at a time; the methods which remove elements ({@code poll}, {@code take},
+ * {@code drainTo} and so on) and {@code peek} must all be called from that thread. Any thread may add elements. The queue can never be
+ * full, so {@code add}, {@code offer} and {@code put} always succeed immediately.
+ *
+ * @param <E> the type of elements held in the queue
+ */
+public final class MpscBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private static final int CHUNK_SIZE = 1024;
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicReference<Chunk<E>> producerChunk;
+    private volatile Chunk<E> consumerChunk;
+    private volatile long consumerIndex;
+    private volatile Thread waitingConsumer;
+    private volatile boolean wakeRequested;
+
+    public MpscBlockingQueue()
+    {
+        final Chunk<E> first = new Chunk<>(0);
+        this.producerChunk = new AtomicReference<>(first);
+        this.consumerChunk = first;
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        Objects.requireNonNull(e);
+        final long index = producerIndex.getAndIncrement();
+        final Chunk<E> chunk = producerChunkFor(index / CHUNK_SIZE);
+        chunk.slots.lazySet((int) (index % CHUNK_SIZE), e);
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    @Override
+    public void put(final E e)
+    {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit)
+    {
+        return offer(e);
+    }
+
+    @Override
+    public E poll()
+    {
+        final long index = consumerIndex;
+        if (index == producerIndex.get()) {
+            return null;
+        }
+        final int offset = (int) (index % CHUNK_SIZE);
+        final Chunk<E> chunk = consumerChunkFor(index, offset);
+        E e = chunk.slots.get(offset);
+        while (e == null) {
+            // The slot has been claimed by a producer which has not yet written to it
+            Thread.onSpinWait();
+            e = chunk.slots.get(offset);
+        }
+        chunk.slots.lazySet(offset, null);
+        consumerIndex = index + 1;
+        return e;
+    }
+
+    @Override
+    public E take()
+        throws InterruptedException
+    {
+        E e;
+        while ((e = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) == null) {
+            // Woken without an element, so wait again
+        }
+        return e;
+    }
+
+    /**
+     * Retrieve and remove the head of the queue, waiting up to the specified time for an element to become available. The wait also
+     * ends early, returning null, if {@link #wakeConsumer()} is called.
+     */
+    @Override
+    public E poll(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int spins = 0; spins < SPINS_BEFORE_PARK; spins++) {
+            Thread.onSpinWait();
+            if ((e = poll()) != null) {
+                return e;
+            }
+        }
+        waitingConsumer = Thread.currentThread();
+        try {
+            while ((e = poll()) == null) {
+                if (wakeRequested) {
+                    wakeRequested = false;
+                    return null;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return e;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Cause a consumer waiting in {@link #poll(long, TimeUnit)} to return null straight away, or the next wait to do so if no consumer
+     * is currently waiting. This allows the consumer to be stopped without waiting for its poll period to elapse.
+     */
+    public void wakeConsumer()
+    {
+        wakeRequested = true;
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public E peek()
+    {
+        final long index = consumerIndex;
+        if (index == producerIndex.get()) {
+            return null;
+        }
+        final int offset = (int) (index % CHUNK_SIZE);
+        final Chunk<E> chunk = consumerChunkFor(index, offset);
+        E e = chunk.slots.get(offset);
+        while (e == null) {
+            Thread.onSpinWait();
+            e = chunk.slots.get(offset);
+        }
+        return e;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements)
+    {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size()
+    {
+        // Read the consumer index first so that the result is never negative
+        final long consumed = consumerIndex;
+        final long size = producerIndex.get() - consumed;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, size));
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return consumerIndex == producerIndex.get();
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in the queue, which does not support removal.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Itr();
+    }
+
+    private Chunk<E> producerChunkFor(final long chunkIndex)
+    {
+        Chunk<E> chunk = producerChunk.get();
+        if (chunk.index > chunkIndex) {
+            // Another producer has moved on past this slot's chunk; the consumer cannot have, as the slot has not been written
+            chunk = consumerChunk;
+        }
+        while (chunk.index < chunkIndex) {
+            Chunk<E> next = chunk.next.get();
+            if (next == null) {
+                final Chunk<E> created = new Chunk<>(chunk.index + 1);
+                next = chunk.next.compareAndSet(null, created) ? created : chunk.next.get();
+            }
+            chunk = next;
+        }
+        final Chunk<E> current = producerChunk.get();
+        if (current.index < chunk.index) {
+            producerChunk.compareAndSet(current, chunk);
+        }
+        return chunk;
+    }
+
+    private Chunk<E> consumerChunkFor(final long index, final int offset)
+    {
+        Chunk<E> chunk = consumerChunk;
+        if (offset == 0 && chunk.index < index / CHUNK_SIZE) {
+            Chunk<E> next;
+            while ((next = chunk.next.get()) == null) {
+                // The producer of the first element of the next chunk has not linked it in yet
+                Thread.onSpinWait();
+            }
+            chunk = next;
+            consumerChunk = chunk;
+        }
+        return chunk;
+    }
+
+    private static final class Chunk<E>
+    {
+        final long index;
+        final AtomicReferenceArray<E> slots = new AtomicReferenceArray<>(CHUNK_SIZE);
+        final AtomicReference<Chunk<E>> next = new AtomicReference<>();
+
+        Chunk(final long index)
+        {
+            this.index = index;
+        }
+    }
+
+    private final class Itr implements Iterator<E>
+    {
+        private Chunk<E> chunk = consumerChunk;
+        private long index = Math.max(consumerIndex, chunk.index * CHUNK_SIZE);
+        private final long end = producerIndex.get();
+        private E nextElement = advance();
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextElement != null;
+        }
+
+        @Override
+        public E next()
+        {
+            final E e = nextElement;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            nextElement = advance();
+            return e;
+        }
+
+        private E advance()
+        {
+            while (index < end && chunk != null) {
+                final long chunkIndex = index / CHUNK_SIZE;
+                while (chunk != null && chunk.index < chunkIndex) {
+                    chunk = chunk.next.get();
+                }
+                if (chunk == null) {
+                    break;
+                }
+                final E e = chunk.slots.get((int) (index % CHUNK_SIZE));
+                index++;
+                if (e != null) {
+                    return e;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -23,4 +23,5 @@ public class RabbitHeaders
     public static final String RABBIT_HEADER_CAF_WORKER_REJECTED = "x-caf-worker-rejected";
     public static final String RABBIT_HEADER_CAF_WORKER_RETRY = "x-caf-worker-retry";
     public static final String RABBIT_HEADER_CAF_DELIVERY_COUNT = "x-delivery-count";
+    public static final String RABBIT_HEADER_CAF_TASK_PREFIX = "x-caf-task-";
 }
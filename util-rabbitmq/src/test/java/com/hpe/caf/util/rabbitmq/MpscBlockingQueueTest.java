@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.util.rabbitmq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MpscBlockingQueueTest
+{
+    private static final int TEST_TIMEOUT_MS = 5000;
+
+    @Test
+    public void testOrderPreservedPerProducer()
+        throws InterruptedException
+    {
+        final int producers = 4;
+        final int perProducer = 50000;
+        MpscBlockingQueue<int[]> queue = new MpscBlockingQueue<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    queue.add(new int[]{producer, i});
+                }
+            }).start();
+        }
+        int[] expected = new int[producers];
+        List<int[]> drained = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            int[] first = queue.poll(TEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(first);
+            drained.add(first);
+            queue.drainTo(drained, 63);
+            for (int[] element : drained) {
+                Assert.assertEquals(element[1], expected[element[0]]++);
+                received++;
+            }
+            drained.clear();
+        }
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void testQueueOperations()
+    {
+        MpscBlockingQueue<Integer> queue = new MpscBlockingQueue<>();
+        for (int i = 0; i < 3000; i++) {
+            queue.add(i);
+        }
+        Assert.assertEquals(queue.size(), 3000);
+        Assert.assertEquals(queue.peek(), Integer.valueOf(0));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(0));
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(queue.drainTo(drained, 2000), 2000);
+        Assert.assertEquals(drained.get(1999), Integer.valueOf(2000));
+        int expected = 2001;
+        for (Integer element : queue) {
+            Assert.assertEquals(element, Integer.valueOf(expected++));
+        }
+        Assert.assertEquals(expected, 3000);
+        Assert.assertEquals(queue.remainingCapacity(), Integer.MAX_VALUE);
+        queue.clear();
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testShutdownWakesPoller()
+        throws InterruptedException
+    {
+        MpscBlockingQueue<Event<List<String>>> events = new MpscBlockingQueue<>();
+        List<String> handled = new ArrayList<>();
+        EventPoller<List<String>> poller = new EventPoller<>(60, events, handled);
+        Thread thread = new Thread(poller);
+        thread.start();
+        events.add(target -> target.add("a"));
+        events.add(target -> target.add("b"));
+        Thread.sleep(100);
+        poller.shutdown();
+        thread.join(TEST_TIMEOUT_MS);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertEquals(handled, Arrays.asList("a", "b"));
+        Assert.assertTrue(events.isEmpty());
+    }
+}
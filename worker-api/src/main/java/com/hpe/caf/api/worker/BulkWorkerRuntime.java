@@ -15,6 +15,11 @@
  */
 package com.hpe.caf.api.worker;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * This object is supplied to CAF Workers which are able to process multiple tasks together. It allows them to request additional tasks.
  */
@@ -37,4 +42,89 @@ public interface BulkWorkerRuntime
      * @throws InterruptedException if the thread is interrupted while blocking
      */
     WorkerTask getNextWorkerTask(long millis) throws InterruptedException;
+
+    /**
+     * Retrieves a batch of tasks to be processed. If a task is not readily available then this method will block waiting for one for the
+     * specified number of milliseconds; once there is a task, it returns straight away with as many of the tasks then available as the
+     * batch can hold.
+     *
+     * @param maxTasks the maximum number of tasks to retrieve
+     * @param maxWaitMillis the maximum number of milliseconds to wait for the first task
+     * @return the tasks to be processed, which is empty if a task is not available
+     * @throws InterruptedException if the thread is interrupted while blocking
+     */
+    default List<WorkerTask> getNextWorkerTasks(final int maxTasks, final long maxWaitMillis) throws InterruptedException
+    {
+        return getNextWorkerTasks(maxTasks, maxWaitMillis, 0);
+    }
+
+    /**
+     * Retrieves a batch of tasks to be processed. If a task is not readily available then this method will block waiting for one for the
+     * specified number of milliseconds. Once there is a task, it waits up to the linger time for more tasks to fill the batch, returning
+     * as soon as the batch is full.
+     *
+     * @param maxTasks the maximum number of tasks to retrieve
+     * @param maxWaitMillis the maximum number of milliseconds to wait for the first task
+     * @param lingerMillis the maximum number of milliseconds to wait for further tasks once there is a task
+     * @return the tasks to be processed, which is empty if a task is not available
+     * @throws InterruptedException if the thread is interrupted while blocking
+     */
+    default List<WorkerTask> getNextWorkerTasks(final int maxTasks, final long maxWaitMillis, final long lingerMillis)
+        throws InterruptedException
+    {
+        if (maxTasks < 1) {
+            throw new IllegalArgumentException("maxTasks must be at least 1");
+        }
+        final WorkerTask firstTask = getNextWorkerTask(maxWaitMillis);
+        if (firstTask == null) {
+            return Collections.emptyList();
+        }
+        final List<WorkerTask> tasks = new ArrayList<>();
+        tasks.add(firstTask);
+        final long lingerEnd = System.currentTimeMillis() + lingerMillis;
+        while (tasks.size() < maxTasks) {
+            final long remaining = lingerEnd - System.currentTimeMillis();
+            final WorkerTask task = remaining > 0 ? getNextWorkerTask(remaining) : getNextWorkerTask();
+            if (task == null) {
+                break;
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Returns the number of tasks that the framework recommends processing in each batch, from the measured time taken by recent
+     * batches. If the framework is configured to enforce it, no more tasks than this are handed out in a batch, and the methods that
+     * retrieve tasks return null or an empty list once the batch is full.
+     *
+     * @return the recommended number of tasks per batch, or 0 if there is no recommendation
+     */
+    default int getRecommendedBatchSize()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the number of milliseconds that the framework recommends waiting for further tasks to fill a batch. It is only raised
+     * above 0 when recent batches have been cut short for want of tasks, and there was time to spare before the batch latency target.
+     *
+     * @return the recommended linger time in milliseconds, or 0 if there is no recommendation
+     */
+    default long getRecommendedLingerMillis()
+    {
+        return 0;
+    }
+
+    /**
+     * Sets the responses of a batch of tasks, handing the resulting messages to be published together rather than one at a time.
+     *
+     * @param responses the response for each task, set in the iteration order of the map
+     */
+    default void setResponses(final Map<WorkerTask, WorkerResponse> responses)
+    {
+        for (final Map.Entry<WorkerTask, WorkerResponse> response : responses.entrySet()) {
+            response.getKey().setResponse(response.getValue());
+        }
+    }
 }
@@ -55,4 +55,48 @@ public interface ManagedWorkerQueue extends HealthReporter, WorkerQueue
      * Reconnects the incoming queue so tasks consumption can resume.
      */
     void reconnectIncoming();
+
+    /**
+     * Pauses the incoming queue because the worker's backlog of tasks is full. Unlike {@link #disconnectIncoming()}, this is tracked
+     * separately from any disconnection, so the queue is only consumed from again once it has been both resumed and reconnected.
+     */
+    default void pauseIncoming()
+    {
+        disconnectIncoming();
+    }
+
+    /**
+     * Resumes the incoming queue after it has been paused because the worker's backlog of tasks was full.
+     */
+    default void resumeIncoming()
+    {
+        reconnectIncoming();
+    }
+
+    /**
+     * Changes the number of messages that may be delivered from the incoming queue without being acknowledged.
+     *
+     * @param prefetch the new prefetch count
+     * @return true if the prefetch was changed, false if it could not be or this queue does not support changing it
+     */
+    default boolean setPrefetch(final int prefetch)
+    {
+        return false;
+    }
+
+    /**
+     * Starts holding back the messages published by the calling thread, so that they can be handed to the publisher together when
+     * {@link #releasePublishes()} is called. Messages published by other threads are not affected.
+     */
+    default void holdPublishes()
+    {
+    }
+
+    /**
+     * Hands the messages held back since the calling thread called {@link #holdPublishes()} to the publisher together, in the order
+     * they were published, and stops holding back the thread's messages.
+     */
+    default void releasePublishes()
+    {
+    }
 }
@@ -93,6 +93,14 @@ public final class TaskMessage
      */
     private String correlationId;
 
+    /**
+     * The undecoded task data and context, if the message was read without decoding them. Each part is cleared from here once it has
+     * been decoded or set.
+     */
+    private TaskMessagePayload deferredPayload;
+    private volatile boolean taskDataDeferred;
+    private volatile boolean contextDeferred;
+
     public TaskMessage()
     {
     }
@@ -170,12 +178,17 @@ public final class TaskMessage
 
     public byte[] getTaskData()
     {
+        if (taskDataDeferred) {
+            decodeDeferredTaskData();
+        }
         return taskData;
     }
 
     public void setTaskData(final byte[] taskData)
     {
         this.taskData = taskData;
+        taskDataDeferred = false;
+        releaseDeferredPayload();
     }
 
     public TaskStatus getTaskStatus()
@@ -200,12 +213,68 @@ public final class TaskMessage
 
     public Map<String, byte[]> getContext()
     {
+        if (contextDeferred) {
+            decodeDeferredContext();
+        }
         return context == null ? new HashMap<>() : context;
     }
 
     public void setContext(final Map<String, byte[]> context)
     {
         this.context = context;
+        contextDeferred = false;
+        releaseDeferredPayload();
+    }
+
+    /**
+     * Supply the task data and context of the message undecoded. They are decoded when they are first asked for, unless they are set
+     * before then.
+     *
+     * @param payload the undecoded task data and context
+     */
+    public void deferPayload(final TaskMessagePayload payload)
+    {
+        this.deferredPayload = Objects.requireNonNull(payload);
+        this.taskData = null;
+        this.context = null;
+        this.taskDataDeferred = true;
+        this.contextDeferred = true;
+    }
+
+    /**
+     * Get the undecoded task data and context of the message, provided that neither has been asked for or set since the message was
+     * read. A message whose payload is still undecoded can be passed on without encoding its payload again.
+     *
+     * @return the undecoded task data and context, or null if the message does not have them
+     */
+    public TaskMessagePayload deferredPayload()
+    {
+        return taskDataDeferred && contextDeferred ? deferredPayload : null;
+    }
+
+    private synchronized void decodeDeferredTaskData()
+    {
+        if (taskDataDeferred) {
+            taskData = deferredPayload.decodeTaskData();
+            taskDataDeferred = false;
+            releaseDeferredPayload();
+        }
+    }
+
+    private synchronized void decodeDeferredContext()
+    {
+        if (contextDeferred) {
+            context = deferredPayload.decodeContext();
+            contextDeferred = false;
+            releaseDeferredPayload();
+        }
+    }
+
+    private synchronized void releaseDeferredPayload()
+    {
+        if (!taskDataDeferred && !contextDeferred) {
+            deferredPayload = null;
+        }
     }
 
     public String getTo()
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.api.worker;
+
+import java.util.Map;
+
+/**
+ * The task data and context of a task message which was read without decoding them, so that tasks which are only routed elsewhere do
+ * not pay for decoding their payload. Each part is decoded when it is first asked for.
+ */
+public interface TaskMessagePayload
+{
+    /**
+     * Decode the task data.
+     *
+     * @return the task data
+     * @throws IllegalStateException if the task data cannot be decoded
+     */
+    byte[] decodeTaskData();
+
+    /**
+     * Decode the context.
+     *
+     * @return the context
+     * @throws IllegalStateException if the context cannot be decoded
+     */
+    Map<String, byte[]> decodeContext();
+}
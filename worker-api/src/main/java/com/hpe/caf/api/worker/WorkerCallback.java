@@ -39,6 +39,26 @@ public interface WorkerCallback
      */
     void complete(TaskInformation taskInformation, String queue, TaskMessage responseMessage);
 
+    /**
+     * Indicate a task was completed, and run an action once the incoming message has been acknowledged, which is after the response
+     * has been published. The action is not run if the task is rejected instead.
+     *
+     * @param taskInformation a queue-specific reference for the incoming message that generated the response
+     * @param queue the queue to hold the message
+     * @param responseMessage the message to put on the queue
+     * @param onAcknowledged the action to run once the incoming message has been acknowledged
+     */
+    default void complete(
+        final TaskInformation taskInformation,
+        final String queue,
+        final TaskMessage responseMessage,
+        final Runnable onAcknowledged
+    )
+    {
+        complete(taskInformation, queue, responseMessage);
+        onAcknowledged.run();
+    }
+
     /**
      * Indicates the Worker wishes to abandon this task, but return it to the queue so that it can be retried by this or another Worker
      * instance.
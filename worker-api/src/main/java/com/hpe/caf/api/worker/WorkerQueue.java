@@ -15,6 +15,7 @@
  */
 package com.hpe.caf.api.worker;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -48,6 +49,38 @@ public interface WorkerQueue
     void publish(TaskInformation taskInformation, byte[] taskMessage, String targetQueue, Map<String, Object> headers)
         throws QueueException;
 
+    /**
+     * Send out a single message to a target queue on behalf of several received messages, none of which is acknowledged until the
+     * message has been published. None of the messages may have had its final response published yet.
+     *
+     * @param taskInformation the internal queue message ids of the messages that the message is published for
+     * @param taskMessage the message to publish
+     * @param targetQueue the queue to put the message upon
+     * @param headers the map of key/value paired headers to be stamped on the message
+     * @throws QueueException if the message cannot be submitted
+     * @throws UnsupportedOperationException if the queue cannot publish a message on behalf of several received messages
+     * @see #canPublishForSeveralMessages()
+     */
+    default void publish(List<TaskInformation> taskInformation, byte[] taskMessage, String targetQueue, Map<String, Object> headers)
+        throws QueueException
+    {
+        if (taskInformation.size() != 1) {
+            throw new UnsupportedOperationException("Publishing a message for several received messages is not supported");
+        }
+        publish(taskInformation.get(0), taskMessage, targetQueue, headers);
+    }
+
+    /**
+     * Check whether a single message can be published on behalf of several received messages. Callers must publish a message for each
+     * received message in turn if it cannot.
+     *
+     * @return true if {@link #publish(List, byte[], String, Map)} accepts more than one received message
+     */
+    default boolean canPublishForSeveralMessages()
+    {
+        return false;
+    }
+
     /**
      * Called from the asynchronous worker service to notify the queue that it is rejecting a task. It is up to the queue implementation
      * as to whether submit this task to retry or not.
@@ -70,6 +103,19 @@ public interface WorkerQueue
      */
     void acknowledgeTask(TaskInformation taskInformation);
 
+    /**
+     * Run an action once the original received message has been acknowledged, so that it can no longer be delivered again. The action
+     * is not run if the message is rejected or discarded instead. It must be registered before the task's final response is published
+     * or the task is acknowledged. Queues which cannot tell when a message has been acknowledged run the action straight away.
+     *
+     * @param taskInformation the queue task id of the received message
+     * @param action the action to run once the message has been acknowledged
+     */
+    default void whenAcknowledged(final TaskInformation taskInformation, final Runnable action)
+    {
+        action.run();
+    }
+
     /**
      * Return the name of the input queue.
      *
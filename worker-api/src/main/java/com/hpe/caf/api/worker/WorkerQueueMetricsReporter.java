@@ -44,4 +44,60 @@ public interface WorkerQueueMetricsReporter
      * @return the number of messages that have been dropped by the WorkerQueue so far
      */
     int getMessagesDropped();
+
+    /**
+     * @return the number of acknowledgement calls made by the WorkerQueue so far, each of which may acknowledge several messages
+     */
+    default int getAcksSent()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the number of messages that have been acknowledged by the WorkerQueue so far
+     */
+    default int getMessagesAcknowledged()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the number of messages that the WorkerQueue has scheduled to be published again after a failed publish so far
+     */
+    default int getMessagesRepublished()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the total size in bytes of the messages that the WorkerQueue has tried to compress so far, before compression
+     */
+    default long getBytesBeforeCompression()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the total size in bytes of the messages that the WorkerQueue has tried to compress so far, as published
+     */
+    default long getBytesAfterCompression()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the total time in nanoseconds that the WorkerQueue has spent compressing messages so far
+     */
+    default long getCompressionNanos()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the total time in nanoseconds that the WorkerQueue has spent decompressing messages so far
+     */
+    default long getDecompressionNanos()
+    {
+        return 0;
+    }
 }
@@ -15,6 +15,9 @@
  */
 package com.hpe.caf.api.worker;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 /**
  * Represents a task to be completed by the CAF Worker.
  */
@@ -40,6 +43,15 @@ public interface WorkerTaskData
      */
     byte[] getData();
 
+    /**
+     * Retrieves the actual task data in a serialised form as a stream, which should be closed by the caller. Task data which was moved
+     * to the data store because of its size is read directly from the data store, without holding all of it in memory.
+     */
+    default InputStream getDataStream()
+    {
+        return new ByteArrayInputStream(getData());
+    }
+
     /**
      * Retrieves any task specific context associated with the task
      */
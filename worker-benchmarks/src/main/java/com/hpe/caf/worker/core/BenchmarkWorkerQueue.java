@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import com.hpe.caf.api.HealthResult;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.TaskCallback;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.WorkerQueueMetricsReporter;
+
+/**
+ * A worker queue which discards everything published to it, counting the tasks that have been finished with so that a benchmark can
+ * wait for them.
+ */
+final class BenchmarkWorkerQueue implements ManagedWorkerQueue
+{
+    private final Semaphore finishedTasks = new Semaphore(0);
+    private final WorkerQueueMetricsReporter metrics = new WorkerQueueMetricsReporter()
+    {
+        @Override
+        public int getQueueErrors()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMessagesReceived()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMessagesPublished()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMessagesRejected()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMessagesDropped()
+        {
+            return 0;
+        }
+    };
+    private TaskCallback callback;
+
+    @Override
+    public void start(final TaskCallback callback)
+    {
+        this.callback = callback;
+    }
+
+    public TaskCallback getCallback()
+    {
+        return callback;
+    }
+
+    /**
+     * Wait for a number of tasks to be finished with, whether they were completed, rejected or discarded.
+     *
+     * @param tasks the number of tasks to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitFinishedTasks(final int tasks)
+        throws InterruptedException
+    {
+        finishedTasks.acquire(tasks);
+    }
+
+    @Override
+    public void publish(
+        final TaskInformation taskInformation,
+        final byte[] taskMessage,
+        final String targetQueue,
+        final Map<String, Object> headers,
+        final boolean isLastMessage
+    )
+    {
+        if (isLastMessage) {
+            finishedTasks.release();
+        }
+    }
+
+    @Override
+    public void publish(
+        final TaskInformation taskInformation,
+        final byte[] taskMessage,
+        final String targetQueue,
+        final Map<String, Object> headers
+    )
+    {
+    }
+
+    @Override
+    public void rejectTask(final TaskInformation taskInformation)
+    {
+        finishedTasks.release();
+    }
+
+    @Override
+    public void discardTask(final TaskInformation taskInformation)
+    {
+        finishedTasks.release();
+    }
+
+    @Override
+    public void acknowledgeTask(final TaskInformation taskInformation)
+    {
+        finishedTasks.release();
+    }
+
+    @Override
+    public String getInputQueue()
+    {
+        return "benchmark-in";
+    }
+
+    @Override
+    public String getPausedQueue()
+    {
+        return null;
+    }
+
+    @Override
+    public void shutdownIncoming()
+    {
+    }
+
+    @Override
+    public void shutdown()
+    {
+    }
+
+    @Override
+    public WorkerQueueMetricsReporter getMetrics()
+    {
+        return metrics;
+    }
+
+    @Override
+    public void disconnectIncoming()
+    {
+    }
+
+    @Override
+    public void reconnectIncoming()
+    {
+    }
+
+    @Override
+    public HealthResult healthCheck()
+    {
+        return HealthResult.RESULT_HEALTHY;
+    }
+}
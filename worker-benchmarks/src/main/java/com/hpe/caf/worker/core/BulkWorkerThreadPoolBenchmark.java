@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.InvalidNameException;
+
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskRejectedException;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerCallback;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.naming.ServicePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of submitting tasks to the bulk worker thread pool and running them to completion, with a bulk worker which does
+ * no work of its own and a callback which discards the responses. With little work per task, the distribution of tasks to the bulk
+ * worker threads dominates, and the thread counts show how it holds up as threads are added.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkWorkerThreadPoolBenchmark
+{
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"4", "16", "64"})
+    public int threads;
+
+    @Param({"1", "100"})
+    public int tasksPerBatch;
+
+    private final Semaphore completedTasks = new Semaphore(0);
+    private final TaskInformation taskInformation = () -> "1";
+    private final Map<String, Object> headers = Collections.emptyMap();
+    private WorkerThreadPool threadPool;
+    private NoOpBulkWorkerFactory factory;
+    private WorkerCallback callback;
+    private ServicePath servicePath;
+    private JsonCodec codec;
+    private TaskMessage taskMessage;
+
+    @Setup
+    public void setup()
+        throws InvalidNameException
+    {
+        factory = new NoOpBulkWorkerFactory(threads, tasksPerBatch);
+        threadPool = new BulkWorkerThreadPool(factory, 0, 1, null, null, () -> {});
+        callback = new WorkerThreadPoolBenchmark.CountingWorkerCallback(completedTasks);
+        servicePath = new ServicePath("/benchmark/worker");
+        codec = new JsonCodec();
+        taskMessage = new TaskMessage("benchmark-task", "BenchmarkWorker", 1, "{}".getBytes(StandardCharsets.UTF_8),
+                                      TaskStatus.NEW_TASK, new HashMap<>(), "benchmark-in");
+    }
+
+    @TearDown
+    public void tearDown()
+        throws InterruptedException
+    {
+        threadPool.shutdown();
+        threadPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void submitAndComplete()
+        throws InterruptedException, TaskRejectedException
+    {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            threadPool.submitWorkerTask(
+                new WorkerTaskImpl(servicePath, callback, factory, taskInformation, taskMessage, headers, codec));
+        }
+        completedTasks.acquire(BATCH_SIZE);
+    }
+}
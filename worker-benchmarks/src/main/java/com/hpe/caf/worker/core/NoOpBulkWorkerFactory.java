@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.HealthResult;
+import com.hpe.caf.api.worker.BulkWorker;
+import com.hpe.caf.api.worker.BulkWorkerRuntime;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.Worker;
+import com.hpe.caf.api.worker.WorkerFactory;
+import com.hpe.caf.api.worker.WorkerResponse;
+import com.hpe.caf.api.worker.WorkerTask;
+import com.hpe.caf.api.worker.WorkerTaskData;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Supplies a bulk worker which does no work of its own, so that only the framework's distribution of tasks to the bulk worker threads
+ * is measured. Each call takes the tasks waiting, up to a set batch size, and responds to them together.
+ */
+final class NoOpBulkWorkerFactory implements WorkerFactory, BulkWorker
+{
+    private static final byte[] RESULT_DATA = new byte[0];
+    private static final WorkerResponse RESPONSE = new WorkerResponse(
+        NoOpWorkerFactory.OUTPUT_QUEUE, TaskStatus.RESULT_SUCCESS, RESULT_DATA, "BenchmarkWorker", 1, null);
+
+    private final NoOpWorkerFactory workerFactory;
+    private final int workerThreads;
+    private final int batchSize;
+
+    /**
+     * @param workerThreads the number of bulk worker threads
+     * @param batchSize the largest number of tasks to take in each call
+     */
+    public NoOpBulkWorkerFactory(final int workerThreads, final int batchSize)
+    {
+        this.workerFactory = new NoOpWorkerFactory(0);
+        this.workerThreads = workerThreads;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void processTasks(final BulkWorkerRuntime runtime)
+        throws InterruptedException
+    {
+        final List<WorkerTask> tasks = runtime.getNextWorkerTasks(batchSize, 0);
+        final Map<WorkerTask, WorkerResponse> responses = new LinkedHashMap<>();
+        for (final WorkerTask task : tasks) {
+            responses.put(task, RESPONSE);
+        }
+        runtime.setResponses(responses);
+    }
+
+    @Override
+    public Worker getWorker(final WorkerTaskData workerTask)
+    {
+        return workerFactory.getWorker(workerTask);
+    }
+
+    @Override
+    public String getInvalidTaskQueue()
+    {
+        return NoOpWorkerFactory.OUTPUT_QUEUE;
+    }
+
+    @Override
+    public int getWorkerThreads()
+    {
+        return workerThreads;
+    }
+
+    @Override
+    public HealthResult healthCheck()
+    {
+        return HealthResult.RESULT_HEALTHY;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.HealthResult;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.Worker;
+import com.hpe.caf.api.worker.WorkerFactory;
+import com.hpe.caf.api.worker.WorkerResponse;
+import com.hpe.caf.api.worker.WorkerTaskData;
+
+/**
+ * Supplies workers which do no work of their own, so that only the framework's handling of a task is measured. Each worker adds a set
+ * number of sub-task responses to its task before completing it.
+ */
+final class NoOpWorkerFactory implements WorkerFactory
+{
+    static final String OUTPUT_QUEUE = "benchmark-out";
+
+    private static final byte[] RESULT_DATA = new byte[0];
+
+    private final int subTaskResponses;
+
+    /**
+     * @param subTaskResponses the number of sub-task responses each worker adds to its task
+     */
+    public NoOpWorkerFactory(final int subTaskResponses)
+    {
+        this.subTaskResponses = subTaskResponses;
+    }
+
+    @Override
+    public Worker getWorker(final WorkerTaskData workerTask)
+    {
+        return new Worker()
+        {
+            @Override
+            public WorkerResponse doWork()
+            {
+                for (int i = 0; i < subTaskResponses; i++) {
+                    workerTask.addResponse(
+                        new WorkerResponse(OUTPUT_QUEUE, TaskStatus.NEW_TASK, RESULT_DATA, "BenchmarkSubTask", 1, null), false);
+                }
+                return new WorkerResponse(OUTPUT_QUEUE, TaskStatus.RESULT_SUCCESS, RESULT_DATA, "BenchmarkWorker", 1, null);
+            }
+
+            @Override
+            public String getWorkerIdentifier()
+            {
+                return "BenchmarkWorker";
+            }
+
+            @Override
+            public int getWorkerApiVersion()
+            {
+                return 1;
+            }
+
+            @Override
+            public WorkerResponse getGeneralFailureResult(final Throwable t)
+            {
+                return new WorkerResponse(OUTPUT_QUEUE, TaskStatus.RESULT_FAILURE, RESULT_DATA, "BenchmarkWorker", 1, null);
+            }
+        };
+    }
+
+    @Override
+    public String getInvalidTaskQueue()
+    {
+        return OUTPUT_QUEUE;
+    }
+
+    @Override
+    public int getWorkerThreads()
+    {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public HealthResult healthCheck()
+    {
+        return HealthResult.RESULT_HEALTHY;
+    }
+}
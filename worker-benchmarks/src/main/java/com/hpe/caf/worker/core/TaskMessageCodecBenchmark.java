@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.DecodeMethod;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+import com.hpe.caf.codec.JsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading and writing task messages with the JSON codec against the StreamingJsonCodec, for messages with small (100 byte),
+ * medium (10 KB) and large (1 MB) task data.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskMessageCodecBenchmark
+{
+    @Param({"json", "streaming"})
+    public String codecType;
+
+    @Param({"100", "10240", "1048576"})
+    public int taskDataSize;
+
+    private Codec codec;
+    private TaskMessage taskMessage;
+    private byte[] serialisedTaskMessage;
+
+    @Setup
+    public void setup()
+        throws CodecException
+    {
+        final Codec jsonCodec = new JsonCodec();
+        codec = codecType.equals("streaming") ? new StreamingJsonCodec(jsonCodec) : jsonCodec;
+
+        final byte[] taskData = new byte[taskDataSize];
+        new Random(0).nextBytes(taskData);
+        final Map<String, byte[]> context = new HashMap<>();
+        context.put("benchmark", "context".getBytes(StandardCharsets.UTF_8));
+        taskMessage = new TaskMessage("benchmark-task", "BenchmarkWorker", 1, taskData, TaskStatus.NEW_TASK, context, "benchmark-out",
+                                      new TrackingInfo("J1.T1", new Date(), 60000, "http://localhost/status", "tracking", "done"),
+                                      new TaskSourceInfo("benchmark", "1.0"), "benchmark-correlation");
+        serialisedTaskMessage = jsonCodec.serialise(taskMessage);
+    }
+
+    @Benchmark
+    public byte[] serialise()
+        throws CodecException
+    {
+        return codec.serialise(taskMessage);
+    }
+
+    @Benchmark
+    public TaskMessage deserialise()
+        throws CodecException
+    {
+        return codec.deserialise(serialisedTaskMessage, TaskMessage.class, DecodeMethod.LENIENT);
+    }
+}
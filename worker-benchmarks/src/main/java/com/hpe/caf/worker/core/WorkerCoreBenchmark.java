@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.InvalidNameException;
+
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.worker.QueueException;
+import com.hpe.caf.api.worker.TaskCallback;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerException;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.naming.ServicePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures tasks per second through WorkerCore, from registration by the queue to the final response being published, with a worker
+ * which does no work of its own.
+ * <p>
+ * With {@code subTaskResponses} of 0 this measures the fixed cost of a task: decoding it, dispatching it to the thread pool, and
+ * building and encoding its response. Larger values add the cost of WorkerTaskImpl buffering and publishing sub-task responses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkerCoreBenchmark
+{
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"0", "10"})
+    public int subTaskResponses;
+
+    private final TaskInformation taskInformation = () -> "1";
+    private WorkerThreadPool threadPool;
+    private BenchmarkWorkerQueue queue;
+    private TaskCallback callback;
+    private byte[] taskMessage;
+
+    @Setup
+    public void setup()
+        throws CodecException, InvalidNameException, QueueException
+    {
+        final JsonCodec codec = new JsonCodec();
+        final NoOpWorkerFactory factory = new NoOpWorkerFactory(subTaskResponses);
+        threadPool = WorkerThreadPool.create(factory.getWorkerThreads());
+        queue = new BenchmarkWorkerQueue();
+        final WorkerCore core = new WorkerCore(codec, threadPool, queue, factory, new ServicePath("/benchmark/worker"),
+                                               new HealthCheckRegistry(), new TransientHealthCheck());
+        core.start();
+        callback = queue.getCallback();
+
+        final TaskMessage message = new TaskMessage("benchmark-task", "BenchmarkWorker", 1,
+                                                    "{\"value\":\"benchmark\"}".getBytes(StandardCharsets.UTF_8),
+                                                    TaskStatus.NEW_TASK, new HashMap<>(), queue.getInputQueue());
+        taskMessage = codec.serialise(message);
+    }
+
+    @TearDown
+    public void tearDown()
+        throws InterruptedException
+    {
+        threadPool.shutdown();
+        threadPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void registerNewTask()
+        throws InterruptedException, WorkerException
+    {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            callback.registerNewTask(taskInformation, taskMessage, new HashMap<>());
+        }
+        queue.awaitFinishedTasks(BATCH_SIZE);
+    }
+}
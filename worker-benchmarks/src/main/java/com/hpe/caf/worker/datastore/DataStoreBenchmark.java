@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.datastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.hpe.caf.api.worker.DataStoreException;
+import com.hpe.caf.api.worker.ManagedDataStore;
+import com.hpe.caf.worker.datastore.fs.FileSystemDataStore;
+import com.hpe.caf.worker.datastore.fs.FileSystemDataStoreConfiguration;
+import com.hpe.caf.worker.datastore.http.HttpDataStore;
+import com.hpe.caf.worker.datastore.http.HttpDataStoreConfiguration;
+import com.hpe.caf.worker.datastore.mem.InMemoryDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reads and writes per second against the file system, in-memory and HTTP data stores, the last backed by a
+ * {@link StubHttpServer} on the loopback interface.
+ * <p>
+ * {@code write} deletes what it has stored, so that the store does not grow over the run and the cost of a delete is included.
+ * {@code read} retrieves the same data each time and reads it to the end. Both run on four threads so that contention within a store
+ * shows up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DataStoreBenchmark
+{
+    @Param({"fs", "mem", "http"})
+    public String storeType;
+
+    @Param({"1024", "1048576"})
+    public int dataSize;
+
+    private ManagedDataStore store;
+    private StubHttpServer httpServer;
+    private Path dataDir;
+    private byte[] data;
+    private String storedReference;
+
+    @Setup
+    public void setup()
+        throws DataStoreException, IOException
+    {
+        switch (storeType) {
+            case "fs":
+                dataDir = Files.createTempDirectory("worker-benchmarks");
+                final FileSystemDataStoreConfiguration fsConfig = new FileSystemDataStoreConfiguration();
+                fsConfig.setDataDir(dataDir.toString());
+                store = new FileSystemDataStore(fsConfig);
+                break;
+            case "mem":
+                store = new InMemoryDataStore();
+                break;
+            case "http":
+                httpServer = new StubHttpServer();
+                final HttpDataStoreConfiguration httpConfig = new HttpDataStoreConfiguration();
+                httpConfig.setUrl(httpServer.getUrl());
+                store = new HttpDataStore(httpConfig);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store type: " + storeType);
+        }
+        data = new byte[dataSize];
+        new Random(0).nextBytes(data);
+        storedReference = store.store(data, "benchmark");
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        store.shutdown();
+        if (httpServer != null) {
+            httpServer.close();
+        }
+        if (dataDir != null) {
+            try (final Stream<Path> paths = Files.walk(dataDir)) {
+                for (final Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String write()
+        throws DataStoreException
+    {
+        final String reference = store.store(data, "benchmark");
+        store.delete(reference);
+        return reference;
+    }
+
+    @Benchmark
+    public byte[] read()
+        throws DataStoreException, IOException
+    {
+        try (final InputStream stream = store.retrieve(storedReference)) {
+            return stream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.datastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server on the loopback interface which keeps the data PUT to it in memory, as a stand-in for the server behind an
+ * HttpDataStore.
+ */
+final class StubHttpServer implements AutoCloseable
+{
+    private final Map<String, byte[]> storedData = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    public StubHttpServer()
+        throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl()
+    {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(final HttpExchange exchange)
+        throws IOException
+    {
+        final String reference = exchange.getRequestURI().getPath().substring(1);
+        try (final InputStream requestBody = exchange.getRequestBody()) {
+            switch (exchange.getRequestMethod()) {
+                case "GET":
+                    final byte[] data = reference.isEmpty() ? new byte[0] : storedData.get(reference);
+                    if (data == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.sendResponseHeaders(200, data.length == 0 ? -1 : data.length);
+                        try (final OutputStream responseBody = exchange.getResponseBody()) {
+                            responseBody.write(data);
+                        }
+                    }
+                    break;
+                case "PUT":
+                    storedData.put(reference, requestBody.readAllBytes());
+                    exchange.sendResponseHeaders(200, -1);
+                    break;
+                case "DELETE":
+                    storedData.remove(reference);
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory stand-in for a RabbitMQ Channel with publisher confirms enabled. Published messages are discarded, and every
+ * {@code confirmEvery} publishes the registered ConfirmListener is sent a multiple ack, as a broker would.
+ */
+final class StubChannel implements InvocationHandler
+{
+    private final int confirmEvery;
+    private final AtomicLong nextPublishSeqNo = new AtomicLong(1);
+    private final AtomicLong published = new AtomicLong();
+    private volatile ConfirmListener confirmListener;
+
+    private StubChannel(final int confirmEvery)
+    {
+        this.confirmEvery = confirmEvery;
+    }
+
+    /**
+     * @param confirmEvery the number of publishes to confirm with each multiple ack
+     * @return a new stub channel
+     */
+    public static StubChannel create(final int confirmEvery)
+    {
+        return new StubChannel(confirmEvery);
+    }
+
+    public Channel asChannel()
+    {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class}, this);
+    }
+
+    /**
+     * @return the number of messages published on the channel so far
+     */
+    public long getPublishedCount()
+    {
+        return published.get();
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable
+    {
+        switch (method.getName()) {
+            case "addConfirmListener":
+                if (args.length == 1 && args[0] instanceof ConfirmListener) {
+                    confirmListener = (ConfirmListener) args[0];
+                }
+                return null;
+            case "confirmSelect":
+                return null;
+            case "isOpen":
+                return true;
+            case "getNextPublishSeqNo":
+                return nextPublishSeqNo.get();
+            case "basicPublish":
+                publish();
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "StubChannel";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private void publish()
+        throws IOException
+    {
+        final long seqNo = nextPublishSeqNo.getAndIncrement();
+        published.incrementAndGet();
+        if (seqNo % confirmEvery == 0 && confirmListener != null) {
+            confirmListener.handleAck(seqNo, true);
+        }
+    }
+}
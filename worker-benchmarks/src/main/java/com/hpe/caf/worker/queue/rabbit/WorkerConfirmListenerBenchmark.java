@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of tracking publisher confirms in WorkerConfirmListener.
+ * <p>
+ * The {@code contended} group registers sequence numbers on one thread while another thread acks them cumulatively, as the publisher
+ * thread and the connection thread do. {@code registerThenAck} registers a run of sequence numbers and then acks them with a single
+ * multiple ack on one thread. The tasks registered never receive a final response, so no consumer events are generated and only the
+ * tracking itself is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkerConfirmListenerBenchmark
+{
+    private static final int RUN_LENGTH = 1000;
+
+    @State(Scope.Group)
+    public static class Contended
+    {
+        final AtomicLong registered = new AtomicLong();
+        WorkerConfirmListener listener;
+        WorkerPublishQueueEvent publish;
+        long nextSequence;
+        long acked;
+
+        @Setup(Level.Iteration)
+        public void setup()
+        {
+            listener = new WorkerConfirmListener(new LinkedBlockingQueue<>());
+            publish = new WorkerPublishQueueEvent(new byte[0], "benchmark-out", new RabbitTaskInformation("1"));
+            registered.set(0);
+            nextSequence = 1;
+            acked = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Uncontended
+    {
+        @Param({"1", "100"})
+        public int ackEvery;
+
+        WorkerConfirmListener listener;
+        WorkerPublishQueueEvent publish;
+        long nextSequence;
+
+        @Setup(Level.Iteration)
+        public void setup()
+        {
+            listener = new WorkerConfirmListener(new LinkedBlockingQueue<>());
+            publish = new WorkerPublishQueueEvent(new byte[0], "benchmark-out", new RabbitTaskInformation("1"));
+            nextSequence = 1;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void register(final Contended state)
+    {
+        final long sequence = state.nextSequence++;
+        state.listener.registerPublish(sequence, state.publish);
+        state.registered.lazySet(sequence);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void ack(final Contended state)
+        throws IOException
+    {
+        final long sequence = state.registered.get();
+        if (sequence > state.acked) {
+            state.listener.handleAck(sequence, true);
+            state.acked = sequence;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RUN_LENGTH)
+    public void registerThenAck(final Uncontended state)
+        throws IOException
+    {
+        for (int i = 0; i < RUN_LENGTH; i++) {
+            final long sequence = state.nextSequence++;
+            state.listener.registerPublish(sequence, state.publish);
+            if (sequence % state.ackEvery == 0) {
+                state.listener.handleAck(sequence, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.Event;
+import com.hpe.caf.util.rabbitmq.EventPoller;
+import com.hpe.caf.util.rabbitmq.QueueConsumer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the messages per second that the publisher thread of a RabbitWorkerQueue can push through WorkerPublisherImpl, with one
+ * message handled per loop (publisherBatchSize of 1) compared with batches drained from the publisher queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkerPublisherBenchmark
+{
+    private static final int MESSAGES = 10_000;
+    private static final byte[] DATA = new byte[256];
+
+    @Param({"1", "16", "128"})
+    public int publisherBatchSize;
+
+    @Param({"0", "1000"})
+    public int maxConfirmsInFlight;
+
+    private BlockingQueue<Event<QueueConsumer>> consumerEvents;
+    private BlockingQueue<Event<WorkerPublisher>> publisherEvents;
+    private StubChannel channel;
+    private EventPoller<WorkerPublisher> poller;
+    private Thread publisherThread;
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws IOException
+    {
+        consumerEvents = new LinkedBlockingQueue<>();
+        publisherEvents = new LinkedBlockingQueue<>();
+        channel = StubChannel.create(100);
+        final WorkerConfirmListener confirmListener = new WorkerConfirmListener(consumerEvents);
+        final WorkerPublisherImpl publisher = new WorkerPublisherImpl(
+            channel.asChannel(), new RabbitMetricsReporter(), consumerEvents, confirmListener, maxConfirmsInFlight);
+        poller = publisherBatchSize > 1
+            ? new WorkerPublisherBatchPoller(1, publisherEvents, publisher, publisherBatchSize)
+            : new EventPoller<>(1, publisherEvents, publisher);
+        publisherThread = new Thread(poller, "benchmark-publisher");
+        publisherThread.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+        throws InterruptedException
+    {
+        poller.shutdown();
+        publisherThread.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void publish()
+    {
+        final long target = channel.getPublishedCount() + MESSAGES;
+        for (int i = 0; i < MESSAGES; i++) {
+            final RabbitTaskInformation taskInformation = new RabbitTaskInformation(String.valueOf(i));
+            taskInformation.incrementResponseCount(true);
+            publisherEvents.add(new WorkerPublishQueueEvent(DATA, "benchmark-out", taskInformation, Collections.emptyMap()));
+        }
+        while (channel.getPublishedCount() < target) {
+            Thread.onSpinWait();
+        }
+        consumerEvents.clear();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.function.IntSupplier;
+
+/**
+ * Limits the backlog of a worker thread pool, pausing the incoming queue while the backlog is full so that tasks are left on the
+ * message broker rather than being buffered on the heap.
+ * <p>
+ * The incoming queue is paused when the backlog reaches its maximum size and is resumed once it has fallen to half of that. The size
+ * passed to the limiter is only used to decide whether anything may need to change; the decision itself is made on the size read from
+ * the backlog while the limiter's lock is held, so that a size which has gone stale cannot pause the incoming queue after the backlog
+ * has already been emptied.
+ */
+final class BacklogLimiter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BacklogLimiter.class);
+
+    private final int maxBacklog;
+    private final int resumeBacklog;
+    private ManagedWorkerQueue workerQueue;
+    private IntSupplier backlogSize;
+    private volatile boolean isPaused;
+
+    /**
+     * @param maxBacklog the maximum number of tasks to hold in the backlog, or 0 for no limit
+     */
+    public BacklogLimiter(final int maxBacklog)
+    {
+        if (maxBacklog < 0) {
+            throw new IllegalArgumentException("Maximum backlog cannot be negative");
+        }
+        this.maxBacklog = maxBacklog;
+        this.resumeBacklog = maxBacklog / 2;
+    }
+
+    /**
+     * @return the maximum number of tasks to hold in the backlog, which is Integer.MAX_VALUE if there is no limit
+     */
+    public int getCapacity()
+    {
+        return maxBacklog == 0 ? Integer.MAX_VALUE : maxBacklog;
+    }
+
+    /**
+     * Set the queue to pause while the backlog is full.
+     *
+     * @param workerQueue the queue that tasks are received from
+     */
+    public synchronized void setWorkerQueue(final ManagedWorkerQueue workerQueue)
+    {
+        this.workerQueue = workerQueue;
+    }
+
+    /**
+     * Set where the current size of the backlog is read from.
+     *
+     * @param backlogSize the supplier of the current size of the backlog
+     */
+    public synchronized void setBacklogSize(final IntSupplier backlogSize)
+    {
+        this.backlogSize = Objects.requireNonNull(backlogSize);
+    }
+
+    /**
+     * Pause or resume the incoming queue if the backlog has crossed its limits.
+     *
+     * @param backlogSize the size of the backlog after the change
+     */
+    public void backlogChanged(final int backlogSize)
+    {
+        if (maxBacklog == 0 || (!isPaused && backlogSize < maxBacklog) || (isPaused && backlogSize > resumeBacklog)) {
+            return;
+        }
+        synchronized (this) {
+            if (workerQueue == null) {
+                return;
+            }
+            final int currentSize = getBacklogSize(backlogSize);
+            if (!isPaused && currentSize >= maxBacklog) {
+                LOG.debug("Pausing the incoming queue as the backlog has reached {} tasks", currentSize);
+                isPaused = true;
+                workerQueue.pauseIncoming();
+                // Tasks removed before the pause was visible will not have come here, so the backlog may already have emptied
+                final int sizeAfterPause = getBacklogSize(currentSize);
+                if (sizeAfterPause <= resumeBacklog) {
+                    resume(sizeAfterPause);
+                }
+            } else if (isPaused && currentSize <= resumeBacklog) {
+                resume(currentSize);
+            }
+        }
+    }
+
+    private int getBacklogSize(final int reportedSize)
+    {
+        return backlogSize == null ? reportedSize : backlogSize.getAsInt();
+    }
+
+    private void resume(final int currentSize)
+    {
+        LOG.debug("Resuming the incoming queue as the backlog has fallen to {} tasks", currentSize);
+        isPaused = false;
+        workerQueue.resumeIncoming();
+    }
+
+    /**
+     * @return true if the incoming queue is currently paused because the backlog is full
+     */
+    public boolean isPaused()
+    {
+        return isPaused;
+    }
+}
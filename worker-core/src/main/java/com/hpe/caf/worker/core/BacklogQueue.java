@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work queue of a worker thread pool, bounded by a BacklogLimiter, which it notifies whenever tasks are added or removed.
+ *
+ * @param <E> the type of tasks held in the queue
+ */
+final class BacklogQueue<E> extends LinkedBlockingQueue<E>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient BacklogLimiter limiter;
+
+    public BacklogQueue(final BacklogLimiter limiter)
+    {
+        super(limiter.getCapacity());
+        this.limiter = Objects.requireNonNull(limiter);
+        limiter.setBacklogSize(this::size);
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        final boolean added = super.offer(e);
+        limiter.backlogChanged(size());
+        return added;
+    }
+
+    @Override
+    public E poll()
+    {
+        return removed(super.poll());
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        return removed(super.poll(timeout, unit));
+    }
+
+    @Override
+    public E take()
+        throws InterruptedException
+    {
+        return removed(super.take());
+    }
+
+    @Override
+    public boolean remove(final Object o)
+    {
+        final boolean removed = super.remove(o);
+        limiter.backlogChanged(size());
+        return removed;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements)
+    {
+        final int count = super.drainTo(c, maxElements);
+        limiter.backlogChanged(size());
+        return count;
+    }
+
+    private E removed(final E e)
+    {
+        if (e != null) {
+            limiter.backlogChanged(size());
+        }
+        return e;
+    }
+}
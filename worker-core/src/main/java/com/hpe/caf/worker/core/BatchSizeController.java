@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recommends the batch size and linger time of a bulk worker from the time it takes to process its batches.
+ * <p>
+ * Every ten batches the mean batch time and the time per task are measured. If the mean batch time is over the target, the batch size
+ * is cut to the size that the time per task predicts would meet it, and lingering stops. If the batches were cut short because no more
+ * tasks were waiting, the batch size makes no difference, so the linger time is instead raised by half of the time left before the
+ * target. Otherwise the batch size is stepped up or down by half, carrying on in the same direction while the number of tasks processed
+ * per second keeps rising and turning back when it falls, but never beyond the size predicted to meet the target.
+ */
+final class BatchSizeController
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BatchSizeController.class);
+    private static final int BATCHES_PER_ADJUSTMENT = 10;
+    private static final int INITIAL_BATCH_SIZE = 16;
+    private static final double STEP = 1.5;
+
+    private final long targetLatencyNanos;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final boolean enforced;
+    private int batches;
+    private long tasks;
+    private long elapsedNanos;
+    private double lastThroughput;
+    private boolean growing;
+    private volatile int batchSize;
+    private volatile long lingerMillis;
+    private volatile long adjustments;
+    private volatile double tasksPerBatch;
+    private volatile long batchLatencyMillis;
+    private volatile double throughput;
+
+    /**
+     * @param targetLatencyMillis the length of time that a batch should take to process
+     * @param minBatchSize the smallest batch size to recommend
+     * @param maxBatchSize the largest batch size to recommend
+     * @param maxLingerMillis the longest linger time to recommend
+     * @param enforced whether the recommendations are enforced on the bulk worker rather than left for it to follow
+     */
+    public BatchSizeController(
+        final long targetLatencyMillis,
+        final int minBatchSize,
+        final int maxBatchSize,
+        final long maxLingerMillis,
+        final boolean enforced
+    )
+    {
+        if (targetLatencyMillis < 1) {
+            throw new IllegalArgumentException("Target latency must be at least 1 millisecond");
+        }
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("Batch size limits must be at least 1, with the maximum no less than the minimum");
+        }
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerMillis = Math.max(0, maxLingerMillis);
+        this.enforced = enforced;
+        this.growing = true;
+        this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, INITIAL_BATCH_SIZE));
+    }
+
+    /**
+     * Create a controller from the CAF_WORKER_BULK_BATCH_TARGET_LATENCY_MILLIS, CAF_WORKER_BULK_BATCH_SIZE_MIN,
+     * CAF_WORKER_BULK_BATCH_SIZE_MAX, CAF_WORKER_BULK_BATCH_MAX_LINGER_MILLIS and CAF_WORKER_BULK_BATCH_SIZE_ENFORCED environment
+     * variables.
+     *
+     * @return the controller, or null if adaptive batch sizing is not enabled
+     */
+    public static BatchSizeController fromEnvironment()
+    {
+        final String targetLatencyEnv = System.getenv("CAF_WORKER_BULK_BATCH_TARGET_LATENCY_MILLIS");
+        final long targetLatencyMillis = targetLatencyEnv == null ? 0 : Long.parseLong(targetLatencyEnv);
+        if (targetLatencyMillis <= 0) {
+            return null;
+        }
+        final String minBatchSizeEnv = System.getenv("CAF_WORKER_BULK_BATCH_SIZE_MIN");
+        final int minBatchSize = minBatchSizeEnv == null ? 1 : Integer.parseInt(minBatchSizeEnv);
+        final String maxBatchSizeEnv = System.getenv("CAF_WORKER_BULK_BATCH_SIZE_MAX");
+        final int maxBatchSize = maxBatchSizeEnv == null ? 1000 : Integer.parseInt(maxBatchSizeEnv);
+        final String maxLingerEnv = System.getenv("CAF_WORKER_BULK_BATCH_MAX_LINGER_MILLIS");
+        final long maxLingerMillis = maxLingerEnv == null ? targetLatencyMillis / 10 : Long.parseLong(maxLingerEnv);
+        final boolean enforced = Boolean.parseBoolean(System.getenv("CAF_WORKER_BULK_BATCH_SIZE_ENFORCED"));
+        LOG.info("Adaptive batch sizing enabled with a target batch latency of {} ms", targetLatencyMillis);
+        return new BatchSizeController(targetLatencyMillis, minBatchSize, maxBatchSize, maxLingerMillis, enforced);
+    }
+
+    /**
+     * Record the processing of a batch, adjusting the recommendations every ten batches.
+     *
+     * @param taskCount the number of tasks that the bulk worker took
+     * @param batchNanos the time in nanoseconds that the bulk worker took to process them, including any time spent waiting for them
+     */
+    public synchronized void record(final int taskCount, final long batchNanos)
+    {
+        if (taskCount < 1) {
+            return;
+        }
+        batches++;
+        tasks += taskCount;
+        elapsedNanos += Math.max(1, batchNanos);
+        if (batches >= BATCHES_PER_ADJUSTMENT) {
+            adjust();
+            batches = 0;
+            tasks = 0;
+            elapsedNanos = 0;
+        }
+    }
+
+    /**
+     * @return the recommended number of tasks per batch
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * @return the recommended number of milliseconds to wait for a batch to fill
+     */
+    public long getLingerMillis()
+    {
+        return lingerMillis;
+    }
+
+    /**
+     * @return whether the recommendations are enforced on the bulk worker
+     */
+    public boolean isEnforced()
+    {
+        return enforced;
+    }
+
+    /**
+     * @return the number of times the recommendations have been changed
+     */
+    public long getAdjustments()
+    {
+        return adjustments;
+    }
+
+    /**
+     * @return the mean number of tasks in the recently measured batches
+     */
+    public double getTasksPerBatch()
+    {
+        return tasksPerBatch;
+    }
+
+    /**
+     * @return the mean time in milliseconds that the recently measured batches took to process
+     */
+    public long getBatchLatencyMillis()
+    {
+        return batchLatencyMillis;
+    }
+
+    /**
+     * @return the number of tasks that each bulk worker thread processed per second in the recently measured batches
+     */
+    public double getThroughput()
+    {
+        return throughput;
+    }
+
+    private void adjust()
+    {
+        final double meanNanos = (double) elapsedNanos / batches;
+        final double meanTasks = (double) tasks / batches;
+        final double nanosPerTask = (double) elapsedNanos / tasks;
+        tasksPerBatch = meanTasks;
+        batchLatencyMillis = (long) (meanNanos / 1_000_000);
+        throughput = TimeUnit.SECONDS.toNanos(1) / nanosPerTask;
+
+        // The largest batch that the time per task predicts would be processed within the target
+        final int latencyLimit = (int) Math.max(minBatchSize, Math.min(maxBatchSize, targetLatencyNanos / nanosPerTask));
+        final int currentSize = batchSize;
+        final long currentLinger = lingerMillis;
+        int size = currentSize;
+        long linger = currentLinger;
+
+        if (meanNanos > targetLatencyNanos) {
+            size = Math.min(currentSize, latencyLimit);
+            linger = 0;
+            // Probe upwards again from the reduced size, as the throughput measured so far was over the target
+            lastThroughput = 0;
+            growing = true;
+        } else if (meanTasks < currentSize * 0.9) {
+            final long headroomMillis = TimeUnit.NANOSECONDS.toMillis(targetLatencyNanos - (long) meanNanos);
+            linger = Math.min(maxLingerMillis, currentLinger + headroomMillis / 2);
+        } else {
+            if (throughput < lastThroughput) {
+                growing = !growing;
+            }
+            lastThroughput = throughput;
+            final int stepped = growing ? (int) Math.ceil(currentSize * STEP) : (int) (currentSize / STEP);
+            size = Math.max(minBatchSize, Math.min(latencyLimit, stepped));
+        }
+
+        if (size != currentSize || linger != currentLinger) {
+            LOG.debug("Changing batch size from {} to {} and linger from {} ms to {} ms (mean batch {} tasks in {} ms)",
+                      currentSize, size, currentLinger, linger, meanTasks, batchLatencyMillis);
+            batchSize = size;
+            lingerMillis = linger;
+            adjustments++;
+        }
+    }
+}
@@ -16,9 +16,13 @@
 package com.hpe.caf.worker.core;
 
 import com.hpe.caf.api.worker.BulkWorkerRuntime;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.WorkerResponse;
 import com.hpe.caf.api.worker.WorkerTask;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -27,21 +31,59 @@ final class BulkWorkerTaskProvider implements BulkWorkerRuntime
 {
     private WorkerTaskImpl firstTask;
     private final BlockingQueue<WorkerTaskImpl> workQueue;
+    private final ManagedWorkerQueue workerQueue;
+    private final BatchSizeController batchSizeController;
+    private final int batchLimit;
     private final ArrayList<WorkerTaskImpl> consumedTasks;
 
     public BulkWorkerTaskProvider(
         final WorkerTaskImpl firstTask,
         final BlockingQueue<WorkerTaskImpl> workQueue
     )
+    {
+        this(firstTask, workQueue, null);
+    }
+
+    public BulkWorkerTaskProvider(
+        final WorkerTaskImpl firstTask,
+        final BlockingQueue<WorkerTaskImpl> workQueue,
+        final ManagedWorkerQueue workerQueue
+    )
+    {
+        this(firstTask, workQueue, workerQueue, null);
+    }
+
+    /**
+     * @param firstTask the task taken from the work queue to start the batch
+     * @param workQueue the work queue to take further tasks from
+     * @param workerQueue the queue that responses are published to, so that the responses to a batch of tasks can be handed to its
+     * publisher together, or null to publish them one at a time
+     * @param batchSizeController the controller that recommends the batch size and linger time, or null if there is no recommendation
+     */
+    public BulkWorkerTaskProvider(
+        final WorkerTaskImpl firstTask,
+        final BlockingQueue<WorkerTaskImpl> workQueue,
+        final ManagedWorkerQueue workerQueue,
+        final BatchSizeController batchSizeController
+    )
     {
         this.firstTask = Objects.requireNonNull(firstTask);
         this.workQueue = Objects.requireNonNull(workQueue);
+        this.workerQueue = workerQueue;
+        this.batchSizeController = batchSizeController;
+        // The limit is fixed for the batch so that a recommendation changed part way through does not cut it short
+        this.batchLimit = batchSizeController != null && batchSizeController.isEnforced()
+            ? batchSizeController.getBatchSize()
+            : Integer.MAX_VALUE;
         this.consumedTasks = new ArrayList<>();
     }
 
     @Override
     public WorkerTask getNextWorkerTask()
     {
+        if (isBatchFull()) {
+            return null;
+        }
         return registerTaskConsumed(getNextWorkerTaskImpl());
     }
 
@@ -59,6 +101,9 @@ final class BulkWorkerTaskProvider implements BulkWorkerRuntime
     @Override
     public WorkerTask getNextWorkerTask(long millis) throws InterruptedException
     {
+        if (isBatchFull()) {
+            return null;
+        }
         return registerTaskConsumed(getNextWorkerTaskImpl(millis));
     }
 
@@ -74,6 +119,82 @@ final class BulkWorkerTaskProvider implements BulkWorkerRuntime
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Waiting tasks are taken from the work queue with a single drain rather than one at a time. If the recommended batch size is
+     * enforced, the batch is limited to it and the recommended linger time is used in place of the one requested.
+     */
+    @Override
+    public List<WorkerTask> getNextWorkerTasks(final int maxTasks, final long maxWaitMillis, final long lingerMillis)
+        throws InterruptedException
+    {
+        if (maxTasks < 1) {
+            throw new IllegalArgumentException("maxTasks must be at least 1");
+        }
+        if (isBatchFull()) {
+            return Collections.emptyList();
+        }
+        final int limit = Math.min(maxTasks, batchLimit - consumedTasks.size());
+        final long linger = batchLimit == Integer.MAX_VALUE ? lingerMillis : batchSizeController.getLingerMillis();
+        final WorkerTaskImpl first = getNextWorkerTaskImpl(maxWaitMillis);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        final List<WorkerTaskImpl> tasks = new ArrayList<>(Math.min(limit, workQueue.size() + 1));
+        tasks.add(first);
+        workQueue.drainTo(tasks, limit - 1);
+        if (linger > 0) {
+            final long lingerEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(linger);
+            while (tasks.size() < limit) {
+                final WorkerTaskImpl task = workQueue.poll(lingerEnd - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (task == null) {
+                    break;
+                }
+                tasks.add(task);
+                workQueue.drainTo(tasks, limit - tasks.size());
+            }
+        }
+        consumedTasks.addAll(tasks);
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The messages published for the responses are held back until all of the responses have been set, and then handed to the
+     * publisher in one go.
+     */
+    @Override
+    public void setResponses(final Map<WorkerTask, WorkerResponse> responses)
+    {
+        if (workerQueue == null) {
+            BulkWorkerRuntime.super.setResponses(responses);
+            return;
+        }
+        workerQueue.holdPublishes();
+        try {
+            BulkWorkerRuntime.super.setResponses(responses);
+        } finally {
+            workerQueue.releasePublishes();
+        }
+    }
+
+    @Override
+    public int getRecommendedBatchSize()
+    {
+        if (batchSizeController == null) {
+            return 0;
+        }
+        return batchSizeController.isEnforced() ? batchLimit : batchSizeController.getBatchSize();
+    }
+
+    @Override
+    public long getRecommendedLingerMillis()
+    {
+        return batchSizeController == null ? 0 : batchSizeController.getLingerMillis();
+    }
+
     public boolean isFirstTaskConsumed()
     {
         return firstTask == null;
@@ -84,6 +205,16 @@ final class BulkWorkerTaskProvider implements BulkWorkerRuntime
         return Collections.unmodifiableList(consumedTasks);
     }
 
+    public int getConsumedTaskCount()
+    {
+        return consumedTasks.size();
+    }
+
+    private boolean isBatchFull()
+    {
+        return consumedTasks.size() >= batchLimit;
+    }
+
     private WorkerTaskImpl registerTaskConsumed(WorkerTaskImpl workerTask)
     {
         if (workerTask != null) {
@@ -16,11 +16,11 @@
 package com.hpe.caf.worker.core;
 
 import com.hpe.caf.api.worker.BulkWorker;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
 import com.hpe.caf.api.worker.TaskRejectedException;
 import com.hpe.caf.api.worker.WorkerFactory;
 import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,29 +30,62 @@ final class BulkWorkerThreadPool implements WorkerThreadPool
     private static final Logger LOG = LoggerFactory.getLogger(BulkWorkerThreadPool.class);
 
     private final BulkWorker bulkWorker;
+    private final BacklogLimiter backlogLimiter;
     private final BlockingQueue<WorkerTaskImpl> workQueue;
     private final BulkWorkerThread[] bulkWorkerThreads;
     private final Runnable throwableHandler;
     private final StreamingWorkerThreadPool backupThreadPool;
+    private final PriorityBacklog priorityBacklog;
+    private final BatchSizeController batchSizeController;
 
+    private volatile ManagedWorkerQueue workerQueue;
     private volatile boolean isActive;
 
     public BulkWorkerThreadPool(
         final WorkerFactory workerFactory,
         final Runnable handler
     )
+    {
+        this(workerFactory, 0, 1, null, null, handler);
+    }
+
+    /**
+     * @param workerFactory the factory of the bulk worker
+     * @param maxBacklog the maximum number of tasks accepted but not yet started, or 0 if the backlog is not limited
+     * @param backupThreads the number of threads that run tasks which the bulk worker did not take or did not respond to
+     * @param priorityBacklog the settings to order the backlog by priority with, or null to give each thread a backlog of its own
+     * @param batchSizeController the controller that the time taken by each batch is recorded with, or null if batches are not measured
+     * @param handler the handler to run if a thread terminates with an unhandled throwable
+     */
+    public BulkWorkerThreadPool(
+        final WorkerFactory workerFactory,
+        final int maxBacklog,
+        final int backupThreads,
+        final PriorityBacklog priorityBacklog,
+        final BatchSizeController batchSizeController,
+        final Runnable handler
+    )
     {
         final int nThreads = workerFactory.getWorkerThreads();
 
         this.bulkWorker = (BulkWorker) workerFactory;
-        this.workQueue = new LinkedBlockingQueue<>();
+        this.backlogLimiter = new BacklogLimiter(maxBacklog);
+        // Priority order is only kept if every thread takes from the same backlog, so the threads cannot have deques of their own
+        final WorkStealingQueue<WorkerTaskImpl> stealingQueue
+            = priorityBacklog == null ? new WorkStealingQueue<>(nThreads, backlogLimiter) : null;
+        this.workQueue = stealingQueue == null
+            ? priorityBacklog.createQueue(backlogLimiter, WorkerTaskImpl::getPriority)
+            : stealingQueue.asBlockingQueue();
         this.bulkWorkerThreads = new BulkWorkerThread[nThreads];
         this.throwableHandler = handler;
-        this.backupThreadPool = new StreamingWorkerThreadPool(1, handler);
+        this.backupThreadPool = new StreamingWorkerThreadPool(backupThreads, handler);
+        this.priorityBacklog = priorityBacklog;
+        this.batchSizeController = batchSizeController;
         this.isActive = true;
 
         for (int i = 0; i < nThreads; i++) {
-            BulkWorkerThread bulkWorkerThread = new BulkWorkerThread();
+            BulkWorkerThread bulkWorkerThread
+                = new BulkWorkerThread(stealingQueue == null ? workQueue : stealingQueue.forOwner(i));
             bulkWorkerThreads[i] = bulkWorkerThread;
             bulkWorkerThread.start();
         }
@@ -60,6 +93,13 @@ final class BulkWorkerThreadPool implements WorkerThreadPool
 
     private final class BulkWorkerThread extends Thread
     {
+        private final BlockingQueue<WorkerTaskImpl> ownQueue;
+
+        BulkWorkerThread(final BlockingQueue<WorkerTaskImpl> ownQueue)
+        {
+            this.ownQueue = ownQueue;
+        }
+
         @Override
         public void run()
         {
@@ -81,15 +121,20 @@ final class BulkWorkerThreadPool implements WorkerThreadPool
         private void execute()
             throws InterruptedException
         {
-            final WorkerTaskImpl task = workQueue.take();
+            final WorkerTaskImpl task = ownQueue.take();
             final BulkWorkerTaskProvider taskProvider
-                = new BulkWorkerTaskProvider(task, workQueue);
+                = new BulkWorkerTaskProvider(task, ownQueue, workerQueue, batchSizeController);
 
+            final long startTime = System.nanoTime();
             try {
                 bulkWorker.processTasks(taskProvider);
             } catch (final RuntimeException ex) {
                 LOG.warn("Bulk Worker threw unhandled exception", ex);
             } finally {
+                if (batchSizeController != null) {
+                    batchSizeController.record(taskProvider.getConsumedTaskCount(), System.nanoTime() - startTime);
+                }
+
                 // Re-submit the first task if it has not been consumed
                 // NB: It's really faulty Worker logic to not consume at least
                 // the one task.
@@ -151,6 +196,33 @@ final class BulkWorkerThreadPool implements WorkerThreadPool
         return workQueue.size() + backupThreadPool.getBacklogSize();
     }
 
+    @Override
+    public int getMaxConcurrentTasks()
+    {
+        return bulkWorkerThreads.length;
+    }
+
+    @Override
+    public PriorityBacklog getPriorityBacklog()
+    {
+        return priorityBacklog;
+    }
+
+    @Override
+    public BatchSizeController getBatchSizeController()
+    {
+        return batchSizeController;
+    }
+
+    @Override
+    public void setBackpressureQueue(final ManagedWorkerQueue workerQueue)
+    {
+        // Tasks re-submitted to the backup pool have already been accepted, so only the main backlog applies backpressure
+        backlogLimiter.setWorkerQueue(workerQueue);
+        // The queue is also given to the bulk worker's task providers, so that a batch of responses can be published together
+        this.workerQueue = workerQueue;
+    }
+
     @Override
     public void submitWorkerTask(final WorkerTaskImpl workerTask)
         throws TaskRejectedException
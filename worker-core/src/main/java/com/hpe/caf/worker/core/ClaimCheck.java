@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.DataStore;
+import com.hpe.caf.api.worker.DataStoreException;
+import com.hpe.caf.api.worker.TaskFailedException;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskMessagePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves large task data out of task messages and into the data store, sending a claim check in its place.
+ * <p>
+ * Task data over the offload threshold is stored in the data store, and the task data of the message becomes a claim check: a marker
+ * which cannot begin serialised task data, followed by the data store reference. The claim check survives every route a task message
+ * can take, including forwarding and retries, as it is simply task data. The worker which receives the message resolves the claim check
+ * when the task data is asked for, and deletes the stored data once the task has been completed or discarded. Deletions are made on
+ * threads of their own, as tasks are released from the threads which consume and acknowledge messages.
+ */
+final class ClaimCheck
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ClaimCheck.class);
+
+    private static final byte[] MARKER = "\0caf-claim-check:".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int RELEASE_THREADS = 2;
+
+    private final DataStore dataStore;
+    private final int offloadThreshold;
+    private final String partialReference;
+    private final ExecutorService releaseExecutor;
+
+    /**
+     * @param dataStore the data store to hold task data in
+     * @param offloadThreshold the size in bytes above which task data is moved to the data store, or 0 to never move task data
+     * @param partialReference the partial reference to store task data under, or null
+     */
+    public ClaimCheck(final DataStore dataStore, final int offloadThreshold, final String partialReference)
+    {
+        this.dataStore = Objects.requireNonNull(dataStore);
+        this.offloadThreshold = offloadThreshold;
+        this.partialReference = partialReference;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.releaseExecutor = Executors.newFixedThreadPool(RELEASE_THREADS, r -> {
+            final Thread thread = new Thread(r, "claim-check-release-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a claim check from the CAF_WORKER_CLAIM_CHECK_THRESHOLD_BYTES and CAF_WORKER_CLAIM_CHECK_PARTIAL_REFERENCE environment
+     * variables. Claim checks are always resolved, even if task data is not being moved to the data store by this worker.
+     *
+     * @param dataStore the data store to hold task data in
+     * @return the claim check
+     */
+    public static ClaimCheck fromEnvironment(final DataStore dataStore)
+    {
+        final String thresholdEnv = System.getenv("CAF_WORKER_CLAIM_CHECK_THRESHOLD_BYTES");
+        final int offloadThreshold = thresholdEnv == null ? 0 : Integer.parseInt(thresholdEnv);
+        if (offloadThreshold > 0) {
+            LOG.info("Moving task data larger than {} bytes to the data store", offloadThreshold);
+        }
+        return new ClaimCheck(dataStore, offloadThreshold, System.getenv("CAF_WORKER_CLAIM_CHECK_PARTIAL_REFERENCE"));
+    }
+
+    /**
+     * Move task data to the data store if it is over the offload threshold. If the data cannot be stored it is left in the message.
+     *
+     * @param taskData the task data
+     * @return a claim check for the task data, or the task data itself if it has not been moved
+     */
+    public byte[] offload(final byte[] taskData)
+    {
+        if (offloadThreshold <= 0 || taskData == null || taskData.length <= offloadThreshold) {
+            return taskData;
+        }
+        final String reference;
+        try {
+            reference = dataStore.store(taskData, partialReference);
+        } catch (final DataStoreException e) {
+            LOG.warn("Failed to move {} bytes of task data to the data store, sending them in the message instead", taskData.length, e);
+            return taskData;
+        }
+        LOG.debug("Moved {} bytes of task data to the data store at {}", taskData.length, reference);
+        final byte[] referenceBytes = reference.getBytes(StandardCharsets.UTF_8);
+        final byte[] claimCheck = Arrays.copyOf(MARKER, MARKER.length + referenceBytes.length);
+        System.arraycopy(referenceBytes, 0, claimCheck, MARKER.length, referenceBytes.length);
+        return claimCheck;
+    }
+
+    /**
+     * @param taskData the task data
+     * @return true if the task data is a claim check
+     */
+    public static boolean isClaimCheck(final byte[] taskData)
+    {
+        return taskData != null && taskData.length > MARKER.length
+            && Arrays.equals(taskData, 0, MARKER.length, MARKER, 0, MARKER.length);
+    }
+
+    /**
+     * Determine whether the task data of a task message is a claim check. Task data which has not been decoded yet is only decoded if
+     * it may be a claim check, so that tasks which are only routed elsewhere do not have their payload decoded.
+     *
+     * @param tm the task message
+     * @return true if the task data is a claim check
+     */
+    public static boolean isClaimCheck(final TaskMessage tm)
+    {
+        final TaskMessagePayload payload = tm.deferredPayload();
+        if (payload instanceof PeekableTaskMessagePayload && !((PeekableTaskMessagePayload) payload).taskDataMayStartWith(MARKER)) {
+            return false;
+        }
+        try {
+            return isClaimCheck(tm.getTaskData());
+        } catch (final IllegalStateException e) {
+            // Task data which cannot be decoded is not a claim check that can be resolved
+            return false;
+        }
+    }
+
+    /**
+     * Get the task data that a claim check is for.
+     *
+     * @param claimCheck the claim check
+     * @return the task data
+     * @throws TaskFailedException if the task data cannot be retrieved from the data store
+     */
+    public byte[] retrieve(final byte[] claimCheck)
+    {
+        try (final InputStream stream = stream(claimCheck)) {
+            return stream.readAllBytes();
+        } catch (final IOException e) {
+            throw new TaskFailedException("Failed to read task data from the data store", e);
+        }
+    }
+
+    /**
+     * Get the task data that a claim check is for as a stream, which should be closed by the caller.
+     *
+     * @param claimCheck the claim check
+     * @return the task data
+     * @throws TaskFailedException if the task data cannot be retrieved from the data store
+     */
+    public InputStream stream(final byte[] claimCheck)
+    {
+        final String reference = getReference(claimCheck);
+        try {
+            return dataStore.retrieve(reference);
+        } catch (final DataStoreException e) {
+            throw new TaskFailedException("Failed to retrieve task data from the data store at " + reference, e);
+        }
+    }
+
+    /**
+     * Delete the task data that a claim check is for, once it is no longer needed. The data is deleted asynchronously, so that the
+     * caller is not held up by the data store. Failures are logged rather than thrown, as the task has already been dealt with.
+     *
+     * @param claimCheck the claim check
+     */
+    public void release(final byte[] claimCheck)
+    {
+        final String reference = getReference(claimCheck);
+        try {
+            releaseExecutor.execute(() -> delete(reference));
+        } catch (final RejectedExecutionException e) {
+            // The worker is shutting down, so there is nothing left to hold up
+            delete(reference);
+        }
+    }
+
+    /**
+     * Stop accepting data to delete asynchronously. Deletions which have already been requested are still made.
+     */
+    public void shutdown()
+    {
+        releaseExecutor.shutdown();
+    }
+
+    private void delete(final String reference)
+    {
+        try {
+            dataStore.delete(reference);
+            LOG.debug("Deleted task data from the data store at {}", reference);
+        } catch (final DataStoreException e) {
+            LOG.warn("Failed to delete task data from the data store at {}", reference, e);
+        }
+    }
+
+    private static String getReference(final byte[] claimCheck)
+    {
+        return new String(claimCheck, MARKER.length, claimCheck.length - MARKER.length, StandardCharsets.UTF_8);
+    }
+}
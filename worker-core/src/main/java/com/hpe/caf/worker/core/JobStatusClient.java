@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.JobNotFoundException;
+import com.hpe.caf.api.worker.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the status of jobs without blocking the caller.
+ * <p>
+ * Lookups of a job whose status is already being checked share the request in flight rather than making another, and if the status
+ * service marks the response as cacheable (its CacheableJobStatus header) it is then cached against the job identifier for the status
+ * check interval that the status service returned (its cache-control max-age), so a burst of tasks from the same job results in a
+ * single request. Failed checks, including jobs which are not found, are never cached, so that they are retried by the next lookup. The cache holds a bounded number of jobs, evicting
+ * the least recently used. HTTP and HTTPS status check URLs are requested with a non-blocking client; other URLs are read on a
+ * background thread.
+ */
+final class JobStatusClient
+{
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusClient.class);
+    private static final String CACHE_CONTROL_HEADER_NAME = "cache-control";
+
+    private final Duration timeout;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Map<String, CacheEntry> cache;
+
+    /**
+     * @param timeoutMillis the maximum time to wait for a connection to the status service, and then for its response
+     * @param cacheSize the maximum number of jobs whose status is cached
+     */
+    public JobStatusClient(final long timeoutMillis, final int cacheSize)
+    {
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("Timeout must be at least 1 millisecond");
+        }
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            final Thread thread = new Thread(r, "job-status-check-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor);
+        final ProxySelector proxySelector = ProxySelector.getDefault();
+        if (proxySelector != null) {
+            httpClientBuilder.proxy(proxySelector);
+        }
+        this.httpClient = httpClientBuilder.build();
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest)
+            {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Create a client from the CAF_WORKER_JOB_STATUS_CHECK_TIMEOUT_MILLIS and CAF_WORKER_JOB_STATUS_CACHE_SIZE environment variables.
+     *
+     * @return the client
+     */
+    public static JobStatusClient fromEnvironment()
+    {
+        final String timeoutEnv = System.getenv("CAF_WORKER_JOB_STATUS_CHECK_TIMEOUT_MILLIS");
+        final long timeoutMillis = timeoutEnv == null ? 10000 : Long.parseLong(timeoutEnv);
+        final String cacheSizeEnv = System.getenv("CAF_WORKER_JOB_STATUS_CACHE_SIZE");
+        final int cacheSize = cacheSizeEnv == null ? 10000 : Integer.parseInt(cacheSizeEnv);
+        return new JobStatusClient(timeoutMillis, cacheSize);
+    }
+
+    /**
+     * Get the status of a job. If the status check cannot be performed the job is reported as active.
+     *
+     * @param jobId the job to check the status of
+     * @param statusCheckUrl full path that can be used to check the job's status
+     * @return a future that completes with the job status response, or completes exceptionally with a {@link JobNotFoundException} if
+     * the status service does not know of the job; it may already be complete if the status is cached
+     */
+    public CompletableFuture<JobStatusResponse> getJobStatus(final String jobId, final String statusCheckUrl)
+    {
+        Objects.requireNonNull(jobId);
+        Objects.requireNonNull(statusCheckUrl);
+        final CacheEntry entry;
+        synchronized (cache) {
+            final CacheEntry cached = cache.get(jobId);
+            if (cached != null && cached.isValidFor(statusCheckUrl, System.nanoTime())) {
+                LOG.debug("Job {} : using {} job status", jobId, cached.response.isDone() ? "cached" : "in-flight");
+                return cached.response;
+            }
+            entry = new CacheEntry(statusCheckUrl);
+            cache.put(jobId, entry);
+        }
+        fetchJobStatus(jobId, statusCheckUrl).whenComplete((response, failure) -> {
+            if (response != null && response.isCacheable() && response.getStatusCheckIntervalMillis() > 0) {
+                entry.expiryNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(response.getStatusCheckIntervalMillis());
+            } else {
+                synchronized (cache) {
+                    cache.remove(jobId, entry);
+                }
+            }
+            if (failure != null) {
+                entry.response.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                entry.response.complete(response);
+            }
+        });
+        return entry.response;
+    }
+
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<JobStatusResponse> fetchJobStatus(final String jobId, final String statusCheckUrl)
+    {
+        final URI uri;
+        try {
+            uri = new URI(statusCheckUrl);
+        } catch (final Exception e) {
+            LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, e);
+            return CompletableFuture.completedFuture(new JobStatusResponse());
+        }
+        if ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) {
+            final HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ",
+                                 jobId, statusCheckUrl, e);
+                        return new JobStatusResponse();
+                    }
+                    return toJobStatusResponse(jobId, statusCheckUrl, response);
+                });
+        }
+        return CompletableFuture.supplyAsync(() -> getJobStatusFromConnection(jobId, statusCheckUrl), executor);
+    }
+
+    private static JobStatusResponse toJobStatusResponse(
+        final String jobId,
+        final String statusCheckUrl,
+        final HttpResponse<String> response
+    )
+    {
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new CompletionException(new JobNotFoundException(
+                "Unable to check job status as job " + jobId + " was not found using status check URL " + statusCheckUrl));
+        }
+        final long statusCheckIntervalMillis = JobStatusResponseCache.getStatusCheckIntervalMillis(
+            response.headers().firstValue(CACHE_CONTROL_HEADER_NAME).orElse(null));
+        if (response.statusCode() >= 400) {
+            LOG.warn("Job {} : assuming that job is active - status check URL {} returned HTTP status {}.",
+                     jobId, statusCheckUrl, response.statusCode());
+            return new JobStatusResponse(JobStatus.Active, statusCheckIntervalMillis);
+        }
+        final String responseValue = response.body() == null ? null : response.body().lines().findFirst().orElse(null);
+        final boolean cacheable = JobStatusResponseCache.isCacheableJobStatusResponse(
+            response.headers().firstValue(JobStatusResponseCache.getCacheableJobStatusHeaderName()).orElse(null));
+        return new JobStatusResponse(parseJobStatus(jobId, statusCheckUrl, responseValue), statusCheckIntervalMillis, cacheable);
+    }
+
+    /**
+     * Reads the job status using a URLConnection, which makes implicit use of JobStatusResponseCache. This is used for status check URLs
+     * which the HTTP client does not support.
+     */
+    private static JobStatusResponse getJobStatusFromConnection(final String jobId, final String statusCheckUrl)
+    {
+        try {
+            final URL url = new URL(statusCheckUrl);
+            final URLConnection connection = url.openConnection();
+            if (connection instanceof HttpURLConnection) {
+                if (((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    throw new CompletionException(new JobNotFoundException(
+                        "Unable to check job status as job " + jobId + " was not found using status check URL " + statusCheckUrl));
+                }
+            }
+            final long statusCheckIntervalMillis = JobStatusResponseCache.getStatusCheckIntervalMillis(connection);
+            final boolean cacheable = JobStatusResponseCache.isCacheableJobStatusResponse(
+                connection.getHeaderField(JobStatusResponseCache.getCacheableJobStatusHeaderName()));
+            try (BufferedReader response = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+                return new JobStatusResponse(
+                    parseJobStatus(jobId, statusCheckUrl, response.readLine()), statusCheckIntervalMillis, cacheable);
+            } catch (final Exception ex) {
+                LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, ex);
+                return new JobStatusResponse(JobStatus.Active, statusCheckIntervalMillis);
+            }
+        } catch (final CompletionException e) {
+            throw e;
+        } catch (final Exception e) {
+            LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, e);
+            return new JobStatusResponse();
+        }
+    }
+
+    private static JobStatus parseJobStatus(final String jobId, final String statusCheckUrl, final String responseValue)
+    {
+        if (responseValue == null) {
+            LOG.warn("Job {} : assuming that job is active - no suitable response from status check URL {}.", jobId, statusCheckUrl);
+            return JobStatus.Active;
+        }
+        final String responseValueWithoutQuotes = responseValue.replaceAll("\"", "");
+        LOG.debug("Job {} : retrieved job status '{}' from status check URL {}.", jobId, responseValueWithoutQuotes, statusCheckUrl);
+        try {
+            return JobStatus.valueOf(responseValueWithoutQuotes);
+        } catch (final IllegalArgumentException ex) {
+            LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, ex);
+            return JobStatus.Active;
+        }
+    }
+
+    private static final class CacheEntry
+    {
+        final String statusCheckUrl;
+        final CompletableFuture<JobStatusResponse> response = new CompletableFuture<>();
+        volatile long expiryNanos;
+
+        CacheEntry(final String statusCheckUrl)
+        {
+            this.statusCheckUrl = statusCheckUrl;
+        }
+
+        boolean isValidFor(final String url, final long nowNanos)
+        {
+            // An entry still in flight is shared; the expiry is set before the response is completed
+            return statusCheckUrl.equals(url) && (!response.isDone() || expiryNanos - nowNanos > 0);
+        }
+    }
+
+    static final class JobStatusResponse
+    {
+        private final JobStatus jobStatus;
+        private final long statusCheckIntervalMillis;
+        private final boolean cacheable;
+
+        public JobStatusResponse()
+        {
+            this(JobStatus.Active, JobStatusResponseCache.getDefaultJobStatusCheckIntervalMillis());
+        }
+
+        public JobStatusResponse(final JobStatus jobStatus, final long statusCheckIntervalMillis)
+        {
+            this(jobStatus, statusCheckIntervalMillis, false);
+        }
+
+        public JobStatusResponse(final JobStatus jobStatus, final long statusCheckIntervalMillis, final boolean cacheable)
+        {
+            this.jobStatus = jobStatus;
+            this.statusCheckIntervalMillis = statusCheckIntervalMillis;
+            this.cacheable = cacheable;
+        }
+
+        public JobStatus getJobStatus()
+        {
+            return jobStatus;
+        }
+
+        public long getStatusCheckIntervalMillis()
+        {
+            return statusCheckIntervalMillis;
+        }
+
+        /**
+         * @return true if the status service marked the response as cacheable
+         */
+        public boolean isCacheable()
+        {
+            return cacheable;
+        }
+    }
+}
@@ -81,11 +81,23 @@ public class JobStatusResponseCache extends ResponseCache
 
     private boolean isCacheableJobStatusResponse(URLConnection connection)
     {
-        String cacheableJobStatus = connection.getHeaderField(CACHEABLE_JOB_STATUS_HEADER_NAME);
-        if (cacheableJobStatus != null) {
-            return Boolean.parseBoolean(cacheableJobStatus);
-        }
-        return false;
+        return isCacheableJobStatusResponse(connection.getHeaderField(CACHEABLE_JOB_STATUS_HEADER_NAME));
+    }
+
+    /**
+     * Determines whether the status service has marked a job status response as cacheable.
+     *
+     * @param cacheableJobStatus the value of the CacheableJobStatus response header, or null if the response did not have one
+     * @return true if the response can be cached
+     */
+    static boolean isCacheableJobStatusResponse(String cacheableJobStatus)
+    {
+        return cacheableJobStatus != null && Boolean.parseBoolean(cacheableJobStatus);
+    }
+
+    static String getCacheableJobStatusHeaderName()
+    {
+        return CACHEABLE_JOB_STATUS_HEADER_NAME;
     }
 
     /**
@@ -95,9 +107,19 @@ public class JobStatusResponseCache extends ResponseCache
      * @return job status check interval in milliseconds
      */
     public static long getStatusCheckIntervalMillis(URLConnection connection)
+    {
+        return getStatusCheckIntervalMillis(connection.getHeaderField(CACHE_CONTROL_HEADER_NAME));
+    }
+
+    /**
+     * Extracts the job status check interval from the value of a cache-control response header.
+     *
+     * @param cacheControl the value of the cache-control header, or null if the response did not have one
+     * @return job status check interval in milliseconds
+     */
+    public static long getStatusCheckIntervalMillis(String cacheControl)
     {
         long intervalMillis = getDefaultJobStatusCheckIntervalMillis();
-        String cacheControl = connection.getHeaderField(CACHE_CONTROL_HEADER_NAME);
         if (cacheControl != null) {
             LOG.debug("{} = {}", CACHE_CONTROL_HEADER_NAME, cacheControl);
             Pattern maxAgeRegEx = Pattern.compile(CACHE_CONTROL_HEADER_MAX_AGE_PATTERN);
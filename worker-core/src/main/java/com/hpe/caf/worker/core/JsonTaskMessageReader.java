@@ -0,0 +1,380 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.DecodeMethod;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskMessagePayload;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads a task message serialised as JSON in a single pass over the message, without decoding its task data or context. The position
+ * of each in the message is noted instead, and they are decoded from the message if and when they are asked for. Tasks which are only
+ * routed elsewhere, such as diverted, paused and discarded tasks, so never have their payload decoded.
+ * <p>
+ * The small tracking and source info objects are handed to the codec, so that they are read exactly as the codec would read them.
+ * <p>
+ * A message read this way whose payload has not been decoded can be written out again by reusing the bytes it was read from. If only
+ * its tracking info has changed, as happens when a task is forwarded, just the tracking info is written again.
+ */
+final class JsonTaskMessageReader
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    private final Codec codec;
+
+    public JsonTaskMessageReader(final Codec codec)
+    {
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    /**
+     * Read a task message, leaving its task data and context undecoded.
+     *
+     * @param body the message body
+     * @return the task message, or null if the message is not JSON in the shape written by the JSON codec, in which case it should be
+     * read by the codec instead
+     * @throws CodecException if the tracking or source info of the message cannot be read by the codec
+     */
+    public TaskMessage read(final byte[] body)
+        throws CodecException
+    {
+        try (final JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            final TaskMessage tm = new TaskMessage();
+            int taskDataOffset = -1;
+            int contextOffset = -1;
+            int trackingStart = -1;
+            int trackingEnd = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "version":
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            return null;
+                        }
+                        tm.setVersion(parser.getIntValue());
+                        break;
+                    case "taskId":
+                        tm.setTaskId(parser.getValueAsString());
+                        break;
+                    case "taskClassifier":
+                        tm.setTaskClassifier(parser.getValueAsString());
+                        break;
+                    case "taskApiVersion":
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            return null;
+                        }
+                        tm.setTaskApiVersion(parser.getIntValue());
+                        break;
+                    case "taskStatus":
+                        tm.setTaskStatus(value == JsonToken.VALUE_NULL ? null : TaskStatus.valueOf(parser.getText()));
+                        break;
+                    case "to":
+                        tm.setTo(parser.getValueAsString());
+                        break;
+                    case "priority":
+                        if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NULL) {
+                            return null;
+                        }
+                        tm.setPriority(value == JsonToken.VALUE_NULL ? null : parser.getIntValue());
+                        break;
+                    case "correlationId":
+                        tm.setCorrelationId(parser.getValueAsString());
+                        break;
+                    case "tracking":
+                        trackingStart = getTokenOffset(parser);
+                        tm.setTracking(readObject(parser, body, TrackingInfo.class));
+                        trackingEnd = (int) parser.currentLocation().getByteOffset();
+                        break;
+                    case "sourceInfo":
+                        tm.setSourceInfo(readObject(parser, body, TaskSourceInfo.class));
+                        break;
+                    case "taskData":
+                        if (value == JsonToken.VALUE_STRING) {
+                            taskDataOffset = getTokenOffset(parser);
+                        } else if (value == JsonToken.VALUE_NULL) {
+                            taskDataOffset = -1;
+                        } else {
+                            return null;
+                        }
+                        break;
+                    case "context":
+                        if (value == JsonToken.START_OBJECT) {
+                            contextOffset = getTokenOffset(parser);
+                            if (!skipContext(parser)) {
+                                return null;
+                            }
+                        } else if (value == JsonToken.VALUE_NULL) {
+                            contextOffset = -1;
+                        } else {
+                            return null;
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                return null;
+            }
+            final JsonTaskMessagePayload payload
+                = new JsonTaskMessagePayload(body, taskDataOffset, contextOffset, trackingStart, trackingEnd, copyFields(tm));
+            tm.deferPayload(payload);
+            return tm;
+        } catch (final IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a task message out again using the bytes it was read from, if its payload has not been decoded since it was read and no
+     * field other than its tracking info has changed.
+     *
+     * @param tm the task message
+     * @param codec the codec to serialise changed tracking info with
+     * @param bytesReused receives the number of bytes of the message which were reused
+     * @return the message, or null if the message was not read by this class or cannot be written by reusing the bytes it was read from
+     * @throws CodecException if changed tracking info cannot be serialised
+     */
+    public static byte[] rewrite(final TaskMessage tm, final Codec codec, final LongConsumer bytesReused)
+        throws CodecException
+    {
+        final TaskMessagePayload deferredPayload = tm.deferredPayload();
+        if (!(deferredPayload instanceof JsonTaskMessagePayload)) {
+            return null;
+        }
+        final JsonTaskMessagePayload payload = (JsonTaskMessagePayload) deferredPayload;
+        final TaskMessage original = payload.originalFields;
+        if (!haveSameFields(tm, original)) {
+            return null;
+        }
+        final byte[] body = payload.body;
+        if (haveSameTracking(tm.getTracking(), original.getTracking())) {
+            bytesReused.accept(body.length);
+            return body;
+        }
+        if (payload.trackingStart < 0) {
+            // There is nowhere to write the tracking info
+            return null;
+        }
+        final byte[] tracking = tm.getTracking() == null ? NULL : codec.serialise(tm.getTracking());
+        final int tail = body.length - payload.trackingEnd;
+        final byte[] rewritten = new byte[payload.trackingStart + tracking.length + tail];
+        System.arraycopy(body, 0, rewritten, 0, payload.trackingStart);
+        System.arraycopy(tracking, 0, rewritten, payload.trackingStart, tracking.length);
+        System.arraycopy(body, payload.trackingEnd, rewritten, payload.trackingStart + tracking.length, tail);
+        bytesReused.accept(payload.trackingStart + tail);
+        return rewritten;
+    }
+
+    private <T> T readObject(final JsonParser parser, final byte[] body, final Class<T> clazz)
+        throws IOException, CodecException
+    {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Expected an object for " + clazz.getSimpleName());
+        }
+        final int start = getTokenOffset(parser);
+        parser.skipChildren();
+        final int end = (int) parser.currentLocation().getByteOffset();
+        return codec.deserialise(Arrays.copyOfRange(body, start, end), clazz, DecodeMethod.LENIENT);
+    }
+
+    /**
+     * Skips over the context, checking that each of its values is a string or null so that it can be decoded later.
+     */
+    private static boolean skipContext(final JsonParser parser)
+        throws IOException
+    {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getTokenOffset(final JsonParser parser)
+    {
+        return (int) parser.currentTokenLocation().getByteOffset();
+    }
+
+    /**
+     * Copies the fields of a task message other than its payload, so that changes made to them later can be detected.
+     */
+    private static TaskMessage copyFields(final TaskMessage tm)
+    {
+        final TaskMessage copy = new TaskMessage();
+        copy.setVersion(tm.getVersion());
+        copy.setTaskId(tm.getTaskId());
+        copy.setTaskClassifier(tm.getTaskClassifier());
+        copy.setTaskApiVersion(tm.getTaskApiVersion());
+        copy.setTaskStatus(tm.getTaskStatus());
+        copy.setTo(tm.getTo());
+        copy.setPriority(tm.getPriority());
+        copy.setCorrelationId(tm.getCorrelationId());
+        final TaskSourceInfo sourceInfo = tm.getSourceInfo();
+        if (sourceInfo != null) {
+            copy.setSourceInfo(new TaskSourceInfo(sourceInfo.getName(), sourceInfo.getVersion()));
+        }
+        final TrackingInfo tracking = tm.getTracking();
+        if (tracking != null) {
+            copy.setTracking(new TrackingInfo(tracking));
+        }
+        return copy;
+    }
+
+    private static boolean haveSameFields(final TaskMessage tm, final TaskMessage original)
+    {
+        final TaskSourceInfo sourceInfo = tm.getSourceInfo();
+        final TaskSourceInfo originalSourceInfo = original.getSourceInfo();
+        return tm.getVersion() == original.getVersion()
+            && Objects.equals(tm.getTaskId(), original.getTaskId())
+            && Objects.equals(tm.getTaskClassifier(), original.getTaskClassifier())
+            && tm.getTaskApiVersion() == original.getTaskApiVersion()
+            && tm.getTaskStatus() == original.getTaskStatus()
+            && Objects.equals(tm.getTo(), original.getTo())
+            && Objects.equals(tm.getPriority(), original.getPriority())
+            && Objects.equals(tm.getCorrelationId(), original.getCorrelationId())
+            && (sourceInfo == null
+                ? originalSourceInfo == null
+                : originalSourceInfo != null
+                && Objects.equals(sourceInfo.getName(), originalSourceInfo.getName())
+                && Objects.equals(sourceInfo.getVersion(), originalSourceInfo.getVersion()));
+    }
+
+    private static boolean haveSameTracking(final TrackingInfo tracking, final TrackingInfo original)
+    {
+        if (tracking == null || original == null) {
+            return tracking == original;
+        }
+        return Objects.equals(tracking.getJobTaskId(), original.getJobTaskId())
+            && Objects.equals(tracking.getLastStatusCheckTime(), original.getLastStatusCheckTime())
+            && tracking.getStatusCheckIntervalMillis() == original.getStatusCheckIntervalMillis()
+            && Objects.equals(tracking.getStatusCheckUrl(), original.getStatusCheckUrl())
+            && Objects.equals(tracking.getTrackingPipe(), original.getTrackingPipe())
+            && Objects.equals(tracking.getTrackTo(), original.getTrackTo());
+    }
+
+    /**
+     * The task data and context of a task message, decoded from where they were found in the message.
+     */
+    private static final class JsonTaskMessagePayload implements PeekableTaskMessagePayload
+    {
+        private final byte[] body;
+        private final int taskDataOffset;
+        private final int contextOffset;
+        private final int trackingStart;
+        private final int trackingEnd;
+        private final TaskMessage originalFields;
+
+        JsonTaskMessagePayload(
+            final byte[] body,
+            final int taskDataOffset,
+            final int contextOffset,
+            final int trackingStart,
+            final int trackingEnd,
+            final TaskMessage originalFields
+        )
+        {
+            this.body = body;
+            this.taskDataOffset = taskDataOffset;
+            this.contextOffset = contextOffset;
+            this.trackingStart = trackingStart;
+            this.trackingEnd = trackingEnd;
+            this.originalFields = originalFields;
+        }
+
+        @Override
+        public byte[] decodeTaskData()
+        {
+            if (taskDataOffset < 0) {
+                return null;
+            }
+            try (final JsonParser parser = createParser(taskDataOffset)) {
+                parser.nextToken();
+                return parser.getBinaryValue();
+            } catch (final IOException e) {
+                throw new IllegalStateException("Task data could not be decoded", e);
+            }
+        }
+
+        /**
+         * Compares the start of the base64 text of the task data with the base64 encoding of as much of the prefix as encodes to
+         * whole characters.
+         */
+        @Override
+        public boolean taskDataMayStartWith(final byte[] prefix)
+        {
+            if (taskDataOffset < 0 || body[taskDataOffset] != '"') {
+                return false;
+            }
+            final byte[] encodedPrefix = Base64.getEncoder().encode(Arrays.copyOf(prefix, prefix.length - prefix.length % 3));
+            final int start = taskDataOffset + 1;
+            return body.length - start >= encodedPrefix.length
+                && Arrays.equals(body, start, start + encodedPrefix.length, encodedPrefix, 0, encodedPrefix.length);
+        }
+
+        @Override
+        public Map<String, byte[]> decodeContext()
+        {
+            if (contextOffset < 0) {
+                return null;
+            }
+            try (final JsonParser parser = createParser(contextOffset)) {
+                parser.nextToken();
+                final Map<String, byte[]> context = new HashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String key = parser.currentName();
+                    context.put(key, parser.nextToken() == JsonToken.VALUE_NULL ? null : parser.getBinaryValue());
+                }
+                return context;
+            } catch (final IOException e) {
+                throw new IllegalStateException("Context could not be decoded", e);
+            }
+        }
+
+        private JsonParser createParser(final int offset)
+            throws IOException
+        {
+            return JSON_FACTORY.createParser(body, offset, body.length - offset);
+        }
+    }
+}
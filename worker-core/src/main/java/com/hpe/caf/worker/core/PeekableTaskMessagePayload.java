@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.TaskMessagePayload;
+
+/**
+ * An undecoded task message payload whose task data can be compared with a prefix without decoding it, so that tasks which are only
+ * routed elsewhere can still be checked for claim checks.
+ */
+interface PeekableTaskMessagePayload extends TaskMessagePayload
+{
+    /**
+     * @param prefix the prefix to compare the start of the task data with
+     * @return false if the task data does not start with the prefix, or true if it may do
+     */
+    boolean taskDataMayStartWith(byte[] prefix);
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.codahale.metrics.Timer;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically retunes the prefetch of the incoming queue so that tasks wait in the backlog for roughly a target length of time.
+ * <p>
+ * With {@code n} tasks running at once and a mean task duration of {@code d}, the worker completes {@code n / d} tasks per second, so
+ * a backlog of {@code n * target / d} tasks keeps the threads busy for the target delay. The prefetch is set to the number of tasks
+ * that can run at once plus that backlog, between the number of tasks that can run at once and a maximum. It is only changed when it
+ * moves by more than a fifth, as applying a new prefetch restarts the consumer.
+ */
+final class PrefetchController
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PrefetchController.class);
+    private static final long ADJUSTMENT_INTERVAL_SECONDS = 10;
+
+    private final Timer taskTimer;
+    private final WorkerThreadPool threadPool;
+    private final ManagedWorkerQueue workerQueue;
+    private final long targetDelayNanos;
+    private final int maxPrefetch;
+    private ScheduledExecutorService scheduler;
+    private long lastTaskCount;
+    private volatile int prefetch;
+    private volatile long adjustments;
+    private volatile long queueDelayMillis;
+
+    /**
+     * @param taskTimer the timer that worker tasks are timed with
+     * @param threadPool the thread pool the tasks are run on
+     * @param workerQueue the queue to retune the prefetch of
+     * @param targetDelayMillis the length of time that tasks should wait in the backlog
+     * @param maxPrefetch the largest prefetch to set
+     */
+    public PrefetchController(
+        final Timer taskTimer,
+        final WorkerThreadPool threadPool,
+        final ManagedWorkerQueue workerQueue,
+        final long targetDelayMillis,
+        final int maxPrefetch
+    )
+    {
+        if (targetDelayMillis < 1) {
+            throw new IllegalArgumentException("Target delay must be at least 1 millisecond");
+        }
+        this.taskTimer = Objects.requireNonNull(taskTimer);
+        this.threadPool = Objects.requireNonNull(threadPool);
+        this.workerQueue = Objects.requireNonNull(workerQueue);
+        this.targetDelayNanos = TimeUnit.MILLISECONDS.toNanos(targetDelayMillis);
+        this.maxPrefetch = Math.max(maxPrefetch, threadPool.getMaxConcurrentTasks());
+    }
+
+    /**
+     * Create a controller from the CAF_WORKER_ADAPTIVE_PREFETCH_TARGET_DELAY_MILLIS and CAF_WORKER_ADAPTIVE_PREFETCH_MAX environment
+     * variables.
+     *
+     * @return the controller, or null if adaptive prefetch is not enabled
+     */
+    public static PrefetchController fromEnvironment(final WorkerThreadPool threadPool, final ManagedWorkerQueue workerQueue)
+    {
+        final String targetDelayEnv = System.getenv("CAF_WORKER_ADAPTIVE_PREFETCH_TARGET_DELAY_MILLIS");
+        final long targetDelayMillis = targetDelayEnv == null ? 0 : Long.parseLong(targetDelayEnv);
+        if (targetDelayMillis <= 0) {
+            return null;
+        }
+        final String maxPrefetchEnv = System.getenv("CAF_WORKER_ADAPTIVE_PREFETCH_MAX");
+        final int maxPrefetch = maxPrefetchEnv == null ? 1000 : Integer.parseInt(maxPrefetchEnv);
+        return new PrefetchController(StreamingWorkerWrapper.getTimer(), threadPool, workerQueue, targetDelayMillis, maxPrefetch);
+    }
+
+    public synchronized void start()
+    {
+        if (scheduler != null) {
+            return;
+        }
+        lastTaskCount = taskTimer.getCount();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "prefetch-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjustSafely, ADJUSTMENT_INTERVAL_SECONDS, ADJUSTMENT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        LOG.info("Adaptive prefetch enabled with a target queueing delay of {} ms", TimeUnit.NANOSECONDS.toMillis(targetDelayNanos));
+    }
+
+    public synchronized void stop()
+    {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return the prefetch most recently set, or 0 if it has not been changed
+     */
+    public int getPrefetch()
+    {
+        return prefetch;
+    }
+
+    /**
+     * @return the number of times the prefetch has been changed
+     */
+    public long getAdjustments()
+    {
+        return adjustments;
+    }
+
+    /**
+     * @return the estimated time in milliseconds that a task waits in the backlog before it is started
+     */
+    public long getQueueDelayMillis()
+    {
+        return queueDelayMillis;
+    }
+
+    /**
+     * Measure the recent task duration and set a new prefetch if it has moved far enough from the current one.
+     */
+    synchronized void adjust()
+    {
+        final long taskCount = taskTimer.getCount();
+        final boolean tasksCompleted = taskCount != lastTaskCount;
+        lastTaskCount = taskCount;
+        if (!tasksCompleted) {
+            // Either idle or every thread is busy with a long task; neither says anything new about the task duration
+            return;
+        }
+        final double meanTaskNanos = taskTimer.getSnapshot().getMean();
+        if (meanTaskNanos <= 0) {
+            return;
+        }
+        final int maxTasks = threadPool.getMaxConcurrentTasks();
+        queueDelayMillis = (long) (threadPool.getBacklogSize() * meanTaskNanos / maxTasks / 1_000_000);
+
+        final double backlog = Math.ceil(maxTasks * (targetDelayNanos / meanTaskNanos));
+        final int target = (int) Math.max(maxTasks, Math.min(maxPrefetch, maxTasks + backlog));
+        final int current = prefetch;
+        if (current != 0 && Math.abs(target - current) * 5 <= current) {
+            return;
+        }
+        LOG.debug("Changing prefetch from {} to {} (mean task duration {} ms, queueing delay {} ms)",
+                  current, target, (long) (meanTaskNanos / 1_000_000), queueDelayMillis);
+        if (workerQueue.setPrefetch(target)) {
+            prefetch = target;
+            adjustments++;
+        }
+    }
+
+    private void adjustSafely()
+    {
+        try {
+            adjust();
+        } catch (final RuntimeException e) {
+            LOG.warn("Failed to adjust the prefetch", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The settings of a priority-ordered backlog, and the time that tasks of each priority have waited in it.
+ * <p>
+ * Tasks with a higher priority are run first, but a task is treated as one priority higher for each aging interval that it has waited,
+ * so a task is never overtaken by a task that arrived more than its difference in priority times the aging interval after it. Tasks
+ * without a priority are treated as priority 0, and priorities above the maximum as the maximum.
+ */
+final class PriorityBacklog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PriorityBacklog.class);
+
+    private final int maxPriority;
+    private final long agingNanos;
+    private final Timer[] queueDelayTimers;
+
+    /**
+     * @param maxPriority the highest priority that is distinguished
+     * @param agingMillis the length of time that a task must wait to be treated as one priority higher
+     */
+    public PriorityBacklog(final int maxPriority, final long agingMillis)
+    {
+        if (maxPriority < 1) {
+            throw new IllegalArgumentException("Maximum priority must be at least 1");
+        }
+        if (agingMillis < 1) {
+            throw new IllegalArgumentException("Aging interval must be at least 1 millisecond");
+        }
+        this.maxPriority = maxPriority;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.queueDelayTimers = new Timer[maxPriority + 1];
+        for (int i = 0; i <= maxPriority; i++) {
+            queueDelayTimers[i] = new Timer();
+        }
+    }
+
+    /**
+     * Create the settings from the CAF_WORKER_PRIORITY_BACKLOG_MAX_PRIORITY and CAF_WORKER_PRIORITY_BACKLOG_AGING_MILLIS environment
+     * variables.
+     *
+     * @return the settings, or null if the backlog is not priority-ordered
+     */
+    public static PriorityBacklog fromEnvironment()
+    {
+        final String maxPriorityEnv = System.getenv("CAF_WORKER_PRIORITY_BACKLOG_MAX_PRIORITY");
+        final int maxPriority = maxPriorityEnv == null ? 0 : Integer.parseInt(maxPriorityEnv);
+        if (maxPriority <= 0) {
+            return null;
+        }
+        final String agingEnv = System.getenv("CAF_WORKER_PRIORITY_BACKLOG_AGING_MILLIS");
+        final long agingMillis = agingEnv == null ? 1000 : Long.parseLong(agingEnv);
+        LOG.info("Priority-ordered backlog enabled for priorities up to {}, aging by one priority every {} ms", maxPriority, agingMillis);
+        return new PriorityBacklog(maxPriority, agingMillis);
+    }
+
+    /**
+     * Create a backlog queue that orders its tasks by these settings.
+     *
+     * @param limiter the limiter of the backlog
+     * @param priorityFunction the function that gets the priority of a task, or null if it has none, which is called once when the
+     * task is added
+     * @param <E> the type of tasks held in the queue
+     * @return the new queue
+     */
+    public <E> PriorityBacklogQueue<E> createQueue(final BacklogLimiter limiter, final Function<? super E, Integer> priorityFunction)
+    {
+        return new PriorityBacklogQueue<>(this, limiter, priorityFunction);
+    }
+
+    public int getMaxPriority()
+    {
+        return maxPriority;
+    }
+
+    /**
+     * @param priority the priority, between 0 and the maximum priority
+     * @return the timer of the time that tasks of the priority waited in the backlog
+     */
+    public Timer getQueueDelayTimer(final int priority)
+    {
+        return queueDelayTimers[priority];
+    }
+
+    /**
+     * @param priority the priority of a task, or null if it has none
+     * @return the priority that the task is ordered by
+     */
+    int normalize(final Integer priority)
+    {
+        return priority == null ? 0 : Math.max(0, Math.min(maxPriority, priority));
+    }
+
+    long getAgingNanos()
+    {
+        return agingNanos;
+    }
+
+    void recordQueueDelay(final int priority, final long delayNanos)
+    {
+        queueDelayTimers[priority].update(delayNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The work queue of a worker thread pool which hands out its tasks in priority order with aging, bounded by a BacklogLimiter, which it
+ * notifies whenever tasks are added or removed.
+ * <p>
+ * Each task is given a sort key when it is added: the time it was added, brought forward by one aging interval for each level of its
+ * priority. Ordering by that key is the same as ordering by priority raised by one for each aging interval waited, but does not change
+ * while the task waits, so the tasks can be held in a heap. Tasks with the same key are handed out in the order they were added.
+ * <p>
+ * When the backlog is full, {@link #put} and the timed {@link #offer(Object, long, TimeUnit)} wait for a task to be removed, as they
+ * would on any other bounded blocking queue.
+ *
+ * @param <E> the type of tasks held in the queue
+ */
+final class PriorityBacklogQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private final PriorityBacklog settings;
+    private final BacklogLimiter limiter;
+    private final Function<? super E, Integer> priorityFunction;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private final PriorityQueue<Entry<E>> entries;
+    private long nextSequence;
+
+    PriorityBacklogQueue(
+        final PriorityBacklog settings,
+        final BacklogLimiter limiter,
+        final Function<? super E, Integer> priorityFunction
+    )
+    {
+        this.settings = Objects.requireNonNull(settings);
+        this.limiter = Objects.requireNonNull(limiter);
+        this.priorityFunction = Objects.requireNonNull(priorityFunction);
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+        this.entries = new PriorityQueue<>();
+        limiter.setBacklogSize(this::size);
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        Objects.requireNonNull(e);
+        final int priority = settings.normalize(priorityFunction.apply(e));
+        final int size;
+        lock.lock();
+        try {
+            if (entries.size() >= limiter.getCapacity()) {
+                return false;
+            }
+            size = enqueue(e, priority);
+        } finally {
+            lock.unlock();
+        }
+        limiter.backlogChanged(size);
+        return true;
+    }
+
+    @Override
+    public void put(final E e)
+        throws InterruptedException
+    {
+        Objects.requireNonNull(e);
+        final int priority = settings.normalize(priorityFunction.apply(e));
+        final int size;
+        lock.lockInterruptibly();
+        try {
+            while (entries.size() >= limiter.getCapacity()) {
+                notFull.await();
+            }
+            size = enqueue(e, priority);
+        } finally {
+            lock.unlock();
+        }
+        limiter.backlogChanged(size);
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        Objects.requireNonNull(e);
+        final int priority = settings.normalize(priorityFunction.apply(e));
+        long nanos = unit.toNanos(timeout);
+        final int size;
+        lock.lockInterruptibly();
+        try {
+            while (entries.size() >= limiter.getCapacity()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            size = enqueue(e, priority);
+        } finally {
+            lock.unlock();
+        }
+        limiter.backlogChanged(size);
+        return true;
+    }
+
+    @Override
+    public E poll()
+    {
+        final Entry<E> entry;
+        lock.lock();
+        try {
+            entry = entries.poll();
+            if (entry != null) {
+                notFull.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return removed(entry);
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        final Entry<E> entry;
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            entry = entries.poll();
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+        return removed(entry);
+    }
+
+    @Override
+    public E take()
+        throws InterruptedException
+    {
+        final Entry<E> entry;
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                notEmpty.await();
+            }
+            entry = entries.poll();
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+        return removed(entry);
+    }
+
+    @Override
+    public E peek()
+    {
+        lock.lock();
+        try {
+            final Entry<E> entry = entries.peek();
+            return entry == null ? null : entry.task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements)
+    {
+        final List<Entry<E>> drained = new ArrayList<>(Math.min(maxElements, 16));
+        final int size;
+        lock.lock();
+        try {
+            while (drained.size() < maxElements && !entries.isEmpty()) {
+                drained.add(entries.poll());
+            }
+            if (!drained.isEmpty()) {
+                notFull.signalAll();
+            }
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        if (drained.isEmpty()) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        for (final Entry<E> entry : drained) {
+            settings.recordQueueDelay(entry.priority, now - entry.addedNanos);
+            c.add(entry.task);
+        }
+        limiter.backlogChanged(size);
+        return drained.size();
+    }
+
+    @Override
+    public boolean remove(final Object o)
+    {
+        final boolean removed;
+        final int size;
+        lock.lock();
+        try {
+            removed = entries.removeIf(entry -> entry.task.equals(o));
+            if (removed) {
+                notFull.signalAll();
+            }
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        limiter.backlogChanged(size);
+        return removed;
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        final int capacity = limiter.getCapacity();
+        return capacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(0, capacity - size());
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the waiting tasks, in no particular order. Tasks cannot be removed through it.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        final List<E> tasks = new ArrayList<>();
+        lock.lock();
+        try {
+            for (final Entry<E> entry : entries) {
+                tasks.add(entry.task);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+
+    /**
+     * Add a task, with the lock held and room in the backlog for it.
+     *
+     * @return the number of tasks held once it has been added
+     */
+    private int enqueue(final E e, final int priority)
+    {
+        final long now = System.nanoTime();
+        entries.add(new Entry<>(e, priority, now, now - priority * settings.getAgingNanos(), nextSequence++));
+        notEmpty.signal();
+        return entries.size();
+    }
+
+    private E removed(final Entry<E> entry)
+    {
+        if (entry == null) {
+            return null;
+        }
+        settings.recordQueueDelay(entry.priority, System.nanoTime() - entry.addedNanos);
+        limiter.backlogChanged(size());
+        return entry.task;
+    }
+
+    private static final class Entry<E> implements Comparable<Entry<E>>
+    {
+        final E task;
+        final int priority;
+        final long addedNanos;
+        final long sortKey;
+        final long sequence;
+
+        Entry(final E task, final int priority, final long addedNanos, final long sortKey, final long sequence)
+        {
+            this.task = task;
+            this.priority = priority;
+            this.addedNanos = addedNanos;
+            this.sortKey = sortKey;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Entry<E> other)
+        {
+            // Compared by difference, as System.nanoTime() values are only meaningful relative to each other
+            final long difference = sortKey - other.sortKey;
+            return difference != 0 ? Long.signum(difference) : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.DecodeMethod;
+import com.hpe.caf.api.worker.InvalidJobTaskIdException;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+import com.hpe.caf.worker.tracking.report.TrackingReport;
+import com.hpe.caf.worker.tracking.report.TrackingReportFailure;
+import com.hpe.caf.worker.tracking.report.TrackingReportStatus;
+import com.hpe.caf.worker.tracking.report.TrackingReportTask;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A codec which reads and writes task messages, tracking info and tracking report tasks directly with the streaming Jackson API, in the
+ * same JSON as the JSON codec, without the reflection and intermediate objects of data binding. Output is written to a buffer kept by
+ * each thread. Every other type is handed to the delegate codec.
+ * <p>
+ * A message in a shape this codec does not read itself, such as one with a date written as a string, is handed to the delegate codec,
+ * so anything the delegate codec can read is still read. Under the strict decode method that includes any message with a field this
+ * codec does not know, so that the delegate codec decides whether it is an error.
+ */
+final class StreamingJsonCodec implements Codec
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ThreadLocal<ByteArrayBuilder> OUTPUT_BUFFERS = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    // The JSON codec is not a dependency of the worker framework, so it is recognised by name
+    private static final String JSON_CODEC_CLASS_NAME = "com.hpe.caf.codec.JsonCodec";
+
+    private final Codec delegate;
+
+    /**
+     * @param delegate the codec to read and write other types with, which must be the JSON codec
+     * @throws IllegalArgumentException if the delegate codec is not the JSON codec
+     */
+    public StreamingJsonCodec(final Codec delegate)
+    {
+        if (!canDelegateTo(delegate)) {
+            throw new IllegalArgumentException("The streaming JSON codec cannot be used with " + delegate.getClass().getName());
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param codec the codec
+     * @return true if the codec writes the same JSON as this codec, so that this codec can be put in front of it
+     */
+    public static boolean canDelegateTo(final Codec codec)
+    {
+        return Objects.requireNonNull(codec).getClass().getName().equals(JSON_CODEC_CLASS_NAME);
+    }
+
+    @Override
+    public <T> T deserialise(final byte[] data, final Class<T> clazz, final DecodeMethod method)
+        throws CodecException
+    {
+        if (clazz == TaskMessage.class || clazz == TrackingInfo.class || clazz == TrackingReportTask.class) {
+            try (final JsonParser parser = JSON_FACTORY.createParser(data)) {
+                final Reader reader = new Reader(parser, method != DecodeMethod.LENIENT);
+                parser.nextToken();
+                final Object value;
+                if (clazz == TaskMessage.class) {
+                    value = reader.readTaskMessage();
+                } else if (clazz == TrackingInfo.class) {
+                    value = reader.readTrackingInfo();
+                } else {
+                    value = reader.readTrackingReportTask();
+                }
+                if (parser.nextToken() == null) {
+                    return clazz.cast(value);
+                }
+            } catch (final IOException | IllegalArgumentException | UnexpectedJsonException e) {
+                // Left to the delegate codec, which reports the error if the message is invalid
+            }
+        }
+        return delegate.deserialise(data, clazz, method);
+    }
+
+    @Override
+    public <T> T deserialise(final InputStream stream, final Class<T> clazz, final DecodeMethod method)
+        throws CodecException
+    {
+        if (clazz == TaskMessage.class || clazz == TrackingInfo.class || clazz == TrackingReportTask.class) {
+            final byte[] data;
+            try {
+                data = stream.readAllBytes();
+            } catch (final IOException e) {
+                throw new CodecException("Failed to read message", e);
+            }
+            return deserialise(data, clazz, method);
+        }
+        return delegate.deserialise(stream, clazz, method);
+    }
+
+    @Override
+    public byte[] serialise(final Object object)
+        throws CodecException
+    {
+        final Class<?> clazz = object == null ? null : object.getClass();
+        if (clazz != TaskMessage.class && clazz != TrackingInfo.class && clazz != TrackingReportTask.class) {
+            return delegate.serialise(object);
+        }
+        final ByteArrayBuilder buffer = OUTPUT_BUFFERS.get();
+        try {
+            try (final JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+                if (clazz == TaskMessage.class) {
+                    writeTaskMessage(generator, (TaskMessage) object);
+                } else if (clazz == TrackingInfo.class) {
+                    writeTrackingInfo(generator, (TrackingInfo) object);
+                } else {
+                    writeTrackingReportTask(generator, (TrackingReportTask) object);
+                }
+            }
+            return buffer.toByteArray();
+        } catch (final IOException e) {
+            throw new CodecException("Failed to serialise " + clazz.getSimpleName(), e);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    private static void writeTaskMessage(final JsonGenerator generator, final TaskMessage tm)
+        throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeNumberField("version", tm.getVersion());
+        generator.writeStringField("taskId", tm.getTaskId());
+        generator.writeStringField("taskClassifier", tm.getTaskClassifier());
+        generator.writeNumberField("taskApiVersion", tm.getTaskApiVersion());
+        writeBinaryField(generator, "taskData", tm.getTaskData());
+        writeEnumField(generator, "taskStatus", tm.getTaskStatus());
+        final Map<String, byte[]> context = tm.getContext();
+        if (context == null) {
+            generator.writeNullField("context");
+        } else {
+            generator.writeObjectFieldStart("context");
+            for (final Map.Entry<String, byte[]> entry : context.entrySet()) {
+                writeBinaryField(generator, entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeStringField("to", tm.getTo());
+        generator.writeFieldName("tracking");
+        writeTrackingInfo(generator, tm.getTracking());
+        final TaskSourceInfo sourceInfo = tm.getSourceInfo();
+        if (sourceInfo == null) {
+            generator.writeNullField("sourceInfo");
+        } else {
+            generator.writeObjectFieldStart("sourceInfo");
+            generator.writeStringField("name", sourceInfo.getName());
+            generator.writeStringField("version", sourceInfo.getVersion());
+            generator.writeEndObject();
+        }
+        if (tm.getPriority() == null) {
+            generator.writeNullField("priority");
+        } else {
+            generator.writeNumberField("priority", tm.getPriority());
+        }
+        generator.writeStringField("correlationId", tm.getCorrelationId());
+        generator.writeEndObject();
+    }
+
+    private static void writeTrackingInfo(final JsonGenerator generator, final TrackingInfo tracking)
+        throws IOException
+    {
+        if (tracking == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("jobTaskId", tracking.getJobTaskId());
+        writeDateField(generator, "lastStatusCheckTime", tracking.getLastStatusCheckTime());
+        generator.writeNumberField("statusCheckIntervalMillis", tracking.getStatusCheckIntervalMillis());
+        generator.writeStringField("statusCheckUrl", tracking.getStatusCheckUrl());
+        generator.writeStringField("trackingPipe", tracking.getTrackingPipe());
+        generator.writeStringField("trackTo", tracking.getTrackTo());
+        // The job id is derived from the job task id, but the JSON codec writes it too as TrackingInfo has a getter for it
+        try {
+            generator.writeStringField("jobId", tracking.getJobTaskId() == null ? null : tracking.getJobId());
+        } catch (final InvalidJobTaskIdException e) {
+            generator.writeNullField("jobId");
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTrackingReportTask(final JsonGenerator generator, final TrackingReportTask task)
+        throws IOException
+    {
+        generator.writeStartObject();
+        if (task.trackingReports == null) {
+            generator.writeNullField("trackingReports");
+        } else {
+            generator.writeArrayFieldStart("trackingReports");
+            for (final TrackingReport report : task.trackingReports) {
+                writeTrackingReport(generator, report);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTrackingReport(final JsonGenerator generator, final TrackingReport report)
+        throws IOException
+    {
+        if (report == null) {
+            generator.writeNull();
+            return;
+        }
+        // Tracking reports and their failures leave out null fields
+        generator.writeStartObject();
+        if (report.jobTaskId != null) {
+            generator.writeStringField("jobTaskId", report.jobTaskId);
+        }
+        if (report.status != null) {
+            generator.writeStringField("status", report.status.name());
+        }
+        generator.writeNumberField("estimatedPercentageCompleted", report.estimatedPercentageCompleted);
+        if (report.retries != null) {
+            generator.writeNumberField("retries", report.retries);
+        }
+        final TrackingReportFailure failure = report.failure;
+        if (failure != null) {
+            generator.writeObjectFieldStart("failure");
+            if (failure.failureId != null) {
+                generator.writeStringField("failureId", failure.failureId);
+            }
+            if (failure.failureTime != null) {
+                generator.writeNumberField("failureTime", failure.failureTime.getTime());
+            }
+            if (failure.failureSource != null) {
+                generator.writeStringField("failureSource", failure.failureSource);
+            }
+            if (failure.failureMessage != null) {
+                generator.writeStringField("failureMessage", failure.failureMessage);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeBinaryField(final JsonGenerator generator, final String name, final byte[] value)
+        throws IOException
+    {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeBinaryField(name, value);
+        }
+    }
+
+    private static void writeEnumField(final JsonGenerator generator, final String name, final Enum<?> value)
+        throws IOException
+    {
+        generator.writeStringField(name, value == null ? null : value.name());
+    }
+
+    private static void writeDateField(final JsonGenerator generator, final String name, final Date value)
+        throws IOException
+    {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value.getTime());
+        }
+    }
+
+    /**
+     * Reads values from a parser positioned on their first token, leaving it on their last token.
+     */
+    private static final class Reader
+    {
+        private final JsonParser parser;
+        private final boolean strict;
+
+        Reader(final JsonParser parser, final boolean strict)
+        {
+            this.parser = parser;
+            this.strict = strict;
+        }
+
+        TaskMessage readTaskMessage()
+            throws IOException, UnexpectedJsonException
+        {
+            expect(JsonToken.START_OBJECT);
+            final TaskMessage tm = new TaskMessage();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "version":
+                        tm.setVersion(readInt());
+                        break;
+                    case "taskId":
+                        tm.setTaskId(readString());
+                        break;
+                    case "taskClassifier":
+                        tm.setTaskClassifier(readString());
+                        break;
+                    case "taskApiVersion":
+                        tm.setTaskApiVersion(readInt());
+                        break;
+                    case "taskData":
+                        tm.setTaskData(readBinary());
+                        break;
+                    case "taskStatus":
+                        final String taskStatus = readString();
+                        tm.setTaskStatus(taskStatus == null ? null : TaskStatus.valueOf(taskStatus));
+                        break;
+                    case "context":
+                        tm.setContext(readContext());
+                        break;
+                    case "to":
+                        tm.setTo(readString());
+                        break;
+                    case "tracking":
+                        tm.setTracking(readTrackingInfo());
+                        break;
+                    case "sourceInfo":
+                        tm.setSourceInfo(readSourceInfo());
+                        break;
+                    case "priority":
+                        tm.setPriority(parser.currentToken() == JsonToken.VALUE_NULL ? null : readInt());
+                        break;
+                    case "correlationId":
+                        tm.setCorrelationId(readString());
+                        break;
+                    default:
+                        skipUnknown();
+                }
+            }
+            return tm;
+        }
+
+        TrackingInfo readTrackingInfo()
+            throws IOException, UnexpectedJsonException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            expect(JsonToken.START_OBJECT);
+            final TrackingInfo tracking = new TrackingInfo();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "jobTaskId":
+                        tracking.setJobTaskId(readString());
+                        break;
+                    case "lastStatusCheckTime":
+                        tracking.setLastStatusCheckTime(readDate());
+                        break;
+                    case "statusCheckIntervalMillis":
+                        tracking.setStatusCheckIntervalMillis(readLong());
+                        break;
+                    case "statusCheckUrl":
+                        tracking.setStatusCheckUrl(readString());
+                        break;
+                    case "trackingPipe":
+                        tracking.setTrackingPipe(readString());
+                        break;
+                    case "trackTo":
+                        tracking.setTrackTo(readString());
+                        break;
+                    case "jobId":
+                        // Derived from the job task id
+                        parser.skipChildren();
+                        break;
+                    default:
+                        skipUnknown();
+                }
+            }
+            return tracking;
+        }
+
+        TrackingReportTask readTrackingReportTask()
+            throws IOException, UnexpectedJsonException
+        {
+            expect(JsonToken.START_OBJECT);
+            final TrackingReportTask task = new TrackingReportTask();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("trackingReports")) {
+                    if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                        expect(JsonToken.START_ARRAY);
+                        final List<TrackingReport> reports = new ArrayList<>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            reports.add(readTrackingReport());
+                        }
+                        task.trackingReports = reports;
+                    }
+                } else {
+                    skipUnknown();
+                }
+            }
+            return task;
+        }
+
+        private TrackingReport readTrackingReport()
+            throws IOException, UnexpectedJsonException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            expect(JsonToken.START_OBJECT);
+            final TrackingReport report = new TrackingReport();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "jobTaskId":
+                        report.jobTaskId = readString();
+                        break;
+                    case "status":
+                        final String status = readString();
+                        report.status = status == null ? null : TrackingReportStatus.valueOf(status);
+                        break;
+                    case "estimatedPercentageCompleted":
+                        report.estimatedPercentageCompleted = readInt();
+                        break;
+                    case "retries":
+                        report.retries = parser.currentToken() == JsonToken.VALUE_NULL ? null : readInt();
+                        break;
+                    case "failure":
+                        report.failure = readTrackingReportFailure();
+                        break;
+                    default:
+                        skipUnknown();
+                }
+            }
+            return report;
+        }
+
+        private TrackingReportFailure readTrackingReportFailure()
+            throws IOException, UnexpectedJsonException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            expect(JsonToken.START_OBJECT);
+            final TrackingReportFailure failure = new TrackingReportFailure();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "failureId":
+                        failure.failureId = readString();
+                        break;
+                    case "failureTime":
+                        failure.failureTime = readDate();
+                        break;
+                    case "failureSource":
+                        failure.failureSource = readString();
+                        break;
+                    case "failureMessage":
+                        failure.failureMessage = readString();
+                        break;
+                    default:
+                        skipUnknown();
+                }
+            }
+            return failure;
+        }
+
+        private TaskSourceInfo readSourceInfo()
+            throws IOException, UnexpectedJsonException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            expect(JsonToken.START_OBJECT);
+            final TaskSourceInfo sourceInfo = new TaskSourceInfo();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name":
+                        sourceInfo.setName(readString());
+                        break;
+                    case "version":
+                        sourceInfo.setVersion(readString());
+                        break;
+                    default:
+                        skipUnknown();
+                }
+            }
+            return sourceInfo;
+        }
+
+        private Map<String, byte[]> readContext()
+            throws IOException, UnexpectedJsonException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            expect(JsonToken.START_OBJECT);
+            final Map<String, byte[]> context = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.currentName();
+                parser.nextToken();
+                context.put(key, readBinary());
+            }
+            return context;
+        }
+
+        private String readString()
+            throws UnexpectedJsonException, IOException
+        {
+            switch (parser.currentToken()) {
+                case VALUE_STRING:
+                    return parser.getText();
+                case VALUE_NULL:
+                    return null;
+                default:
+                    throw UnexpectedJsonException.INSTANCE;
+            }
+        }
+
+        private byte[] readBinary()
+            throws UnexpectedJsonException, IOException
+        {
+            switch (parser.currentToken()) {
+                case VALUE_STRING:
+                    return parser.getBinaryValue();
+                case VALUE_NULL:
+                    return null;
+                default:
+                    throw UnexpectedJsonException.INSTANCE;
+            }
+        }
+
+        private int readInt()
+            throws UnexpectedJsonException, IOException
+        {
+            expect(JsonToken.VALUE_NUMBER_INT);
+            return parser.getIntValue();
+        }
+
+        private long readLong()
+            throws UnexpectedJsonException, IOException
+        {
+            expect(JsonToken.VALUE_NUMBER_INT);
+            return parser.getLongValue();
+        }
+
+        private Date readDate()
+            throws UnexpectedJsonException, IOException
+        {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            return new Date(readLong());
+        }
+
+        private void skipUnknown()
+            throws UnexpectedJsonException, IOException
+        {
+            if (strict) {
+                throw UnexpectedJsonException.INSTANCE;
+            }
+            parser.skipChildren();
+        }
+
+        private void expect(final JsonToken token)
+            throws UnexpectedJsonException
+        {
+            if (parser.currentToken() != token) {
+                throw UnexpectedJsonException.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Thrown when a message is not in a shape that this codec reads itself.
+     */
+    private static final class UnexpectedJsonException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final UnexpectedJsonException INSTANCE = new UnexpectedJsonException();
+
+        private UnexpectedJsonException()
+        {
+            super("Unexpected JSON", null, false, false);
+        }
+    }
+}
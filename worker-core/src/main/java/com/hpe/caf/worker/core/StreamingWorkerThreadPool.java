@@ -19,9 +19,10 @@ import com.hpe.caf.api.worker.InvalidTaskException;
 import com.hpe.caf.api.worker.TaskRejectedException;
 import java.util.Map;
 import java.util.Objects;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +35,8 @@ import org.slf4j.LoggerFactory;
 
 final class StreamingWorkerThreadPool implements WorkerThreadPool
 {
+    private final BacklogLimiter backlogLimiter;
+    private final PriorityBacklog priorityBacklog;
     private final BlockingQueue<Runnable> workQueue;
     private final PrivateWorkerThreadPoolExecutor threadPoolExecutor;
 
@@ -42,7 +45,36 @@ final class StreamingWorkerThreadPool implements WorkerThreadPool
         final Runnable handler
     )
     {
-        workQueue = new LinkedBlockingQueue<>();
+        this(nThreads, 0, handler);
+    }
+
+    public StreamingWorkerThreadPool(
+        final int nThreads,
+        final int maxBacklog,
+        final Runnable handler
+    )
+    {
+        this(nThreads, maxBacklog, null, handler);
+    }
+
+    /**
+     * @param nThreads the number of threads to run tasks on
+     * @param maxBacklog the maximum number of tasks accepted but not yet started, or 0 if the backlog is not limited
+     * @param priorityBacklog the settings to order the backlog by priority with, or null to run tasks in the order they were submitted
+     * @param handler the handler to run if a task terminates with an unhandled throwable
+     */
+    public StreamingWorkerThreadPool(
+        final int nThreads,
+        final int maxBacklog,
+        final PriorityBacklog priorityBacklog,
+        final Runnable handler
+    )
+    {
+        backlogLimiter = new BacklogLimiter(maxBacklog);
+        this.priorityBacklog = priorityBacklog;
+        workQueue = priorityBacklog == null
+            ? new BacklogQueue<>(backlogLimiter)
+            : priorityBacklog.createQueue(backlogLimiter, this::getPriority);
         threadPoolExecutor = new PrivateWorkerThreadPoolExecutor(
             nThreads, workQueue, handler);
     }
@@ -77,6 +109,24 @@ final class StreamingWorkerThreadPool implements WorkerThreadPool
         return workQueue.size();
     }
 
+    @Override
+    public int getMaxConcurrentTasks()
+    {
+        return threadPoolExecutor.getMaximumPoolSize();
+    }
+
+    @Override
+    public void setBackpressureQueue(final ManagedWorkerQueue workerQueue)
+    {
+        backlogLimiter.setWorkerQueue(workerQueue);
+    }
+
+    @Override
+    public PriorityBacklog getPriorityBacklog()
+    {
+        return priorityBacklog;
+    }
+
     /**
      * Execute the specified task at some point in the future
      *
@@ -89,9 +139,14 @@ final class StreamingWorkerThreadPool implements WorkerThreadPool
     {
         try {
             StreamingWorkerWrapper wrapper = new StreamingWorkerWrapper(workerTask);
-            threadPoolExecutor.submit(wrapper);
+            threadPoolExecutor.submitTask(wrapper);
         } catch (InvalidTaskException e) {
             workerTask.setResponse(e);
+        } catch (RejectedExecutionException e) {
+            if (threadPoolExecutor.isShutdown()) {
+                throw e;
+            }
+            throw new TaskRejectedException("Maximum internal task backlog exceeded", e);
         }
     }
 
@@ -101,6 +156,15 @@ final class StreamingWorkerThreadPool implements WorkerThreadPool
         return threadPoolExecutor.abortTasks();
     }
 
+    /**
+     * Get the priority of a task in the backlog, which is the future that the executor wraps the submitted task in.
+     */
+    private Integer getPriority(final Runnable task)
+    {
+        final Runnable submitted = threadPoolExecutor.getSubmittedTask(task);
+        return submitted instanceof StreamingWorkerWrapper ? ((StreamingWorkerWrapper) submitted).getPriority() : null;
+    }
+
     private static class PrivateWorkerThreadPoolExecutor extends ThreadPoolExecutor
     {
 
@@ -158,6 +222,25 @@ final class StreamingWorkerThreadPool implements WorkerThreadPool
             return runnableFuture;
         }
 
+        /**
+         * Submit a task for execution, forgetting it again if the backlog is full.
+         */
+        public void submitTask(final Runnable runnable)
+        {
+            final RunnableFuture<Void> runnableFuture = newTaskFor(runnable, null);
+            try {
+                execute(runnableFuture);
+            } catch (final RejectedExecutionException e) {
+                tasks.remove(runnableFuture);
+                throw e;
+            }
+        }
+
+        public Runnable getSubmittedTask(final Runnable runnableFuture)
+        {
+            return tasks.get(runnableFuture);
+        }
+
         public int abortTasks()
         {
             AtomicInteger count = new AtomicInteger();
@@ -87,6 +87,14 @@ class StreamingWorkerWrapper implements Runnable
         }
     }
 
+    /**
+     * @return the priority of the task message, or null if it has none
+     */
+    public Integer getPriority()
+    {
+        return workerTask.getPriority();
+    }
+
     /**
      * @return the timer used for keeping statistics on worker run times
      */
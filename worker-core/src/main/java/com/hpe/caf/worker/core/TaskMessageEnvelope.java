@@ -0,0 +1,505 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.DecodeMethod;
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskMessagePayload;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+import com.hpe.caf.util.rabbitmq.RabbitHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads and writes task messages in either of two wire formats.
+ * <p>
+ * In the codec format the whole task message, including its task data and context, is serialised by the codec into the message
+ * body. In the split envelope format the fields of the task message other than its task data and context travel as message headers,
+ * the body is the raw task data, and the context, if there is any, follows the task data as a compact binary trailer. This avoids
+ * the codec having to encode and decode the task data, so a message received in the split envelope format with no context has the
+ * message body itself as its task data.
+ * <p>
+ * Messages in either format are accepted on input, so that workers can move to the split envelope format one at a time. Whether
+ * messages are published in the split envelope format is set by the CAF_WORKER_SPLIT_ENVELOPE environment variable.
+ */
+final class TaskMessageEnvelope
+{
+    static final String FORMAT_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "format";
+    static final String SPLIT_FORMAT = "split";
+
+    private static final String VERSION_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "version";
+    private static final String TASK_ID_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "id";
+    private static final String CLASSIFIER_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "classifier";
+    private static final String API_VERSION_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "api-version";
+    private static final String STATUS_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "status";
+    private static final String TO_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "to";
+    private static final String PRIORITY_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "priority";
+    private static final String CORRELATION_ID_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "correlation-id";
+    private static final String SOURCE_NAME_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "source-name";
+    private static final String SOURCE_VERSION_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "source-version";
+    private static final String JOB_TASK_ID_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "job-task-id";
+    private static final String LAST_STATUS_CHECK_TIME_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "last-status-check-time";
+    private static final String STATUS_CHECK_INTERVAL_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "status-check-interval";
+    private static final String STATUS_CHECK_URL_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "status-check-url";
+    private static final String TRACKING_PIPE_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "tracking-pipe";
+    private static final String TRACK_TO_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "track-to";
+    private static final String CONTEXT_LENGTH_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "context-length";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskMessageEnvelope.class);
+
+    private final Codec codec;
+    private final boolean splitEnvelopeOutput;
+    private final JsonTaskMessageReader deferringReader;
+
+    /**
+     * @param codec the codec to read and write messages in the codec format with
+     * @param splitEnvelopeOutput true to write messages in the split envelope format, false to write them in the codec format
+     */
+    public TaskMessageEnvelope(final Codec codec, final boolean splitEnvelopeOutput)
+    {
+        this(codec, splitEnvelopeOutput, false);
+    }
+
+    /**
+     * @param codec the codec to read and write messages in the codec format with
+     * @param splitEnvelopeOutput true to write messages in the split envelope format, false to write them in the codec format
+     * @param deferPayloadDecoding true to leave the task data and context of messages undecoded until they are asked for
+     */
+    public TaskMessageEnvelope(final Codec codec, final boolean splitEnvelopeOutput, final boolean deferPayloadDecoding)
+    {
+        this.codec = Objects.requireNonNull(codec);
+        this.splitEnvelopeOutput = splitEnvelopeOutput;
+        this.deferringReader = deferPayloadDecoding ? new JsonTaskMessageReader(codec) : null;
+    }
+
+    /**
+     * Create an envelope which writes messages in the format set by the CAF_WORKER_SPLIT_ENVELOPE environment variable, and which
+     * defers decoding of message payloads if the CAF_WORKER_DEFER_PAYLOAD_DECODING environment variable is set. If the
+     * CAF_WORKER_STREAMING_JSON_CODEC environment variable is set, task messages are read and written by a {@link StreamingJsonCodec}
+     * in front of the supplied codec, unless the supplied codec is not the JSON codec, in which case the variable is ignored.
+     *
+     * @param codec the codec to read and write messages in the codec format with
+     * @return the envelope
+     */
+    public static TaskMessageEnvelope fromEnvironment(final Codec codec)
+    {
+        return new TaskMessageEnvelope(getEnvelopeCodec(codec, Boolean.parseBoolean(System.getenv("CAF_WORKER_STREAMING_JSON_CODEC"))),
+                                       Boolean.parseBoolean(System.getenv("CAF_WORKER_SPLIT_ENVELOPE")),
+                                       Boolean.parseBoolean(System.getenv("CAF_WORKER_DEFER_PAYLOAD_DECODING")));
+    }
+
+    /**
+     * @param codec the configured codec
+     * @param streamingJsonCodec true to put a {@link StreamingJsonCodec} in front of the configured codec, if it is the JSON codec
+     * @return the codec to read and write messages in the codec format with
+     */
+    static Codec getEnvelopeCodec(final Codec codec, final boolean streamingJsonCodec)
+    {
+        if (!streamingJsonCodec) {
+            return codec;
+        }
+        if (!StreamingJsonCodec.canDelegateTo(codec)) {
+            LOG.warn("Ignoring CAF_WORKER_STREAMING_JSON_CODEC as the streaming JSON codec cannot be used with {}",
+                     codec.getClass().getName());
+            return codec;
+        }
+        return new StreamingJsonCodec(codec);
+    }
+
+    /**
+     * @return the codec used to read and write messages in the codec format
+     */
+    public Codec getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * Read a task message in whichever format it was written in. If payload decoding is deferred then a message in the codec format is
+     * first read as JSON without decoding its task data or context, falling back to the codec if it is not JSON, and the context of a
+     * message in the split envelope format is not read until it is asked for.
+     *
+     * @param body the message body
+     * @param headers the message headers
+     * @return the task message
+     * @throws CodecException if a message in the codec format cannot be deserialised
+     * @throws InvalidTaskException if a message in the split envelope format is malformed
+     */
+    public TaskMessage read(final byte[] body, final Map<String, Object> headers)
+        throws CodecException, InvalidTaskException
+    {
+        if (!isSplitEnvelope(headers)) {
+            if (deferringReader != null) {
+                final TaskMessage tm = deferringReader.read(body);
+                if (tm != null) {
+                    return tm;
+                }
+            }
+            return codec.deserialise(body, TaskMessage.class, DecodeMethod.LENIENT);
+        }
+        try {
+            return readSplitEnvelope(body, headers, deferringReader != null);
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidTaskException("Message is not a valid split envelope task message", e);
+        }
+    }
+
+    /**
+     * Write the body of a task message.
+     *
+     * @param tm the task message
+     * @return the message body
+     * @throws CodecException if the task message cannot be serialised in the codec format
+     */
+    public byte[] writeBody(final TaskMessage tm)
+        throws CodecException
+    {
+        if (!splitEnvelopeOutput) {
+            return codec.serialise(tm);
+        }
+        final byte[] taskData = tm.getTaskData();
+        final Map<String, byte[]> context = tm.getContext();
+        if (context == null || context.isEmpty()) {
+            return taskData;
+        }
+        final byte[] trailer = writeContext(context);
+        final byte[] body = Arrays.copyOf(taskData, taskData.length + trailer.length);
+        System.arraycopy(trailer, 0, body, taskData.length, trailer.length);
+        return body;
+    }
+
+    /**
+     * Write the body of a task message which is being passed on, such as a forwarded or paused task, reusing the body that it was
+     * received in if its payload has not been decoded since. If the message was received in the codec format and only its tracking info
+     * has changed then only the tracking info is written again.
+     *
+     * @param tm the task message
+     * @param bytesReused receives the number of bytes of the body which were reused from the received message
+     * @return the message body
+     * @throws CodecException if the task message cannot be serialised in the codec format
+     */
+    public byte[] writeForwardedBody(final TaskMessage tm, final LongConsumer bytesReused)
+        throws CodecException
+    {
+        if (splitEnvelopeOutput) {
+            final TaskMessagePayload payload = tm.deferredPayload();
+            if (payload instanceof SplitEnvelopePayload) {
+                final byte[] body = ((SplitEnvelopePayload) payload).body;
+                bytesReused.accept(body.length);
+                return body;
+            }
+        } else {
+            final byte[] body = JsonTaskMessageReader.rewrite(tm, codec, bytesReused);
+            if (body != null) {
+                return body;
+            }
+        }
+        return writeBody(tm);
+    }
+
+    /**
+     * Write the headers of a task message. Any task message headers among the supplied headers, such as those of the message the task
+     * message was received in, are replaced.
+     *
+     * @param tm the task message
+     * @param headers the other headers to be stamped on the message
+     * @return the message headers
+     */
+    public Map<String, Object> writeHeaders(final TaskMessage tm, final Map<String, Object> headers)
+    {
+        if (!splitEnvelopeOutput && !hasEnvelopeHeaders(headers)) {
+            return headers;
+        }
+        final Map<String, Object> messageHeaders = new HashMap<>();
+        for (final Map.Entry<String, Object> header : headers.entrySet()) {
+            if (!isEnvelopeHeader(header.getKey())) {
+                messageHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        if (!splitEnvelopeOutput) {
+            return messageHeaders;
+        }
+        messageHeaders.put(FORMAT_HEADER, SPLIT_FORMAT);
+        messageHeaders.put(VERSION_HEADER, String.valueOf(tm.getVersion()));
+        putIfNotNull(messageHeaders, TASK_ID_HEADER, tm.getTaskId());
+        putIfNotNull(messageHeaders, CLASSIFIER_HEADER, tm.getTaskClassifier());
+        messageHeaders.put(API_VERSION_HEADER, String.valueOf(tm.getTaskApiVersion()));
+        putIfNotNull(messageHeaders, STATUS_HEADER, tm.getTaskStatus());
+        putIfNotNull(messageHeaders, TO_HEADER, tm.getTo());
+        putIfNotNull(messageHeaders, PRIORITY_HEADER, tm.getPriority());
+        putIfNotNull(messageHeaders, CORRELATION_ID_HEADER, tm.getCorrelationId());
+        final TaskSourceInfo sourceInfo = tm.getSourceInfo();
+        if (sourceInfo != null) {
+            putIfNotNull(messageHeaders, SOURCE_NAME_HEADER, sourceInfo.getName());
+            putIfNotNull(messageHeaders, SOURCE_VERSION_HEADER, sourceInfo.getVersion());
+        }
+        final TrackingInfo tracking = tm.getTracking();
+        if (tracking != null) {
+            putIfNotNull(messageHeaders, JOB_TASK_ID_HEADER, tracking.getJobTaskId());
+            final Date lastStatusCheckTime = tracking.getLastStatusCheckTime();
+            if (lastStatusCheckTime != null) {
+                messageHeaders.put(LAST_STATUS_CHECK_TIME_HEADER, String.valueOf(lastStatusCheckTime.getTime()));
+            }
+            messageHeaders.put(STATUS_CHECK_INTERVAL_HEADER, String.valueOf(tracking.getStatusCheckIntervalMillis()));
+            putIfNotNull(messageHeaders, STATUS_CHECK_URL_HEADER, tracking.getStatusCheckUrl());
+            putIfNotNull(messageHeaders, TRACKING_PIPE_HEADER, tracking.getTrackingPipe());
+            putIfNotNull(messageHeaders, TRACK_TO_HEADER, tracking.getTrackTo());
+        }
+        final Map<String, byte[]> context = tm.getContext();
+        if (context != null && !context.isEmpty()) {
+            messageHeaders.put(CONTEXT_LENGTH_HEADER, String.valueOf(getContextLength(context)));
+        }
+        return messageHeaders;
+    }
+
+    /**
+     * @param headers the message headers
+     * @return true if the message is in the split envelope format
+     */
+    public static boolean isSplitEnvelope(final Map<String, Object> headers)
+    {
+        return headers != null && SPLIT_FORMAT.equals(getString(headers, FORMAT_HEADER));
+    }
+
+    /**
+     * Get the task message headers from the headers of a received message, for when the message is to be published again unchanged.
+     *
+     * @param headers the headers of the received message
+     * @return the task message headers
+     */
+    public static Map<String, Object> getEnvelopeHeaders(final Map<String, Object> headers)
+    {
+        if (headers == null || !isSplitEnvelope(headers)) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> envelopeHeaders = new HashMap<>();
+        for (final Map.Entry<String, Object> header : headers.entrySet()) {
+            if (isEnvelopeHeader(header.getKey())) {
+                envelopeHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        return envelopeHeaders;
+    }
+
+    private static TaskMessage readSplitEnvelope(final byte[] body, final Map<String, Object> headers, final boolean deferContext)
+    {
+        final String contextLengthHeader = getString(headers, CONTEXT_LENGTH_HEADER);
+        final int contextLength = contextLengthHeader == null ? 0 : Integer.parseInt(contextLengthHeader);
+        final int taskDataLength = body.length - contextLength;
+        if (contextLength < 0 || taskDataLength < 0) {
+            throw new IllegalArgumentException("Invalid context length " + contextLength);
+        }
+
+        final TaskMessage tm = new TaskMessage();
+        final String version = getString(headers, VERSION_HEADER);
+        if (version != null) {
+            tm.setVersion(Integer.parseInt(version));
+        }
+        tm.setTaskId(getString(headers, TASK_ID_HEADER));
+        tm.setTaskClassifier(getString(headers, CLASSIFIER_HEADER));
+        final String apiVersion = getString(headers, API_VERSION_HEADER);
+        if (apiVersion != null) {
+            tm.setTaskApiVersion(Integer.parseInt(apiVersion));
+        }
+        final String status = getString(headers, STATUS_HEADER);
+        if (status != null) {
+            tm.setTaskStatus(TaskStatus.valueOf(status));
+        }
+        tm.setTo(getString(headers, TO_HEADER));
+        final String priority = getString(headers, PRIORITY_HEADER);
+        if (priority != null) {
+            tm.setPriority(Integer.valueOf(priority));
+        }
+        tm.setCorrelationId(getString(headers, CORRELATION_ID_HEADER));
+
+        final String sourceName = getString(headers, SOURCE_NAME_HEADER);
+        final String sourceVersion = getString(headers, SOURCE_VERSION_HEADER);
+        if (sourceName != null || sourceVersion != null) {
+            tm.setSourceInfo(new TaskSourceInfo(sourceName, sourceVersion));
+        }
+
+        final String jobTaskId = getString(headers, JOB_TASK_ID_HEADER);
+        if (jobTaskId != null) {
+            final TrackingInfo tracking = new TrackingInfo();
+            tracking.setJobTaskId(jobTaskId);
+            final String lastStatusCheckTime = getString(headers, LAST_STATUS_CHECK_TIME_HEADER);
+            if (lastStatusCheckTime != null) {
+                tracking.setLastStatusCheckTime(new Date(Long.parseLong(lastStatusCheckTime)));
+            }
+            final String statusCheckInterval = getString(headers, STATUS_CHECK_INTERVAL_HEADER);
+            if (statusCheckInterval != null) {
+                tracking.setStatusCheckIntervalMillis(Long.parseLong(statusCheckInterval));
+            }
+            tracking.setStatusCheckUrl(getString(headers, STATUS_CHECK_URL_HEADER));
+            tracking.setTrackingPipe(getString(headers, TRACKING_PIPE_HEADER));
+            tracking.setTrackTo(getString(headers, TRACK_TO_HEADER));
+            tm.setTracking(tracking);
+        }
+
+        if (contextLength == 0) {
+            tm.setTaskData(body);
+            tm.setContext(new HashMap<>());
+        } else if (deferContext) {
+            tm.deferPayload(new SplitEnvelopePayload(body, taskDataLength));
+        } else {
+            tm.setTaskData(Arrays.copyOf(body, taskDataLength));
+            tm.setContext(readContext(ByteBuffer.wrap(body, taskDataLength, contextLength)));
+        }
+        return tm;
+    }
+
+    /**
+     * Writes the context trailer: the number of entries, then the length and UTF-8 bytes of each key followed by the length and bytes
+     * of its value, with a length of -1 for a null value.
+     */
+    private static byte[] writeContext(final Map<String, byte[]> context)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(getContextLength(context));
+        buffer.putInt(context.size());
+        for (final Map.Entry<String, byte[]> entry : context.entrySet()) {
+            final byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(key.length);
+            buffer.put(key);
+            final byte[] value = entry.getValue();
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static Map<String, byte[]> readContext(final ByteBuffer buffer)
+    {
+        final int size = buffer.getInt();
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid context size " + size);
+        }
+        final Map<String, byte[]> context = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            final int valueLength = buffer.getInt();
+            final byte[] value;
+            if (valueLength < 0) {
+                value = null;
+            } else {
+                value = new byte[valueLength];
+                buffer.get(value);
+            }
+            context.put(new String(key, StandardCharsets.UTF_8), value);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected data after context");
+        }
+        return context;
+    }
+
+    private static int getContextLength(final Map<String, byte[]> context)
+    {
+        int length = Integer.BYTES;
+        for (final Map.Entry<String, byte[]> entry : context.entrySet()) {
+            final byte[] value = entry.getValue();
+            length += Integer.BYTES + entry.getKey().getBytes(StandardCharsets.UTF_8).length
+                + Integer.BYTES + (value == null ? 0 : value.length);
+        }
+        return length;
+    }
+
+    private static boolean hasEnvelopeHeaders(final Map<String, Object> headers)
+    {
+        for (final String name : headers.keySet()) {
+            if (isEnvelopeHeader(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEnvelopeHeader(final String name)
+    {
+        return name.startsWith(RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX);
+    }
+
+    private static String getString(final Map<String, Object> headers, final String name)
+    {
+        // Header values may be delivered as a type other than String, such as the RabbitMQ client's LongString
+        final Object value = headers.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    private static void putIfNotNull(final Map<String, Object> headers, final String name, final Object value)
+    {
+        if (value != null) {
+            headers.put(name, value.toString());
+        }
+    }
+
+    /**
+     * The task data and context of a message in the split envelope format, which are only separated when they are asked for.
+     */
+    private static final class SplitEnvelopePayload implements PeekableTaskMessagePayload
+    {
+        private final byte[] body;
+        private final int taskDataLength;
+
+        SplitEnvelopePayload(final byte[] body, final int taskDataLength)
+        {
+            this.body = body;
+            this.taskDataLength = taskDataLength;
+        }
+
+        @Override
+        public byte[] decodeTaskData()
+        {
+            return Arrays.copyOf(body, taskDataLength);
+        }
+
+        @Override
+        public boolean taskDataMayStartWith(final byte[] prefix)
+        {
+            return taskDataLength >= prefix.length && Arrays.equals(body, 0, prefix.length, prefix, 0, prefix.length);
+        }
+
+        @Override
+        public Map<String, byte[]> decodeContext()
+        {
+            try {
+                return readContext(ByteBuffer.wrap(body, taskDataLength, body.length - taskDataLength));
+            } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalStateException("Context could not be decoded", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.worker.QueueException;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerQueue;
+import com.hpe.caf.worker.tracking.report.TrackingReport;
+import com.hpe.caf.worker.tracking.report.TrackingReportConstants;
+import com.hpe.caf.worker.tracking.report.TrackingReportTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Merges the progress reports of many tasks that are bound for the same tracking pipe into a single tracking report task message.
+ * <p>
+ * Reports are collected in a batch for each tracking pipe, which is published once it holds the maximum number of reports or has
+ * been open for the maximum delay, whichever is sooner. The batch is published on behalf of every task that contributed to it, so none
+ * of their input messages are acknowledged until it has been published. A task's final response is held back until every batch it
+ * contributed to has been handed to the queue; if any of them cannot be published the task is abandoned instead. Queues which cannot
+ * publish a message on behalf of several tasks are sent a message for each task in the batch instead, holding only that task's reports.
+ */
+final class TrackingReportAggregator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TrackingReportAggregator.class);
+
+    private final int maxReports;
+    private final long maxDelayMillis;
+    private final TaskMessageEnvelope envelope;
+    private final WorkerQueue workerQueue;
+    private final BiConsumer<TaskInformation, Exception> abandonTask;
+    private final boolean publishPerTask;
+    private final ScheduledExecutorService scheduler;
+    private final Object lock = new Object();
+    private final Map<String, Batch> openBatches = new HashMap<>();
+    private final Map<TaskInformation, TaskState> tasks = new IdentityHashMap<>();
+
+    /**
+     * @param maxReports the number of reports at which a batch is published
+     * @param maxDelayMillis the maximum time in milliseconds that a batch is held open for
+     * @param envelope the envelope to write the tracking report tasks in
+     * @param workerQueue the queue to publish the tracking report tasks to
+     * @param abandonTask called for each task whose reports could not be published
+     */
+    public TrackingReportAggregator(
+        final int maxReports,
+        final long maxDelayMillis,
+        final TaskMessageEnvelope envelope,
+        final WorkerQueue workerQueue,
+        final BiConsumer<TaskInformation, Exception> abandonTask
+    )
+    {
+        if (maxReports < 1) {
+            throw new IllegalArgumentException("Maximum number of reports must be at least 1");
+        }
+        this.maxReports = maxReports;
+        this.maxDelayMillis = Math.max(1, maxDelayMillis);
+        this.envelope = Objects.requireNonNull(envelope);
+        this.workerQueue = Objects.requireNonNull(workerQueue);
+        this.abandonTask = Objects.requireNonNull(abandonTask);
+        this.publishPerTask = !workerQueue.canPublishForSeveralMessages();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "tracking-report-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create an aggregator from the CAF_WORKER_REPORT_AGGREGATION_MAX_REPORTS and CAF_WORKER_REPORT_AGGREGATION_DELAY_MILLIS
+     * environment variables.
+     *
+     * @param envelope the envelope to write the tracking report tasks in
+     * @param workerQueue the queue to publish the tracking report tasks to
+     * @param abandonTask called for each task whose reports could not be published
+     * @return the aggregator, or null if aggregation is not enabled
+     */
+    public static TrackingReportAggregator fromEnvironment(
+        final TaskMessageEnvelope envelope,
+        final WorkerQueue workerQueue,
+        final BiConsumer<TaskInformation, Exception> abandonTask
+    )
+    {
+        final String maxReportsEnv = System.getenv("CAF_WORKER_REPORT_AGGREGATION_MAX_REPORTS");
+        final int maxReports = maxReportsEnv == null ? 0 : Integer.parseInt(maxReportsEnv);
+        if (maxReports <= 0) {
+            return null;
+        }
+        final String delayEnv = System.getenv("CAF_WORKER_REPORT_AGGREGATION_DELAY_MILLIS");
+        final long maxDelayMillis = delayEnv == null ? 100 : Long.parseLong(delayEnv);
+        LOG.info("Aggregating tracking reports in batches of up to {} reports, published after at most {} ms",
+                 maxReports, maxDelayMillis);
+        return new TrackingReportAggregator(maxReports, maxDelayMillis, envelope, workerQueue, abandonTask);
+    }
+
+    /**
+     * Add the reports of a task to the batch for their tracking pipe.
+     *
+     * @param taskInformation the reference to the message the task arrived on
+     * @param trackingPipe the tracking pipe to send the reports to
+     * @param trackingReports the reports to send
+     */
+    public void add(final TaskInformation taskInformation, final String trackingPipe, final List<TrackingReport> trackingReports)
+    {
+        Objects.requireNonNull(taskInformation);
+        Objects.requireNonNull(trackingPipe);
+        final Batch fullBatch;
+        final Batch newBatch;
+        synchronized (lock) {
+            final TaskState task = tasks.computeIfAbsent(taskInformation, t -> new TaskState());
+            if (task.failure != null) {
+                // The task is to be abandoned, so there is no point in reporting on it
+                return;
+            }
+            Batch batch = openBatches.get(trackingPipe);
+            if (batch == null) {
+                batch = new Batch(trackingPipe);
+                openBatches.put(trackingPipe, batch);
+                newBatch = batch;
+            } else {
+                newBatch = null;
+            }
+            batch.reports.addAll(trackingReports);
+            if (publishPerTask) {
+                batch.taskReports.computeIfAbsent(taskInformation, t -> new ArrayList<>()).addAll(trackingReports);
+            }
+            if (task.lastBatch != batch) {
+                task.lastBatch = batch;
+                task.unpublishedBatches++;
+                batch.tasks.add(taskInformation);
+            }
+            if (batch.reports.size() >= maxReports) {
+                openBatches.remove(trackingPipe);
+                fullBatch = batch;
+            } else {
+                fullBatch = null;
+            }
+        }
+        if (fullBatch != null) {
+            publish(fullBatch);
+        } else if (newBatch != null) {
+            scheduleFlush(newBatch);
+        }
+    }
+
+    /**
+     * Run an action once every report of a task has been handed to the queue. This is used to hold back the final response of a task,
+     * which must not be published before the reports published on its behalf. If the reports cannot be published the task is abandoned
+     * and the action is not run.
+     *
+     * @param taskInformation the reference to the message the task arrived on
+     * @param action the action to run
+     */
+    public void whenReportsPublished(final TaskInformation taskInformation, final Runnable action)
+    {
+        final TaskState task;
+        synchronized (lock) {
+            task = tasks.get(taskInformation);
+            if (task != null && task.unpublishedBatches > 0) {
+                task.completion = action;
+                return;
+            }
+            tasks.remove(taskInformation);
+        }
+        complete(taskInformation, task == null ? null : task.failure, action);
+    }
+
+    /**
+     * Forget a task which has been settled without its final response being published, such as one which has been rejected. Any
+     * reports it has already added are still published.
+     *
+     * @param taskInformation the reference to the message the task arrived on
+     */
+    public void forget(final TaskInformation taskInformation)
+    {
+        synchronized (lock) {
+            tasks.remove(taskInformation);
+        }
+    }
+
+    /**
+     * Publish every open batch, and publish any batch opened from now on straight away.
+     */
+    public void shutdown()
+    {
+        final List<Batch> batches;
+        synchronized (lock) {
+            batches = new ArrayList<>(openBatches.values());
+            openBatches.clear();
+        }
+        scheduler.shutdownNow();
+        for (final Batch batch : batches) {
+            publish(batch);
+        }
+    }
+
+    private void scheduleFlush(final Batch batch)
+    {
+        try {
+            scheduler.schedule(() -> {
+                synchronized (lock) {
+                    if (!openBatches.remove(batch.trackingPipe, batch)) {
+                        return;
+                    }
+                }
+                publish(batch);
+            }, maxDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            LOG.debug("Publishing batch of tracking reports for {} straight away as the aggregator is shutting down",
+                      batch.trackingPipe);
+            synchronized (lock) {
+                if (!openBatches.remove(batch.trackingPipe, batch)) {
+                    return;
+                }
+            }
+            publish(batch);
+        }
+    }
+
+    private void publish(final Batch batch)
+    {
+        final Map<TaskInformation, Exception> failures = new IdentityHashMap<>();
+        if (!publishPerTask || batch.tasks.size() == 1) {
+            final Exception failure = publish(batch.trackingPipe, batch.tasks, batch.reports);
+            if (failure != null) {
+                for (final TaskInformation taskInformation : batch.tasks) {
+                    failures.put(taskInformation, failure);
+                }
+            }
+        } else {
+            for (final TaskInformation taskInformation : batch.tasks) {
+                final Exception failure
+                    = publish(batch.trackingPipe, Collections.singletonList(taskInformation), batch.taskReports.get(taskInformation));
+                if (failure != null) {
+                    failures.put(taskInformation, failure);
+                }
+            }
+        }
+
+        final Map<TaskInformation, TaskState> completions = new IdentityHashMap<>();
+        synchronized (lock) {
+            for (final TaskInformation taskInformation : batch.tasks) {
+                final TaskState task = tasks.get(taskInformation);
+                if (task == null) {
+                    // The task has already been settled some other way
+                    continue;
+                }
+                task.unpublishedBatches--;
+                final Exception failure = failures.get(taskInformation);
+                if (failure != null) {
+                    task.failure = failure;
+                }
+                if (task.unpublishedBatches == 0) {
+                    if (task.completion != null) {
+                        completions.put(taskInformation, task);
+                        tasks.remove(taskInformation);
+                    } else if (task.failure == null) {
+                        tasks.remove(taskInformation);
+                    }
+                }
+            }
+        }
+        for (final Map.Entry<TaskInformation, TaskState> completion : completions.entrySet()) {
+            complete(completion.getKey(), completion.getValue().failure, completion.getValue().completion);
+        }
+    }
+
+    private Exception publish(final String trackingPipe, final List<TaskInformation> taskInformation, final List<TrackingReport> reports)
+    {
+        if (reports.isEmpty()) {
+            return null;
+        }
+        try {
+            final TrackingReportTask trackingReportTask = new TrackingReportTask();
+            trackingReportTask.trackingReports = reports;
+            final TaskMessage reportUpdateMessage = new TaskMessage(
+                UUID.randomUUID().toString(), TrackingReportConstants.TRACKING_REPORT_TASK_NAME,
+                TrackingReportConstants.TRACKING_REPORT_TASK_API_VER, envelope.getCodec().serialise(trackingReportTask), TaskStatus.NEW_TASK,
+                Collections.<String, byte[]>emptyMap(), trackingPipe, null, null, null);
+            LOG.debug("Sending {} report updates from {} tasks to queue {}", reports.size(), taskInformation.size(), trackingPipe);
+            workerQueue.publish(taskInformation, envelope.writeBody(reportUpdateMessage), trackingPipe,
+                                envelope.writeHeaders(reportUpdateMessage, Collections.emptyMap()));
+            return null;
+        } catch (final CodecException | QueueException | RuntimeException e) {
+            LOG.error("Failed to publish {} report updates to queue {}", reports.size(), trackingPipe, e);
+            return e;
+        }
+    }
+
+    private void complete(final TaskInformation taskInformation, final Exception failure, final Runnable action)
+    {
+        if (failure == null) {
+            action.run();
+        } else {
+            LOG.warn("Abandoning task (message id: {}) as its progress reports could not be published",
+                     taskInformation.getInboundMessageId());
+            abandonTask.accept(taskInformation, failure);
+        }
+    }
+
+    /**
+     * The progress of a task's reports through the batches. A task whose reports could not be published is remembered until its final
+     * response is ready, so that it can be abandoned then.
+     */
+    private static final class TaskState
+    {
+        Batch lastBatch;
+        int unpublishedBatches;
+        Runnable completion;
+        Exception failure;
+    }
+
+    /**
+     * The reports collected for a tracking pipe and the tasks they came from, along with the reports of each task if they are to be
+     * published separately. The fields are guarded by the aggregator's lock until the batch is closed, after which only the publishing
+     * thread uses them.
+     */
+    private static final class Batch
+    {
+        final String trackingPipe;
+        final List<TrackingReport> reports = new ArrayList<>();
+        final List<TaskInformation> tasks = new ArrayList<>();
+        final Map<TaskInformation, List<TrackingReport>> taskReports = new IdentityHashMap<>();
+
+        Batch(final String trackingPipe)
+        {
+            this.trackingPipe = trackingPipe;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.TaskRejectedException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A WorkerThreadPool which runs each task on a thread of its own, preferably a virtual thread, rather than on a fixed set of pooled
+ * threads. The number of tasks running at once is limited by a semaphore, and tasks beyond that limit wait in a backlog without
+ * holding a thread, which is ordered by priority if a priority-ordered backlog is enabled.
+ * <p>
+ * This suits workers which spend most of their time blocked on I/O, such as DataStore or HTTP calls, as the limit can be set well
+ * above the number of platform threads that it would be reasonable to create. Virtual threads are only available on Java 21 and
+ * later; on earlier runtimes a new platform thread is started for each task instead.
+ */
+final class VirtualWorkerThreadPool implements WorkerThreadPool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualWorkerThreadPool.class);
+
+    private final int maxConcurrentTasks;
+    private final Semaphore permits;
+    private final PriorityBacklog priorityBacklog;
+    private final Queue<WorkerFutureTask> backlog;
+    private final AtomicInteger backlogSize;
+    private final BacklogLimiter backlogLimiter;
+    private final Map<WorkerFutureTask, Runnable> tasks;
+    private final AtomicInteger outstanding;
+    private final ThreadFactory threadFactory;
+    private final Runnable throwableHandler;
+    private final Object terminationLock;
+
+    private volatile boolean isShutdown;
+
+    public VirtualWorkerThreadPool(
+        final int maxConcurrentTasks,
+        final Runnable handler
+    )
+    {
+        this(maxConcurrentTasks, 0, handler);
+    }
+
+    public VirtualWorkerThreadPool(
+        final int maxConcurrentTasks,
+        final int maxBacklog,
+        final Runnable handler
+    )
+    {
+        this(maxConcurrentTasks, maxBacklog, null, handler);
+    }
+
+    /**
+     * @param maxConcurrentTasks the maximum number of tasks to run at once
+     * @param maxBacklog the maximum number of tasks accepted but not yet started, or 0 if the backlog is not limited
+     * @param priorityBacklog the settings to order the backlog by priority with, or null to run tasks in the order they were submitted
+     * @param handler the handler to run if a task terminates with an unhandled throwable
+     */
+    public VirtualWorkerThreadPool(
+        final int maxConcurrentTasks,
+        final int maxBacklog,
+        final PriorityBacklog priorityBacklog,
+        final Runnable handler
+    )
+    {
+        if (maxConcurrentTasks < 1) {
+            throw new IllegalArgumentException("Maximum concurrent tasks must be at least 1");
+        }
+        this.maxConcurrentTasks = maxConcurrentTasks;
+        this.permits = new Semaphore(maxConcurrentTasks);
+        this.priorityBacklog = priorityBacklog;
+        // The backlog is counted and limited by the pool, so the priority queue itself is left unlimited
+        this.backlog = priorityBacklog == null
+            ? new ConcurrentLinkedQueue<>()
+            : priorityBacklog.createQueue(new BacklogLimiter(0), WorkerFutureTask::getPriority);
+        this.backlogSize = new AtomicInteger();
+        this.backlogLimiter = new BacklogLimiter(maxBacklog);
+        backlogLimiter.setBacklogSize(backlogSize::get);
+        this.tasks = new ConcurrentHashMap<>();
+        this.outstanding = new AtomicInteger();
+        this.threadFactory = createThreadFactory();
+        this.throwableHandler = Objects.requireNonNull(handler);
+        this.terminationLock = new Object();
+    }
+
+    @Override
+    public void shutdown()
+    {
+        isShutdown = true;
+        synchronized (terminationLock) {
+            terminationLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for the tasks that have already been submitted to complete, after the pool has been shut down.
+     */
+    @Override
+    public void awaitTermination(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            while (!isShutdown || outstanding.get() > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not any tasks are running or waiting to run
+     *
+     * @return true if there are no tasks running or waiting to run
+     */
+    @Override
+    public boolean isIdle()
+    {
+        return outstanding.get() == 0;
+    }
+
+    @Override
+    public int getBacklogSize()
+    {
+        return backlogSize.get();
+    }
+
+    @Override
+    public int getMaxConcurrentTasks()
+    {
+        return maxConcurrentTasks;
+    }
+
+    @Override
+    public PriorityBacklog getPriorityBacklog()
+    {
+        return priorityBacklog;
+    }
+
+    @Override
+    public void setBackpressureQueue(final ManagedWorkerQueue workerQueue)
+    {
+        backlogLimiter.setWorkerQueue(workerQueue);
+    }
+
+    /**
+     * Execute the specified task at some point in the future
+     *
+     * @param workerTask the task to be run
+     * @throws TaskRejectedException if no more tasks can be accepted
+     */
+    @Override
+    public void submitWorkerTask(final WorkerTaskImpl workerTask)
+        throws TaskRejectedException
+    {
+        if (isShutdown) {
+            throw new RejectedExecutionException("Worker thread pool has been shut down");
+        }
+        // Reserve a slot in the backlog first, so that tasks submitted at the same time cannot take the backlog past its limit
+        final int capacity = backlogLimiter.getCapacity();
+        int size;
+        do {
+            size = backlogSize.get();
+            if (size >= capacity) {
+                throw new TaskRejectedException("Maximum internal task backlog exceeded");
+            }
+        } while (!backlogSize.compareAndSet(size, size + 1));
+        final StreamingWorkerWrapper wrapper;
+        try {
+            wrapper = new StreamingWorkerWrapper(workerTask);
+        } catch (InvalidTaskException e) {
+            backlogSize.decrementAndGet();
+            workerTask.setResponse(e);
+            return;
+        }
+        final WorkerFutureTask futureTask = new WorkerFutureTask(wrapper);
+        tasks.put(futureTask, wrapper);
+        outstanding.incrementAndGet();
+        backlog.add(futureTask);
+        backlogLimiter.backlogChanged(size + 1);
+        dispatch();
+    }
+
+    @Override
+    public int abortTasks()
+    {
+        AtomicInteger count = new AtomicInteger();
+
+        tasks.forEach((key, value) -> {
+            key.cancel(true);
+            count.incrementAndGet();
+            // A task still in the backlog will never be given a thread, so it is finished with here rather than left taking up space
+            if (backlog.remove(key)) {
+                backlogLimiter.backlogChanged(backlogSize.decrementAndGet());
+                key.settle();
+            }
+        });
+        tasks.clear();
+
+        return count.get();
+    }
+
+    /**
+     * Start a thread for each task in the backlog for which a permit is available. A permit is only held while the backlog is known
+     * to be non-empty, so a task added to the backlog while another thread holds a permit here is picked up by the re-check once the
+     * permit has been released.
+     */
+    private void dispatch()
+    {
+        while (!backlog.isEmpty() && permits.tryAcquire()) {
+            final WorkerFutureTask futureTask = backlog.poll();
+            if (futureTask == null) {
+                permits.release();
+                continue;
+            }
+            backlogLimiter.backlogChanged(backlogSize.decrementAndGet());
+            try {
+                threadFactory.newThread(futureTask).start();
+            } catch (final RuntimeException | Error e) {
+                LOG.error("Failed to start worker thread, terminating service", e);
+                futureTask.complete();
+                throwableHandler.run();
+                throw e;
+            }
+        }
+    }
+
+    private static ThreadFactory createThreadFactory()
+    {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "worker-", 0L);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+            LOG.info("Running worker tasks on virtual threads");
+            return factory;
+        } catch (final NoSuchMethodException | ClassNotFoundException | IllegalAccessException | InvocationTargetException e) {
+            LOG.warn("Virtual threads are not available on this runtime; running each worker task on a new platform thread", e);
+            return Executors.defaultThreadFactory();
+        }
+    }
+
+    private final class WorkerFutureTask extends FutureTask<Void>
+    {
+        private final Integer priority;
+
+        public WorkerFutureTask(final StreamingWorkerWrapper wrapper)
+        {
+            super(wrapper, null);
+            this.priority = wrapper.getPriority();
+        }
+
+        Integer getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                super.run();
+                checkResult();
+            } finally {
+                complete();
+            }
+        }
+
+        private void checkResult()
+        {
+            try {
+                get();
+            } catch (CancellationException ce) {
+                LOG.debug("Worker task was aborted");
+            } catch (ExecutionException ee) {
+                LOG.error("Worker thread terminated with unhandled throwable, terminating service", ee.getCause());
+                throwableHandler.run();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt(); // ignore/reset
+            }
+        }
+
+        void complete()
+        {
+            permits.release();
+            settle();
+            dispatch();
+        }
+
+        void settle()
+        {
+            tasks.remove(this);
+            if (outstanding.decrementAndGet() == 0 && isShutdown) {
+                synchronized (terminationLock) {
+                    terminationLock.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The work queue of a pool whose threads each have a deque of their own, bounded by a BacklogLimiter, which it notifies whenever tasks
+ * are added or removed.
+ * <p>
+ * Tasks are dealt to the deques in turn. Each thread takes the oldest task from its own deque, and when that is empty steals the oldest
+ * task from the next deque that has one, so the threads only contend for a deque when one of them has run out of work. A semaphore
+ * counts the waiting tasks, so that a thread with nothing to do can block until a task is added, and a batch of tasks can be claimed
+ * at once. The tasks held are counted separately, with a slot in the backlog reserved before a task is added, so that concurrent
+ * additions cannot take the backlog past its limit.
+ *
+ * @param <E> the type of tasks held in the queue
+ */
+final class WorkStealingQueue<E>
+{
+    private final List<ConcurrentLinkedDeque<E>> deques;
+    private final Semaphore available;
+    private final AtomicInteger count;
+    private final AtomicInteger nextDeque;
+    private final LongAdder steals;
+    private final BacklogLimiter limiter;
+
+    /**
+     * @param dequeCount the number of threads that take tasks from the queue
+     * @param limiter the limiter of the backlog
+     */
+    public WorkStealingQueue(final int dequeCount, final BacklogLimiter limiter)
+    {
+        if (dequeCount < 1) {
+            throw new IllegalArgumentException("There must be at least one deque");
+        }
+        this.deques = new ArrayList<>(dequeCount);
+        for (int i = 0; i < dequeCount; i++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+        this.available = new Semaphore(0);
+        this.count = new AtomicInteger();
+        this.nextDeque = new AtomicInteger();
+        this.steals = new LongAdder();
+        this.limiter = Objects.requireNonNull(limiter);
+        limiter.setBacklogSize(count::get);
+    }
+
+    /**
+     * Add a task to the next deque in turn.
+     *
+     * @param e the task
+     * @return false if the backlog is full
+     */
+    public boolean offer(final E e)
+    {
+        return offer(Math.floorMod(nextDeque.getAndIncrement(), deques.size()), e);
+    }
+
+    /**
+     * @return the number of tasks held in the queue
+     */
+    public int size()
+    {
+        return count.get();
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of tasks that have been taken from the deque of another thread
+     */
+    public long getSteals()
+    {
+        return steals.sum();
+    }
+
+    /**
+     * Remove all of the waiting tasks.
+     *
+     * @param c the collection to add the tasks to
+     * @return the number of tasks removed
+     */
+    public int drainTo(final Collection<? super E> c)
+    {
+        return drainTo(0, c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the queue as seen by the threads that add tasks to it. Tasks added through it are dealt to the deques in turn, and tasks
+     * taken through it are taken from the first deque that has one.
+     *
+     * @return the view of the queue
+     */
+    public BlockingQueue<E> asBlockingQueue()
+    {
+        return new OwnerQueue(0);
+    }
+
+    /**
+     * Get the queue as seen by one of the threads that take tasks from it, which takes tasks from the thread's own deque first. Tasks
+     * added through it are still dealt to the deques in turn.
+     *
+     * @param owner the index of the thread, from 0 to one less than the number of deques
+     * @return the thread's view of the queue
+     */
+    public BlockingQueue<E> forOwner(final int owner)
+    {
+        Objects.checkIndex(owner, deques.size());
+        return new OwnerQueue(owner);
+    }
+
+    private boolean offer(final int index, final E e)
+    {
+        Objects.requireNonNull(e);
+        final int capacity = limiter.getCapacity();
+        int size;
+        do {
+            size = count.get();
+            if (size >= capacity) {
+                return false;
+            }
+        } while (!count.compareAndSet(size, size + 1));
+        deques.get(index).addLast(e);
+        available.release();
+        limiter.backlogChanged(size + 1);
+        return true;
+    }
+
+    private int drainTo(final int owner, final Collection<? super E> c, final int maxElements)
+    {
+        int drained = 0;
+        while (drained < maxElements) {
+            final int permits = Math.min(maxElements - drained, available.availablePermits());
+            if (permits <= 0 || !available.tryAcquire(permits)) {
+                break;
+            }
+            for (int i = 0; i < permits; i++) {
+                c.add(claim(owner));
+            }
+            drained += permits;
+        }
+        if (drained > 0) {
+            limiter.backlogChanged(count.addAndGet(-drained));
+        }
+        return drained;
+    }
+
+    /**
+     * Remove a task once a permit has been acquired for it. The task may not be found on the first pass, as it is added to its deque
+     * just before its permit is released and another thread may have claimed the task that was visible, but there is always at least
+     * one task for each permit held.
+     */
+    private E claim(final int owner)
+    {
+        final int dequeCount = deques.size();
+        while (true) {
+            final E task = deques.get(owner).pollFirst();
+            if (task != null) {
+                return task;
+            }
+            for (int i = 1; i < dequeCount; i++) {
+                final E stolen = deques.get((owner + i) % dequeCount).pollFirst();
+                if (stolen != null) {
+                    steals.increment();
+                    return stolen;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private E removed(final int owner)
+    {
+        final E task = claim(owner);
+        limiter.backlogChanged(count.decrementAndGet());
+        return task;
+    }
+
+    private final class OwnerQueue extends AbstractQueue<E> implements BlockingQueue<E>
+    {
+        private final int owner;
+
+        OwnerQueue(final int owner)
+        {
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean offer(final E e)
+        {
+            return WorkStealingQueue.this.offer(e);
+        }
+
+        @Override
+        public void put(final E e)
+            throws InterruptedException
+        {
+            if (!offer(e)) {
+                throw new IllegalStateException("Queue full");
+            }
+        }
+
+        @Override
+        public boolean offer(final E e, final long timeout, final TimeUnit unit)
+        {
+            return offer(e);
+        }
+
+        @Override
+        public E poll()
+        {
+            return available.tryAcquire() ? removed(owner) : null;
+        }
+
+        @Override
+        public E poll(final long timeout, final TimeUnit unit)
+            throws InterruptedException
+        {
+            return available.tryAcquire(timeout, unit) ? removed(owner) : null;
+        }
+
+        @Override
+        public E take()
+            throws InterruptedException
+        {
+            available.acquire();
+            return removed(owner);
+        }
+
+        @Override
+        public E peek()
+        {
+            final int dequeCount = deques.size();
+            for (int i = 0; i < dequeCount; i++) {
+                final E task = deques.get((owner + i) % dequeCount).peekFirst();
+                if (task != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int drainTo(final Collection<? super E> c)
+        {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(final Collection<? super E> c, final int maxElements)
+        {
+            return WorkStealingQueue.this.drainTo(owner, c, maxElements);
+        }
+
+        @Override
+        public int remainingCapacity()
+        {
+            return limiter.getCapacity() == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(0, limiter.getCapacity() - size());
+        }
+
+        @Override
+        public int size()
+        {
+            return WorkStealingQueue.this.size();
+        }
+
+        /**
+         * Returns a snapshot of the waiting tasks, starting with the thread's own deque. Tasks cannot be removed through it.
+         */
+        @Override
+        public Iterator<E> iterator()
+        {
+            final List<E> tasks = new ArrayList<>();
+            final int dequeCount = deques.size();
+            for (int i = 0; i < dequeCount; i++) {
+                tasks.addAll(deques.get((owner + i) % dequeCount));
+            }
+            return Collections.unmodifiableList(tasks).iterator();
+        }
+    }
+}
@@ -116,10 +116,12 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
         ManagedDataStore store = ModuleLoader.getService(DataStoreProvider.class).getDataStore(config);
         WorkerFactory workerFactory = workerProvider.getWorkerFactory(config, store, codec);
         WorkerThreadPool wtp = WorkerThreadPool.create(workerFactory);
-        final int nThreads = workerFactory.getWorkerThreads();
-        ManagedWorkerQueue workerQueue = queueProvider.getWorkerQueue(config, nThreads);
+        final int maxTasks = wtp.getMaxConcurrentTasks();
+        ManagedWorkerQueue workerQueue = queueProvider.getWorkerQueue(config, maxTasks);
+        wtp.setBackpressureQueue(workerQueue);
+        final PrefetchController prefetchController = PrefetchController.fromEnvironment(wtp, workerQueue);
         TransientHealthCheck transientHealthCheck = new TransientHealthCheck();
-        WorkerCore core = new WorkerCore(codec, wtp, workerQueue, workerFactory, path, environment.healthChecks(), transientHealthCheck);
+        WorkerCore core = new WorkerCore(codec, wtp, workerQueue, workerFactory, path, environment.healthChecks(), transientHealthCheck, store);
         HealthConfiguration healthConfiguration = config.getConfiguration(HealthConfiguration.class);
 
         environment.lifecycle().manage(new Managed() {
@@ -128,6 +130,18 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
                 LOG.info("Worker starting up.");
 
                 initCoreMetrics(environment.metrics(), core);
+                if (prefetchController != null) {
+                    initPrefetchMetrics(environment.metrics(), prefetchController);
+                    prefetchController.start();
+                }
+                final PriorityBacklog priorityBacklog = wtp.getPriorityBacklog();
+                if (priorityBacklog != null) {
+                    initPriorityBacklogMetrics(environment.metrics(), priorityBacklog);
+                }
+                final BatchSizeController batchSizeController = wtp.getBatchSizeController();
+                if (batchSizeController != null) {
+                    initBatchSizeMetrics(environment.metrics(), batchSizeController);
+                }
                 initComponentMetrics(environment.metrics(), config, store, core);
                 initHealthChecks(workerQueue, core, healthConfiguration, config, environment, workerFactory, store,
                         transientHealthCheck, workerConfiguration);
@@ -136,6 +150,9 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
             @Override
             public void stop() {
                 LOG.info("Worker stop requested, allowing in-progress tasks to complete.");
+                if (prefetchController != null) {
+                    prefetchController.stop();
+                }
                 workerQueue.shutdownIncoming();
                 while (!wtp.isIdle()) {
                     try {
@@ -156,6 +173,7 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
                     LOG.warn("Shutdown interrupted", e);
                     Thread.currentThread().interrupt();
                 }
+                core.shutdown();
                 workerQueue.shutdown();
                 workerFactory.shutdown();
                 store.shutdown();
@@ -186,11 +204,37 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
         metrics.register(MetricRegistry.name("core.tasksForwarded"), (Gauge<Long>) core.getStats()::getTasksForwarded);
         metrics.register(MetricRegistry.name("core.tasksPaused"), (Gauge<Long>) core.getStats()::getTasksPaused);
         metrics.register(MetricRegistry.name("core.tasksDiscarded"), (Gauge<Long>) core.getStats()::getTasksDiscarded);
+        metrics.register(MetricRegistry.name("core.forwardedBytesReused"), (Gauge<Long>) core.getStats()::getForwardedBytesReused);
         metrics.register(MetricRegistry.name("core.currentIdleTime"), (Gauge<Long>) core::getCurrentIdleTime);
         metrics.register(MetricRegistry.name("core.inputSizes"), core.getStats().getInputSizes());
         metrics.register(MetricRegistry.name("core.outputSizes"), core.getStats().getOutputSizes());
     }
 
+    private void initPrefetchMetrics(final MetricRegistry metrics, final PrefetchController prefetchController)
+    {
+        metrics.register(MetricRegistry.name("core.prefetch"), (Gauge<Integer>) prefetchController::getPrefetch);
+        metrics.register(MetricRegistry.name("core.prefetchAdjustments"), (Gauge<Long>) prefetchController::getAdjustments);
+        metrics.register(MetricRegistry.name("core.queueDelay"), (Gauge<Long>) prefetchController::getQueueDelayMillis);
+    }
+
+    private void initPriorityBacklogMetrics(final MetricRegistry metrics, final PriorityBacklog priorityBacklog)
+    {
+        for (int priority = 0; priority <= priorityBacklog.getMaxPriority(); priority++) {
+            metrics.register(MetricRegistry.name("core.priorityQueueDelay", Integer.toString(priority)),
+                             priorityBacklog.getQueueDelayTimer(priority));
+        }
+    }
+
+    private void initBatchSizeMetrics(final MetricRegistry metrics, final BatchSizeController batchSizeController)
+    {
+        metrics.register(MetricRegistry.name("core.batchSize"), (Gauge<Integer>) batchSizeController::getBatchSize);
+        metrics.register(MetricRegistry.name("core.batchLinger"), (Gauge<Long>) batchSizeController::getLingerMillis);
+        metrics.register(MetricRegistry.name("core.batchSizeAdjustments"), (Gauge<Long>) batchSizeController::getAdjustments);
+        metrics.register(MetricRegistry.name("core.batchTasks"), (Gauge<Double>) batchSizeController::getTasksPerBatch);
+        metrics.register(MetricRegistry.name("core.batchLatency"), (Gauge<Long>) batchSizeController::getBatchLatencyMillis);
+        metrics.register(MetricRegistry.name("core.batchThroughput"), (Gauge<Double>) batchSizeController::getThroughput);
+    }
+
     private void initComponentMetrics(final MetricRegistry metrics, final ManagedConfigurationSource config, final ManagedDataStore store, final WorkerCore core)
     {
         metrics.register(MetricRegistry.name("config.lookups"), (Gauge<Integer>) config::getConfigurationRequests);
@@ -207,6 +251,18 @@ public final class WorkerApplication extends Application<WorkerConfiguration>
             metrics.register(MetricRegistry.name("queue.rejected"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getMessagesRejected);
             metrics.register(MetricRegistry.name("queue.dropped"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getMessagesDropped);
             metrics.register(MetricRegistry.name("queue.errors"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getQueueErrors);
+            metrics.register(MetricRegistry.name("queue.acksSent"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getAcksSent);
+            metrics.register(MetricRegistry.name("queue.acknowledged"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getMessagesAcknowledged);
+            metrics.register(MetricRegistry.name("queue.republished"), (Gauge<Integer>) core.getWorkerQueue().getMetrics()::getMessagesRepublished);
+            final WorkerQueueMetricsReporter queueMetrics = core.getWorkerQueue().getMetrics();
+            metrics.register(MetricRegistry.name("queue.bytesBeforeCompression"), (Gauge<Long>) queueMetrics::getBytesBeforeCompression);
+            metrics.register(MetricRegistry.name("queue.bytesAfterCompression"), (Gauge<Long>) queueMetrics::getBytesAfterCompression);
+            metrics.register(MetricRegistry.name("queue.compressionRatio"), (Gauge<Double>) () -> {
+                final long bytesAfter = queueMetrics.getBytesAfterCompression();
+                return bytesAfter == 0 ? 1.0 : (double) queueMetrics.getBytesBeforeCompression() / bytesAfter;
+            });
+            metrics.register(MetricRegistry.name("queue.compressionNanos"), (Gauge<Long>) queueMetrics::getCompressionNanos);
+            metrics.register(MetricRegistry.name("queue.decompressionNanos"), (Gauge<Long>) queueMetrics::getDecompressionNanos);
         }
     }
 
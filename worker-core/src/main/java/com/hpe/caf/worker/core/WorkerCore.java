@@ -19,19 +19,15 @@ import com.hpe.caf.api.worker.JobStatus;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.hpe.caf.api.Codec;
 import com.hpe.caf.api.CodecException;
-import com.hpe.caf.api.DecodeMethod;
 import com.hpe.caf.api.worker.*;
 import com.hpe.caf.naming.ServicePath;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * WorkerCore represents the main logic of the microservice worker. It is responsible for accepting new tasks from a WorkerQueue, handing
@@ -44,6 +40,9 @@ final class WorkerCore
     private final ManagedWorkerQueue workerQueue;
     private final WorkerStats stats = new WorkerStats();
     private final TaskCallback callback;
+    private final TrackingReportAggregator reportAggregator;
+    private final JobStatusClient jobStatusClient;
+    private final ClaimCheck claimCheck;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerCore.class);
     private boolean isStarted;
     private static final boolean isDivertedTaskCheckingEnabled = Boolean.parseBoolean(
@@ -52,9 +51,19 @@ final class WorkerCore
 
     public WorkerCore(final Codec codec, final WorkerThreadPool pool, final ManagedWorkerQueue queue, final WorkerFactory factory, final ServicePath path, final HealthCheckRegistry healthCheckRegistry, final TransientHealthCheck transientHealthCheck)
     {
-        WorkerCallback taskCallback = new CoreWorkerCallback(codec, queue, stats, healthCheckRegistry, transientHealthCheck);
+        this(codec, pool, queue, factory, path, healthCheckRegistry, transientHealthCheck, null);
+    }
+
+    public WorkerCore(final Codec codec, final WorkerThreadPool pool, final ManagedWorkerQueue queue, final WorkerFactory factory, final ServicePath path, final HealthCheckRegistry healthCheckRegistry, final TransientHealthCheck transientHealthCheck, final DataStore dataStore)
+    {
+        final TaskMessageEnvelope envelope = TaskMessageEnvelope.fromEnvironment(codec);
+        WorkerCallback taskCallback = new CoreWorkerCallback(envelope, queue, stats, healthCheckRegistry, transientHealthCheck);
         this.threadPool = Objects.requireNonNull(pool);
-        this.callback = new CoreTaskCallback(codec, stats, new WorkerExecutor(path, taskCallback, factory, pool), pool, queue);
+        this.reportAggregator = TrackingReportAggregator.fromEnvironment(envelope, queue, taskCallback::abandon);
+        this.claimCheck = dataStore == null ? null : ClaimCheck.fromEnvironment(dataStore);
+        this.jobStatusClient = JobStatusClient.fromEnvironment();
+        this.callback = new CoreTaskCallback(envelope, stats, new WorkerExecutor(path, taskCallback, factory, pool, reportAggregator, claimCheck),
+                                             pool, queue, jobStatusClient);
         this.workerQueue = Objects.requireNonNull(queue);
         this.isStarted = false;
     }
@@ -71,6 +80,21 @@ final class WorkerCore
         isStarted = true;
     }
 
+    /**
+     * Stop the threads used to check job status and to delete claimed task data, and send any progress reports still held for
+     * aggregation. This should be called once the worker threads have finished, before the queues are shut down.
+     */
+    public void shutdown()
+    {
+        jobStatusClient.shutdown();
+        if (claimCheck != null) {
+            claimCheck.shutdown();
+        }
+        if (reportAggregator != null) {
+            reportAggregator.shutdown();
+        }
+    }
+
     /**
      * Check if the queues were started.
      * @return true if the queues were started
@@ -118,19 +142,23 @@ final class WorkerCore
      */
     private static class CoreTaskCallback implements TaskCallback
     {
+        private final TaskMessageEnvelope envelope;
         private final Codec codec;
         private final WorkerStats stats;
         private final WorkerExecutor executor;
         private final WorkerThreadPool threadPool;
         private final ManagedWorkerQueue workerQueue;
+        private final JobStatusClient jobStatusClient;
 
-        public CoreTaskCallback(final Codec codec, final WorkerStats stats, final WorkerExecutor executor, final WorkerThreadPool pool, final ManagedWorkerQueue workerQueue)
+        public CoreTaskCallback(final TaskMessageEnvelope envelope, final WorkerStats stats, final WorkerExecutor executor, final WorkerThreadPool pool, final ManagedWorkerQueue workerQueue, final JobStatusClient jobStatusClient)
         {
-            this.codec = Objects.requireNonNull(codec);
+            this.envelope = Objects.requireNonNull(envelope);
+            this.codec = envelope.getCodec();
             this.stats = Objects.requireNonNull(stats);
             this.executor = Objects.requireNonNull(executor);
             this.threadPool = Objects.requireNonNull(pool);
             this.workerQueue = Objects.requireNonNull(workerQueue);
+            this.jobStatusClient = Objects.requireNonNull(jobStatusClient);
         }
 
         /**
@@ -158,59 +186,123 @@ final class WorkerCore
             throws InvalidTaskException, TaskRejectedException
         {
             try {
-                final TaskMessage tm = codec.deserialise(taskMessage, TaskMessage.class, DecodeMethod.LENIENT);
+                final TaskMessage tm = envelope.read(taskMessage, headers);
 
                 LOG.debug("Received task {} (message id: {})", tm.getTaskId(), taskInformation.getInboundMessageId());
                 validateTaskMessage(tm);
-                final JobStatus jobStatus;
+                final CompletableFuture<JobStatusClient.JobStatusResponse> statusCheck = checkStatus(tm);
+                if (statusCheck == null) {
+                    //By default a task is considered to be active.
+                    dispatchTask(tm, taskInformation, headers, JobStatus.Active);
+                } else if (statusCheck.isDone()) {
+                    dispatchTask(tm, taskInformation, headers, statusCheck);
+                } else {
+                    // Don't hold up intake waiting for the status service; the task is dispatched when the response arrives
+                    statusCheck.whenComplete((response, failure) -> dispatchCheckedTask(tm, taskInformation, taskMessage, headers, statusCheck));
+                }
+            } catch (CodecException e) {
+                throw new InvalidTaskException("Queue data did not deserialise to a TaskMessage", e);
+            } catch (InvalidJobTaskIdException ijte) {
+                throw new InvalidTaskException("TaskMessage contains an invalid job task identifier", ijte);
+            }
+        }
+
+        /**
+         * Dispatches a task once its job status check has completed, away from the thread that registered it. If the task cannot be
+         * accepted at this time it is returned to the queue, as it would have been had it been rejected when it was registered.
+         */
+        private void dispatchCheckedTask(
+            final TaskMessage tm,
+            final TaskInformation taskInformation,
+            final byte[] taskMessage,
+            final Map<String, Object> headers,
+            final CompletableFuture<JobStatusClient.JobStatusResponse> statusCheck
+        )
+        {
+            try {
+                dispatchTask(tm, taskInformation, headers, statusCheck);
+            } catch (final TaskRejectedException e) {
+                LOG.warn("Message {} rejected as a task at this time, returning to queue", taskInformation.getInboundMessageId(), e);
                 try {
-                    jobStatus = checkStatus(tm);
-                } catch (final JobNotFoundException e) {
+                    workerQueue.publish(taskInformation, taskMessage, workerQueue.getInputQueue(),
+                                        TaskMessageEnvelope.getEnvelopeHeaders(headers), true);
+                } catch (final QueueException qe) {
+                    LOG.error("Cannot return message {} to queue, rejecting", taskInformation.getInboundMessageId(), qe);
+                    workerQueue.rejectTask(taskInformation);
+                }
+            } catch (final RuntimeException e) {
+                LOG.error("Cannot register message {}, rejecting", taskInformation.getInboundMessageId(), e);
+                workerQueue.rejectTask(taskInformation);
+            }
+        }
+
+        private void dispatchTask(
+            final TaskMessage tm,
+            final TaskInformation taskInformation,
+            final Map<String, Object> headers,
+            final CompletableFuture<JobStatusClient.JobStatusResponse> statusCheck
+        ) throws TaskRejectedException
+        {
+            final JobStatusClient.JobStatusResponse jobStatusResponse;
+            try {
+                jobStatusResponse = statusCheck.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof JobNotFoundException) {
                     LOG.debug(
-                        e.getMessage()
+                        e.getCause().getMessage()
                         + " (Assuming task {} is no longer active. The task message (message id: {}) will not be executed)",
                         tm.getTaskId(),
                         taskInformation.getInboundMessageId());
                     executor.discardTask(tm, taskInformation);
                     return;
                 }
-                switch (jobStatus) {
-                    case Active:
-                    case Waiting:
-                        if (isTaskIntendedForThisWorker(tm, taskInformation)) {
-                            executor.executeTask(tm, taskInformation, headers, codec);
-                        } else {
-                            executor.handleDivertedTask(tm, taskInformation, headers, codec, jobStatus);
-                        }
-                        break;
-                    case Paused:
-                        if (isTaskIntendedForThisWorker(tm, taskInformation)) {
-                            final String pausedQueue = workerQueue.getPausedQueue();
-                            if (pausedQueue != null) {
-                                executor.pauseTask(tm, taskInformation, pausedQueue, headers);
-                            } else {
-                                LOG.debug(
-                                    "Task {} is paused but the paused queue has not been set. "
-                                    + "Task message (message id: {}) will be executed as normal",
-                                    tm.getTaskId(),
-                                    taskInformation.getInboundMessageId());
-                                executor.executeTask(tm, taskInformation, headers, codec);
-                            }
+                LOG.warn("Task {} : assuming that job is active - failed to perform status check. ", tm.getTaskId(), e.getCause());
+                dispatchTask(tm, taskInformation, headers, JobStatus.Active);
+                return;
+            }
+            updateStatusCheckTime(tm, jobStatusResponse);
+            dispatchTask(tm, taskInformation, headers, jobStatusResponse.getJobStatus());
+        }
+
+        private void dispatchTask(
+            final TaskMessage tm,
+            final TaskInformation taskInformation,
+            final Map<String, Object> headers,
+            final JobStatus jobStatus
+        ) throws TaskRejectedException
+        {
+            switch (jobStatus) {
+                case Active:
+                case Waiting:
+                    if (isTaskIntendedForThisWorker(tm, taskInformation)) {
+                        executor.executeTask(tm, taskInformation, headers, codec);
+                    } else {
+                        executor.handleDivertedTask(tm, taskInformation, headers, codec, jobStatus);
+                    }
+                    break;
+                case Paused:
+                    if (isTaskIntendedForThisWorker(tm, taskInformation)) {
+                        final String pausedQueue = workerQueue.getPausedQueue();
+                        if (pausedQueue != null) {
+                            executor.pauseTask(tm, taskInformation, pausedQueue, headers);
                         } else {
-                            executor.handleDivertedTask(tm, taskInformation, headers, codec, jobStatus);
+                            LOG.debug(
+                                "Task {} is paused but the paused queue has not been set. "
+                                + "Task message (message id: {}) will be executed as normal",
+                                tm.getTaskId(),
+                                taskInformation.getInboundMessageId());
+                            executor.executeTask(tm, taskInformation, headers, codec);
                         }
-                        break;
-                    default:
-                        LOG.debug(
-                            "Task {} is no longer active. The task message (message id: {}) will not be executed",
-                            tm.getTaskId(),
-                            taskInformation.getInboundMessageId());
-                        executor.discardTask(tm, taskInformation);
-                }
-            } catch (CodecException e) {
-                throw new InvalidTaskException("Queue data did not deserialise to a TaskMessage", e);
-            } catch (InvalidJobTaskIdException ijte) {
-                throw new InvalidTaskException("TaskMessage contains an invalid job task identifier", ijte);
+                    } else {
+                        executor.handleDivertedTask(tm, taskInformation, headers, codec, jobStatus);
+                    }
+                    break;
+                default:
+                    LOG.debug(
+                        "Task {} is no longer active. The task message (message id: {}) will not be executed",
+                        tm.getTaskId(),
+                        taskInformation.getInboundMessageId());
+                    executor.discardTask(tm, taskInformation);
             }
         }
 
@@ -271,13 +363,13 @@ final class WorkerCore
         }
 
         /**
-         * Checks a task's status. If a status check cannot be performed then the task is assumed to be active. Checking status may
-         * result in a change to the tracking info on the supplied task message.
+         * Starts a check of a task's status, if one is due. The check does not block; if it cannot be performed then the task is
+         * assumed to be active.
          *
          * @param tm task message to be checked to verify whether the task is still active
-         * @return JobStatus.Active if the task is still active
+         * @return the job status check, or null if a status check is not due, in which case the task is considered to be active
          */
-        private JobStatus checkStatus(TaskMessage tm) throws InvalidJobTaskIdException, JobNotFoundException
+        private CompletableFuture<JobStatusClient.JobStatusResponse> checkStatus(TaskMessage tm) throws InvalidJobTaskIdException
         {
             Objects.requireNonNull(tm);
 
@@ -295,20 +387,18 @@ final class WorkerCore
                 LOG.debug("Task {} job status is not being checked - the task message does not have tracking info", tm.getTaskId());
             }
 
-            //By default a task is considered to be active.
-            return JobStatus.Active;
+            return null;
         }
 
         /**
-         * Checks the current status of the job to which the task belongs. If this check can be made successfully then the status check
-         * time of the supplied task message is updated.
+         * Starts a check of the current status of the job to which the task belongs. Concurrent checks of the same job share a single
+         * request to the status check URL, and recent responses are reused.
          *
          * @param tm the task message whose job status will be verified
-         * @return true if the task's job is active or the job status could not be checked, false if the status could be checked and the
-         * job is found to be inactive (aborted, cancelled, etc.)
-         * @return status of job - JobStatus.Active will be returned if the job is active or if the check could not be performed.
+         * @return the job status check, which completes exceptionally with a JobNotFoundException if the job was not found, or null if
+         * the task message has no status check URL
          */
-        private JobStatus performJobStatusCheck(TaskMessage tm) throws InvalidJobTaskIdException, JobNotFoundException
+        private CompletableFuture<JobStatusClient.JobStatusResponse> performJobStatusCheck(TaskMessage tm) throws InvalidJobTaskIdException
         {
             Objects.requireNonNull(tm);
             TrackingInfo tracking = tm.getTracking();
@@ -317,101 +407,25 @@ final class WorkerCore
             String statusCheckUrl = tracking.getStatusCheckUrl();
             if (statusCheckUrl == null) {
                 //If statusCheckUrl is null then we can't perform the status check so we have to assume the job is active.
-                return JobStatus.Active;
+                return null;
             }
 
             String jobId = tracking.getJobId();
             LOG.debug("Task {} (job {}) - attempting to check job status", tm.getTaskId(), jobId);
-            JobStatusResponse jobStatusResponse = getJobStatus(jobId, statusCheckUrl);
-            final Date now = new Date(System.currentTimeMillis());
-            LOG.debug("Task {} (job {}) - updating last status check time from {} to {}",
-                      tm.getTaskId(), jobId, tracking.getLastStatusCheckTime(), now);
-            tracking.setLastStatusCheckTime(now);
-            tracking.setStatusCheckIntervalMillis(jobStatusResponse.getStatusCheckIntervalMillis());
-            return jobStatusResponse.getJobStatus();
+            return jobStatusClient.getJobStatus(jobId, statusCheckUrl);
         }
 
         /**
-         * Makes a call to the status check URL to determine  the job's status. This should make implicit use of JobStatusResponseCache.
-         *
-         * @param jobId checks the status of this job
-         * @param statusCheckUrl full path that can be used to check job status
-         * @return job status response including status of job - JobStatusResponse.JobStatus.Active will be returned if the job is active
-         * or if the check could not be performed.
+         * Updates the status check time of the supplied task message following a successful status check.
          */
-        private JobStatusResponse getJobStatus(String jobId, String statusCheckUrl) throws JobNotFoundException
-        {
-            JobStatusResponse jobStatusResponse = new JobStatusResponse();
-            try {
-                URL url = new URL(statusCheckUrl);
-                final URLConnection connection = url.openConnection();
-                if (connection instanceof HttpURLConnection) {
-                    if (((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
-                        throw new JobNotFoundException(
-                            "Unable to check job status as job " + jobId + " was not found using status check URL " + statusCheckUrl);
-                    }
-                }
-                long statusCheckIntervalMillis = JobStatusResponseCache.getStatusCheckIntervalMillis(connection);
-                try (BufferedReader response = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                    String responseValue;
-                    if ((responseValue = response.readLine()) != null) {
-                        final String responseValueWithoutQuotes = responseValue.replaceAll("\"", "");
-                        LOG.debug("Job {} : retrieved job status '{}' from status check URL {}.",
-                                  jobId, responseValueWithoutQuotes, statusCheckUrl);
-                        jobStatusResponse.setJobStatus(JobStatus.valueOf(responseValueWithoutQuotes));
-                    } else {
-                        LOG.warn("Job {} : assuming that job is active - no suitable response from status check URL {}.", jobId, statusCheckUrl);
-                        jobStatusResponse.setJobStatus(JobStatus.Active);
-                    }
-                } catch (Exception ex) {
-                    LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, ex);
-                    jobStatusResponse.setJobStatus(JobStatus.Active);
-                }
-                jobStatusResponse.setStatusCheckIntervalMillis(statusCheckIntervalMillis);
-            } catch (final JobNotFoundException e) {
-                throw e;
-            } catch (final Exception e) {
-                LOG.warn("Job {} : assuming that job is active - failed to perform status check using URL {}. ", jobId, statusCheckUrl, e);
-                jobStatusResponse.setJobStatus(JobStatus.Active);
-            }
-            return jobStatusResponse;
-        }
-
-        private static class JobStatusResponse
+        private static void updateStatusCheckTime(final TaskMessage tm, final JobStatusClient.JobStatusResponse jobStatusResponse)
         {
-            private JobStatus jobStatus;
-            private long statusCheckIntervalMillis;
-
-            public JobStatusResponse()
-            {
-                this(JobStatus.Active, JobStatusResponseCache.getDefaultJobStatusCheckIntervalMillis());
-            }
-
-            public JobStatusResponse(JobStatus jobStatus, long statusCheckInterval)
-            {
-                this.jobStatus = jobStatus;
-                this.statusCheckIntervalMillis = statusCheckInterval;
-            }
-
-            public JobStatus getJobStatus()
-            {
-                return jobStatus;
-            }
-
-            public void setJobStatus(JobStatus jobStatus)
-            {
-                this.jobStatus = jobStatus;
-            }
-
-            public long getStatusCheckIntervalMillis()
-            {
-                return statusCheckIntervalMillis;
-            }
-
-            public void setStatusCheckIntervalMillis(long statusCheckIntervalMillis)
-            {
-                this.statusCheckIntervalMillis = statusCheckIntervalMillis;
-            }
+            final TrackingInfo tracking = tm.getTracking();
+            final Date now = new Date(System.currentTimeMillis());
+            LOG.debug("Task {} - updating last status check time from {} to {}",
+                      tm.getTaskId(), tracking.getLastStatusCheckTime(), now);
+            tracking.setLastStatusCheckTime(now);
+            tracking.setStatusCheckIntervalMillis(jobStatusResponse.getStatusCheckIntervalMillis());
         }
     }
 
@@ -420,15 +434,15 @@ final class WorkerCore
      */
     private static class CoreWorkerCallback implements WorkerCallback
     {
-        private final Codec codec;
+        private final TaskMessageEnvelope envelope;
         private final ManagedWorkerQueue workerQueue;
         private final WorkerStats stats;
         private final HealthCheckRegistry healthCheckRegistry;
         private final TransientHealthCheck transientHealthCheck;
 
-        public CoreWorkerCallback(final Codec codec, final ManagedWorkerQueue workerQueue, final WorkerStats stats, final HealthCheckRegistry healthCheckRegistry, final TransientHealthCheck transientHealthCheck)
+        public CoreWorkerCallback(final TaskMessageEnvelope envelope, final ManagedWorkerQueue workerQueue, final WorkerStats stats, final HealthCheckRegistry healthCheckRegistry, final TransientHealthCheck transientHealthCheck)
         {
-            this.codec = Objects.requireNonNull(codec);
+            this.envelope = Objects.requireNonNull(envelope);
             this.workerQueue = Objects.requireNonNull(workerQueue);
             this.stats = Objects.requireNonNull(stats);
             this.healthCheckRegistry = Objects.requireNonNull(healthCheckRegistry);
@@ -447,13 +461,13 @@ final class WorkerCore
 
             final byte[] output;
             try {
-                output = codec.serialise(responseMessage);
+                output = envelope.writeBody(responseMessage);
             } catch (final CodecException ex) {
                 throw new RuntimeException(ex);
             }
 
             try {
-                workerQueue.publish(taskInformation, output, queue, Collections.emptyMap());
+                workerQueue.publish(taskInformation, output, queue, envelope.writeHeaders(responseMessage, Collections.emptyMap()));
             } catch (final QueueException ex) {
                 throw new RuntimeException(ex);
             }
@@ -467,6 +481,33 @@ final class WorkerCore
          */
         @Override
         public void complete(final TaskInformation taskInformation, final String queue, final TaskMessage responseMessage)
+        {
+            completeTask(taskInformation, queue, responseMessage, null);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * The action is registered with the queue before the response is handed off, so it runs once the queue has acknowledged the
+         * incoming message.
+         */
+        @Override
+        public void complete(
+            final TaskInformation taskInformation,
+            final String queue,
+            final TaskMessage responseMessage,
+            final Runnable onAcknowledged
+        )
+        {
+            completeTask(taskInformation, queue, responseMessage, Objects.requireNonNull(onAcknowledged));
+        }
+
+        private void completeTask(
+            final TaskInformation taskInformation,
+            final String queue,
+            final TaskMessage responseMessage,
+            final Runnable onAcknowledged
+        )
         {
             Objects.requireNonNull(taskInformation);
             Objects.requireNonNull(responseMessage);
@@ -475,6 +516,9 @@ final class WorkerCore
             LOG.debug("Setting destination {} in task {} (message id: {})", queue, responseMessage.getTaskId(), taskInformation.getInboundMessageId());
             responseMessage.setTo(queue);
             checkForTrackingTermination(taskInformation, queue, responseMessage);
+            if (onAcknowledged != null) {
+                workerQueue.whenAcknowledged(taskInformation, onAcknowledged);
+            }
             try {
                 if (null == queue) {
                     // **** Dead End Worker ****
@@ -490,8 +534,9 @@ final class WorkerCore
                 } else {
                     // **** Normal Worker ****                    
                     // A worker with an input and output queue.
-                    final byte[] output = codec.serialise(responseMessage);
-                    workerQueue.publish(taskInformation, output, queue, Collections.emptyMap(), true);
+                    final byte[] output = envelope.writeBody(responseMessage);
+                    workerQueue.publish(taskInformation, output, queue, envelope.writeHeaders(responseMessage, Collections.emptyMap()),
+                                        true);
                     stats.getOutputSizes().update(output.length);
                 }
                 stats.updatedLastTaskFinishedTime();
@@ -531,8 +576,8 @@ final class WorkerCore
                     workerQueue.acknowledgeTask(taskInformation);
                 } else {
                     // Else forward the task
-                    final byte[] output = codec.serialise(forwardedMessage);
-                    workerQueue.publish(taskInformation, output, queue, headers, true);
+                    final byte[] output = envelope.writeForwardedBody(forwardedMessage, stats::addForwardedBytesReused);
+                    workerQueue.publish(taskInformation, output, queue, envelope.writeHeaders(forwardedMessage, headers), true);
                     stats.incrementTasksForwarded();
                     //TODO - I'm guessing this stat should not be updated for forwarded messages:
                     // stats.getOutputSizes().update(output.length);
@@ -553,8 +598,8 @@ final class WorkerCore
             LOG.debug("Task {} (message id: {}) being forwarded to paused queue {}",
                       taskMessage.getTaskId(), taskInformation.getInboundMessageId(), pausedQueue);
             try {
-                final byte[] taskMessageBytes = codec.serialise(taskMessage);
-                workerQueue.publish(taskInformation, taskMessageBytes, pausedQueue, headers, true);
+                final byte[] taskMessageBytes = envelope.writeForwardedBody(taskMessage, stats::addForwardedBytesReused);
+                workerQueue.publish(taskInformation, taskMessageBytes, pausedQueue, envelope.writeHeaders(taskMessage, headers), true);
                 stats.incrementTasksPaused();
             } catch (final CodecException | QueueException e) {
                 LOG.error("Cannot publish data for task: {} to paused queue: {}, rejecting", taskMessage.getTaskId(), pausedQueue, e);
@@ -580,13 +625,14 @@ final class WorkerCore
 
             final byte[] output;
             try {
-                output = codec.serialise(reportUpdateMessage);
+                output = envelope.writeBody(reportUpdateMessage);
             } catch (final CodecException ex) {
                 throw new RuntimeException(ex);
             }
 
             try {                
-                workerQueue.publish(taskInformation, output, reportUpdateMessage.getTo(), Collections.emptyMap());
+                workerQueue.publish(taskInformation, output, reportUpdateMessage.getTo(),
+                                    envelope.writeHeaders(reportUpdateMessage, Collections.emptyMap()));
             } catch (final QueueException ex) {
                 throw new RuntimeException(ex);
             }
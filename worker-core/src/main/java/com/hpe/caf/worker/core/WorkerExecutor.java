@@ -33,6 +33,8 @@ final class WorkerExecutor
     private final WorkerCallback callback;
     private final WorkerFactory factory;
     private final WorkerThreadPool threadPool;
+    private final TrackingReportAggregator reportAggregator;
+    private final ClaimCheck claimCheck;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerExecutor.class);
 
     /**
@@ -49,11 +51,53 @@ final class WorkerExecutor
         final WorkerFactory workerFactory,
         final WorkerThreadPool pool
     )
+    {
+        this(path, callback, workerFactory, pool, null);
+    }
+
+    /**
+     * Create a WorkerWrapperFactory whose tasks send their progress reports through a report aggregator.
+     *
+     * @param path the service path of this worker service
+     * @param callback the callback the wrappers use when a task completes
+     * @param workerFactory the origin of the Worker objects themselves
+     * @param reportAggregator the aggregator to send progress reports through, or null to send each task's reports separately
+     */
+    public WorkerExecutor(
+        final ServicePath path,
+        final WorkerCallback callback,
+        final WorkerFactory workerFactory,
+        final WorkerThreadPool pool,
+        final TrackingReportAggregator reportAggregator
+    )
+    {
+        this(path, callback, workerFactory, pool, reportAggregator, null);
+    }
+
+    /**
+     * Create a WorkerWrapperFactory whose tasks resolve claim checks for task data held in the data store.
+     *
+     * @param path the service path of this worker service
+     * @param callback the callback the wrappers use when a task completes
+     * @param workerFactory the origin of the Worker objects themselves
+     * @param reportAggregator the aggregator to send progress reports through, or null to send each task's reports separately
+     * @param claimCheck the claim check to move large task data to the data store with, or null to always send task data in messages
+     */
+    public WorkerExecutor(
+        final ServicePath path,
+        final WorkerCallback callback,
+        final WorkerFactory workerFactory,
+        final WorkerThreadPool pool,
+        final TrackingReportAggregator reportAggregator,
+        final ClaimCheck claimCheck
+    )
     {
         this.servicePath = Objects.requireNonNull(path);
         this.callback = Objects.requireNonNull(callback);
         this.factory = Objects.requireNonNull(workerFactory);
         this.threadPool = Objects.requireNonNull(pool);
+        this.reportAggregator = reportAggregator;
+        this.claimCheck = claimCheck;
     }
 
     /**
@@ -151,6 +195,9 @@ final class WorkerExecutor
     {
         LOG.warn("Discarding task {} (message id: {})", tm.getTaskId(), taskInformation.getInboundMessageId());
         callback.discard(taskInformation);
+        if (claimCheck != null && ClaimCheck.isClaimCheck(tm)) {
+            claimCheck.release(tm.getTaskData());
+        }
     }
 
     /**
@@ -159,6 +206,7 @@ final class WorkerExecutor
     private WorkerTaskImpl createWorkerTask(final TaskInformation taskInformation, final TaskMessage taskMessage, 
                                             final Map<String, Object> headers, final Codec codec)
     {
-        return new WorkerTaskImpl(servicePath, callback, factory, taskInformation, taskMessage, headers, codec);
+        return new WorkerTaskImpl(servicePath, callback, factory, taskInformation, taskMessage, headers, codec, reportAggregator,
+                                  claimCheck);
     }
 }
@@ -33,6 +33,7 @@ class WorkerStats
     private final AtomicLong tasksForwarded = new AtomicLong(0);
     private final AtomicLong tasksPaused = new AtomicLong(0);
     private final AtomicLong tasksDiscarded = new AtomicLong(0);
+    private final AtomicLong forwardedBytesReused = new AtomicLong(0);
     private final AtomicLong lastTaskFinished = new AtomicLong(System.currentTimeMillis());
     private final Histogram inputSizes = new Histogram(new ExponentiallyDecayingReservoir());
     private final Histogram outputSizes = new Histogram(new ExponentiallyDecayingReservoir());
@@ -146,6 +147,20 @@ class WorkerStats
         tasksDiscarded.incrementAndGet();
     }
 
+    /**
+     * @return the number of bytes of forwarded and paused tasks which were republished from the messages they arrived in, rather than
+     * being encoded again
+     */
+    public long getForwardedBytesReused()
+    {
+        return forwardedBytesReused.get();
+    }
+
+    public void addForwardedBytesReused(final long bytes)
+    {
+        forwardedBytesReused.addAndGet(bytes);
+    }
+
     /**
      * @return the time (in milliseconds) the most recent task completed (or the startup time, if no task has been done yet)
      */
@@ -20,6 +20,8 @@ import com.hpe.caf.api.Codec;
 import com.hpe.caf.api.CodecException;
 import com.hpe.caf.api.worker.*;
 import com.hpe.caf.naming.ServicePath;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -63,6 +65,9 @@ class WorkerTaskImpl implements WorkerTask
     private final boolean poison;
     private final Codec codec;
     private final Map<String, Object> headers;
+    private final TrackingReportAggregator reportAggregator;
+    private final ClaimCheck claimCheck;
+    private volatile byte[] resolvedData;
 
     public WorkerTaskImpl(
             final ServicePath servicePath,
@@ -73,6 +78,35 @@ class WorkerTaskImpl implements WorkerTask
             final Map<String, Object> headers,
             final Codec codec
     )
+    {
+        this(servicePath, workerCallback, workerFactory, taskInformation, taskMessage, headers, codec, null);
+    }
+
+    public WorkerTaskImpl(
+            final ServicePath servicePath,
+            final WorkerCallback workerCallback,
+            final WorkerFactory workerFactory,
+            final TaskInformation taskInformation,
+            final TaskMessage taskMessage,
+            final Map<String, Object> headers,
+            final Codec codec,
+            final TrackingReportAggregator reportAggregator
+    )
+    {
+        this(servicePath, workerCallback, workerFactory, taskInformation, taskMessage, headers, codec, reportAggregator, null);
+    }
+
+    public WorkerTaskImpl(
+            final ServicePath servicePath,
+            final WorkerCallback workerCallback,
+            final WorkerFactory workerFactory,
+            final TaskInformation taskInformation,
+            final TaskMessage taskMessage,
+            final Map<String, Object> headers,
+            final Codec codec,
+            final TrackingReportAggregator reportAggregator,
+            final ClaimCheck claimCheck
+    )
     {
         this.servicePath = servicePath;
         this.workerCallback = workerCallback;
@@ -88,6 +122,8 @@ class WorkerTaskImpl implements WorkerTask
         this.poison = taskInformation.isPoison();
         this.headers = headers;
         this.codec = codec;
+        this.reportAggregator = reportAggregator;
+        this.claimCheck = claimCheck;
     }
 
     @Override
@@ -111,7 +147,26 @@ class WorkerTaskImpl implements WorkerTask
     @Override
     public byte[] getData()
     {
-        return taskMessage.getTaskData();
+        final byte[] taskData = taskMessage.getTaskData();
+        if (claimCheck == null || !ClaimCheck.isClaimCheck(taskData)) {
+            return taskData;
+        }
+        // The task data was moved to the data store by the sender, so it is read from there the first time it is needed
+        byte[] data = resolvedData;
+        if (data == null) {
+            data = claimCheck.retrieve(taskData);
+            resolvedData = data;
+        }
+        return data;
+    }
+
+    @Override
+    public InputStream getDataStream()
+    {
+        final byte[] taskData = taskMessage.getTaskData();
+        return claimCheck == null || !ClaimCheck.isClaimCheck(taskData) || resolvedData != null
+            ? new ByteArrayInputStream(getData())
+            : claimCheck.stream(taskData);
     }
 
     @Override
@@ -194,9 +249,14 @@ class WorkerTaskImpl implements WorkerTask
             trackingInfo = getTrackingInfoWithChanges(response.getTrackTo());
         }
 
+        // Only offload the data of responses which are published, as nothing would release the data stored for any other response
+        final byte[] responseData = claimCheck == null || response.getQueueReference() == null
+            ? response.getData()
+            : claimCheck.offload(response.getData());
+
         final TaskMessage responseMessage = new TaskMessage(
             taskMessage.getTaskId(), responseMessageType,
-            response.getApiVersion(), response.getData(),
+            response.getApiVersion(), responseData,
             response.getTaskStatus(), responseContext,
             response.getQueueReference(), trackingInfo,
             new TaskSourceInfo(getWorkerName(responseMessageType), getWorkerVersion()), taskMessage.getCorrelationId());
@@ -204,6 +264,18 @@ class WorkerTaskImpl implements WorkerTask
         return responseMessage;
     }
 
+    /**
+     * @return the context of the task message, or null if it cannot be decoded, which makes the task invalid
+     */
+    private Map<String, byte[]> getContextIfDecodable()
+    {
+        try {
+            return taskMessage.getContext();
+        } catch (final IllegalStateException e) {
+            return null;
+        }
+    }
+
     private TrackingInfo getTrackingInfoWithChanges(final String trackTo) {
         TrackingInfo trackingInfo = null;
 
@@ -224,6 +296,10 @@ class WorkerTaskImpl implements WorkerTask
         LOG.info("Worker requested to abandon task {} (message id: {})",
                  taskMessage.getTaskId(), taskMessage, taskRejectedException);
 
+        // The task will not be completed, so the report aggregator need not keep track of it
+        if (reportAggregator != null) {
+            reportAggregator.forget(taskInformation);
+        }
         workerCallback.abandon(taskInformation, taskRejectedException);
     }
 
@@ -246,7 +322,7 @@ class WorkerTaskImpl implements WorkerTask
                 ? new byte[]{} : invalidTaskExceptionMessage.getBytes(StandardCharsets.UTF_8);
 
         final Map<String, byte[]> context = MoreObjects.firstNonNull(
-            taskMessage.getContext(),
+            getContextIfDecodable(),
             Collections.<String, byte[]>emptyMap());
 
         final TaskMessage invalidResponse = new TaskMessage(
@@ -267,9 +343,25 @@ class WorkerTaskImpl implements WorkerTask
     public Worker createWorker()
         throws InvalidTaskException, TaskRejectedException
     {
+        decodePayload();
         return workerFactory.getWorker(this);
     }
 
+    /**
+     * Decode the task data and context of the task message if they were read without being decoded, so that a payload which cannot be
+     * decoded makes the task invalid rather than failing the worker factory.
+     */
+    private void decodePayload()
+        throws InvalidTaskException
+    {
+        try {
+            taskMessage.getTaskData();
+            taskMessage.getContext();
+        } catch (final IllegalStateException e) {
+            throw new InvalidTaskException("Task message payload could not be decoded", e);
+        }
+    }
+
     public void logInterruptedException(final InterruptedException interruptedException)
     {
         LOG.warn("Worker interrupt signalled, not performing callback for task {} (message id: {})",
@@ -315,6 +407,14 @@ class WorkerTaskImpl implements WorkerTask
         return poison;
     }
 
+    /**
+     * @return the priority of the task message, or null if it has none
+     */
+    public Integer getPriority()
+    {
+        return taskMessage.getPriority();
+    }
+
     private String getWorkerName(final String defaultName)
     {
         final com.hpe.caf.api.worker.WorkerConfiguration workerConfig = workerFactory.getWorkerConfiguration();
@@ -546,8 +646,24 @@ class WorkerTaskImpl implements WorkerTask
         //  Ensure all report updates have been sent.
         progressReportBuffer.flush();
         
-        // Complete the task
-        workerCallback.complete(taskInformation, responseMessage.getTo(), responseMessage);
+        // Complete the task, once any report updates held by the report aggregator have been sent
+        if (reportAggregator == null) {
+            completeTask(responseMessage);
+        } else {
+            reportAggregator.whenReportsPublished(taskInformation, () -> completeTask(responseMessage));
+        }
+    }
+
+    private void completeTask(final TaskMessage responseMessage)
+    {
+        if (claimCheck != null && ClaimCheck.isClaimCheck(taskMessage)) {
+            final byte[] taskData = taskMessage.getTaskData();
+            // The task data held in the data store is no longer needed once the message it arrived on has been acknowledged, as it
+            // cannot then be redelivered
+            workerCallback.complete(taskInformation, responseMessage.getTo(), responseMessage, () -> claimCheck.release(taskData));
+        } else {
+            workerCallback.complete(taskInformation, responseMessage.getTo(), responseMessage);
+        }
     }
 
     /**
@@ -604,6 +720,12 @@ class WorkerTaskImpl implements WorkerTask
             return;
         }
 
+        //  Hand the progress report updates to the report aggregator to send with those of other tasks, if there is one.
+        if (reportAggregator != null) {
+            reportAggregator.add(taskInformation, trackingPipe, trackingReportTask.trackingReports);
+            return;
+        }
+
         //  Serialise the list of progress report updates to send.
         final byte[] reportUpdatesTaskData;
         try {
@@ -16,6 +16,7 @@
 package com.hpe.caf.worker.core;
 
 import com.hpe.caf.api.worker.BulkWorker;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
 import com.hpe.caf.api.worker.TaskRejectedException;
 import com.hpe.caf.api.worker.WorkerFactory;
 import java.util.concurrent.TimeUnit;
@@ -36,10 +37,20 @@ interface WorkerThreadPool
 
     static WorkerThreadPool create(final WorkerFactory workerFactory, final Runnable handler)
     {
+        final String maxBacklogEnv = System.getenv("CAF_WORKER_MAX_BACKLOG");
+        final int maxBacklog = maxBacklogEnv == null ? 0 : Integer.parseInt(maxBacklogEnv);
+        final PriorityBacklog priorityBacklog = PriorityBacklog.fromEnvironment();
         if (workerFactory instanceof BulkWorker) {
-            return new BulkWorkerThreadPool(workerFactory, handler);
+            final String backupThreadsEnv = System.getenv("CAF_WORKER_BULK_BACKUP_THREADS");
+            final int backupThreads = backupThreadsEnv == null ? workerFactory.getWorkerThreads() : Integer.parseInt(backupThreadsEnv);
+            return new BulkWorkerThreadPool(
+                workerFactory, maxBacklog, backupThreads, priorityBacklog, BatchSizeController.fromEnvironment(), handler);
+        } else if (Boolean.parseBoolean(System.getenv("CAF_WORKER_VIRTUAL_THREADS"))) {
+            final String concurrencyEnv = System.getenv("CAF_WORKER_VIRTUAL_THREAD_CONCURRENCY");
+            final int concurrency = concurrencyEnv == null ? workerFactory.getWorkerThreads() : Integer.parseInt(concurrencyEnv);
+            return new VirtualWorkerThreadPool(concurrency, maxBacklog, priorityBacklog, handler);
         } else {
-            return create(workerFactory.getWorkerThreads(), handler);
+            return new StreamingWorkerThreadPool(workerFactory.getWorkerThreads(), maxBacklog, priorityBacklog, handler);
         }
     }
 
@@ -48,6 +59,19 @@ interface WorkerThreadPool
         return new StreamingWorkerThreadPool(nThreads, handler);
     }
 
+    /**
+     * Create a pool which runs each task on a virtual thread of its own, limiting the number of tasks running at once rather than the
+     * number of threads.
+     *
+     * @param maxConcurrentTasks the maximum number of tasks to run at once
+     * @param handler the handler to run if a task terminates with an unhandled throwable
+     * @return the new pool
+     */
+    static WorkerThreadPool createVirtual(final int maxConcurrentTasks, final Runnable handler)
+    {
+        return new VirtualWorkerThreadPool(maxConcurrentTasks, 0, handler);
+    }
+
     void shutdown();
 
     void awaitTermination(long timeout, TimeUnit unit)
@@ -62,6 +86,40 @@ interface WorkerThreadPool
 
     int getBacklogSize();
 
+    /**
+     * Returns the maximum number of tasks that the pool will run at once
+     *
+     * @return the concurrency limit of the pool
+     */
+    int getMaxConcurrentTasks();
+
+    /**
+     * Returns the controller that recommends the batch size of a bulk worker
+     *
+     * @return the controller, or null if the pool does not run a bulk worker or adaptive batch sizing is not enabled
+     */
+    default BatchSizeController getBatchSizeController()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the settings that the backlog is ordered by priority with
+     *
+     * @return the settings, or null if tasks are run in the order they were submitted
+     */
+    default PriorityBacklog getPriorityBacklog()
+    {
+        return null;
+    }
+
+    /**
+     * Set the queue whose incoming messages are paused while the backlog is full. Has no effect if the backlog is not limited.
+     *
+     * @param workerQueue the queue that tasks are received from
+     */
+    void setBackpressureQueue(ManagedWorkerQueue workerQueue);
+
     /**
      * Execute the specified task at some point in the future
      *
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BacklogLimiterTest
+{
+    @Test
+    public void testStaleSizeDoesNotLeaveIncomingQueuePaused()
+    {
+        final BacklogLimiter limiter = new BacklogLimiter(4);
+        final ManagedWorkerQueue workerQueue = Mockito.mock(ManagedWorkerQueue.class);
+        limiter.setWorkerQueue(workerQueue);
+        limiter.setBacklogSize(() -> 0);
+
+        // The backlog was full when the size was read, but has been emptied since
+        limiter.backlogChanged(4);
+
+        Assert.assertFalse(limiter.isPaused());
+        Mockito.verify(workerQueue, Mockito.never()).pauseIncoming();
+    }
+
+    @Test
+    public void testBacklogEmptiedDuringPauseResumesIncomingQueue()
+    {
+        final BacklogLimiter limiter = new BacklogLimiter(4);
+        final ManagedWorkerQueue workerQueue = Mockito.mock(ManagedWorkerQueue.class);
+        limiter.setWorkerQueue(workerQueue);
+        final int[] size = {4};
+        limiter.setBacklogSize(() -> size[0]);
+        Mockito.doAnswer(invocation -> size[0] = 0).when(workerQueue).pauseIncoming();
+
+        limiter.backlogChanged(4);
+
+        Assert.assertFalse(limiter.isPaused());
+        final InOrder inOrder = Mockito.inOrder(workerQueue);
+        inOrder.verify(workerQueue).pauseIncoming();
+        inOrder.verify(workerQueue).resumeIncoming();
+    }
+
+    @Test
+    public void testConcurrentOffersAndDrainsLeaveIncomingQueueRunning()
+        throws Exception
+    {
+        final int producers = 4;
+        final int consumers = 4;
+        final int tasksPerProducer = 20_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            for (int run = 0; run < 10; run++) {
+                final BacklogLimiter limiter = new BacklogLimiter(4);
+                limiter.setWorkerQueue(Mockito.mock(ManagedWorkerQueue.class));
+                final BlockingQueue<Integer> queue = new BacklogQueue<>(limiter);
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<?>> producing = new ArrayList<>();
+                for (int i = 0; i < producers; i++) {
+                    producing.add(executor.submit(() -> {
+                        start.await();
+                        for (int task = 0; task < tasksPerProducer; task++) {
+                            queue.offer(task);
+                        }
+                        return null;
+                    }));
+                }
+                final List<Future<?>> consuming = new ArrayList<>();
+                for (int i = 0; i < consumers; i++) {
+                    consuming.add(executor.submit(() -> {
+                        start.await();
+                        while (!producing.stream().allMatch(Future::isDone) || !queue.isEmpty()) {
+                            queue.poll(1, TimeUnit.MILLISECONDS);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (final Future<?> future : producing) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+                for (final Future<?> future : consuming) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+
+                Assert.assertTrue(queue.isEmpty());
+                Assert.assertFalse(limiter.isPaused(), "The incoming queue was left paused with an empty backlog");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
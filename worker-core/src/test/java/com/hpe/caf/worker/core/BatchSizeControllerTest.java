@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BatchSizeControllerTest
+{
+    @Test
+    public void testBatchSizeGrowsToLatencyTarget()
+    {
+        final BatchSizeController controller = new BatchSizeController(50, 1, 1000, 5, false);
+
+        // Each batch costs 2 ms plus 0.1 ms per task, so larger batches always give more throughput until the target is reached
+        for (int i = 0; i < 200; i++) {
+            final int batchSize = controller.getBatchSize();
+            controller.record(batchSize, 2_000_000 + batchSize * 100_000L);
+        }
+
+        Assert.assertTrue(controller.getBatchSize() > 300, "Batch size " + controller.getBatchSize());
+        Assert.assertTrue(controller.getBatchSize() <= 500, "Batch size " + controller.getBatchSize());
+        Assert.assertTrue(controller.getBatchLatencyMillis() <= 50);
+        Assert.assertTrue(controller.getAdjustments() > 0);
+        Assert.assertEquals(controller.getLingerMillis(), 0);
+    }
+
+    @Test
+    public void testBatchSizeCutWhenOverLatencyTarget()
+    {
+        final BatchSizeController controller = new BatchSizeController(50, 1, 1000, 5, false);
+        for (int i = 0; i < 200; i++) {
+            final int batchSize = controller.getBatchSize();
+            controller.record(batchSize, 2_000_000 + batchSize * 100_000L);
+        }
+
+        // Once the tasks become four times as costly the batches are cut back to meet the target
+        for (int i = 0; i < 50; i++) {
+            final int batchSize = controller.getBatchSize();
+            controller.record(batchSize, 2_000_000 + batchSize * 400_000L);
+        }
+
+        Assert.assertTrue(controller.getBatchSize() <= 125, "Batch size " + controller.getBatchSize());
+        Assert.assertTrue(controller.getBatchLatencyMillis() <= 51);
+    }
+
+    @Test
+    public void testLingerRaisedWhenBatchesNotFull()
+    {
+        final BatchSizeController controller = new BatchSizeController(50, 1, 1000, 5, false);
+        final int batchSize = controller.getBatchSize();
+
+        for (int i = 0; i < 30; i++) {
+            controller.record(3, 1_000_000);
+        }
+
+        Assert.assertEquals(controller.getLingerMillis(), 5);
+        Assert.assertEquals(controller.getBatchSize(), batchSize);
+        Assert.assertEquals(controller.getTasksPerBatch(), 3.0);
+    }
+}
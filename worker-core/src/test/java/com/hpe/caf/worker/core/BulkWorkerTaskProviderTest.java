@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerResponse;
+import com.hpe.caf.api.worker.WorkerTask;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class BulkWorkerTaskProviderTest
+{
+    @Test
+    public void testGetNextWorkerTasksDrainsBatch()
+        throws InterruptedException
+    {
+        final WorkerTaskImpl first = Mockito.mock(WorkerTaskImpl.class);
+        final BlockingQueue<WorkerTaskImpl> workQueue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 5; i++) {
+            workQueue.add(Mockito.mock(WorkerTaskImpl.class));
+        }
+        final BulkWorkerTaskProvider provider = new BulkWorkerTaskProvider(first, workQueue);
+
+        final List<WorkerTask> batch = provider.getNextWorkerTasks(4, 0);
+        Assert.assertEquals(batch.size(), 4);
+        Assert.assertSame(batch.get(0), first);
+        Assert.assertTrue(provider.isFirstTaskConsumed());
+        Assert.assertEquals(workQueue.size(), 2);
+
+        // The rest of the queue is taken, and then nothing is left to wait for
+        Assert.assertEquals(provider.getNextWorkerTasks(4, 0).size(), 2);
+        Assert.assertTrue(provider.getNextWorkerTasks(4, 10).isEmpty());
+        Assert.assertEquals(provider.getConsumedTasks().spliterator().getExactSizeIfKnown(), 6);
+    }
+
+    @Test
+    public void testLingerFillsBatch()
+        throws InterruptedException
+    {
+        final BlockingQueue<WorkerTaskImpl> workQueue = new LinkedBlockingQueue<>();
+        final BulkWorkerTaskProvider provider = new BulkWorkerTaskProvider(Mockito.mock(WorkerTaskImpl.class), workQueue);
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(() -> workQueue.add(Mockito.mock(WorkerTaskImpl.class)), 50, TimeUnit.MILLISECONDS);
+
+            // Without lingering only the first task is returned, and with it the batch waits for the task added later
+            Assert.assertEquals(provider.getNextWorkerTasks(2, 0).size(), 1);
+            final long start = System.nanoTime();
+            Assert.assertEquals(provider.getNextWorkerTasks(2, 5000, 0).size(), 1);
+            workQueue.add(Mockito.mock(WorkerTaskImpl.class));
+            executor.schedule(() -> workQueue.add(Mockito.mock(WorkerTaskImpl.class)), 50, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(provider.getNextWorkerTasks(2, 0, 5000).size(), 2);
+            // The batch is returned as soon as it is full rather than at the end of the linger time
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEnforcedBatchSizeLimitsBatch()
+        throws InterruptedException
+    {
+        final BlockingQueue<WorkerTaskImpl> workQueue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 40; i++) {
+            workQueue.add(Mockito.mock(WorkerTaskImpl.class));
+        }
+        final BatchSizeController controller = new BatchSizeController(50, 1, 1000, 5, true);
+        final BulkWorkerTaskProvider provider
+            = new BulkWorkerTaskProvider(Mockito.mock(WorkerTaskImpl.class), workQueue, null, controller);
+        final int batchSize = controller.getBatchSize();
+        Assert.assertEquals(provider.getRecommendedBatchSize(), batchSize);
+
+        // The batch stops at the recommended size however many tasks are asked for
+        Assert.assertEquals(provider.getNextWorkerTasks(batchSize - 1, 0).size(), batchSize - 1);
+        Assert.assertNotNull(provider.getNextWorkerTask());
+        Assert.assertNull(provider.getNextWorkerTask());
+        Assert.assertNull(provider.getNextWorkerTask(10));
+        Assert.assertTrue(provider.getNextWorkerTasks(10, 10).isEmpty());
+        Assert.assertEquals(provider.getConsumedTaskCount(), batchSize);
+        Assert.assertEquals(workQueue.size(), 41 - batchSize);
+    }
+
+    @Test
+    public void testSetResponsesHandsOffTogether()
+    {
+        final ManagedWorkerQueue workerQueue = Mockito.mock(ManagedWorkerQueue.class);
+        final WorkerTaskImpl first = Mockito.mock(WorkerTaskImpl.class);
+        final WorkerTaskImpl second = Mockito.mock(WorkerTaskImpl.class);
+        final BulkWorkerTaskProvider provider = new BulkWorkerTaskProvider(first, new LinkedBlockingQueue<>(), workerQueue);
+        final WorkerResponse response = new WorkerResponse("out", TaskStatus.RESULT_SUCCESS, new byte[0], "Result", 1, null);
+
+        final Map<WorkerTask, WorkerResponse> responses = new LinkedHashMap<>();
+        for (final WorkerTaskImpl task : Arrays.asList(first, second)) {
+            responses.put(task, response);
+        }
+        provider.setResponses(responses);
+
+        final InOrder inOrder = Mockito.inOrder(workerQueue, first, second);
+        inOrder.verify(workerQueue).holdPublishes();
+        inOrder.verify(first).setResponse(response);
+        inOrder.verify(second).setResponse(response);
+        inOrder.verify(workerQueue).releasePublishes();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.DataStore;
+import com.hpe.caf.api.worker.DataStoreException;
+import com.hpe.caf.api.worker.TaskFailedException;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerCallback;
+import com.hpe.caf.api.worker.WorkerFactory;
+import com.hpe.caf.api.worker.WorkerResponse;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.naming.ServicePath;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ClaimCheckTest
+{
+    @Test
+    public void testLargeTaskDataMovedToDataStore()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        final byte[] taskData = new byte[100];
+        Mockito.when(store.store(taskData, "partial")).thenReturn("partial/ref");
+        Mockito.when(store.retrieve("partial/ref")).thenReturn(new ByteArrayInputStream(taskData));
+        final ClaimCheck claimCheck = new ClaimCheck(store, 50, "partial");
+
+        final byte[] sent = claimCheck.offload(taskData);
+        Assert.assertTrue(ClaimCheck.isClaimCheck(sent));
+        Assert.assertTrue(sent.length < taskData.length);
+        Assert.assertEquals(claimCheck.retrieve(sent), taskData);
+
+        claimCheck.release(sent);
+        Mockito.verify(store, Mockito.timeout(5000)).delete("partial/ref");
+    }
+
+    @Test
+    public void testReleaseDoesNotWaitForDataStore()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        final CountDownLatch deleting = new CountDownLatch(1);
+        Mockito.when(store.store(Mockito.any(byte[].class), Mockito.any())).thenReturn("ref");
+        Mockito.doAnswer(invocation -> {
+            deleting.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(store).delete("ref");
+        final ClaimCheck claimCheck = new ClaimCheck(store, 50, null);
+
+        // The data store holding up the delete does not hold up the thread releasing the claim check
+        claimCheck.release(claimCheck.offload(new byte[100]));
+        Mockito.verify(store, Mockito.timeout(5000)).delete("ref");
+        deleting.countDown();
+
+        // Once shut down, claim checks are released by the calling thread
+        claimCheck.shutdown();
+        Mockito.when(store.store(Mockito.any(byte[].class), Mockito.any())).thenReturn("ref2");
+        claimCheck.release(claimCheck.offload(new byte[100]));
+        Mockito.verify(store).delete("ref2");
+    }
+
+    @Test
+    public void testSmallTaskDataSentInMessage()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        final byte[] taskData = "task data".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertSame(new ClaimCheck(store, 50, null).offload(taskData), taskData);
+        Assert.assertEquals(new ClaimCheck(store, 0, null).offload(new byte[100]).length, 100);
+        Assert.assertFalse(ClaimCheck.isClaimCheck(taskData));
+        Mockito.verifyNoInteractions(store);
+    }
+
+    @Test
+    public void testDataStoreFailures()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        final byte[] taskData = new byte[100];
+        Mockito.when(store.store(taskData, null)).thenThrow(new DataStoreException("Store failed"));
+        final ClaimCheck claimCheck = new ClaimCheck(store, 50, null);
+
+        // Task data which cannot be stored is sent in the message instead
+        Assert.assertSame(claimCheck.offload(taskData), taskData);
+
+        // Task data which cannot be retrieved fails the task
+        Mockito.reset(store);
+        Mockito.when(store.store(taskData, null)).thenReturn("ref");
+        Mockito.when(store.retrieve("ref")).thenThrow(new DataStoreException("Retrieve failed"));
+        final byte[] sent = claimCheck.offload(taskData);
+        Assert.assertThrows(TaskFailedException.class, () -> claimCheck.retrieve(sent));
+    }
+
+    @Test
+    public void testClaimCheckFoundWithoutDecodingOtherTaskData()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        Mockito.when(store.store(Mockito.any(byte[].class), Mockito.any())).thenReturn("ref");
+        final byte[] claimCheck = new ClaimCheck(store, 50, null).offload(new byte[100]);
+        final JsonCodec codec = new JsonCodec();
+        final JsonTaskMessageReader reader = new JsonTaskMessageReader(codec);
+
+        final TaskMessage claimChecked = reader.read(codec.serialise(createTaskMessage(claimCheck)));
+        Assert.assertTrue(ClaimCheck.isClaimCheck(claimChecked));
+
+        // Task data which is not a claim check is left undecoded, even if it could not be decoded
+        final TaskMessage plain = reader.read(codec.serialise(createTaskMessage(new byte[100])));
+        Assert.assertFalse(ClaimCheck.isClaimCheck(plain));
+        Assert.assertNotNull(plain.deferredPayload());
+        final TaskMessage malformed = reader.read(("{\"taskId\":\"task1\",\"taskClassifier\":\"classifier\",\"taskApiVersion\":1,"
+            + "\"taskData\":\"!!!!\",\"taskStatus\":\"NEW_TASK\",\"context\":{},\"to\":\"out\"}").getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(ClaimCheck.isClaimCheck(malformed));
+    }
+
+    @Test
+    public void testOnlyPublishedResponseDataMovedToDataStore()
+        throws Exception
+    {
+        final DataStore store = Mockito.mock(DataStore.class);
+        final byte[] responseData = new byte[100];
+        Mockito.when(store.store(responseData, null)).thenReturn("ref");
+        final ClaimCheck claimCheck = new ClaimCheck(store, 50, null);
+
+        // A response without a queue is not published, so nothing would release its data if it were moved to the data store
+        final WorkerCallback unpublishedCallback = Mockito.mock(WorkerCallback.class);
+        createTask(unpublishedCallback, claimCheck).setResponse(
+            new WorkerResponse(null, TaskStatus.RESULT_SUCCESS, responseData, "test", 1, null));
+        Assert.assertSame(getCompletedMessage(unpublishedCallback).getTaskData(), responseData);
+        Mockito.verifyNoInteractions(store);
+
+        final WorkerCallback publishedCallback = Mockito.mock(WorkerCallback.class);
+        createTask(publishedCallback, claimCheck).setResponse(
+            new WorkerResponse("out", TaskStatus.RESULT_SUCCESS, responseData, "test", 1, null));
+        Assert.assertTrue(ClaimCheck.isClaimCheck(getCompletedMessage(publishedCallback).getTaskData()));
+        Mockito.verify(store).store(responseData, null);
+    }
+
+    private static TaskMessage createTaskMessage(final byte[] taskData)
+    {
+        return new TaskMessage("task1", "classifier", 1, taskData, TaskStatus.NEW_TASK, new HashMap<>(), "out", null, null, null);
+    }
+
+    private static WorkerTaskImpl createTask(final WorkerCallback callback, final ClaimCheck claimCheck)
+        throws Exception
+    {
+        final TaskMessage taskMessage = new TaskMessage();
+        taskMessage.setTaskId("testTask");
+        return new WorkerTaskImpl(new ServicePath("/test/group"), callback, Mockito.mock(WorkerFactory.class),
+                                  Mockito.mock(TaskInformation.class), taskMessage, new HashMap<>(), new JsonCodec(), null, claimCheck);
+    }
+
+    private static TaskMessage getCompletedMessage(final WorkerCallback callback)
+    {
+        final ArgumentCaptor<TaskMessage> message = ArgumentCaptor.forClass(TaskMessage.class);
+        Mockito.verify(callback).complete(Mockito.any(), Mockito.any(), message.capture());
+        return message.getValue();
+    }
+}
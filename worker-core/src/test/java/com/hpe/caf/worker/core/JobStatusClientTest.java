@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.JobNotFoundException;
+import com.hpe.caf.api.worker.JobStatus;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobStatusClientTest
+{
+    private HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final CountDownLatch releaseResponses = new CountDownLatch(1);
+
+    @BeforeMethod
+    public void startServer()
+        throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jobs/", exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                releaseResponses.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (exchange.getRequestURI().getPath().endsWith("/missing/status")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            if (exchange.getRequestURI().getPath().endsWith("/failing/status")) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            final byte[] body = "\"Paused\"".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Cache-Control", "no-transform, max-age=60");
+            if (!exchange.getRequestURI().getPath().endsWith("/uncacheable/status")) {
+                exchange.getResponseHeaders().add("CacheableJobStatus", "true");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterMethod
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneRequest()
+        throws Exception
+    {
+        final JobStatusClient client = new JobStatusClient(5000, 10);
+        final String url = getStatusCheckUrl("J1");
+        final List<CompletableFuture<JobStatusClient.JobStatusResponse>> lookups = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lookups.add(client.getJobStatus("J1", url));
+        }
+        releaseResponses.countDown();
+        for (final CompletableFuture<JobStatusClient.JobStatusResponse> lookup : lookups) {
+            final JobStatusClient.JobStatusResponse response = lookup.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(response.getJobStatus(), JobStatus.Paused);
+            Assert.assertEquals(response.getStatusCheckIntervalMillis(), 60000);
+        }
+        Assert.assertEquals(requestCount.get(), 1);
+
+        // The response is cached for its max-age, so a later lookup is already complete
+        final CompletableFuture<JobStatusClient.JobStatusResponse> cached = client.getJobStatus("J1", url);
+        Assert.assertTrue(cached.isDone());
+        Assert.assertEquals(requestCount.get(), 1);
+        client.shutdown();
+    }
+
+    @Test
+    public void testJobNotFound()
+        throws Exception
+    {
+        final JobStatusClient client = new JobStatusClient(5000, 10);
+        releaseResponses.countDown();
+        final CompletableFuture<JobStatusClient.JobStatusResponse> lookup
+            = client.getJobStatus("missing", getStatusCheckUrl("missing"));
+        try {
+            lookup.join();
+            Assert.fail("Expected the job not to be found");
+        } catch (final CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof JobNotFoundException);
+        }
+        client.shutdown();
+    }
+
+    @Test
+    public void testOnlyCacheableResponsesAreCached()
+        throws Exception
+    {
+        final JobStatusClient client = new JobStatusClient(5000, 10);
+        releaseResponses.countDown();
+        for (final String jobId : new String[]{"missing", "failing", "uncacheable"}) {
+            final int requestsBefore = requestCount.get();
+            for (int i = 0; i < 2; i++) {
+                final CompletableFuture<JobStatusClient.JobStatusResponse> lookup = client.getJobStatus(jobId, getStatusCheckUrl(jobId));
+                try {
+                    Assert.assertEquals(lookup.get(5, TimeUnit.SECONDS).getJobStatus(),
+                                        "uncacheable".equals(jobId) ? JobStatus.Paused : JobStatus.Active);
+                } catch (final ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof JobNotFoundException);
+                }
+            }
+            // Neither lookup was answered from the cache, so a job which is not found yet is checked again
+            Assert.assertEquals(requestCount.get(), requestsBefore + 2, jobId);
+        }
+        client.shutdown();
+    }
+
+    @Test
+    public void testCacheIsBounded()
+        throws Exception
+    {
+        final JobStatusClient client = new JobStatusClient(5000, 2);
+        releaseResponses.countDown();
+        for (final String jobId : new String[]{"J1", "J2", "J3"}) {
+            client.getJobStatus(jobId, getStatusCheckUrl(jobId)).get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(requestCount.get(), 3);
+
+        // J1 was the least recently used job, so it has been evicted
+        client.getJobStatus("J3", getStatusCheckUrl("J3")).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(requestCount.get(), 3);
+        client.getJobStatus("J1", getStatusCheckUrl("J1")).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(requestCount.get(), 4);
+        client.shutdown();
+    }
+
+    @Test
+    public void testUnreachableStatusServiceAssumesActive()
+        throws Exception
+    {
+        final JobStatusClient client = new JobStatusClient(1000, 10);
+        final String url = getStatusCheckUrl("J1");
+        server.stop(0);
+        final JobStatusClient.JobStatusResponse response = client.getJobStatus("J1", url).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(response.getJobStatus(), JobStatus.Active);
+        client.shutdown();
+    }
+
+    private String getStatusCheckUrl(final String jobId)
+    {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/jobs/" + jobId + "/status";
+    }
+}
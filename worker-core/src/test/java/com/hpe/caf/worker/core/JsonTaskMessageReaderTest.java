@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+import com.hpe.caf.api.worker.WorkerCallback;
+import com.hpe.caf.api.worker.WorkerFactory;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.naming.ServicePath;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonTaskMessageReaderTest
+{
+    @Test
+    public void testReadMatchesCodec()
+        throws Exception
+    {
+        final Codec codec = new JsonCodec();
+        final Map<String, byte[]> context = new HashMap<>();
+        context.put("ctx", "context data".getBytes(StandardCharsets.UTF_8));
+        final TaskMessage tm = new TaskMessage("task1", "classifier", 2, "task data".getBytes(StandardCharsets.UTF_8),
+                                               TaskStatus.NEW_TASK, context, "out",
+                                               new TrackingInfo("J1.T1", new Date(1000L), 5000L, "http://status", "tracking", "done"),
+                                               new TaskSourceInfo("worker", "1.0"), "corr1");
+        tm.setPriority(3);
+        final byte[] body = codec.serialise(tm);
+
+        final TaskMessage read = new JsonTaskMessageReader(codec).read(body);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(read.getTaskId(), "task1");
+        Assert.assertEquals(read.getTaskClassifier(), "classifier");
+        Assert.assertEquals(read.getTaskApiVersion(), 2);
+        Assert.assertEquals(read.getTaskStatus(), TaskStatus.NEW_TASK);
+        Assert.assertEquals(read.getTo(), "out");
+        Assert.assertEquals(read.getPriority(), Integer.valueOf(3));
+        Assert.assertEquals(read.getCorrelationId(), "corr1");
+        Assert.assertEquals(read.getTracking().getLastStatusCheckTime(), new Date(1000L));
+        Assert.assertEquals(read.getSourceInfo().getName(), "worker");
+        Assert.assertEquals(read.getTaskData(), tm.getTaskData());
+        Assert.assertEquals(read.getContext().get("ctx"), context.get("ctx"));
+
+        // A message read without decoding its payload serialises exactly as the original did
+        Assert.assertEquals(codec.serialise(new JsonTaskMessageReader(codec).read(body)), body);
+    }
+
+    @Test
+    public void testPayloadNotDecodedUntilAskedFor()
+        throws Exception
+    {
+        final byte[] body = ("{\"taskId\":\"task1\",\"taskClassifier\":\"classifier\",\"taskApiVersion\":1,\"taskData\":\"!!!!\","
+            + "\"taskStatus\":\"NEW_TASK\",\"context\":{},\"to\":\"out\"}").getBytes(StandardCharsets.UTF_8);
+
+        final TaskMessage read = new JsonTaskMessageReader(new JsonCodec()).read(body);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(read.getTo(), "out");
+        Assert.assertTrue(read.getContext().isEmpty());
+        Assert.assertThrows(IllegalStateException.class, read::getTaskData);
+    }
+
+    @Test
+    public void testUndecodablePayloadMakesTaskInvalid()
+        throws Exception
+    {
+        final byte[] body = ("{\"taskId\":\"task1\",\"taskClassifier\":\"classifier\",\"taskApiVersion\":1,\"taskData\":\"!!!!\","
+            + "\"taskStatus\":\"NEW_TASK\",\"context\":{\"ctx\":\"!!!!\"},\"to\":\"out\"}").getBytes(StandardCharsets.UTF_8);
+        final TaskMessage read = new JsonTaskMessageReader(new JsonCodec()).read(body);
+        final WorkerCallback callback = Mockito.mock(WorkerCallback.class);
+        final WorkerFactory workerFactory = Mockito.mock(WorkerFactory.class);
+        Mockito.when(workerFactory.getInvalidTaskQueue()).thenReturn("invalid");
+        final WorkerTaskImpl workerTask = new WorkerTaskImpl(new ServicePath("/test/group"), callback, workerFactory,
+                                                             Mockito.mock(TaskInformation.class), read, new HashMap<>(),
+                                                             new JsonCodec(), null, null);
+
+        // The worker factory is never asked for a worker, and the invalid task response can be sent without the payload
+        final InvalidTaskException invalid = Assert.expectThrows(InvalidTaskException.class, workerTask::createWorker);
+        Mockito.verify(workerFactory, Mockito.never()).getWorker(Mockito.any());
+        workerTask.setResponse(invalid);
+        final ArgumentCaptor<TaskMessage> response = ArgumentCaptor.forClass(TaskMessage.class);
+        Mockito.verify(callback).complete(Mockito.any(), Mockito.eq("invalid"), response.capture());
+        Assert.assertEquals(response.getValue().getTaskStatus(), TaskStatus.INVALID_TASK);
+        Assert.assertTrue(response.getValue().getContext().isEmpty());
+    }
+
+    @Test
+    public void testRewriteReusesOriginalBytes()
+        throws Exception
+    {
+        final Codec codec = new JsonCodec();
+        final TaskMessage tm = new TaskMessage("task1", "classifier", 1, new byte[1024], TaskStatus.NEW_TASK, new HashMap<>(), "out",
+                                               new TrackingInfo("J1.T1", new Date(1000L), 5000L, "http://status", "tracking", "done"));
+        final byte[] body = codec.serialise(tm);
+        final JsonTaskMessageReader reader = new JsonTaskMessageReader(codec);
+        final long[] bytesReused = new long[1];
+
+        // An unchanged message is republished as it arrived
+        Assert.assertSame(JsonTaskMessageReader.rewrite(reader.read(body), codec, n -> bytesReused[0] += n), body);
+        Assert.assertEquals(bytesReused[0], body.length);
+
+        // Only the tracking info is written again when it has changed
+        final TaskMessage checked = reader.read(body);
+        checked.getTracking().setLastStatusCheckTime(new Date(2000L));
+        final TaskMessage rewritten = codec.deserialise(JsonTaskMessageReader.rewrite(checked, codec, n -> { }), TaskMessage.class);
+        Assert.assertEquals(rewritten.getTracking().getLastStatusCheckTime(), new Date(2000L));
+        Assert.assertEquals(rewritten.getTaskData(), tm.getTaskData());
+
+        // Any other change, or decoding the payload, means the message must be serialised again
+        final TaskMessage redirected = reader.read(body);
+        redirected.setTo("elsewhere");
+        Assert.assertNull(JsonTaskMessageReader.rewrite(redirected, codec, n -> Assert.fail("Bytes reused")));
+        final TaskMessage decoded = reader.read(body);
+        decoded.getTaskData();
+        Assert.assertNull(JsonTaskMessageReader.rewrite(decoded, codec, n -> Assert.fail("Bytes reused")));
+    }
+
+    @Test
+    public void testNonJsonLeftToCodec()
+        throws Exception
+    {
+        Assert.assertNull(new JsonTaskMessageReader(new JsonCodec()).read(new byte[]{1, 2, 3}));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.codahale.metrics.Timer;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import java.util.concurrent.TimeUnit;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PrefetchControllerTest
+{
+    @Test
+    public void testPrefetchTracksTaskDuration()
+    {
+        Timer timer = new Timer();
+        WorkerThreadPool wtp = Mockito.mock(WorkerThreadPool.class);
+        Mockito.when(wtp.getMaxConcurrentTasks()).thenReturn(4);
+        Mockito.when(wtp.getBacklogSize()).thenReturn(6);
+        ManagedWorkerQueue queue = Mockito.mock(ManagedWorkerQueue.class);
+        Mockito.when(queue.setPrefetch(Mockito.anyInt())).thenReturn(true);
+        PrefetchController controller = new PrefetchController(timer, wtp, queue, 2000, 100);
+
+        // Nothing has been measured yet
+        controller.adjust();
+        Mockito.verify(queue, Mockito.never()).setPrefetch(Mockito.anyInt());
+
+        // 4 threads each completing a task a second keep a backlog of 8 busy for 2 seconds
+        timer.update(1, TimeUnit.SECONDS);
+        controller.adjust();
+        Mockito.verify(queue).setPrefetch(12);
+        assertEquals(12, controller.getPrefetch());
+        assertEquals(1, controller.getAdjustments());
+        assertEquals(1500, controller.getQueueDelayMillis());
+
+        // A small change is not worth restarting the consumer for
+        timer.update(1, TimeUnit.SECONDS);
+        controller.adjust();
+        assertEquals(1, controller.getAdjustments());
+
+        // Much faster tasks need a larger prefetch, up to the maximum
+        for (int i = 0; i < 1000; i++) {
+            timer.update(10, TimeUnit.MILLISECONDS);
+        }
+        controller.adjust();
+        Mockito.verify(queue).setPrefetch(100);
+        assertEquals(2, controller.getAdjustments());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityBacklogQueueTest
+{
+    @Test
+    public void testHigherPriorityTakenFirst()
+        throws InterruptedException
+    {
+        final PriorityBacklog priorityBacklog = new PriorityBacklog(9, 60_000);
+        final BlockingQueue<Integer> queue = priorityBacklog.createQueue(new BacklogLimiter(0), task -> task / 10);
+
+        // The tens digit is the priority, and tasks of the same priority are taken in the order they were added
+        for (final int task : Arrays.asList(1, 2, 51, 31, 52, 3)) {
+            Assert.assertTrue(queue.offer(task));
+        }
+
+        Assert.assertEquals(queue.peek(), Integer.valueOf(51));
+        Assert.assertEquals(queue.take(), Integer.valueOf(51));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(52));
+        final List<Integer> rest = new ArrayList<>();
+        Assert.assertEquals(queue.drainTo(rest), 4);
+        Assert.assertEquals(rest, Arrays.asList(31, 1, 2, 3));
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(priorityBacklog.getQueueDelayTimer(0).getCount(), 3);
+        Assert.assertEquals(priorityBacklog.getQueueDelayTimer(3).getCount(), 1);
+        Assert.assertEquals(priorityBacklog.getQueueDelayTimer(5).getCount(), 2);
+    }
+
+    @Test
+    public void testWaitingTasksAgeAheadOfNewerTasks()
+        throws InterruptedException
+    {
+        final PriorityBacklog priorityBacklog = new PriorityBacklog(9, 10);
+        final BlockingQueue<Integer> queue = priorityBacklog.createQueue(new BacklogLimiter(0), task -> task);
+
+        queue.offer(0);
+        Thread.sleep(50);
+        // Having waited more than two aging intervals, the first task is ahead of a task of priority 2 but not of priority 9
+        queue.offer(2);
+        queue.offer(9);
+
+        Assert.assertEquals(queue.poll(), Integer.valueOf(9));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(0));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testPrioritiesOutsideRangeAreClamped()
+    {
+        final PriorityBacklog priorityBacklog = new PriorityBacklog(5, 60_000);
+        final BlockingQueue<Integer> queue
+            = priorityBacklog.createQueue(new BacklogLimiter(0), task -> task == 0 ? null : task);
+
+        queue.offer(0);
+        queue.offer(-3);
+        queue.offer(200);
+        queue.offer(5);
+
+        Assert.assertEquals(queue.poll(), Integer.valueOf(200));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(5));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(0));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(-3));
+        Assert.assertEquals(priorityBacklog.getQueueDelayTimer(5).getCount(), 2);
+        Assert.assertEquals(priorityBacklog.getQueueDelayTimer(0).getCount(), 2);
+    }
+
+    @Test
+    public void testBoundedBacklogPausesIncomingQueue()
+    {
+        final BacklogLimiter limiter = new BacklogLimiter(4);
+        final ManagedWorkerQueue workerQueue = Mockito.mock(ManagedWorkerQueue.class);
+        limiter.setWorkerQueue(workerQueue);
+        final BlockingQueue<Integer> queue = new PriorityBacklog(9, 1000).createQueue(limiter, task -> task);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(i));
+        }
+        Mockito.verify(workerQueue).pauseIncoming();
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertEquals(queue.remainingCapacity(), 0);
+
+        Assert.assertTrue(queue.remove(1));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(3));
+        Mockito.verify(workerQueue).resumeIncoming();
+    }
+
+    @Test
+    public void testFullBacklogBlocksUntilTaskRemoved()
+        throws InterruptedException
+    {
+        final BlockingQueue<Integer> queue = new PriorityBacklog(9, 1000).createQueue(new BacklogLimiter(2), task -> task);
+        queue.put(1);
+        queue.put(2);
+        Assert.assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+
+        // A task waiting to be put is added once another is taken
+        final CountDownLatch putDone = new CountDownLatch(1);
+        final Thread producer = new Thread(() -> {
+            try {
+                queue.put(3);
+                putDone.countDown();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Assert.assertFalse(putDone.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(queue.take(), Integer.valueOf(2));
+        Assert.assertTrue(putDone.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(queue.size(), 2);
+
+        final Thread offerer = new Thread(() -> {
+            try {
+                queue.offer(4, 5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        offerer.start();
+        Assert.assertEquals(queue.poll(), Integer.valueOf(3));
+        offerer.join(5000);
+        Assert.assertEquals(queue.poll(), Integer.valueOf(4));
+        Assert.assertEquals(queue.poll(), Integer.valueOf(1));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.DecodeMethod;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.worker.tracking.report.TrackingReport;
+import com.hpe.caf.worker.tracking.report.TrackingReportStatus;
+import com.hpe.caf.worker.tracking.report.TrackingReportTask;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StreamingJsonCodecTest
+{
+    private final Codec jsonCodec = new JsonCodec();
+    private final Codec streamingCodec = new StreamingJsonCodec(jsonCodec);
+
+    @Test
+    public void testTaskMessageWireCompatible()
+        throws CodecException
+    {
+        final Map<String, byte[]> context = new HashMap<>();
+        context.put("key", "value".getBytes(StandardCharsets.UTF_8));
+        final TaskMessage message = new TaskMessage("task1", "TestWorker", 3, "task data".getBytes(StandardCharsets.UTF_8),
+                                                    TaskStatus.NEW_TASK, context, "out", null, new TaskSourceInfo("source", "1"),
+                                                    "correlation1");
+
+        final byte[] serialised = streamingCodec.serialise(message);
+        Assert.assertEquals(new String(serialised, StandardCharsets.UTF_8),
+                            new String(jsonCodec.serialise(message), StandardCharsets.UTF_8));
+
+        for (final DecodeMethod method : DecodeMethod.values()) {
+            final TaskMessage read = streamingCodec.deserialise(serialised, TaskMessage.class, method);
+            Assert.assertEquals(read.getTaskId(), "task1");
+            Assert.assertEquals(read.getTaskApiVersion(), 3);
+            Assert.assertEquals(read.getTaskData(), message.getTaskData());
+            Assert.assertEquals(read.getContext().get("key"), context.get("key"));
+            Assert.assertEquals(read.getSourceInfo().getName(), "source");
+            Assert.assertEquals(read.getCorrelationId(), "correlation1");
+            Assert.assertNull(read.getTracking());
+        }
+    }
+
+    @Test
+    public void testTrackingReportTaskWireCompatible()
+        throws CodecException
+    {
+        final TrackingReport report = new TrackingReport();
+        report.jobTaskId = "J1.1";
+        report.status = TrackingReportStatus.Progress;
+        report.estimatedPercentageCompleted = 50;
+        final TrackingReportTask task = new TrackingReportTask();
+        task.trackingReports = Collections.singletonList(report);
+
+        final byte[] serialised = streamingCodec.serialise(task);
+        Assert.assertEquals(new String(serialised, StandardCharsets.UTF_8),
+                            new String(jsonCodec.serialise(task), StandardCharsets.UTF_8));
+
+        final TrackingReport read = streamingCodec.deserialise(serialised, TrackingReportTask.class, DecodeMethod.STRICT)
+            .trackingReports.get(0);
+        Assert.assertEquals(read.jobTaskId, "J1.1");
+        Assert.assertEquals(read.status, TrackingReportStatus.Progress);
+        Assert.assertEquals(read.estimatedPercentageCompleted, 50);
+        Assert.assertNull(read.failure);
+    }
+
+    @Test
+    public void testUnknownFields()
+        throws CodecException
+    {
+        final byte[] json = "{\"taskId\":\"task1\",\"taskClassifier\":\"TestWorker\",\"newField\":{\"a\":[1,2]}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+        // Unknown fields are skipped when decoding leniently, and fail the decode as they do with the JSON codec when decoding strictly
+        Assert.assertEquals(streamingCodec.deserialise(json, TaskMessage.class, DecodeMethod.LENIENT).getTaskId(), "task1");
+        Assert.assertThrows(CodecException.class, () -> streamingCodec.deserialise(json, TaskMessage.class, DecodeMethod.STRICT));
+    }
+
+    @Test
+    public void testOtherTypesDelegated()
+        throws CodecException
+    {
+        final TaskSourceInfo sourceInfo = new TaskSourceInfo("source", "1");
+        Assert.assertEquals(streamingCodec.serialise(sourceInfo), jsonCodec.serialise(sourceInfo));
+        Assert.assertThrows(CodecException.class,
+                            () -> streamingCodec.deserialise("not json".getBytes(StandardCharsets.UTF_8), TaskMessage.class));
+    }
+
+    @Test
+    public void testOnlyUsedWithJsonCodec()
+    {
+        final Codec otherCodec = Mockito.mock(Codec.class);
+        Assert.assertThrows(IllegalArgumentException.class, () -> new StreamingJsonCodec(otherCodec));
+
+        Assert.assertSame(TaskMessageEnvelope.getEnvelopeCodec(otherCodec, true), otherCodec);
+        Assert.assertSame(TaskMessageEnvelope.getEnvelopeCodec(jsonCodec, false), jsonCodec);
+        Assert.assertTrue(TaskMessageEnvelope.getEnvelopeCodec(jsonCodec, true) instanceof StreamingJsonCodec);
+    }
+}
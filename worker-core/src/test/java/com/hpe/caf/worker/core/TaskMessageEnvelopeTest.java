@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskSourceInfo;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.TrackingInfo;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.util.rabbitmq.RabbitHeaders;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TaskMessageEnvelopeTest
+{
+    @Test
+    public void testSplitEnvelopeRoundTrip()
+        throws Exception
+    {
+        final TaskMessageEnvelope envelope = new TaskMessageEnvelope(new JsonCodec(), true);
+        final Map<String, byte[]> context = new HashMap<>();
+        context.put("ctx", "context data".getBytes(StandardCharsets.UTF_8));
+        context.put("empty", null);
+        final TaskMessage tm = new TaskMessage("task1", "classifier", 2, "task data".getBytes(StandardCharsets.UTF_8),
+                                               TaskStatus.RESULT_SUCCESS, context, "out",
+                                               new TrackingInfo("J1.T1", new Date(1000L), 5000L, "http://status", "tracking", "done"),
+                                               new TaskSourceInfo("worker", "1.0"), "corr1");
+        tm.setPriority(3);
+
+        final Map<String, Object> headers = envelope.writeHeaders(
+            tm, Collections.singletonMap(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_RETRY, "1"));
+        Assert.assertEquals(headers.get(TaskMessageEnvelope.FORMAT_HEADER), TaskMessageEnvelope.SPLIT_FORMAT);
+        Assert.assertEquals(headers.get(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_RETRY), "1");
+
+        final TaskMessage read = envelope.read(envelope.writeBody(tm), headers);
+        Assert.assertEquals(read.getTaskId(), "task1");
+        Assert.assertEquals(read.getTaskClassifier(), "classifier");
+        Assert.assertEquals(read.getTaskApiVersion(), 2);
+        Assert.assertEquals(read.getTaskData(), tm.getTaskData());
+        Assert.assertEquals(read.getTaskStatus(), TaskStatus.RESULT_SUCCESS);
+        Assert.assertEquals(read.getContext().get("ctx"), context.get("ctx"));
+        Assert.assertTrue(read.getContext().containsKey("empty"));
+        Assert.assertNull(read.getContext().get("empty"));
+        Assert.assertEquals(read.getTo(), "out");
+        Assert.assertEquals(read.getPriority(), Integer.valueOf(3));
+        Assert.assertEquals(read.getCorrelationId(), "corr1");
+        Assert.assertEquals(read.getSourceInfo().getName(), "worker");
+        Assert.assertEquals(read.getTracking().getJobTaskId(), "J1.T1");
+        Assert.assertEquals(read.getTracking().getLastStatusCheckTime(), new Date(1000L));
+        Assert.assertEquals(read.getTracking().getStatusCheckIntervalMillis(), 5000L);
+        Assert.assertEquals(read.getTracking().getTrackTo(), "done");
+    }
+
+    @Test
+    public void testTaskDataSentAsBodyWithoutContext()
+        throws Exception
+    {
+        final TaskMessageEnvelope envelope = new TaskMessageEnvelope(new JsonCodec(), true);
+        final byte[] taskData = "task data".getBytes(StandardCharsets.UTF_8);
+        final TaskMessage tm = new TaskMessage("task1", "classifier", 1, taskData, TaskStatus.NEW_TASK,
+                                               Collections.<String, byte[]>emptyMap(), "out");
+
+        final byte[] body = envelope.writeBody(tm);
+        Assert.assertSame(body, taskData);
+        Assert.assertSame(envelope.read(body, envelope.writeHeaders(tm, Collections.emptyMap())).getTaskData(), body);
+    }
+
+    @Test
+    public void testCodecFormatAcceptedAndHeadersReplaced()
+        throws Exception
+    {
+        final Codec codec = new JsonCodec();
+        final TaskMessageEnvelope envelope = new TaskMessageEnvelope(codec, false);
+        final TaskMessage tm = new TaskMessage("task1", "classifier", 1, new byte[]{1, 2, 3}, TaskStatus.NEW_TASK,
+                                               Collections.<String, byte[]>emptyMap(), "out");
+
+        final byte[] body = envelope.writeBody(tm);
+        Assert.assertEquals(envelope.read(body, Collections.emptyMap()).getTaskId(), "task1");
+
+        // The headers of a message received in the split envelope format are not passed on with a message in the codec format
+        final Map<String, Object> receivedHeaders = new TaskMessageEnvelope(codec, true).writeHeaders(tm, Collections.emptyMap());
+        Assert.assertTrue(envelope.writeHeaders(tm, receivedHeaders).isEmpty());
+    }
+
+    @Test(expectedExceptions = InvalidTaskException.class)
+    public void testMalformedSplitEnvelopeRejected()
+        throws Exception
+    {
+        final Map<String, Object> headers = new HashMap<>();
+        headers.put(TaskMessageEnvelope.FORMAT_HEADER, TaskMessageEnvelope.SPLIT_FORMAT);
+        headers.put(RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "context-length", "100");
+        new TaskMessageEnvelope(new JsonCodec(), true).read(new byte[10], headers);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.worker.QueueException;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.WorkerQueue;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.worker.tracking.report.TrackingReport;
+import com.hpe.caf.worker.tracking.report.TrackingReportConstants;
+import com.hpe.caf.worker.tracking.report.TrackingReportStatus;
+import com.hpe.caf.worker.tracking.report.TrackingReportTask;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TrackingReportAggregatorTest
+{
+    private static final String TRACKING_PIPE = "tracking";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReportsFromManyTasksMergedIntoOneMessage()
+        throws Exception
+    {
+        final Codec codec = new JsonCodec();
+        final WorkerQueue queue = mock(WorkerQueue.class);
+        when(queue.canPublishForSeveralMessages()).thenReturn(true);
+        final TrackingReportAggregator aggregator
+            = new TrackingReportAggregator(3, 60000, new TaskMessageEnvelope(codec, false), queue,
+                                           (t, e) -> Assert.fail("Task abandoned"));
+        final List<TaskInformation> tasks = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            final TaskInformation task = getMockTaskInformation(String.valueOf(i));
+            tasks.add(task);
+            aggregator.add(task, TRACKING_PIPE, Collections.singletonList(getReport("J1.T" + i)));
+        }
+
+        final ArgumentCaptor<List<TaskInformation>> published = ArgumentCaptor.forClass(List.class);
+        final ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(queue, times(1)).publish(published.capture(), message.capture(), Mockito.eq(TRACKING_PIPE), Mockito.anyMap());
+        Assert.assertEquals(published.getValue(), tasks);
+        final TaskMessage taskMessage = codec.deserialise(message.getValue(), TaskMessage.class);
+        Assert.assertEquals(taskMessage.getTaskClassifier(), TrackingReportConstants.TRACKING_REPORT_TASK_NAME);
+        Assert.assertEquals(taskMessage.getTo(), TRACKING_PIPE);
+        final TrackingReportTask reportTask = codec.deserialise(taskMessage.getTaskData(), TrackingReportTask.class);
+        Assert.assertEquals(reportTask.trackingReports.size(), 3);
+        Assert.assertEquals(reportTask.trackingReports.get(2).jobTaskId, "J1.T3");
+        aggregator.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReportsPublishedForEachTaskWhenQueueCannotMergeThem()
+        throws Exception
+    {
+        final Codec codec = new JsonCodec();
+        final WorkerQueue queue = mock(WorkerQueue.class);
+        when(queue.canPublishForSeveralMessages()).thenReturn(false);
+        final TrackingReportAggregator aggregator
+            = new TrackingReportAggregator(3, 60000, new TaskMessageEnvelope(codec, false), queue,
+                                           (t, e) -> Assert.fail("Task abandoned"));
+        final TaskInformation task1 = getMockTaskInformation("1");
+        final TaskInformation task2 = getMockTaskInformation("2");
+        aggregator.add(task1, TRACKING_PIPE, Arrays.asList(getReport("J1.T1.1"), getReport("J1.T1.2")));
+        aggregator.add(task2, TRACKING_PIPE, Collections.singletonList(getReport("J1.T2")));
+
+        final ArgumentCaptor<List<TaskInformation>> published = ArgumentCaptor.forClass(List.class);
+        final ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(queue, times(2)).publish(published.capture(), message.capture(), Mockito.eq(TRACKING_PIPE), Mockito.anyMap());
+        Assert.assertEquals(published.getAllValues(), Arrays.asList(Collections.singletonList(task1), Collections.singletonList(task2)));
+        final List<Integer> reportCounts = new ArrayList<>();
+        for (final byte[] body : message.getAllValues()) {
+            final TaskMessage taskMessage = codec.deserialise(body, TaskMessage.class);
+            reportCounts.add(codec.deserialise(taskMessage.getTaskData(), TrackingReportTask.class).trackingReports.size());
+        }
+        Assert.assertEquals(reportCounts, Arrays.asList(2, 1));
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testFinalResponseHeldUntilReportsPublished()
+        throws Exception
+    {
+        final WorkerQueue queue = mock(WorkerQueue.class);
+        final TrackingReportAggregator aggregator
+            = new TrackingReportAggregator(100, 200, new TaskMessageEnvelope(new JsonCodec(), false), queue,
+                                           (t, e) -> Assert.fail("Task abandoned"));
+        final TaskInformation task = getMockTaskInformation("1");
+        final CountDownLatch completed = new CountDownLatch(1);
+        aggregator.add(task, TRACKING_PIPE, Arrays.asList(getReport("J1.T1.1"), getReport("J1.T1.2*")));
+        aggregator.whenReportsPublished(task, completed::countDown);
+        Assert.assertEquals(completed.getCount(), 1);
+
+        // The batch is published after the delay, and only then is the task completed
+        Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+        verify(queue, times(1)).publish(Mockito.anyList(), Mockito.any(byte[].class), Mockito.eq(TRACKING_PIPE), Mockito.anyMap());
+
+        // A task with no reports outstanding is completed straight away
+        final AtomicBoolean completedImmediately = new AtomicBoolean();
+        aggregator.whenReportsPublished(getMockTaskInformation("2"), () -> completedImmediately.set(true));
+        Assert.assertTrue(completedImmediately.get());
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testTaskAbandonedWhenReportsCannotBePublished()
+        throws Exception
+    {
+        final WorkerQueue queue = mock(WorkerQueue.class);
+        Mockito.doThrow(new QueueException("Broker unavailable"))
+            .when(queue).publish(Mockito.anyList(), Mockito.any(byte[].class), Mockito.anyString(), Mockito.anyMap());
+        final List<TaskInformation> abandoned = new ArrayList<>();
+        final TrackingReportAggregator aggregator
+            = new TrackingReportAggregator(2, 60000, new TaskMessageEnvelope(new JsonCodec(), false), queue,
+                                           (t, e) -> abandoned.add(t));
+        final TaskInformation completedTask = getMockTaskInformation("1");
+        final TaskInformation runningTask = getMockTaskInformation("2");
+        aggregator.add(completedTask, TRACKING_PIPE, Collections.singletonList(getReport("J1.T1")));
+        aggregator.whenReportsPublished(completedTask, () -> Assert.fail("Task completed"));
+        aggregator.add(runningTask, TRACKING_PIPE, Collections.singletonList(getReport("J1.T2")));
+        Assert.assertEquals(abandoned, Collections.singletonList(completedTask));
+
+        // The task still running is abandoned when it finishes
+        aggregator.whenReportsPublished(runningTask, () -> Assert.fail("Task completed"));
+        Assert.assertEquals(abandoned, Arrays.asList(completedTask, runningTask));
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testRejectedTaskForgotten()
+        throws Exception
+    {
+        final WorkerQueue queue = mock(WorkerQueue.class);
+        Mockito.doThrow(new QueueException("Broker unavailable"))
+            .when(queue).publish(Mockito.anyList(), Mockito.any(byte[].class), Mockito.anyString(), Mockito.anyMap());
+        final List<TaskInformation> abandoned = new ArrayList<>();
+        final TrackingReportAggregator aggregator
+            = new TrackingReportAggregator(1, 60000, new TaskMessageEnvelope(new JsonCodec(), false), queue,
+                                           (t, e) -> abandoned.add(t));
+        final TaskInformation task = getMockTaskInformation("1");
+        aggregator.add(task, TRACKING_PIPE, Collections.singletonList(getReport("J1.T1")));
+
+        // A task rejected after its reports failed is no longer held on to, so it is not abandoned a second time
+        aggregator.forget(task);
+        final AtomicBoolean completed = new AtomicBoolean();
+        aggregator.whenReportsPublished(task, () -> completed.set(true));
+        Assert.assertTrue(completed.get());
+        Assert.assertTrue(abandoned.isEmpty());
+        aggregator.shutdown();
+    }
+
+    private static TrackingReport getReport(final String jobTaskId)
+    {
+        final TrackingReport report = new TrackingReport();
+        report.jobTaskId = jobTaskId;
+        report.status = TrackingReportStatus.Complete;
+        return report;
+    }
+
+    private static TaskInformation getMockTaskInformation(final String inboundMessageId)
+    {
+        final TaskInformation taskInformation = mock(TaskInformation.class);
+        when(taskInformation.getInboundMessageId()).thenReturn(inboundMessageId);
+        return taskInformation;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkStealingQueueTest
+{
+    @Test
+    public void testOwnDequeTakenBeforeStealing()
+        throws InterruptedException
+    {
+        final WorkStealingQueue<String> queue = new WorkStealingQueue<>(2, new BacklogLimiter(0));
+        final BlockingQueue<String> first = queue.forOwner(0);
+        final BlockingQueue<String> second = queue.forOwner(1);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer("task" + i));
+        }
+
+        // Tasks are dealt to the deques in turn, so the second thread's own tasks are the odd ones
+        Assert.assertEquals(second.take(), "task1");
+        Assert.assertEquals(second.take(), "task3");
+        Assert.assertEquals(queue.getSteals(), 0);
+
+        // With its own deque empty it steals the oldest task from the first thread's deque
+        Assert.assertEquals(second.poll(), "task0");
+        Assert.assertEquals(queue.getSteals(), 1);
+        Assert.assertEquals(first.poll(), "task2");
+        Assert.assertNull(first.poll());
+        Assert.assertNull(second.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDrainToTakesFromEveryDeque()
+    {
+        final WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(3, new BacklogLimiter(0));
+        for (int i = 0; i < 9; i++) {
+            queue.offer(i);
+        }
+
+        final List<Integer> tasks = new ArrayList<>();
+        Assert.assertEquals(queue.forOwner(2).drainTo(tasks, 5), 5);
+        Assert.assertEquals(tasks.subList(0, 3), List.of(2, 5, 8));
+        Assert.assertEquals(queue.size(), 4);
+        Assert.assertEquals(queue.drainTo(tasks), 4);
+        Assert.assertEquals(tasks.size(), 9);
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testBoundedBacklogPausesIncomingQueue()
+    {
+        final BacklogLimiter limiter = new BacklogLimiter(4);
+        final ManagedWorkerQueue workerQueue = Mockito.mock(ManagedWorkerQueue.class);
+        limiter.setWorkerQueue(workerQueue);
+        final WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(2, limiter);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(i));
+        }
+        Mockito.verify(workerQueue).pauseIncoming();
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertEquals(queue.forOwner(0).remainingCapacity(), 0);
+
+        queue.forOwner(0).drainTo(new ArrayList<>(), 2);
+        Mockito.verify(workerQueue).resumeIncoming();
+    }
+
+    @Test
+    public void testConcurrentOffersDoNotExceedBacklog()
+        throws Exception
+    {
+        final int threads = 8;
+        final int maxBacklog = 100;
+        for (int run = 0; run < 20; run++) {
+            final WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(threads, new BacklogLimiter(maxBacklog));
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Integer>> accepted = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    accepted.add(executor.submit(() -> {
+                        start.await();
+                        int offered = 0;
+                        for (int task = 0; task < maxBacklog; task++) {
+                            if (queue.offer(task)) {
+                                offered++;
+                            }
+                        }
+                        return offered;
+                    }));
+                }
+                start.countDown();
+
+                int total = 0;
+                for (final Future<Integer> offered : accepted) {
+                    total += offered.get(10, TimeUnit.SECONDS);
+                }
+                Assert.assertEquals(total, maxBacklog);
+                Assert.assertEquals(queue.size(), maxBacklog);
+                Assert.assertEquals(queue.drainTo(new ArrayList<>()), maxBacklog);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testWaitingThreadsReceiveEveryTask()
+        throws Exception
+    {
+        final int threads = 4;
+        final int tasksPerThread = 10_000;
+        final WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(threads, new BacklogLimiter(0));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final int taskCount = threads * tasksPerThread;
+            final AtomicInteger remaining = new AtomicInteger(taskCount);
+            final CountDownLatch started = new CountDownLatch(threads);
+            final List<Future<Long>> sums = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final BlockingQueue<Integer> ownQueue = queue.forOwner(i);
+                sums.add(executor.submit(() -> {
+                    started.countDown();
+                    long sum = 0;
+                    while (remaining.get() > 0) {
+                        final Integer task = ownQueue.poll(10, TimeUnit.MILLISECONDS);
+                        if (task != null) {
+                            sum += task;
+                            remaining.decrementAndGet();
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < taskCount; i++) {
+                queue.offer(i);
+            }
+
+            long total = 0;
+            for (final Future<Long> sum : sums) {
+                total += sum.get(10, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(total, (long) taskCount * (taskCount - 1) / 2);
+            Assert.assertTrue(queue.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
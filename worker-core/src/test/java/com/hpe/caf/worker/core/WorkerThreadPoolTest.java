@@ -16,12 +16,20 @@
 package com.hpe.caf.worker.core;
 
 import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
 import com.hpe.caf.api.worker.TaskRejectedException;
 import com.hpe.caf.api.worker.Worker;
 import org.testng.annotations.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.mockito.Mockito;
 
 public class WorkerThreadPoolTest
@@ -44,4 +52,265 @@ public class WorkerThreadPoolTest
         assertEquals(0, latch.getCount(),
                 "Latch count should be 0; indicating that the handler was invoked due to the Error thrown");
     }
+
+    @Test
+    public void testVirtualWorkerThreadPoolLimitsConcurrency()
+        throws TaskRejectedException, InterruptedException, InvalidTaskException
+    {
+        WorkerThreadPool wtp = WorkerThreadPool.createVirtual(2, () -> {});
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        Worker mockWorker = Mockito.mock(Worker.class);
+        Mockito.when(mockWorker.doWork()).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            release.await();
+            running.decrementAndGet();
+            finished.countDown();
+            return null;
+        });
+        WorkerTaskImpl mockWorkerTask = Mockito.mock(WorkerTaskImpl.class);
+        Mockito.when(mockWorkerTask.createWorker()).thenReturn(mockWorker);
+
+        for (int i = 0; i < 5; i++) {
+            wtp.submitWorkerTask(mockWorkerTask);
+        }
+        assertEquals(2, wtp.getMaxConcurrentTasks());
+        assertEquals(3, wtp.getBacklogSize(), "Tasks beyond the concurrency limit should wait in the backlog");
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        wtp.shutdown();
+        wtp.awaitTermination(5, TimeUnit.SECONDS);
+        assertTrue(wtp.isIdle());
+        assertEquals(0, wtp.getBacklogSize());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testVirtualWorkerThreadPoolConcurrentSubmissionsDoNotExceedBacklog()
+        throws Exception
+    {
+        WorkerThreadPool wtp = new VirtualWorkerThreadPool(1, 5, () -> {});
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Worker mockWorker = Mockito.mock(Worker.class);
+        Mockito.when(mockWorker.doWork()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        WorkerTaskImpl mockWorkerTask = Mockito.mock(WorkerTaskImpl.class);
+        Mockito.when(mockWorkerTask.createWorker()).thenReturn(mockWorker);
+        wtp.submitWorkerTask(mockWorkerTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // With the only slot taken, tasks submitted at once can fill the backlog but not go beyond it
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread submitter = new Thread(() -> {
+                try {
+                    go.await();
+                    for (int j = 0; j < 10; j++) {
+                        try {
+                            wtp.submitWorkerTask(mockWorkerTask);
+                            accepted.incrementAndGet();
+                        } catch (TaskRejectedException e) {
+                            // The backlog is full
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        go.countDown();
+        for (Thread submitter : submitters) {
+            submitter.join(5000);
+        }
+        assertEquals(5, accepted.get());
+        assertEquals(5, wtp.getBacklogSize());
+
+        release.countDown();
+        wtp.shutdown();
+        wtp.awaitTermination(5, TimeUnit.SECONDS);
+        assertTrue(wtp.isIdle());
+    }
+
+    @Test
+    public void testVirtualWorkerThreadPoolAbortEmptiesBacklog()
+        throws TaskRejectedException, InterruptedException, InvalidTaskException
+    {
+        WorkerThreadPool wtp = new VirtualWorkerThreadPool(1, 3, () -> {});
+        ManagedWorkerQueue queue = Mockito.mock(ManagedWorkerQueue.class);
+        wtp.setBackpressureQueue(queue);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger backlogRuns = new AtomicInteger();
+
+        WorkerTaskImpl blockingTask = Mockito.mock(WorkerTaskImpl.class);
+        Worker blockingWorker = Mockito.mock(Worker.class);
+        Mockito.when(blockingWorker.doWork()).thenAnswer(invocation -> {
+            started.countDown();
+            new CountDownLatch(1).await();
+            return null;
+        });
+        Mockito.when(blockingTask.createWorker()).thenReturn(blockingWorker);
+        wtp.submitWorkerTask(blockingTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Worker mockWorker = Mockito.mock(Worker.class);
+        Mockito.when(mockWorker.doWork()).thenAnswer(invocation -> {
+            backlogRuns.incrementAndGet();
+            return null;
+        });
+        WorkerTaskImpl mockWorkerTask = Mockito.mock(WorkerTaskImpl.class);
+        Mockito.when(mockWorkerTask.createWorker()).thenReturn(mockWorker);
+        for (int i = 0; i < 3; i++) {
+            wtp.submitWorkerTask(mockWorkerTask);
+        }
+        Mockito.verify(queue).pauseIncoming();
+
+        // The aborted tasks in the backlog are removed from it straight away, and only the running task is left to finish
+        assertEquals(4, wtp.abortTasks());
+        assertEquals(0, wtp.getBacklogSize());
+        Mockito.verify(queue).resumeIncoming();
+        wtp.shutdown();
+        wtp.awaitTermination(5, TimeUnit.SECONDS);
+        assertTrue(wtp.isIdle());
+        assertEquals(0, backlogRuns.get());
+    }
+
+    @Test
+    public void testBoundedBacklogPausesIncomingQueue()
+        throws TaskRejectedException, InterruptedException, InvalidTaskException
+    {
+        WorkerThreadPool wtp = new StreamingWorkerThreadPool(1, 2, () -> {});
+        ManagedWorkerQueue queue = Mockito.mock(ManagedWorkerQueue.class);
+        wtp.setBackpressureQueue(queue);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+
+        Worker mockWorker = Mockito.mock(Worker.class);
+        Mockito.when(mockWorker.doWork()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            finished.countDown();
+            return null;
+        });
+        WorkerTaskImpl mockWorkerTask = Mockito.mock(WorkerTaskImpl.class);
+        Mockito.when(mockWorkerTask.createWorker()).thenReturn(mockWorker);
+
+        wtp.submitWorkerTask(mockWorkerTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        wtp.submitWorkerTask(mockWorkerTask);
+        Mockito.verify(queue, Mockito.never()).pauseIncoming();
+        wtp.submitWorkerTask(mockWorkerTask);
+        Mockito.verify(queue).pauseIncoming();
+        assertThrows(TaskRejectedException.class, () -> wtp.submitWorkerTask(mockWorkerTask));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Mockito.verify(queue).resumeIncoming();
+        Mockito.verify(queue).pauseIncoming();
+    }
+
+    @Test
+    public void testPriorityBacklogRunsHigherPriorityFirst()
+        throws TaskRejectedException, InterruptedException, InvalidTaskException
+    {
+        PriorityBacklog priorityBacklog = new PriorityBacklog(9, 60_000);
+        WorkerThreadPool wtp = new StreamingWorkerThreadPool(1, 0, priorityBacklog, () -> {});
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        WorkerTaskImpl blockingTask = Mockito.mock(WorkerTaskImpl.class);
+        Worker blockingWorker = Mockito.mock(Worker.class);
+        Mockito.when(blockingWorker.doWork()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            finished.countDown();
+            return null;
+        });
+        Mockito.when(blockingTask.createWorker()).thenReturn(blockingWorker);
+        wtp.submitWorkerTask(blockingTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // With the only thread busy, the tasks wait in the backlog and are then run highest priority first
+        for (Integer priority : Arrays.asList(null, 7, 3)) {
+            WorkerTaskImpl task = Mockito.mock(WorkerTaskImpl.class);
+            Worker worker = Mockito.mock(Worker.class);
+            Mockito.when(worker.doWork()).thenAnswer(invocation -> {
+                order.add(priority);
+                finished.countDown();
+                return null;
+            });
+            Mockito.when(task.createWorker()).thenReturn(worker);
+            Mockito.when(task.getPriority()).thenReturn(priority);
+            wtp.submitWorkerTask(task);
+        }
+        assertEquals(3, wtp.getBacklogSize());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(7, 3, null), order);
+        assertEquals(1, priorityBacklog.getQueueDelayTimer(7).getCount());
+        assertEquals(1, priorityBacklog.getQueueDelayTimer(0).getCount());
+        wtp.shutdown();
+    }
+
+    @Test
+    public void testVirtualWorkerThreadPoolPriorityBacklog()
+        throws TaskRejectedException, InterruptedException, InvalidTaskException
+    {
+        PriorityBacklog priorityBacklog = new PriorityBacklog(9, 60_000);
+        WorkerThreadPool wtp = new VirtualWorkerThreadPool(1, 0, priorityBacklog, () -> {});
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        WorkerTaskImpl blockingTask = Mockito.mock(WorkerTaskImpl.class);
+        Worker blockingWorker = Mockito.mock(Worker.class);
+        Mockito.when(blockingWorker.doWork()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            finished.countDown();
+            return null;
+        });
+        Mockito.when(blockingTask.createWorker()).thenReturn(blockingWorker);
+        wtp.submitWorkerTask(blockingTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // With the only slot taken, the tasks wait in the backlog and are then run highest priority first
+        for (Integer priority : Arrays.asList(null, 7, 3)) {
+            WorkerTaskImpl task = Mockito.mock(WorkerTaskImpl.class);
+            Worker worker = Mockito.mock(Worker.class);
+            Mockito.when(worker.doWork()).thenAnswer(invocation -> {
+                order.add(priority);
+                finished.countDown();
+                return null;
+            });
+            Mockito.when(task.createWorker()).thenReturn(worker);
+            Mockito.when(task.getPriority()).thenReturn(priority);
+            wtp.submitWorkerTask(task);
+        }
+        assertEquals(3, wtp.getBacklogSize());
+        assertEquals(priorityBacklog, wtp.getPriorityBacklog());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(7, 3, null), order);
+        assertEquals(1, priorityBacklog.getQueueDelayTimer(7).getCount());
+        wtp.shutdown();
+    }
 }
@@ -22,5 +22,15 @@
     rejectedQueue: "worker-rejected",
     retryLimit: getenv("CAF_WORKER_RETRY_LIMIT") || 10,
     maxPriority: getenv("CAF_RABBITMQ_MAX_PRIORITY") || 0,
-    queueType: getenv("CAF_RABBITMQ_QUEUE_TYPE") || "quorum"
+    queueType: getenv("CAF_RABBITMQ_QUEUE_TYPE") || "quorum",
+    publisherBatchSize: getenv("CAF_RABBITMQ_PUBLISHER_BATCH_SIZE") || 1,
+    maxConfirmsInFlight: getenv("CAF_RABBITMQ_MAX_CONFIRMS_IN_FLIGHT") || 0,
+    publisherChannels: getenv("CAF_RABBITMQ_PUBLISHER_CHANNELS") || 1,
+    ackBatchSize: getenv("CAF_RABBITMQ_ACK_BATCH_SIZE") || 1,
+    ackBatchDelayMillis: getenv("CAF_RABBITMQ_ACK_BATCH_DELAY_MILLIS") || 100,
+    registrationThreads: getenv("CAF_RABBITMQ_REGISTRATION_THREADS") || 0,
+    publishRetryLimit: getenv("CAF_RABBITMQ_PUBLISH_RETRY_LIMIT") || 0,
+    publishRetryDelayMillis: getenv("CAF_RABBITMQ_PUBLISH_RETRY_DELAY_MILLIS") || 1000,
+    compression: getenv("CAF_RABBITMQ_COMPRESSION") || "none",
+    compressionThresholdBytes: getenv("CAF_RABBITMQ_COMPRESSION_THRESHOLD_BYTES") || 1024
 });
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The set of named in-memory queues that in-memory worker queues consume from and publish to. Queues are created when they are first
+ * used.
+ * <p>
+ * Worker queues created by {@link InMemoryWorkerQueueProvider} share the default broker, so that several workers in the same JVM can
+ * form a pipeline, and a test or load driver can publish tasks to a worker and collect its responses.
+ */
+public final class InMemoryBroker
+{
+    private static final InMemoryBroker DEFAULT = new InMemoryBroker();
+
+    private final ConcurrentMap<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Create a broker with queues of its own, separate from those of the default broker.
+     */
+    public InMemoryBroker()
+    {
+    }
+
+    /**
+     * @return the broker shared by the worker queues created by {@link InMemoryWorkerQueueProvider}
+     */
+    public static InMemoryBroker getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Get a queue, creating it if it does not exist.
+     *
+     * @param name the name of the queue
+     * @return the queue
+     */
+    public InMemoryQueue getQueue(final String name)
+    {
+        return queues.computeIfAbsent(name, InMemoryQueue::new);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A message held on an {@link InMemoryQueue}. Messages are immutable; a message returned to its queue after being rejected is a copy
+ * with its redelivery count incremented.
+ */
+public final class InMemoryMessage
+{
+    private final byte[] body;
+    private final Map<String, Object> headers;
+    private final int redeliveryCount;
+
+    /**
+     * @param body the body of the message, which is not copied
+     * @param headers the headers of the message, which are copied
+     */
+    public InMemoryMessage(final byte[] body, final Map<String, Object> headers)
+    {
+        this(body, headers, 0);
+    }
+
+    private InMemoryMessage(final byte[] body, final Map<String, Object> headers, final int redeliveryCount)
+    {
+        this.body = Objects.requireNonNull(body);
+        this.headers = headers.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(headers));
+        this.redeliveryCount = redeliveryCount;
+    }
+
+    public byte[] getBody()
+    {
+        return body;
+    }
+
+    public Map<String, Object> getHeaders()
+    {
+        return headers;
+    }
+
+    /**
+     * @return the number of times the message has been returned to its queue after being delivered
+     */
+    public int getRedeliveryCount()
+    {
+        return redeliveryCount;
+    }
+
+    public boolean isRedelivered()
+    {
+        return redeliveryCount > 0;
+    }
+
+    InMemoryMessage redelivered()
+    {
+        return new InMemoryMessage(body, headers, redeliveryCount + 1);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A named queue of messages in an {@link InMemoryBroker}. Messages are held on a lock-free queue, and threads waiting for messages are
+ * parked rather than blocked on a lock, being unparked whenever a message is published.
+ */
+public final class InMemoryQueue
+{
+    /**
+     * How long a waiting thread stays parked without being signalled before it looks at the queue again.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final Queue<InMemoryMessage> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Set<Thread> waitingThreads = ConcurrentHashMap.newKeySet();
+
+    InMemoryQueue(final String name)
+    {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Add a message to the end of the queue.
+     *
+     * @param body the body of the message
+     * @param headers the headers of the message
+     */
+    public void publish(final byte[] body, final Map<String, Object> headers)
+    {
+        publish(new InMemoryMessage(body, headers));
+    }
+
+    /**
+     * Add a message to the end of the queue.
+     *
+     * @param message the message
+     */
+    public void publish(final InMemoryMessage message)
+    {
+        messages.add(message);
+        size.incrementAndGet();
+        signal();
+    }
+
+    /**
+     * Remove the message at the head of the queue.
+     *
+     * @return the message, or null if the queue is empty
+     */
+    public InMemoryMessage poll()
+    {
+        final InMemoryMessage message = messages.poll();
+        if (message != null) {
+            size.decrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Remove the message at the head of the queue, waiting for one to be published if the queue is empty.
+     *
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return the message, or null if no message was published before the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public InMemoryMessage poll(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final Thread thread = Thread.currentThread();
+        addWaitingThread(thread);
+        try {
+            while (true) {
+                final InMemoryMessage message = poll();
+                if (message != null) {
+                    return message;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            removeWaitingThread(thread);
+        }
+    }
+
+    /**
+     * @return the number of messages on the queue
+     */
+    public int size()
+    {
+        return size.get();
+    }
+
+    /**
+     * Register a thread to be unparked whenever a message is published. A registered thread that finds the queue empty should park
+     * itself with {@link #parkWaitingThread()}.
+     */
+    void addWaitingThread(final Thread thread)
+    {
+        waitingThreads.add(thread);
+    }
+
+    void removeWaitingThread(final Thread thread)
+    {
+        waitingThreads.remove(thread);
+    }
+
+    /**
+     * Park the current thread until a message is published, it is unparked for some other reason, or a short time has passed.
+     */
+    void parkWaitingThread()
+    {
+        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+    }
+
+    private void signal()
+    {
+        for (final Thread thread : waitingThreads) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
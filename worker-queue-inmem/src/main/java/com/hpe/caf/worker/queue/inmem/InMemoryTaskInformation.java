@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import com.hpe.caf.api.worker.TaskInformation;
+
+final class InMemoryTaskInformation implements TaskInformation
+{
+    private final long deliveryTag;
+    private final boolean isPoison;
+
+    public InMemoryTaskInformation(final long deliveryTag, final boolean isPoison)
+    {
+        this.deliveryTag = deliveryTag;
+        this.isPoison = isPoison;
+    }
+
+    public long getDeliveryTag()
+    {
+        return deliveryTag;
+    }
+
+    @Override
+    public String getInboundMessageId()
+    {
+        return String.valueOf(deliveryTag);
+    }
+
+    @Override
+    public boolean isPoison()
+    {
+        return isPoison;
+    }
+}
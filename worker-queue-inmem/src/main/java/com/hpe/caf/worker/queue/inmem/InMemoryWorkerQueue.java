@@ -0,0 +1,397 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import com.hpe.caf.api.HealthResult;
+import com.hpe.caf.api.HealthStatus;
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.TaskCallback;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.api.worker.TaskRejectedException;
+import com.hpe.caf.api.worker.WorkerQueueMetricsReporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ManagedWorkerQueue which consumes from and publishes to queues held in memory by an {@link InMemoryBroker}, so that a worker can
+ * be run without a message broker.
+ * <p>
+ * Messages are delivered to the worker on a single consumer thread, and are held as unacknowledged until the worker acknowledges
+ * them, publishes their final response, or rejects or discards them. At most as many messages as the worker runs tasks at once, plus
+ * the prefetch buffer, are unacknowledged at any time. Rejected messages are returned to the input queue and redelivered, and a message
+ * that has been redelivered more times than the retry limit is delivered as a poison message. Messages that cannot be registered as
+ * tasks are moved to the retry queue, marked with the reason they were rejected. When the queue is shut down, any messages still
+ * unacknowledged are returned to the input queue to be redelivered, as a broker would return them when a connection closes.
+ */
+public final class InMemoryWorkerQueue implements ManagedWorkerQueue
+{
+    /**
+     * The header recording why a message could not be registered as a task, as set by the RabbitMQ worker queue.
+     */
+    static final String REJECTED_HEADER = "x-caf-worker-rejected";
+    static final String REJECTED_REASON_TASKMESSAGE = "TASKMESSAGE_INVALID";
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryWorkerQueue.class);
+
+    private final InMemoryBroker broker;
+    private final InMemoryWorkerQueueConfiguration config;
+    private final InMemoryQueue inputQueue;
+    private final InMemoryMetricsReporter metrics = new InMemoryMetricsReporter();
+    private final ConcurrentMap<Long, InMemoryMessage> unacknowledged = new ConcurrentHashMap<>();
+    private final AtomicInteger unacknowledgedCount = new AtomicInteger();
+    private final ConcurrentMap<Long, Runnable> acknowledgedActions = new ConcurrentHashMap<>();
+    private final AtomicLong lastDeliveryTag = new AtomicLong();
+    private final AtomicInteger prefetch;
+    private volatile boolean isIncomingShutdown;
+    private volatile boolean isIncomingDisconnected;
+    private volatile boolean isIncomingPaused;
+    private volatile boolean isRunning;
+    private TaskCallback callback;
+    private volatile Thread consumerThread;
+
+    /**
+     * @param broker the broker holding the queues to consume from and publish to
+     * @param config the configuration of the queue
+     * @param maxTasks the maximum number of tasks the worker can run at once
+     */
+    public InMemoryWorkerQueue(final InMemoryBroker broker, final InMemoryWorkerQueueConfiguration config, final int maxTasks)
+    {
+        this.broker = Objects.requireNonNull(broker);
+        this.config = Objects.requireNonNull(config);
+        this.inputQueue = broker.getQueue(config.getInputQueue());
+        this.prefetch = new AtomicInteger(Math.max(1, maxTasks + config.getPrefetchBuffer()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Start the thread which delivers messages from the input queue to the callback.
+     */
+    @Override
+    public synchronized void start(final TaskCallback callback)
+    {
+        if (consumerThread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        this.callback = Objects.requireNonNull(callback);
+        isRunning = true;
+        consumerThread = new Thread(this::consume, "InMemoryWorkerQueue-" + inputQueue.getName());
+        consumerThread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The message is added to the target queue before this method returns. If it is the final response to a task, the task's message
+     * is acknowledged.
+     */
+    @Override
+    public void publish(
+        final TaskInformation taskInformation,
+        final byte[] taskMessage,
+        final String targetQueue,
+        final Map<String, Object> headers,
+        final boolean isLastMessage
+    )
+    {
+        broker.getQueue(targetQueue).publish(taskMessage, headers);
+        metrics.incrementPublished();
+        if (isLastMessage) {
+            acknowledgeTask(taskInformation);
+        }
+    }
+
+    @Override
+    public void publish(
+        final TaskInformation taskInformation,
+        final byte[] taskMessage,
+        final String targetQueue,
+        final Map<String, Object> headers
+    )
+    {
+        publish(taskInformation, taskMessage, targetQueue, headers, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The message is published once, as a response to each of the received messages.
+     */
+    @Override
+    public void publish(
+        final List<TaskInformation> taskInformation,
+        final byte[] taskMessage,
+        final String targetQueue,
+        final Map<String, Object> headers
+    )
+    {
+        broker.getQueue(targetQueue).publish(taskMessage, headers);
+        metrics.incrementPublished();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The message is returned to the input queue to be redelivered.
+     */
+    @Override
+    public void rejectTask(final TaskInformation taskInformation)
+    {
+        final InMemoryMessage message = settle(taskInformation);
+        acknowledgedActions.remove(getDeliveryTag(taskInformation));
+        if (message != null) {
+            LOG.debug("Rejecting message {}", taskInformation.getInboundMessageId());
+            inputQueue.publish(message.redelivered());
+            metrics.incrementRejected();
+        }
+    }
+
+    @Override
+    public void discardTask(final TaskInformation taskInformation)
+    {
+        if (settle(taskInformation) != null) {
+            LOG.warn("Dropping message {}", taskInformation.getInboundMessageId());
+            metrics.incrementDropped();
+        }
+        acknowledgedActions.remove(getDeliveryTag(taskInformation));
+    }
+
+    @Override
+    public void acknowledgeTask(final TaskInformation taskInformation)
+    {
+        if (settle(taskInformation) != null) {
+            LOG.debug("Acknowledged message {}", taskInformation.getInboundMessageId());
+            metrics.incrementAcknowledged();
+            final Runnable action = acknowledgedActions.remove(getDeliveryTag(taskInformation));
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    @Override
+    public void whenAcknowledged(final TaskInformation taskInformation, final Runnable action)
+    {
+        Objects.requireNonNull(action);
+        acknowledgedActions.merge(getDeliveryTag(taskInformation), action, (first, second) -> () -> {
+            first.run();
+            second.run();
+        });
+    }
+
+    @Override
+    public String getInputQueue()
+    {
+        return config.getInputQueue();
+    }
+
+    @Override
+    public String getPausedQueue()
+    {
+        return config.getPausedQueue();
+    }
+
+    @Override
+    public void shutdownIncoming()
+    {
+        LOG.debug("Closing incoming queues");
+        isIncomingShutdown = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Messages which have been delivered but not acknowledged are returned to the input queue to be redelivered.
+     */
+    @Override
+    public void shutdown()
+    {
+        LOG.debug("Shutting down");
+        final Thread thread;
+        synchronized (this) {
+            isRunning = false;
+            thread = consumerThread;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (final Long deliveryTag : unacknowledged.keySet()) {
+            final InMemoryMessage message = unacknowledged.remove(deliveryTag);
+            if (message != null) {
+                unacknowledgedCount.decrementAndGet();
+                inputQueue.publish(message.redelivered());
+            }
+        }
+        acknowledgedActions.clear();
+    }
+
+    @Override
+    public WorkerQueueMetricsReporter getMetrics()
+    {
+        return metrics;
+    }
+
+    @Override
+    public void disconnectIncoming()
+    {
+        LOG.debug("Disconnecting incoming queues");
+        isIncomingDisconnected = true;
+    }
+
+    @Override
+    public void reconnectIncoming()
+    {
+        LOG.debug("Reconnecting incoming queues");
+        isIncomingDisconnected = false;
+        signalConsumer();
+    }
+
+    @Override
+    public void pauseIncoming()
+    {
+        LOG.debug("Pausing incoming queues");
+        isIncomingPaused = true;
+    }
+
+    @Override
+    public void resumeIncoming()
+    {
+        LOG.debug("Resuming incoming queues");
+        isIncomingPaused = false;
+        signalConsumer();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The new prefetch applies to the next message delivered.
+     */
+    @Override
+    public boolean setPrefetch(final int prefetch)
+    {
+        this.prefetch.set(Math.max(1, prefetch));
+        LOG.debug("Prefetch set to {}", prefetch);
+        signalConsumer();
+        return true;
+    }
+
+    @Override
+    public HealthResult healthCheck()
+    {
+        final Thread thread = consumerThread;
+        if (thread == null || !thread.isAlive()) {
+            return new HealthResult(HealthStatus.UNHEALTHY, "In-memory queue consumer thread not running");
+        }
+        return HealthResult.RESULT_HEALTHY;
+    }
+
+    private void consume()
+    {
+        final Thread thread = Thread.currentThread();
+        inputQueue.addWaitingThread(thread);
+        try {
+            while (isRunning) {
+                final InMemoryMessage message = canDeliver() ? inputQueue.poll() : null;
+                if (message == null) {
+                    inputQueue.parkWaitingThread();
+                } else {
+                    deliver(message);
+                }
+            }
+        } finally {
+            inputQueue.removeWaitingThread(thread);
+        }
+    }
+
+    private boolean canDeliver()
+    {
+        return !isIncomingShutdown && !isIncomingDisconnected && !isIncomingPaused && unacknowledgedCount.get() < prefetch.get();
+    }
+
+    private void deliver(final InMemoryMessage message)
+    {
+        metrics.incrementReceived();
+        final long deliveryTag = lastDeliveryTag.incrementAndGet();
+        final boolean isPoison = message.getRedeliveryCount() > config.getRetryLimit();
+        final InMemoryTaskInformation taskInformation = new InMemoryTaskInformation(deliveryTag, isPoison);
+        unacknowledged.put(deliveryTag, message);
+        unacknowledgedCount.incrementAndGet();
+        try {
+            LOG.debug("Registering new message {}", deliveryTag);
+            callback.registerNewTask(taskInformation, message.getBody(), new HashMap<>(message.getHeaders()));
+        } catch (final InvalidTaskException e) {
+            LOG.error("Cannot register new message, rejecting {}", deliveryTag, e);
+            final Map<String, Object> headers = new HashMap<>(message.getHeaders());
+            headers.put(REJECTED_HEADER, REJECTED_REASON_TASKMESSAGE);
+            publish(taskInformation, message.getBody(), config.getRetryQueue(), headers, true);
+        } catch (final TaskRejectedException e) {
+            LOG.warn("Message {} rejected as a task at this time, returning to queue", deliveryTag, e);
+            if (settle(taskInformation) != null) {
+                inputQueue.publish(message);
+                metrics.incrementRepublished();
+            }
+        } catch (final RuntimeException e) {
+            LOG.error("Unexpected failure registering message {}, rejecting", deliveryTag, e);
+            metrics.incrementErrors();
+            rejectTask(taskInformation);
+        }
+    }
+
+    /**
+     * Remove a message from the unacknowledged messages.
+     *
+     * @return the message, or null if it has already been settled
+     */
+    private InMemoryMessage settle(final TaskInformation taskInformation)
+    {
+        final InMemoryMessage message = unacknowledged.remove(getDeliveryTag(taskInformation));
+        if (message != null) {
+            unacknowledgedCount.decrementAndGet();
+            signalConsumer();
+        }
+        return message;
+    }
+
+    private static long getDeliveryTag(final TaskInformation taskInformation)
+    {
+        return ((InMemoryTaskInformation) Objects.requireNonNull(taskInformation)).getDeliveryTag();
+    }
+
+    private void signalConsumer()
+    {
+        final Thread thread = consumerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
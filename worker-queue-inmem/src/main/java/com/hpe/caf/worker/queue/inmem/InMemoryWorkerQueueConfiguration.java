@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import com.hpe.caf.api.Configuration;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Configuration for the worker-queue-inmem module.
+ */
+@Configuration
+public class InMemoryWorkerQueueConfiguration
+{
+    /**
+     * The number of messages delivered to the worker but not yet acknowledged is limited to the number of tasks the worker will run
+     * simultaneously, plus this many.
+     */
+    @Min(0)
+    @Max(100000)
+    private int prefetchBuffer;
+    /**
+     * The queue to retrieve messages from.
+     */
+    @NotNull
+    @Size(min = 1)
+    private String inputQueue;
+    /**
+     * The queue to put messages sent to a paused worker on. If this is null, messages sent to a paused worker will be processed as
+     * normal (as if the worker was not paused).
+     */
+    @Size(min = 1)
+    private String pausedQueue;
+    /**
+     * The queue to put messages which cannot be registered as tasks on. If this is null, the inputQueue will be used.
+     */
+    private String retryQueue;
+    /**
+     * The number of times a message may be redelivered after being rejected before it is delivered as a poison message.
+     */
+    @Min(1)
+    private int retryLimit;
+
+    public InMemoryWorkerQueueConfiguration()
+    {
+    }
+
+    public int getPrefetchBuffer()
+    {
+        return prefetchBuffer;
+    }
+
+    public void setPrefetchBuffer(int prefetchBuffer)
+    {
+        this.prefetchBuffer = prefetchBuffer;
+    }
+
+    public String getInputQueue()
+    {
+        return inputQueue;
+    }
+
+    public void setInputQueue(String inputQueue)
+    {
+        this.inputQueue = inputQueue;
+    }
+
+    public String getPausedQueue()
+    {
+        return pausedQueue;
+    }
+
+    public void setPausedQueue(String pausedQueue)
+    {
+        this.pausedQueue = pausedQueue;
+    }
+
+    public String getRetryQueue()
+    {
+        return retryQueue == null ? inputQueue : retryQueue;
+    }
+
+    public void setRetryQueue(String retryQueue)
+    {
+        this.retryQueue = retryQueue;
+    }
+
+    public int getRetryLimit()
+    {
+        return retryLimit;
+    }
+
+    public void setRetryLimit(int retryLimit)
+    {
+        this.retryLimit = retryLimit;
+    }
+}
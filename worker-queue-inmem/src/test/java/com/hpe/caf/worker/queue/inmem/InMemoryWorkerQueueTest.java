@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.inmem;
+
+import com.hpe.caf.api.worker.InvalidTaskException;
+import com.hpe.caf.api.worker.TaskCallback;
+import com.hpe.caf.api.worker.TaskInformation;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class InMemoryWorkerQueueTest
+{
+    private static final byte[] TASK = "task".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE = "response".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testPublishAndAcknowledge()
+        throws Exception
+    {
+        final InMemoryBroker broker = new InMemoryBroker();
+        final TestCallback callback = new TestCallback();
+        final InMemoryWorkerQueue queue = new InMemoryWorkerQueue(broker, getConfig("in", 10), 1);
+        queue.start(callback);
+        try {
+            broker.getQueue("in").publish(TASK, Collections.singletonMap("x-caf-task-header", "value"));
+            broker.getQueue("in").publish(TASK, Collections.emptyMap());
+
+            // Only one message is delivered until the first is finished with, as the worker runs one task at a time
+            final Delivery first = callback.take();
+            Assert.assertEquals(first.body, TASK);
+            Assert.assertEquals(first.headers.get("x-caf-task-header"), "value");
+            Assert.assertNull(callback.deliveries.poll(200, TimeUnit.MILLISECONDS));
+
+            queue.publish(first.taskInformation, RESPONSE, "out", Collections.emptyMap());
+            Assert.assertNull(callback.deliveries.poll(200, TimeUnit.MILLISECONDS));
+            queue.publish(first.taskInformation, RESPONSE, "out", Collections.emptyMap(), true);
+            final Delivery second = callback.take();
+            queue.acknowledgeTask(second.taskInformation);
+
+            Assert.assertEquals(broker.getQueue("out").size(), 2);
+            Assert.assertEquals(broker.getQueue("out").poll().getBody(), RESPONSE);
+            Assert.assertEquals(queue.getMetrics().getMessagesReceived(), 2);
+            Assert.assertEquals(queue.getMetrics().getMessagesPublished(), 2);
+            Assert.assertEquals(queue.getMetrics().getMessagesAcknowledged(), 2);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedMessageRedeliveredUntilPoison()
+        throws Exception
+    {
+        final InMemoryBroker broker = new InMemoryBroker();
+        final TestCallback callback = new TestCallback();
+        final InMemoryWorkerQueue queue = new InMemoryWorkerQueue(broker, getConfig("in", 2), 1);
+        queue.start(callback);
+        try {
+            broker.getQueue("in").publish(TASK, Collections.emptyMap());
+            for (int delivery = 0; delivery <= 2; delivery++) {
+                final Delivery redelivery = callback.take();
+                Assert.assertFalse(redelivery.taskInformation.isPoison());
+                queue.rejectTask(redelivery.taskInformation);
+            }
+            final Delivery poison = callback.take();
+            Assert.assertTrue(poison.taskInformation.isPoison());
+            queue.discardTask(poison.taskInformation);
+            Assert.assertEquals(queue.getMetrics().getMessagesRejected(), 3);
+            Assert.assertEquals(queue.getMetrics().getMessagesDropped(), 1);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidTaskMovedToRetryQueue()
+        throws Exception
+    {
+        final InMemoryBroker broker = new InMemoryBroker();
+        final InMemoryWorkerQueueConfiguration config = getConfig("in", 10);
+        config.setRetryQueue("retry");
+        final InMemoryWorkerQueue queue = new InMemoryWorkerQueue(broker, config, 1);
+        queue.start(new TestCallback()
+        {
+            @Override
+            public void registerNewTask(final TaskInformation taskInformation, final byte[] taskData, final Map<String, Object> headers)
+                throws InvalidTaskException
+            {
+                throw new InvalidTaskException("Invalid task");
+            }
+        });
+        try {
+            broker.getQueue("in").publish(TASK, Collections.emptyMap());
+            final InMemoryMessage rejected = broker.getQueue("retry").poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(rejected);
+            Assert.assertEquals(rejected.getBody(), TASK);
+            Assert.assertEquals(rejected.getHeaders().get(InMemoryWorkerQueue.REJECTED_HEADER),
+                                InMemoryWorkerQueue.REJECTED_REASON_TASKMESSAGE);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnacknowledgedMessagesReturnedOnShutdown()
+        throws Exception
+    {
+        final InMemoryBroker broker = new InMemoryBroker();
+        final TestCallback callback = new TestCallback();
+        final InMemoryWorkerQueue queue = new InMemoryWorkerQueue(broker, getConfig("in", 10), 1);
+        queue.start(callback);
+        broker.getQueue("in").publish(TASK, Collections.emptyMap());
+        callback.take();
+        queue.shutdown();
+
+        final InMemoryMessage returned = broker.getQueue("in").poll();
+        Assert.assertNotNull(returned);
+        Assert.assertTrue(returned.isRedelivered());
+    }
+
+    private static InMemoryWorkerQueueConfiguration getConfig(final String inputQueue, final int retryLimit)
+    {
+        final InMemoryWorkerQueueConfiguration config = new InMemoryWorkerQueueConfiguration();
+        config.setInputQueue(inputQueue);
+        config.setRetryLimit(retryLimit);
+        return config;
+    }
+
+    private static final class Delivery
+    {
+        final TaskInformation taskInformation;
+        final byte[] body;
+        final Map<String, Object> headers;
+
+        Delivery(final TaskInformation taskInformation, final byte[] body, final Map<String, Object> headers)
+        {
+            this.taskInformation = taskInformation;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+
+    private static class TestCallback implements TaskCallback
+    {
+        final BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+
+        @Override
+        public void registerNewTask(final TaskInformation taskInformation, final byte[] taskData, final Map<String, Object> headers)
+            throws InvalidTaskException
+        {
+            deliveries.add(new Delivery(taskInformation, taskData, headers));
+        }
+
+        @Override
+        public void abortTasks()
+        {
+        }
+
+        Delivery take()
+            throws InterruptedException
+        {
+            final Delivery delivery = deliveries.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(delivery);
+            return delivery;
+        }
+    }
+}
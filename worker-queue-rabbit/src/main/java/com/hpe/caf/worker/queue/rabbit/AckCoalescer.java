@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the acknowledgement of inbound messages into as few basic.ack calls as possible.
+ * <p>
+ * A message is only acknowledged once it is ready, which is once all of its responses have been confirmed. The coalescer tracks the
+ * delivery tags of the incoming channel from the lowest one not yet settled with the broker. Once every tag in a run starting from
+ * there is either ready or has already been rejected, the highest ready tag in the run is acknowledged with {@code multiple=true},
+ * which settles the whole run in one call. A tag that is still in progress blocks the run, so ready tags behind it are held until
+ * either the batch size or the maximum delay is reached, at which point they are acknowledged individually.
+ * <p>
+ * This class is not thread safe and must only be used from the consumer thread, with the exception of {@link #reset()}.
+ */
+final class AckCoalescer
+{
+    /**
+     * Told of each acknowledgement sent to the broker.
+     */
+    @FunctionalInterface
+    interface AckListener
+    {
+        /**
+         * @param tag the delivery tag acknowledged
+         * @param multiple whether every delivery tag up to and including it was acknowledged
+         */
+        void acknowledged(long tag, boolean multiple);
+    }
+
+    private final Channel channel;
+    private final RabbitMetricsReporter metrics;
+    private final AckListener ackListener;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    /**
+     * The tags from base which are ready to be acknowledged.
+     */
+    private BitSet ready = new BitSet();
+    /**
+     * The tags from base which are ready to be acknowledged or have already been settled with the broker.
+     */
+    private BitSet done = new BitSet();
+    /**
+     * The lowest delivery tag which has not been settled with the broker, or 0 if no delivery has been seen.
+     */
+    private long base;
+    private long highestDelivered;
+    private long acknowledgedCount;
+    private int pendingCount;
+    private long oldestPendingNanos;
+    private volatile boolean pending;
+    private volatile boolean resetRequested;
+    private static final Logger LOG = LoggerFactory.getLogger(AckCoalescer.class);
+
+    /**
+     * @param channel the incoming channel
+     * @param metrics the metrics reporter to record acknowledgements with
+     * @param batchSize the number of ready messages at which acknowledgements are sent
+     * @param maxDelayMillis the maximum time to hold a ready message before acknowledging it
+     */
+    public AckCoalescer(final Channel channel, final RabbitMetricsReporter metrics, final int batchSize, final long maxDelayMillis)
+    {
+        this(channel, metrics, batchSize, maxDelayMillis, (tag, multiple) -> {});
+    }
+
+    /**
+     * @param channel the incoming channel
+     * @param metrics the metrics reporter to record acknowledgements with
+     * @param batchSize the number of ready messages at which acknowledgements are sent
+     * @param maxDelayMillis the maximum time to hold a ready message before acknowledging it
+     * @param ackListener told of each acknowledgement once it has been sent
+     */
+    public AckCoalescer(final Channel channel, final RabbitMetricsReporter metrics, final int batchSize, final long maxDelayMillis,
+                        final AckListener ackListener)
+    {
+        this.channel = Objects.requireNonNull(channel);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.ackListener = Objects.requireNonNull(ackListener);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    /**
+     * Record the delivery of a message.
+     *
+     * @param tag the delivery tag
+     */
+    public void delivered(final long tag)
+    {
+        applyReset();
+        if (base == 0) {
+            base = tag;
+        }
+        highestDelivered = Math.max(highestDelivered, tag);
+    }
+
+    /**
+     * Record that a message is ready to be acknowledged, sending acknowledgements if the batch size has been reached.
+     *
+     * @param tag the delivery tag
+     */
+    public void acknowledge(final long tag)
+    {
+        applyReset();
+        if (base == 0 || tag < base) {
+            // Not delivered on the current channel, so there is nothing to coalesce it with
+            sendAck(tag, false, 1);
+            return;
+        }
+        final int index = toIndex(tag);
+        if (done.get(index)) {
+            LOG.debug("Message {} has already been acknowledged", tag);
+            return;
+        }
+        ready.set(index);
+        done.set(index);
+        if (pendingCount++ == 0) {
+            oldestPendingNanos = System.nanoTime();
+            pending = true;
+        }
+        if (pendingCount >= batchSize) {
+            flush(false);
+        }
+    }
+
+    /**
+     * Record that a message has been settled with the broker other than by acknowledgement, such as by being rejected.
+     *
+     * @param tag the delivery tag
+     */
+    public void settled(final long tag)
+    {
+        applyReset();
+        if (base != 0 && tag >= base) {
+            done.set(toIndex(tag));
+        }
+    }
+
+    /**
+     * Send acknowledgements for all ready messages if the oldest of them has been held for the maximum delay.
+     */
+    public void flushIfDue()
+    {
+        applyReset();
+        if (pendingCount > 0 && System.nanoTime() - oldestPendingNanos >= maxDelayNanos) {
+            flush(true);
+        }
+    }
+
+    /**
+     * @return true if there are ready messages which have not yet been acknowledged; may be called from any thread
+     */
+    public boolean hasPending()
+    {
+        return pending;
+    }
+
+    /**
+     * @return the number of messages acknowledged with the broker so far
+     */
+    public long getAcknowledgedCount()
+    {
+        return acknowledgedCount;
+    }
+
+    /**
+     * Forget all tracked delivery tags, for use when the connection has been recovered and the tags delivered so far no longer apply.
+     * Takes effect the next time the coalescer is used from the consumer thread. May be called from any thread.
+     */
+    public void reset()
+    {
+        resetRequested = true;
+    }
+
+    /**
+     * Acknowledge the longest run of settled and ready messages from the lowest unsettled delivery tag with a single call.
+     *
+     * @param all whether to also acknowledge individually any ready messages beyond that run
+     */
+    private void flush(final boolean all)
+    {
+        final int runLength = done.nextClearBit(0);
+        final int last = runLength > 0 ? ready.previousSetBit(runLength - 1) : -1;
+        if (last >= 0) {
+            final int count = countReady(last);
+            if (!sendAck(base + last, count > 1, count)) {
+                return;
+            }
+            pendingCount -= count;
+        }
+        if (runLength > 0) {
+            ready = ready.get(runLength, Math.max(runLength, ready.length()));
+            done = done.get(runLength, Math.max(runLength, done.length()));
+            base += runLength;
+        }
+        if (all) {
+            for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(i + 1)) {
+                if (sendAck(base + i, false, 1)) {
+                    ready.clear(i);
+                    pendingCount--;
+                }
+            }
+        }
+        if (pendingCount == 0) {
+            pending = false;
+        } else if (all) {
+            oldestPendingNanos = System.nanoTime();
+        }
+    }
+
+    private int countReady(final int last)
+    {
+        int count = 0;
+        for (int i = ready.nextSetBit(0); i >= 0 && i <= last; i = ready.nextSetBit(i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private boolean sendAck(final long tag, final boolean multiple, final int messageCount)
+    {
+        try {
+            LOG.debug("Acknowledging message {} (multiple: {})", tag, multiple);
+            channel.basicAck(tag, multiple);
+            metrics.incrementAcksSent();
+            metrics.incrementMessagesAcknowledged(messageCount);
+            acknowledgedCount += messageCount;
+            ackListener.acknowledged(tag, multiple);
+            return true;
+        } catch (final IOException e) {
+            LOG.warn("Couldn't ack message {} (multiple: {}), will retry", tag, multiple, e);
+            metrics.incremementErrors();
+            return false;
+        }
+    }
+
+    private int toIndex(final long tag)
+    {
+        final long index = tag - base;
+        if (index > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Delivery tag " + tag + " is too far beyond the oldest unsettled tag " + base);
+        }
+        return (int) index;
+    }
+
+    private void applyReset()
+    {
+        if (resetRequested) {
+            resetRequested = false;
+            LOG.debug("Discarding {} unsent acknowledgements after connection recovery", pendingCount);
+            ready = new BitSet();
+            done = new BitSet();
+            base = highestDelivered == 0 ? 0 : highestDelivered + 1;
+            pendingCount = 0;
+            pending = false;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the publish associated with each unconfirmed publish sequence number on a channel, without locking.
+ * <p>
+ * Publish sequence numbers are dense and increase monotonically, so rather than a sorted map keyed on boxed sequence numbers the
+ * tracker holds a linked list of fixed size segments, each an array of slots indexed by sequence number. The publisher thread appends
+ * segments at the tail as it registers publishes, and the thread on which the broker's confirms are delivered clears slots and drops
+ * segments from the head once they are fully confirmed. A cumulative confirm only visits the sequence numbers since the previous
+ * cumulative confirm.
+ * <p>
+ * The tracker expects a single registering thread and a single confirming thread, as is the case for a RabbitMQ channel. Sequence
+ * numbers should not be registered below the highest cumulatively confirmed sequence number; a registration below the oldest tracked
+ * segment is taken to mean that the channel's sequence has been reset, and discards everything being tracked. Tracking can also be
+ * cleared from any other thread, such as one recovering the connection, but the registering thread is the one that discards the
+ * segments, so that they are never replaced while it is registering a publish.
+ *
+ * @param <T> the type of the value tracked for each publish
+ */
+final class ConfirmTracker<T>
+{
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final Logger LOG = LoggerFactory.getLogger(ConfirmTracker.class);
+
+    private final AtomicReference<Segment<T>> head = new AtomicReference<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile Segment<T> tail;
+    private volatile long confirmedThrough;
+    private volatile Thread waiter;
+    private volatile boolean clearRequested;
+
+    /**
+     * Track a published sequence number.
+     *
+     * @param sequence the publish sequence number
+     * @param value the value to return when the sequence number is confirmed
+     * @throws IllegalStateException if the sequence number is already being tracked
+     */
+    public void register(final long sequence, final T value)
+    {
+        clearIfRequested();
+        final Segment<T> segment = segmentForRegistration(sequence);
+        segment.pending.incrementAndGet();
+        if (!segment.slots.compareAndSet(segment.index(sequence), null, value)) {
+            segment.pending.decrementAndGet();
+            throw new IllegalStateException("Sequence id " + sequence + " already present in confirmations map");
+        }
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Track a contiguous range of published sequence numbers. If any sequence number in the range is already being tracked then none
+     * of the range is registered.
+     *
+     * @param firstSequence the first publish sequence number in the range
+     * @param values the values to return when the corresponding sequence numbers are confirmed
+     * @throws IllegalStateException if any sequence number in the range is already being tracked
+     */
+    public void registerRange(final long firstSequence, final List<? extends T> values)
+    {
+        for (int i = 0; i < values.size(); i++) {
+            try {
+                register(firstSequence + i, values.get(i));
+            } catch (final IllegalStateException e) {
+                removeRange(firstSequence, firstSequence + i);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stop tracking a single sequence number.
+     *
+     * @param sequence the publish sequence number
+     * @return the value registered for the sequence number, or null if it was not being tracked
+     */
+    public T remove(final long sequence)
+    {
+        final Segment<T> segment = find(sequence);
+        if (segment == null) {
+            return null;
+        }
+        final T value = segment.slots.getAndSet(segment.index(sequence), null);
+        if (value != null) {
+            released(segment, 1);
+            advanceHead();
+            signalWaiter();
+        }
+        return value;
+    }
+
+    /**
+     * Stop tracking every sequence number up to and including the one specified.
+     *
+     * @param sequence the highest publish sequence number to stop tracking
+     * @param action called with the value registered for each sequence number that was being tracked, in sequence order
+     */
+    public void removeThrough(final long sequence, final Consumer<? super T> action)
+    {
+        Segment<T> segment = head.get();
+        if (segment == null) {
+            return;
+        }
+        final long from = Math.max(confirmedThrough + 1, segment.base);
+        for (; segment != null && segment.base <= sequence; segment = segment.next) {
+            final long end = Math.min(sequence, segment.base + SEGMENT_MASK);
+            int count = 0;
+            for (long seq = Math.max(from, segment.base); seq <= end; seq++) {
+                final T value = segment.slots.getAndSet(segment.index(seq), null);
+                if (value != null) {
+                    count++;
+                    action.accept(value);
+                }
+            }
+            released(segment, count);
+        }
+        if (sequence > confirmedThrough) {
+            confirmedThrough = sequence;
+        }
+        advanceHead();
+        signalWaiter();
+    }
+
+    /**
+     * Stop tracking a range of sequence numbers.
+     *
+     * @param fromSequence the first publish sequence number to stop tracking (inclusive)
+     * @param toSequence the last publish sequence number to stop tracking (exclusive)
+     */
+    public void removeRange(final long fromSequence, final long toSequence)
+    {
+        for (long seq = fromSequence; seq < toSequence; seq++) {
+            remove(seq);
+        }
+    }
+
+    /**
+     * @return the number of sequence numbers currently being tracked
+     */
+    public int size()
+    {
+        return clearRequested ? 0 : Math.max(0, outstanding.get());
+    }
+
+    /**
+     * Stop tracking all sequence numbers. The registering thread discards them before it next registers a sequence number or waits
+     * for capacity, so this may be called from any thread.
+     */
+    public void clear()
+    {
+        clearRequested = true;
+        signalWaiter();
+    }
+
+    private void clearIfRequested()
+    {
+        if (clearRequested) {
+            clearRequested = false;
+            discardAll();
+        }
+    }
+
+    private void discardAll()
+    {
+        head.set(null);
+        tail = null;
+        confirmedThrough = 0;
+        outstanding.set(0);
+    }
+
+    /**
+     * Wait until no more than {@code maxInFlight - required} sequence numbers are being tracked. A registration is always permitted
+     * when nothing is being tracked, so a request larger than the limit does not wait forever.
+     *
+     * @param required the number of registrations about to be made
+     * @param maxInFlight the maximum number of tracked sequence numbers, or 0 for no limit
+     * @param timeoutMillis the maximum time to wait
+     * @return true if there is capacity, false if the wait timed out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitCapacity(final int required, final int maxInFlight, final long timeoutMillis)
+        throws InterruptedException
+    {
+        if (maxInFlight <= 0 || hasCapacity(required, maxInFlight)) {
+            return true;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        waiter = Thread.currentThread();
+        try {
+            while (!hasCapacity(required, maxInFlight)) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    private boolean hasCapacity(final int required, final int maxInFlight)
+    {
+        clearIfRequested();
+        final int count = outstanding.get();
+        return count <= 0 || count + required <= maxInFlight;
+    }
+
+    private Segment<T> segmentForRegistration(final long sequence)
+    {
+        final long base = sequence & ~SEGMENT_MASK;
+        Segment<T> last = tail;
+        if (last == null) {
+            return start(base);
+        }
+        if (base > last.base) {
+            do {
+                final Segment<T> next = new Segment<>(last.base + SEGMENT_SIZE);
+                last.next = next;
+                last = next;
+            } while (last.base < base);
+            tail = last;
+            return last;
+        }
+        final Segment<T> segment = find(sequence);
+        if (segment != null) {
+            return segment;
+        }
+        LOG.info("Publish sequence {} precedes the confirmations being tracked, discarding them", sequence);
+        discardAll();
+        return start(base);
+    }
+
+    private Segment<T> start(final long base)
+    {
+        final Segment<T> segment = new Segment<>(base);
+        tail = segment;
+        head.set(segment);
+        return segment;
+    }
+
+    private Segment<T> find(final long sequence)
+    {
+        for (Segment<T> segment = head.get(); segment != null && segment.base <= sequence; segment = segment.next) {
+            if (sequence <= segment.base + SEGMENT_MASK) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private void released(final Segment<T> segment, final int count)
+    {
+        if (count > 0) {
+            segment.pending.addAndGet(-count);
+            outstanding.addAndGet(-count);
+        }
+    }
+
+    /**
+     * Drop segments from the head of the list once all of their sequence numbers have been confirmed and the publisher has moved on
+     * to a later segment.
+     */
+    private void advanceHead()
+    {
+        Segment<T> segment;
+        while ((segment = head.get()) != null && segment.next != null && segment.pending.get() == 0) {
+            head.compareAndSet(segment, segment.next);
+        }
+    }
+
+    private void signalWaiter()
+    {
+        final Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static final class Segment<T>
+    {
+        final long base;
+        final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        final AtomicInteger pending = new AtomicInteger();
+        volatile Segment<T> next;
+
+        Segment(final long base)
+        {
+            this.base = base;
+        }
+
+        int index(final long sequence)
+        {
+            return (int) (sequence - base);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.RabbitHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses the bodies of published messages, and decompresses the bodies of delivered messages.
+ * <p>
+ * A compressed message carries the encoding of its body in a content encoding header. Being a task message header, it travels with the
+ * body whenever a delivery is republished as it arrived. Delivered messages are decompressed whatever encoding is configured for
+ * publishing, so every worker on a pipeline should be able to decompress messages before any of them compresses the messages it
+ * publishes.
+ */
+final class PayloadCompression
+{
+    static final String CONTENT_ENCODING_HEADER = RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX + "content-encoding";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadCompression.class);
+
+    /**
+     * The encodings that message bodies can be compressed with.
+     */
+    enum Encoding
+    {
+        /**
+         * gzip at its default compression level.
+         */
+        GZIP("gzip") {
+            @Override
+            OutputStream encode(final OutputStream out) throws IOException
+            {
+                return new GZIPOutputStream(out);
+            }
+
+            @Override
+            InputStream decode(final InputStream in) throws IOException
+            {
+                return new GZIPInputStream(in);
+            }
+        },
+        /**
+         * zlib deflate at its fastest compression level, which costs less CPU time than gzip for a little less compression.
+         */
+        DEFLATE("deflate") {
+            @Override
+            OutputStream encode(final OutputStream out)
+            {
+                return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED)) {
+                    @Override
+                    public void close() throws IOException
+                    {
+                        super.close();
+                        def.end();
+                    }
+                };
+            }
+
+            @Override
+            InputStream decode(final InputStream in)
+            {
+                return new InflaterInputStream(in);
+            }
+        };
+
+        private final String headerValue;
+
+        Encoding(final String headerValue)
+        {
+            this.headerValue = headerValue;
+        }
+
+        abstract OutputStream encode(OutputStream out) throws IOException;
+
+        abstract InputStream decode(InputStream in) throws IOException;
+
+        /**
+         * @param name the name of an encoding as used in the content encoding header, or null
+         * @return the encoding, or null if the name is null, empty or "none"
+         * @throws IllegalArgumentException if the encoding is not known
+         */
+        static Encoding forName(final String name)
+        {
+            if (name == null || name.isEmpty() || "none".equalsIgnoreCase(name)) {
+                return null;
+            }
+            for (final Encoding encoding : values()) {
+                if (encoding.headerValue.equals(name.toLowerCase(Locale.ROOT))) {
+                    return encoding;
+                }
+            }
+            throw new IllegalArgumentException("Unknown content encoding: " + name);
+        }
+    }
+
+    private final Encoding encoding;
+    private final int thresholdBytes;
+    private final RabbitMetricsReporter metrics;
+
+    /**
+     * @param encoding the encoding to compress published messages with, or null to publish messages uncompressed
+     * @param thresholdBytes the size in bytes below which published messages are not compressed
+     * @param metrics the metrics to report to
+     */
+    public PayloadCompression(final Encoding encoding, final int thresholdBytes, final RabbitMetricsReporter metrics)
+    {
+        this.encoding = encoding;
+        this.thresholdBytes = thresholdBytes;
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Compress the body of a message to be published, if it is large enough and is not already compressed. The body is sent as it is if
+     * compressing it does not make it smaller.
+     *
+     * @param body the body of the message
+     * @param headers the headers of the message
+     * @return the body to publish, which is the supplied body if it has not been compressed
+     */
+    public byte[] compress(final byte[] body, final Map<String, Object> headers)
+    {
+        if (encoding == null || body.length < thresholdBytes || headers.containsKey(CONTENT_ENCODING_HEADER)) {
+            return body;
+        }
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (final OutputStream out = encoding.encode(compressed)) {
+            out.write(body);
+        } catch (final IOException e) {
+            // A ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        final byte[] result = compressed.size() < body.length ? compressed.toByteArray() : body;
+        metrics.addCompressed(body.length, result.length, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Get the headers to publish a message with once its body has been compressed.
+     *
+     * @param headers the headers of the message
+     * @return a copy of the headers recording the encoding of the body
+     */
+    public Map<String, Object> getCompressedHeaders(final Map<String, Object> headers)
+    {
+        final Map<String, Object> compressedHeaders = new HashMap<>(headers);
+        compressedHeaders.put(CONTENT_ENCODING_HEADER, encoding.headerValue);
+        return compressedHeaders;
+    }
+
+    /**
+     * Decompress the body of a delivered message, if its headers say that it is compressed.
+     *
+     * @param body the body of the message
+     * @param headers the headers of the message
+     * @return the decompressed body, which is the supplied body if it was not compressed
+     * @throws IOException if the body cannot be decompressed
+     */
+    public byte[] decompress(final byte[] body, final Map<String, Object> headers)
+        throws IOException
+    {
+        final Object encodingHeader = headers.get(CONTENT_ENCODING_HEADER);
+        if (encodingHeader == null) {
+            return body;
+        }
+        final Encoding bodyEncoding;
+        try {
+            bodyEncoding = Encoding.forName(encodingHeader.toString());
+        } catch (final IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (bodyEncoding == null) {
+            return body;
+        }
+        final long start = System.nanoTime();
+        final byte[] decompressed;
+        try (final InputStream in = bodyEncoding.decode(new ByteArrayInputStream(body))) {
+            decompressed = in.readAllBytes();
+        }
+        metrics.addDecompressionNanos(System.nanoTime() - start);
+        LOG.debug("Decompressed {} byte {} message body to {} bytes", body.length, bodyEncoding.headerValue, decompressed.length);
+        return decompressed;
+    }
+
+    /**
+     * Get the headers to hand a delivered message on with once its body has been decompressed.
+     *
+     * @param headers the headers of the message
+     * @return the headers without the content encoding header, which are the supplied headers if there was no content encoding header
+     */
+    public static Map<String, Object> getDecompressedHeaders(final Map<String, Object> headers)
+    {
+        if (!headers.containsKey(CONTENT_ENCODING_HEADER)) {
+            return headers;
+        }
+        final Map<String, Object> decompressedHeaders = new HashMap<>(headers);
+        decompressedHeaders.remove(CONTENT_ENCODING_HEADER);
+        return decompressedHeaders;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules messages whose publish failed, or was negatively acknowledged by the broker, to be published again on their publisher
+ * channel, so that a transient broker problem does not cause the input task to be rejected and redone.
+ * <p>
+ * Each message is published again at most a fixed number of times, waiting twice as long before each attempt as before the last, up
+ * to a minute. Once a message has used all of its attempts it is left to the caller to reject the input task. Messages published
+ * again go to the back of the publisher queue, so may be published after later messages for the same task.
+ */
+final class PublishRetryScheduler
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PublishRetryScheduler.class);
+    private static final long MAX_DELAY_MILLIS = 60000;
+
+    private final int retryLimit;
+    private final long retryDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final BlockingQueue<Event<WorkerPublisher>> publishQueue;
+    private final RabbitMetricsReporter metrics;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * @param retryLimit the maximum number of times to publish a message again
+     * @param retryDelayMillis the time to wait before publishing a message again for the first time
+     * @param executor the executor to wait on
+     * @param publishQueue the event queue of the publisher channel to publish messages again on
+     * @param metrics the metrics to report to
+     */
+    public PublishRetryScheduler(
+        final int retryLimit,
+        final long retryDelayMillis,
+        final ScheduledExecutorService executor,
+        final BlockingQueue<Event<WorkerPublisher>> publishQueue,
+        final RabbitMetricsReporter metrics
+    )
+    {
+        if (retryLimit < 1) {
+            throw new IllegalArgumentException("Retry limit must be at least 1");
+        }
+        this.retryLimit = retryLimit;
+        this.retryDelayMillis = Math.max(1, retryDelayMillis);
+        this.executor = Objects.requireNonNull(executor);
+        this.publishQueue = Objects.requireNonNull(publishQueue);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Schedule a message to be published again, if it has not already been published again the maximum number of times.
+     *
+     * @param event the publish event of the message
+     * @return true if the message will be published again, false if the input task should be rejected instead
+     */
+    public boolean retry(final WorkerPublishQueueEvent event)
+    {
+        if (!event.isRepublishable() || event.getRepublishCount() >= retryLimit) {
+            return false;
+        }
+        event.incrementRepublishCount();
+        final long delayMillis = getDelayMillis(event.getRepublishCount());
+        final int scheduledGeneration = generation.get();
+        try {
+            executor.schedule(() -> {
+                if (generation.get() == scheduledGeneration) {
+                    publishQueue.add(new RepublishEvent(event));
+                } else {
+                    LOG.debug("Not publishing result of message {} again as the connection has been recovered since it failed",
+                              event.getTaskInformation().getInboundMessageId());
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            LOG.debug("Not publishing result of message {} again as the publisher is shutting down",
+                      event.getTaskInformation().getInboundMessageId());
+            return false;
+        }
+        metrics.incrementRepublished();
+        LOG.warn("Publishing result of message {} to queue {} again in {} ms (attempt {} of {})",
+                 event.getTaskInformation().getInboundMessageId(), event.getRoutingKey(), delayMillis,
+                 event.getRepublishCount(), retryLimit);
+        return true;
+    }
+
+    /**
+     * Abandon the messages waiting to be published again. This is for use when the connection is recovered, as the broker then
+     * redelivers the input tasks that they were published for.
+     */
+    public void reset()
+    {
+        generation.incrementAndGet();
+    }
+
+    long getDelayMillis(final int attempt)
+    {
+        final int doublings = Math.min(attempt - 1, 16);
+        return Math.min(retryDelayMillis << doublings, MAX_DELAY_MILLIS);
+    }
+
+    private static final class RepublishEvent implements Event<WorkerPublisher>
+    {
+        private final WorkerPublishQueueEvent publish;
+
+        RepublishEvent(final WorkerPublishQueueEvent publish)
+        {
+            this.publish = publish;
+        }
+
+        @Override
+        public void handleEvent(final WorkerPublisher target)
+        {
+            target.handleRepublish(publish);
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.hpe.caf.worker.queue.rabbit;
 import com.hpe.caf.api.worker.WorkerQueueMetricsReporter;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RabbitMetricsReporter implements WorkerQueueMetricsReporter
 {
@@ -26,6 +27,13 @@ public class RabbitMetricsReporter implements WorkerQueueMetricsReporter
     private final AtomicInteger msgTx = new AtomicInteger(0);
     private final AtomicInteger msgRejected = new AtomicInteger(0);
     private final AtomicInteger msgDropped = new AtomicInteger(0);
+    private final AtomicInteger acksSent = new AtomicInteger(0);
+    private final AtomicInteger msgAcknowledged = new AtomicInteger(0);
+    private final AtomicInteger msgRepublished = new AtomicInteger(0);
+    private final AtomicLong bytesBeforeCompression = new AtomicLong(0);
+    private final AtomicLong bytesAfterCompression = new AtomicLong(0);
+    private final AtomicLong compressionNanos = new AtomicLong(0);
+    private final AtomicLong decompressionNanos = new AtomicLong(0);
 
     public void incremementErrors()
     {
@@ -81,4 +89,73 @@ public class RabbitMetricsReporter implements WorkerQueueMetricsReporter
     {
         return msgDropped.get();
     }
+
+    public void incrementAcksSent()
+    {
+        acksSent.incrementAndGet();
+    }
+
+    @Override
+    public int getAcksSent()
+    {
+        return acksSent.get();
+    }
+
+    public void incrementMessagesAcknowledged(final int count)
+    {
+        msgAcknowledged.addAndGet(count);
+    }
+
+    @Override
+    public int getMessagesAcknowledged()
+    {
+        return msgAcknowledged.get();
+    }
+
+    public void incrementRepublished()
+    {
+        msgRepublished.incrementAndGet();
+    }
+
+    @Override
+    public int getMessagesRepublished()
+    {
+        return msgRepublished.get();
+    }
+
+    public void addCompressed(final long bytesBefore, final long bytesAfter, final long nanos)
+    {
+        bytesBeforeCompression.addAndGet(bytesBefore);
+        bytesAfterCompression.addAndGet(bytesAfter);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getBytesBeforeCompression()
+    {
+        return bytesBeforeCompression.get();
+    }
+
+    @Override
+    public long getBytesAfterCompression()
+    {
+        return bytesAfterCompression.get();
+    }
+
+    @Override
+    public long getCompressionNanos()
+    {
+        return compressionNanos.get();
+    }
+
+    public void addDecompressionNanos(final long nanos)
+    {
+        decompressionNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getDecompressionNanos()
+    {
+        return decompressionNanos.get();
+    }
 }
@@ -124,13 +124,15 @@ public class RabbitTaskInformation implements TaskInformation {
 
     /**
      *
-     * Mark the ackEventSent flag to true to avoid multiple 
-     * ackEventSent being sent for same inboundMessageId.
+     * Set the ackEventSent flag if it is not already set, so that only one
+     * ack event is sent for the inboundMessageId even when its responses are
+     * confirmed on more than one channel at once.
      *
+     * @return true if the flag was set by this call, and so the ack event should be sent
      */
-    public void markAckEventAsSent()
+    public boolean tryMarkAckEventSent()
     {
-        ackEventSent.set(true);
+        return ackEventSent.compareAndSet(false, true);
     }
 
     /**
@@ -31,7 +31,6 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -47,28 +46,56 @@ import java.util.concurrent.TimeoutException;
 public final class RabbitWorkerQueue implements ManagedWorkerQueue
 {
     private DefaultRabbitConsumer consumer;
-    private EventPoller<WorkerPublisher> publisher;
+    private WorkerQueueConsumerImpl consumerImpl;
+    private WorkerPublisherPool publisherPool;
     private Connection conn;
     private Channel incomingChannel;
-    private Channel outgoingChannel;
-    private Thread publisherThread;
     private Thread consumerThread;
     private String consumerTag;
+    private boolean isIncomingDisconnected;
+    private boolean isIncomingPaused;
+    private boolean isIncomingShutdown;
+    private int targetPrefetch;
+    private int consumerPrefetch;
     private final Object consumerLock = new Object();
     private final Set<String> declaredQueues = new HashSet<>();
-    private final BlockingQueue<Event<QueueConsumer>> consumerQueue = new LinkedBlockingQueue<>();
-    private final BlockingQueue<Event<WorkerPublisher>> publisherQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Event<QueueConsumer>> consumerQueue = new MpscBlockingQueue<>();
     private final RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+    private final ThreadLocal<List<WorkerPublishQueueEvent>> heldPublishes = new ThreadLocal<>();
     private final RabbitWorkerQueueConfiguration config;
+    private final ConnectionSource connectionSource;
+    private final PayloadCompression compression;
     private final int maxTasks;
     private static final Logger LOG = LoggerFactory.getLogger(RabbitWorkerQueue.class);
 
+    /**
+     * Opens the connection that the queue uses to reach RabbitMQ.
+     */
+    @FunctionalInterface
+    interface ConnectionSource
+    {
+        Connection newConnection()
+            throws IOException, TimeoutException, URISyntaxException, NoSuchAlgorithmException, KeyManagementException;
+    }
+
     /**
      * Setup a new RabbitWorkerQueue.
      */
     public RabbitWorkerQueue(RabbitWorkerQueueConfiguration config, int maxTasks)
+    {
+        this(config, maxTasks, () -> RabbitUtil.createRabbitConnection(config.getRabbitConfiguration()));
+    }
+
+    /**
+     * Setup a new RabbitWorkerQueue which opens its connection from the specified source rather than from the RabbitMQ configuration.
+     * The connection must also implement Recoverable.
+     */
+    RabbitWorkerQueue(RabbitWorkerQueueConfiguration config, int maxTasks, ConnectionSource connectionSource)
     {
         this.config = Objects.requireNonNull(config);
+        this.connectionSource = Objects.requireNonNull(connectionSource);
+        this.compression = new PayloadCompression(PayloadCompression.Encoding.forName(config.getCompression()),
+                                                  config.getCompressionThresholdBytes(), metrics);
         this.maxTasks = maxTasks;
         LOG.debug("Initialised");
     }
@@ -78,7 +105,8 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
      *
      * Create a RabbitMQ connection, and separate incoming and outgoing channels. The connection and channels will
      * attempt to re-establish should they drop. Declare the queues on the appropriate channels and kick off the publisher and consumer
-     * threads to handle messages. Since this code uses publisher confirms, it is important currently to declare the publisher channel
+     * threads to handle messages. There are as many outgoing channels and publisher threads as the publisherChannels setting specifies.
+     * Since this code uses publisher confirms, it is important currently to declare the publisher channels
      * before the consumer channel, otherwise during a connection drop scenario, the client can report the publish sequence number for the "old"
      * channel before recovering it.
      */
@@ -90,30 +118,39 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
             throw new IllegalStateException("Already started");
         }
         try {
-            WorkerConfirmListener confirmListener = new WorkerConfirmListener(consumerQueue);
-            createConnection(callback, confirmListener);
-            outgoingChannel = conn.createChannel();
+            conn = connectionSource.newConnection();
+            publisherPool = new WorkerPublisherPool(conn, Math.max(1, config.getPublisherChannels()), metrics, consumerQueue, config);
             incomingChannel = conn.createChannel();
-            int prefetch = Math.max(1, maxTasks + config.getPrefetchBuffer());
-            incomingChannel.basicQos(prefetch);
-            WorkerQueueConsumerImpl consumerImpl = new WorkerQueueConsumerImpl(callback, metrics, consumerQueue, incomingChannel,
-                                                                               publisherQueue, config.getRetryQueue(), config.getRetryLimit());
-            consumer = new DefaultRabbitConsumer(consumerQueue, consumerImpl);
-            WorkerPublisherImpl publisherImpl = new WorkerPublisherImpl(outgoingChannel, metrics, consumerQueue, confirmListener);
-            publisher = new EventPoller<>(2, publisherQueue, publisherImpl);
+            targetPrefetch = Math.max(1, maxTasks + config.getPrefetchBuffer());
+            incomingChannel.basicQos(targetPrefetch);
+            consumerImpl = new WorkerQueueConsumerImpl(callback, metrics, consumerQueue, incomingChannel, publisherPool::add,
+                                                       config.getRetryQueue(), config.getRetryLimit(),
+                                                       config.getAckBatchSize(), config.getAckBatchDelayMillis(),
+                                                       config.getRegistrationThreads(), compression, this::onMessagesSettled);
+            ((Recoverable)conn).addRecoveryListener(
+                new WorkerConnectionListener(callback, publisherPool.getConfirmListeners(), consumerImpl::resetAcknowledgements));
+            consumer = new DefaultRabbitConsumer(consumerQueue, consumerImpl) {
+                @Override
+                public void handleCancelOk(final String cancelledTag)
+                {
+                    super.handleCancelOk(cancelledTag);
+                    // Queued behind the deliveries to the cancelled consumer, so they are counted before any new consumer is started
+                    consumerQueue.add(target -> startIncomingConsumer());
+                }
+            };
             declareWorkerQueue(incomingChannel, config.getInputQueue());
-            declareWorkerQueue(outgoingChannel, config.getRetryQueue());
+            declareWorkerQueue(publisherPool.getChannel(), config.getRetryQueue());
             synchronized (consumerLock) {
                 consumerTag = incomingChannel.basicConsume(config.getInputQueue(), consumer);
+                consumerPrefetch = targetPrefetch;
             }
         } catch (final IOException | TimeoutException | URISyntaxException | NoSuchAlgorithmException | 
                        KeyManagementException e) 
         {
             throw new QueueException("Failed to establish queues", e);
         }
-        publisherThread = new Thread(publisher);
         consumerThread = new Thread(consumer);
-        publisherThread.start();
+        publisherPool.start();
         consumerThread.start();
     }
 
@@ -122,14 +159,14 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
                         boolean isLastMessage) throws QueueException
     {
         try {
-            declareWorkerQueue(outgoingChannel, targetQueue);
+            declareWorkerQueue(publisherPool.getChannel(), targetQueue);
         } catch (IOException e) {
             throw new QueueException("Failed to submit task", e);
         }
         RabbitTaskInformation rabbitTaskInformation = (RabbitTaskInformation)taskInformation;
         //increment the total responseCount (including task, sub task and tracking info)
         rabbitTaskInformation.incrementResponseCount(isLastMessage);
-        publisherQueue.add(new WorkerPublishQueueEvent(taskMessage, targetQueue, rabbitTaskInformation, headers));
+        handOff(createPublishEvent(taskMessage, targetQueue, List.of(rabbitTaskInformation), headers));
     }
     
     @Override
@@ -138,6 +175,95 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
         publish(taskInformation, taskMessage, targetQueue, headers, false);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The message is published on the publisher channel of the first of the received messages, and counts as a response of each of
+     * them, so each is acknowledged once the message is confirmed or rejected if it cannot be published.
+     */
+    @Override
+    public void publish(List<TaskInformation> taskInformation, byte[] taskMessage, String targetQueue, Map<String, Object> headers)
+        throws QueueException
+    {
+        if (taskInformation.size() == 1) {
+            publish(taskInformation.get(0), taskMessage, targetQueue, headers);
+            return;
+        }
+        try {
+            declareWorkerQueue(publisherPool.getChannel(), targetQueue);
+        } catch (IOException e) {
+            throw new QueueException("Failed to submit task", e);
+        }
+        final List<RabbitTaskInformation> rabbitTaskInformation = new ArrayList<>(taskInformation.size());
+        for (final TaskInformation t : taskInformation) {
+            rabbitTaskInformation.add((RabbitTaskInformation)t);
+        }
+        for (final RabbitTaskInformation t : rabbitTaskInformation) {
+            t.incrementResponseCount(false);
+        }
+        handOff(createPublishEvent(taskMessage, targetQueue, rabbitTaskInformation, headers));
+    }
+
+    @Override
+    public boolean canPublishForSeveralMessages()
+    {
+        return true;
+    }
+
+    /**
+     * Create the event to publish a message with for one or more received messages, compressing its body if it should be compressed.
+     */
+    private WorkerPublishQueueEvent createPublishEvent(
+        final byte[] taskMessage,
+        final String targetQueue,
+        final List<RabbitTaskInformation> taskInformation,
+        final Map<String, Object> headers
+    )
+    {
+        final byte[] body = compression.compress(taskMessage, headers);
+        final Map<String, Object> bodyHeaders = body == taskMessage ? headers : compression.getCompressedHeaders(headers);
+        return taskInformation.size() == 1
+            ? new WorkerPublishQueueEvent(body, targetQueue, taskInformation.get(0), bodyHeaders)
+            : new WorkerPublishQueueEvent(body, targetQueue, taskInformation, bodyHeaders);
+    }
+
+    /**
+     * Hand a publish event to the publisher pool, or hold it back if the calling thread is holding back its publishes.
+     */
+    private void handOff(final WorkerPublishQueueEvent event)
+    {
+        final List<WorkerPublishQueueEvent> held = heldPublishes.get();
+        if (held == null) {
+            publisherPool.add(event);
+        } else {
+            held.add(event);
+        }
+    }
+
+    @Override
+    public void holdPublishes()
+    {
+        if (heldPublishes.get() == null) {
+            heldPublishes.set(new ArrayList<>());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The held messages are added to the queue of each publisher channel as a single event, which the publisher thread publishes as a
+     * batch.
+     */
+    @Override
+    public void releasePublishes()
+    {
+        final List<WorkerPublishQueueEvent> held = heldPublishes.get();
+        heldPublishes.remove();
+        if (held != null && !held.isEmpty()) {
+            publisherPool.addAll(held);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -177,6 +303,19 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
         consumerQueue.add(new ConsumerAckEvent(Long.parseLong(taskInformation.getInboundMessageId())));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The action is run on the consumer thread once the acknowledgement has been sent on the incoming channel, which may be after
+     * other acknowledgements it has been coalesced with.
+     */
+    @Override
+    public void whenAcknowledged(final TaskInformation taskInformation, final Runnable action)
+    {
+        Objects.requireNonNull(taskInformation);
+        consumerImpl.whenAcknowledged(Long.parseLong(taskInformation.getInboundMessageId()), action);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -209,6 +348,7 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
     {
         LOG.debug("Closing incoming queues");
         synchronized (consumerLock) {
+            isIncomingShutdown = true;
             if (consumerTag != null) {
                 try {
                     incomingChannel.basicCancel(consumerTag);
@@ -238,17 +378,8 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
     {
         LOG.debug("Disconnecting incoming queues");
         synchronized (consumerLock) {
-            if (consumerTag != null && incomingChannel.isOpen()) {
-                try {
-                    incomingChannel.basicCancel(consumerTag);
-                    consumerTag = null;
-                } catch (IOException ioe) {
-                    LOG.error("Failed to cancel consumer {}", consumerTag, ioe);
-                    if(ioe.getMessage().contains("Unknown consumerTag")) {
-                        attemptMessageRecovery();
-                    }
-                }
-            }
+            isIncomingDisconnected = true;
+            cancelIncomingConsumer();
         }
     }
 
@@ -267,16 +398,136 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
     {
         LOG.debug("Reconnecting incoming queues");
         synchronized (consumerLock) {
-            if (consumerTag == null && incomingChannel.isOpen()) {
-                try {
-                    consumerTag = incomingChannel.basicConsume(config.getInputQueue(), consumer);
-                } catch (IOException ioe) {
-                    LOG.error("Failed to reconnect consumer {}", ioe);
+            isIncomingDisconnected = false;
+        }
+        requestIncomingConsumer();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The consumer is cancelled, leaving further messages on the input queue, until the backlog has drained and the queue is resumed.
+     * Messages that have already been delivered are still processed, and still count against the prefetch once the queue is resumed.
+     */
+    @Override
+    public void pauseIncoming()
+    {
+        LOG.debug("Pausing incoming queues");
+        synchronized (consumerLock) {
+            isIncomingPaused = true;
+            cancelIncomingConsumer();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The consumer is only restarted if the queue has not also been disconnected, for example by a failing health check, or shut
+     * down. RabbitMQ gives a new consumer a whole prefetch of its own, so the consumer is restarted with the prefetch less the messages
+     * that are still unacknowledged from before the pause, and only once that leaves room for at least one more message.
+     */
+    @Override
+    public void resumeIncoming()
+    {
+        LOG.debug("Resuming incoming queues");
+        synchronized (consumerLock) {
+            isIncomingPaused = false;
+        }
+        requestIncomingConsumer();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * RabbitMQ only applies a new prefetch to consumers started after it is set, so a running consumer is cancelled and started again.
+     * Messages that have already been delivered stay with the channel and are still processed and acknowledged as normal, and the new
+     * consumer's prefetch is reduced by those still unacknowledged, so the channel never holds more than the new prefetch. Global QoS is
+     * not used instead as RabbitMQ does not support it for quorum queues.
+     */
+    @Override
+    public boolean setPrefetch(final int prefetch)
+    {
+        synchronized (consumerLock) {
+            if (incomingChannel == null || !incomingChannel.isOpen()) {
+                return false;
+            }
+            targetPrefetch = Math.max(1, prefetch);
+            if (consumerTag != null && consumerPrefetch != targetPrefetch) {
+                // The consumer is started again once the broker confirms that it has been cancelled
+                cancelIncomingConsumer();
+            }
+            LOG.debug("Prefetch set to {}", prefetch);
+            return true;
+        }
+    }
+
+    private void cancelIncomingConsumer()
+    {
+        if (consumerTag != null && incomingChannel.isOpen()) {
+            try {
+                incomingChannel.basicCancel(consumerTag);
+                consumerTag = null;
+            } catch (IOException ioe) {
+                LOG.error("Failed to cancel consumer {}", consumerTag, ioe);
+                if(ioe.getMessage().contains("Unknown consumerTag")) {
+                    attemptMessageRecovery();
                 }
             }
         }
     }
 
+    /**
+     * Arrange for the consumer to be started on the consumer thread.
+     */
+    private void requestIncomingConsumer()
+    {
+        consumerQueue.add(target -> startIncomingConsumer());
+    }
+
+    /**
+     * Start consuming from the input queue, unless the consumer is already running or should not be running. As the prefetch of a
+     * RabbitMQ consumer only covers the messages delivered to it, the consumer is given the target prefetch less the messages delivered
+     * to earlier consumers that are still unsettled, so that the channel never holds more than the target. If there is no room for
+     * any more messages, the consumer is started once enough of them have been settled. Must be called on the consumer thread, after
+     * the messages delivered to any cancelled consumer have been counted.
+     */
+    private void startIncomingConsumer()
+    {
+        synchronized (consumerLock) {
+            if (consumerTag != null || isIncomingPaused || isIncomingDisconnected || isIncomingShutdown || !incomingChannel.isOpen()) {
+                return;
+            }
+            final int prefetch = targetPrefetch - consumerImpl.getUnsettledCount();
+            if (prefetch < 1) {
+                LOG.debug("Waiting for unsettled messages before consuming with prefetch {}", targetPrefetch);
+                return;
+            }
+            try {
+                incomingChannel.basicQos(prefetch);
+                consumerTag = incomingChannel.basicConsume(config.getInputQueue(), consumer);
+                consumerPrefetch = prefetch;
+            } catch (IOException ioe) {
+                LOG.error("Failed to reconnect consumer {}", ioe);
+            }
+        }
+    }
+
+    /**
+     * Start the consumer if it is waiting for room in the prefetch, or restart it if it was started with less than the target prefetch
+     * and settled messages have since left room for it to take a fifth of the target more. Called on the consumer thread.
+     */
+    private void onMessagesSettled()
+    {
+        synchronized (consumerLock) {
+            if (consumerTag == null) {
+                startIncomingConsumer();
+            } else if (targetPrefetch - consumerImpl.getUnsettledCount() - consumerPrefetch > targetPrefetch / 5) {
+                // The consumer is started again once the broker confirms that it has been cancelled
+                cancelIncomingConsumer();
+            }
+        }
+    }
+
     @Override
     public void shutdown()
     {
@@ -285,12 +536,15 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
             if (consumer != null) {
                 consumer.shutdown();
             }
-            if (publisher != null) {
-                publisher.shutdown();
+            if (consumerImpl != null) {
+                consumerImpl.shutdown();
+            }
+            if (publisherPool != null) {
+                publisherPool.shutdown();
             }
             if (conn != null) {
                 incomingChannel.close();
-                outgoingChannel.close();
+                publisherPool.close();
                 conn.close();
             }
         } catch (IOException | TimeoutException e) {
@@ -312,11 +566,11 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
             return new HealthResult(HealthStatus.UNHEALTHY, "Rabbit connection failed");
         } else if (!incomingChannel.isOpen()) {
             return new HealthResult(HealthStatus.UNHEALTHY, "Incoming channel failed");
-        } else if (!outgoingChannel.isOpen()) {
+        } else if (publisherPool == null || !publisherPool.isOpen()) {
             return new HealthResult(HealthStatus.UNHEALTHY, "Outgoing channel failed");
         } else if (consumerThread == null || !consumerThread.isAlive()) {
             return new HealthResult(HealthStatus.UNHEALTHY, "RabbitMQ listening thread not running");
-        } else if (publisherThread == null || !publisherThread.isAlive()) {
+        } else if (!publisherPool.isRunning()) {
             return new HealthResult(HealthStatus.UNHEALTHY, "RabbitMQ publishing thread not running");
         } else {
             return HealthResult.RESULT_HEALTHY;
@@ -329,13 +583,6 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
         return livenessCheck();
     }
 
-    private void createConnection(TaskCallback callback, WorkerConfirmListener listener)
-        throws IOException, TimeoutException, URISyntaxException, NoSuchAlgorithmException, KeyManagementException
-    {
-        conn = RabbitUtil.createRabbitConnection(config.getRabbitConfiguration());
-        ((Recoverable)conn).addRecoveryListener(new WorkerConnectionListener(callback, listener));
-    }
-
     private void declareWorkerQueue(Channel channel, String queueName)
         throws IOException
     {
@@ -352,6 +599,7 @@ public final class RabbitWorkerQueue implements ManagedWorkerQueue
             try {
                 LOG.warn("Attempting to recover unack'd messages from consumer {}", consumer);
                 incomingChannel.basicRecover();
+                consumerImpl.resetUnsettledCount();
             } catch (final IOException e) {
                 metrics.incremementErrors();
                 LOG.warn("Failed to recover messages from consumer {}", consumerTag, e);
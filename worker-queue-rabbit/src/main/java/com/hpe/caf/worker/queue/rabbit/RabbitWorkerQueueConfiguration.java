@@ -87,6 +87,82 @@ public class RabbitWorkerQueueConfiguration
     @NotNull
     private String queueType;
 
+    /**
+     * The maximum number of messages the publisher thread takes from its queue and publishes back-to-back in one go. 0 or 1 publishes
+     * one message at a time.
+     */
+    @Min(0)
+    @Max(10000)
+    private int publisherBatchSize;
+
+    /**
+     * The maximum number of published messages which may be awaiting confirmation from the broker. The publisher waits for earlier
+     * messages to be confirmed before exceeding this. 0 means no limit.
+     */
+    @Min(0)
+    @Max(1000000)
+    private int maxConfirmsInFlight;
+
+    /**
+     * The number of channels, each with its own publisher thread, used to publish messages. Messages relating to the same input task
+     * are always published on the same channel. 0 or 1 uses a single channel.
+     */
+    @Min(0)
+    @Max(64)
+    private int publisherChannels;
+
+    /**
+     * The number of messages ready to be acknowledged at which the consumer sends acknowledgements, acknowledging runs of consecutive
+     * messages with a single call. 0 or 1 acknowledges each message as soon as it is ready.
+     */
+    @Min(0)
+    @Max(100000)
+    private int ackBatchSize;
+
+    /**
+     * The maximum time in milliseconds that the consumer holds a message which is ready to be acknowledged when batching
+     * acknowledgements.
+     */
+    @Min(0)
+    @Max(60000)
+    private long ackBatchDelayMillis;
+
+    /**
+     * The number of threads on which new messages are decoded and registered with the worker, in parallel. 0 registers them on the
+     * consumer thread, one at a time.
+     */
+    @Min(0)
+    @Max(256)
+    private int registrationThreads;
+
+    /**
+     * The maximum number of times to publish a message again when it cannot be published, or the broker negatively acknowledges it,
+     * before rejecting the input message it was published for. 0 rejects the input message straight away.
+     */
+    @Min(0)
+    @Max(100)
+    private int publishRetryLimit;
+
+    /**
+     * The time in milliseconds to wait before publishing a message again for the first time. The wait doubles with each further
+     * attempt, up to a minute.
+     */
+    @Min(1)
+    @Max(60000)
+    private long publishRetryDelayMillis;
+
+    /**
+     * The encoding to compress published messages with, which can currently be either none, gzip or deflate. Delivered messages are
+     * decompressed whatever encoding is set.
+     */
+    private String compression;
+
+    /**
+     * The size in bytes below which published messages are not compressed.
+     */
+    @Min(0)
+    private int compressionThresholdBytes;
+
     public RabbitWorkerQueueConfiguration()
     {
     }
@@ -181,4 +257,104 @@ public class RabbitWorkerQueueConfiguration
     {
         this.queueType = queueType;
     }
+
+    public int getPublisherBatchSize()
+    {
+        return publisherBatchSize;
+    }
+
+    public void setPublisherBatchSize(int publisherBatchSize)
+    {
+        this.publisherBatchSize = publisherBatchSize;
+    }
+
+    public int getMaxConfirmsInFlight()
+    {
+        return maxConfirmsInFlight;
+    }
+
+    public void setMaxConfirmsInFlight(int maxConfirmsInFlight)
+    {
+        this.maxConfirmsInFlight = maxConfirmsInFlight;
+    }
+
+    public int getPublisherChannels()
+    {
+        return publisherChannels;
+    }
+
+    public void setPublisherChannels(int publisherChannels)
+    {
+        this.publisherChannels = publisherChannels;
+    }
+
+    public int getAckBatchSize()
+    {
+        return ackBatchSize;
+    }
+
+    public void setAckBatchSize(int ackBatchSize)
+    {
+        this.ackBatchSize = ackBatchSize;
+    }
+
+    public long getAckBatchDelayMillis()
+    {
+        return ackBatchDelayMillis;
+    }
+
+    public void setAckBatchDelayMillis(long ackBatchDelayMillis)
+    {
+        this.ackBatchDelayMillis = ackBatchDelayMillis;
+    }
+
+    public int getRegistrationThreads()
+    {
+        return registrationThreads;
+    }
+
+    public void setRegistrationThreads(int registrationThreads)
+    {
+        this.registrationThreads = registrationThreads;
+    }
+
+    public int getPublishRetryLimit()
+    {
+        return publishRetryLimit;
+    }
+
+    public void setPublishRetryLimit(int publishRetryLimit)
+    {
+        this.publishRetryLimit = publishRetryLimit;
+    }
+
+    public long getPublishRetryDelayMillis()
+    {
+        return publishRetryDelayMillis;
+    }
+
+    public void setPublishRetryDelayMillis(long publishRetryDelayMillis)
+    {
+        this.publishRetryDelayMillis = publishRetryDelayMillis;
+    }
+
+    public String getCompression()
+    {
+        return compression;
+    }
+
+    public void setCompression(String compression)
+    {
+        this.compression = compression;
+    }
+
+    public int getCompressionThresholdBytes()
+    {
+        return compressionThresholdBytes;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes)
+    {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
 }
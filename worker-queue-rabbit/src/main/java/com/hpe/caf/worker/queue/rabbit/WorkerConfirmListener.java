@@ -24,27 +24,40 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Ack incoming task messages when the outgoing response has been confirmed by the RabbitMQ broker.
+ * <p>
+ * If a retry scheduler is supplied, a response which the broker negatively acknowledges is published again rather than the incoming
+ * task message being rejected straight away; the task message is only rejected once the response has been published again the
+ * maximum number of times.
  */
 class WorkerConfirmListener implements ConfirmListener
 {
-    private final SortedMap<Long, RabbitTaskInformation> confirmMap = Collections.synchronizedSortedMap(new TreeMap<>());
+    private final ConfirmTracker<WorkerPublishQueueEvent> confirmations = new ConfirmTracker<>();
     private final BlockingQueue<Event<QueueConsumer>> consumerEvents;
+    private final PublishRetryScheduler retryScheduler;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerConfirmListener.class);
 
     WorkerConfirmListener(BlockingQueue<Event<QueueConsumer>> events)
+    {
+        this(events, null);
+    }
+
+    /**
+     * @param events the event queue of the consumer to ack/reject on
+     * @param retryScheduler the scheduler to publish negatively acknowledged responses again with, or null to reject their incoming
+     * task messages straight away
+     */
+    WorkerConfirmListener(BlockingQueue<Event<QueueConsumer>> events, PublishRetryScheduler retryScheduler)
     {
         this.consumerEvents = Objects.requireNonNull(events);
+        this.retryScheduler = retryScheduler;
     }
 
     /**
@@ -56,12 +69,87 @@ class WorkerConfirmListener implements ConfirmListener
      */
     public void registerResponseSequence(long publishSequence, RabbitTaskInformation taskInformation)
     {
-        if (confirmMap.putIfAbsent(publishSequence, taskInformation) != null) {
-            throw new IllegalStateException("Sequence id " + publishSequence + " already present in confirmations map");
+        registerPublish(publishSequence, new WorkerPublishQueueEvent(taskInformation));
+    }
+
+    /**
+     * Tell the listener to keep track of a published response, holding on to it until it is confirmed so that it can be published again
+     * if the broker negatively acknowledges it.
+     *
+     * @param publishSequence the published sequence ID of the Worker response message
+     * @param publish the publish event of the Worker response message
+     */
+    public void registerPublish(long publishSequence, WorkerPublishQueueEvent publish)
+    {
+        confirmations.register(publishSequence, publish);
+        LOG.debug("Listening for confirmation of publish sequence {} (ack message: {})",
+                  publishSequence, publish.getTaskInformation().getInboundMessageId());
+    }
+
+    /**
+     * Tell the listener to keep track of a contiguous range of published responses, one per task, starting at the supplied publish
+     * sequence. If any sequence in the range is already being tracked then none of the range is registered.
+     *
+     * @param firstPublishSequence the published sequence ID of the first Worker response message in the range
+     * @param taskInformation the incoming task messages to ack when the corresponding published responses are confirmed
+     */
+    public void registerResponseSequences(final long firstPublishSequence, final List<RabbitTaskInformation> taskInformation)
+    {
+        final List<WorkerPublishQueueEvent> publishes = new ArrayList<>(taskInformation.size());
+        for (final RabbitTaskInformation t : taskInformation) {
+            publishes.add(new WorkerPublishQueueEvent(t));
         }
+        registerPublishes(firstPublishSequence, publishes);
+    }
 
-        LOG.debug("Listening for confirmation of publish sequence {} (ack message: {})", publishSequence, taskInformation.getInboundMessageId());
-        confirmMap.put(publishSequence, taskInformation);
+    /**
+     * Tell the listener to keep track of a contiguous range of published responses, holding on to them until they are confirmed. If any
+     * sequence in the range is already being tracked then none of the range is registered.
+     *
+     * @param firstPublishSequence the published sequence ID of the first Worker response message in the range
+     * @param publishes the publish events of the Worker response messages
+     */
+    public void registerPublishes(final long firstPublishSequence, final List<WorkerPublishQueueEvent> publishes)
+    {
+        confirmations.registerRange(firstPublishSequence, publishes);
+        LOG.debug("Listening for confirmation of publish sequences {} to {}",
+                  firstPublishSequence, firstPublishSequence + publishes.size() - 1);
+    }
+
+    /**
+     * Stop tracking a range of publish sequences which will never be confirmed, because the publishes they were registered for did not
+     * take place.
+     *
+     * @param fromSequence the first publish sequence to forget (inclusive)
+     * @param toSequence the last publish sequence to forget (exclusive)
+     */
+    public void deregisterResponseSequences(final long fromSequence, final long toSequence)
+    {
+        confirmations.removeRange(fromSequence, toSequence);
+    }
+
+    /**
+     * @return the number of published responses which have not yet been confirmed by the broker
+     */
+    public int getOutstandingConfirmCount()
+    {
+        return confirmations.size();
+    }
+
+    /**
+     * Wait until there is room in the confirm window for the specified number of further publishes. A publish is always permitted when
+     * nothing is outstanding, so a request larger than the window does not wait forever.
+     *
+     * @param required the number of publishes about to be made
+     * @param maxInFlight the maximum number of unconfirmed publishes, or 0 for no limit
+     * @param timeoutMillis the maximum time to wait
+     * @return true if there is room in the window, false if the wait timed out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitConfirmCapacity(final int required, final int maxInFlight, final long timeoutMillis)
+        throws InterruptedException
+    {
+        return confirmations.awaitCapacity(required, maxInFlight, timeoutMillis);
     }
 
     /**
@@ -70,7 +158,10 @@ class WorkerConfirmListener implements ConfirmListener
     public void clearConfirmations()
     {
         LOG.info("Clearing confirmations map");
-        confirmMap.clear();
+        confirmations.clear();
+        if (retryScheduler != null) {
+            retryScheduler.reset();
+        }
     }
 
     @Override
@@ -78,13 +169,13 @@ class WorkerConfirmListener implements ConfirmListener
         throws IOException
     {
         LOG.debug("RabbitMQ broker ACKed published sequence id {} (multiple: {})", sequenceNo, multiple);
-        handle(sequenceNo, multiple, t -> {
-            t.incrementAcknowledgementCount();
-            if(t.areAllResponsesAcknowledged() && !t.isAckEventSent()){
-                t.markAckEventAsSent();
-                return new ConsumerAckEvent(Long.valueOf(t.getInboundMessageId()));
+        handle(sequenceNo, multiple, publish -> {
+            for (final RabbitTaskInformation t : publish.getAllTaskInformation()) {
+                t.incrementAcknowledgementCount();
+                if (t.areAllResponsesAcknowledged() && t.tryMarkAckEventSent()) {
+                    consumerEvents.add(new ConsumerAckEvent(Long.valueOf(t.getInboundMessageId())));
+                }
             }
-            return null;
         });
     }
 
@@ -93,33 +184,34 @@ class WorkerConfirmListener implements ConfirmListener
         throws IOException
     {
         LOG.warn("RabbitMQ broker NACKed published sequence id {} (multiple: {})", sequenceNo, multiple);
-        handle(sequenceNo, multiple, t -> {
-               if (!t.isNegativeAckEventSent()) {
-                   t.markNegativeAckEventAsSent();
-                   return new ConsumerRejectEvent(Long.valueOf(t.getInboundMessageId()));
+        handle(sequenceNo, multiple, publish -> {
+               if (publish.getAllTaskInformation().stream().allMatch(RabbitTaskInformation::isNegativeAckEventSent)) {
+                   return;
+               }
+               if (retryScheduler != null && retryScheduler.retry(publish)) {
+                   return;
+               }
+               for (final RabbitTaskInformation t : publish.getAllTaskInformation()) {
+                   if (!t.isNegativeAckEventSent()) {
+                       t.markNegativeAckEventAsSent();
+                       consumerEvents.add(new ConsumerRejectEvent(Long.valueOf(t.getInboundMessageId())));
+                   }
                }
-               return null;
            });
     }
 
-    private void handle(long sequenceNo, boolean multiple, Function<RabbitTaskInformation, Event<QueueConsumer>> eventSource)
-    {        
+    private void handle(long sequenceNo, boolean multiple, Consumer<WorkerPublishQueueEvent> action)
+    {
         if (multiple) {
-            Map<Long, RabbitTaskInformation> ackMap = confirmMap.headMap(sequenceNo + 1);
-            synchronized (confirmMap) {
-                consumerEvents.addAll(ackMap.values().stream().map(eventSource::apply).filter(Objects::nonNull).collect(Collectors.toList()));
-            }
-            ackMap.clear(); // clear all entries up to this (n)acked sequence number
+            // clear all entries up to this (n)acked sequence number
+            confirmations.removeThrough(sequenceNo, action);
         } else {
-            RabbitTaskInformation taskInformation = confirmMap.remove(sequenceNo);
-            if (taskInformation == null) {
+            final WorkerPublishQueueEvent publish = confirmations.remove(sequenceNo);
+            if (publish == null) {
                 LOG.error("RabbitMQ broker sent confirm for sequence number {}, which is not registered", sequenceNo);
                 throw new IllegalStateException("Sequence number " + sequenceNo + " not found in WorkerConfirmListener");
             } else {
-                Event<QueueConsumer> event = eventSource.apply(taskInformation);
-                if(event!=null){
-                    consumerEvents.add(event);
-                }
+                action.accept(publish);
             }
         }
     }
@@ -21,6 +21,9 @@ import com.rabbitmq.client.RecoveryListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -31,13 +34,28 @@ import java.util.Objects;
 public class WorkerConnectionListener implements RecoveryListener
 {
     private final TaskCallback callback;
-    private final WorkerConfirmListener confirmListener;
+    private final List<WorkerConfirmListener> confirmListeners;
+    private final Runnable recoveryAction;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerConnectionListener.class);
 
     public WorkerConnectionListener(TaskCallback taskCallback, WorkerConfirmListener listener)
+    {
+        this(taskCallback, Collections.singletonList(Objects.requireNonNull(listener)));
+    }
+
+    public WorkerConnectionListener(TaskCallback taskCallback, List<WorkerConfirmListener> listeners)
+    {
+        this(taskCallback, listeners, () -> {});
+    }
+
+    /**
+     * @param recoveryAction an additional action to run once the connection has been recovered and in-progress tasks aborted
+     */
+    public WorkerConnectionListener(TaskCallback taskCallback, List<WorkerConfirmListener> listeners, Runnable recoveryAction)
     {
         this.callback = Objects.requireNonNull(taskCallback);
-        this.confirmListener = Objects.requireNonNull(listener);
+        this.confirmListeners = new ArrayList<>(listeners);
+        this.recoveryAction = Objects.requireNonNull(recoveryAction);
     }
 
 
@@ -46,12 +64,13 @@ public class WorkerConnectionListener implements RecoveryListener
     {
         LOG.info("Connection recovery completed, aborting all in-progress tasks");
         callback.abortTasks();
+        recoveryAction.run();
     }
 
     @Override
     public void handleRecoveryStarted(Recoverable recoverable)
     {
         LOG.info("Connection recovery starting");
-        confirmListener.clearConfirmations();
+        confirmListeners.forEach(WorkerConfirmListener::clearConfirmations);
     }
 }
@@ -18,6 +18,7 @@ package com.hpe.caf.worker.queue.rabbit;
 import com.hpe.caf.util.rabbitmq.Event;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -29,7 +30,9 @@ public class WorkerPublishQueueEvent implements Event<WorkerPublisher>
     private final byte[] data;
     private final String routingKey;
     private final RabbitTaskInformation taskInformation;
+    private final List<RabbitTaskInformation> sharedTaskInformation;
     private final Map<String, Object> headerMap;
+    private int republishCount;
 
     /**
      * Create a new WorkerPublishQueueEvent
@@ -44,6 +47,27 @@ public class WorkerPublishQueueEvent implements Event<WorkerPublisher>
         this.data = Objects.requireNonNull(messageData);
         this.routingKey = Objects.requireNonNull(routingKey);
         this.taskInformation = taskInformation;
+        this.sharedTaskInformation = null;
+        this.headerMap = Objects.requireNonNull(headers);
+    }
+
+    /**
+     * Create an event which publishes a single message on behalf of several messages previously consumed, each of which is only
+     * acknowledged once the message is confirmed.
+     *
+     * @param messageData the raw message data to publish
+     * @param routingKey the routing key to publish the data on
+     * @param taskInformation the ids of the messages previously consumed to acknowledge, the first of which is used to choose the
+     * publisher channel
+     * @param headers the map of key/value paired headers to be stamped on the message
+     */
+    WorkerPublishQueueEvent(byte[] messageData, String routingKey, List<RabbitTaskInformation> taskInformation,
+                            Map<String, Object> headers)
+    {
+        this.data = Objects.requireNonNull(messageData);
+        this.routingKey = Objects.requireNonNull(routingKey);
+        this.taskInformation = taskInformation.get(0);
+        this.sharedTaskInformation = List.copyOf(taskInformation);
         this.headerMap = Objects.requireNonNull(headers);
     }
 
@@ -52,10 +76,28 @@ public class WorkerPublishQueueEvent implements Event<WorkerPublisher>
         this(messageData, routingKey, taskInformation, Collections.emptyMap());
     }
 
+    /**
+     * Create an event which only records the task a publish was made for, without the message itself, so cannot be republished.
+     *
+     * @param taskInformation the id of a message previously consumed to acknowledge
+     */
+    WorkerPublishQueueEvent(RabbitTaskInformation taskInformation)
+    {
+        this.data = null;
+        this.routingKey = null;
+        this.taskInformation = taskInformation;
+        this.sharedTaskInformation = null;
+        this.headerMap = Collections.emptyMap();
+    }
+
     @Override
     public void handleEvent(WorkerPublisher target)
     {
-        target.handlePublish(data, routingKey, taskInformation, headerMap);
+        if (sharedTaskInformation == null) {
+            target.handlePublish(data, routingKey, taskInformation, headerMap);
+        } else {
+            target.handleSharedPublish(this);
+        }
     }
 
     /**
@@ -82,6 +124,14 @@ public class WorkerPublishQueueEvent implements Event<WorkerPublisher>
         return taskInformation;
     }
 
+    /**
+     * @return the taskInformation of every message previously consumed that this message is published for
+     */
+    public List<RabbitTaskInformation> getAllTaskInformation()
+    {
+        return sharedTaskInformation == null ? Collections.singletonList(taskInformation) : sharedTaskInformation;
+    }
+
     /**
      * @return the key/value map of header strings
      */
@@ -89,4 +139,25 @@ public class WorkerPublishQueueEvent implements Event<WorkerPublisher>
     {
         return headerMap;
     }
+
+    /**
+     * @return true if the event holds the message itself, so that it can be published again
+     */
+    boolean isRepublishable()
+    {
+        return data != null;
+    }
+
+    /**
+     * @return the number of times that the message has been scheduled to be published again after a failed publish
+     */
+    int getRepublishCount()
+    {
+        return republishCount;
+    }
+
+    void incrementRepublishCount()
+    {
+        republishCount++;
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.hpe.caf.worker.queue.rabbit;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,4 +32,36 @@ public interface WorkerPublisher
      * @param headers key/value map of headers to add to the published message
      */
     void handlePublish(byte[] data, String routingKey, RabbitTaskInformation taskInformation, Map<String, Object> headers);
+
+    /**
+     * Publish a batch of messages back-to-back, in the order supplied.
+     *
+     * @param events the publish events drained from the publisher queue
+     */
+    default void handlePublishBatch(List<WorkerPublishQueueEvent> events)
+    {
+        for (final WorkerPublishQueueEvent event : events) {
+            event.handleEvent(this);
+        }
+    }
+
+    /**
+     * Publish a single message on behalf of several prior messages, acknowledging each of them once it has been published.
+     *
+     * @param event the publish event of the message
+     */
+    default void handleSharedPublish(WorkerPublishQueueEvent event)
+    {
+        throw new UnsupportedOperationException("Publishing a message for several prior messages is not supported");
+    }
+
+    /**
+     * Publish a message again after an earlier publish of it failed or was negatively acknowledged by the broker.
+     *
+     * @param event the publish event of the message
+     */
+    default void handleRepublish(WorkerPublishQueueEvent event)
+    {
+        event.handleEvent(this);
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.Event;
+import com.hpe.caf.util.rabbitmq.EventPoller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An EventPoller for the publisher thread that drains up to a fixed number of publish events from the queue per loop and hands them to
+ * the WorkerPublisher as a single batch, rather than taking the queue lock once per event.
+ */
+final class WorkerPublisherBatchPoller extends EventPoller<WorkerPublisher>
+{
+    private final int maxBatchSize;
+    private final List<Event<WorkerPublisher>> drained;
+    private final List<WorkerPublishQueueEvent> batch;
+
+    /**
+     * Create a new WorkerPublisherBatchPoller.
+     *
+     * @param pollPeriod the period in which to poll the event queue, which will also affect the shutdown time
+     * @param eventQueue the publisher event queue
+     * @param publisher the publisher to hand batches of events to
+     * @param maxBatchSize the maximum number of events to publish per batch
+     */
+    public WorkerPublisherBatchPoller(
+        final int pollPeriod,
+        final BlockingQueue<Event<WorkerPublisher>> eventQueue,
+        final WorkerPublisher publisher,
+        final int maxBatchSize
+    )
+    {
+        super(pollPeriod, eventQueue, publisher);
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.drained = new ArrayList<>(maxBatchSize);
+        this.batch = new ArrayList<>(maxBatchSize);
+    }
+
+    @Override
+    public void run()
+    {
+        while (isRunning() && !Thread.currentThread().isInterrupted()) {
+            try {
+                final Event<WorkerPublisher> event = getEventQueue().poll(getPollPeriod(), TimeUnit.SECONDS);
+                if (event != null) {
+                    drained.add(event);
+                    getEventQueue().drainTo(drained, maxBatchSize - 1);
+                    handleDrainedEvents();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                drained.clear();
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Publish events are collected into a batch. Any other kind of event is handled in place, after publishing the batch collected so
+     * far, so that the order of events on the queue is preserved.
+     */
+    private void handleDrainedEvents()
+    {
+        final WorkerPublisher publisher = getEventHandler();
+        for (final Event<WorkerPublisher> event : drained) {
+            if (event instanceof WorkerPublishQueueEvent) {
+                batch.add((WorkerPublishQueueEvent) event);
+            } else {
+                publishBatch(publisher);
+                event.handleEvent(publisher);
+            }
+        }
+        publishBatch(publisher);
+    }
+
+    private void publishBatch(final WorkerPublisher publisher)
+    {
+        if (!batch.isEmpty()) {
+            publisher.handlePublishBatch(batch);
+            batch.clear();
+        }
+    }
+}
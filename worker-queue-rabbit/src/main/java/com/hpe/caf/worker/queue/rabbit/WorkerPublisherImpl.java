@@ -24,20 +24,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 
 /**
  * A RabbitMQ publisher that uses a ConfirmListener, sending data as plain text with headers. Messages that cannot be published at all
- * cause a rejection of the input message (task) that triggered this published response.
+ * cause a rejection of the input message (task) that triggered this published response, unless a retry scheduler is supplied, in which
+ * case they are published again and the input message is only rejected once they have been published again the maximum number of
+ * times.
+ *
+ * If a maximum number of confirms in flight is set, the publisher will wait for the broker to confirm earlier messages before
+ * publishing more than that number of unconfirmed messages.
  */
 public class WorkerPublisherImpl implements WorkerPublisher
 {
+    private static final long CONFIRM_WAIT_MILLIS = 1000;
     private final Channel channel;
     private final RabbitMetricsReporter metrics;
     private final BlockingQueue<Event<QueueConsumer>> consumerEvents;
     private final WorkerConfirmListener confirmListener;
+    private final int maxConfirmsInFlight;
+    private final PublishRetryScheduler retryScheduler;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerPublisherImpl.class);
 
     /**
@@ -52,11 +62,49 @@ public class WorkerPublisherImpl implements WorkerPublisher
      */
     public WorkerPublisherImpl(Channel ch, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> events, WorkerConfirmListener listener)
         throws IOException
+    {
+        this(ch, metrics, events, listener, 0);
+    }
+
+    /**
+     * Create a WorkerPublisher implementation which limits the number of published messages awaiting confirmation.
+     *
+     * @param ch the channel to use, will have confirmations enabled
+     * @param metrics the metrics to report to
+     * @param events the event queue of the consumer to ack/reject on
+     * @param listener the listener callback that accepts ack/nack publisher confirms from the broker
+     * @param maxConfirmsInFlight the maximum number of published messages awaiting confirmation, or 0 for no limit
+     * @throws IOException if the channel cannot have confirmations enabled
+     */
+    public WorkerPublisherImpl(Channel ch, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> events,
+                               WorkerConfirmListener listener, int maxConfirmsInFlight)
+        throws IOException
+    {
+        this(ch, metrics, events, listener, maxConfirmsInFlight, null);
+    }
+
+    /**
+     * Create a WorkerPublisher implementation which limits the number of published messages awaiting confirmation and publishes
+     * messages again when they cannot be published.
+     *
+     * @param ch the channel to use, will have confirmations enabled
+     * @param metrics the metrics to report to
+     * @param events the event queue of the consumer to ack/reject on
+     * @param listener the listener callback that accepts ack/nack publisher confirms from the broker
+     * @param maxConfirmsInFlight the maximum number of published messages awaiting confirmation, or 0 for no limit
+     * @param retryScheduler the scheduler to publish failed messages again with, or null to reject their input messages straight away
+     * @throws IOException if the channel cannot have confirmations enabled
+     */
+    public WorkerPublisherImpl(Channel ch, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> events,
+                               WorkerConfirmListener listener, int maxConfirmsInFlight, PublishRetryScheduler retryScheduler)
+        throws IOException
     {
         this.channel = Objects.requireNonNull(ch);
         this.metrics = Objects.requireNonNull(metrics);
         this.consumerEvents = Objects.requireNonNull(events);
         this.confirmListener = Objects.requireNonNull(listener);
+        this.maxConfirmsInFlight = Math.max(0, maxConfirmsInFlight);
+        this.retryScheduler = retryScheduler;
         channel.confirmSelect();
         channel.addConfirmListener(confirmListener);
     }
@@ -64,20 +112,134 @@ public class WorkerPublisherImpl implements WorkerPublisher
     @Override
     public void handlePublish(byte[] data, String routingKey, RabbitTaskInformation taskInformation, Map<String, Object> headers)
     {
+        publish(new WorkerPublishQueueEvent(data, routingKey, taskInformation, headers == null ? Collections.emptyMap() : headers));
+    }
+
+    @Override
+    public void handleSharedPublish(final WorkerPublishQueueEvent event)
+    {
+        publish(event);
+    }
+
+    @Override
+    public void handleRepublish(final WorkerPublishQueueEvent event)
+    {
+        publish(event);
+    }
+
+    private void publish(final WorkerPublishQueueEvent event)
+    {
+        final RabbitTaskInformation taskInformation = event.getTaskInformation();
         try {
-            LOG.debug("Publishing message to {} with ack id {}", routingKey, taskInformation.getInboundMessageId());
-            AMQP.BasicProperties.Builder builder = new AMQP.BasicProperties().builder();
-            builder.headers(headers);
-            builder.contentType("text/plain");
-            builder.deliveryMode(2);
-
-            confirmListener.registerResponseSequence(channel.getNextPublishSeqNo(), taskInformation);
-            channel.basicPublish("", routingKey, builder.build(), data);
+            LOG.debug("Publishing message to {} with ack id {}", event.getRoutingKey(), taskInformation.getInboundMessageId());
+            awaitConfirmCapacity(1);
+            final long sequence = channel.getNextPublishSeqNo();
+            confirmListener.registerPublish(sequence, event);
+            try {
+                channel.basicPublish("", event.getRoutingKey(), createProperties(event.getHeaderMap()), event.getData());
+            } catch (final IOException e) {
+                confirmListener.deregisterResponseSequences(sequence, sequence + 1);
+                throw e;
+            }
             metrics.incrementPublished();
         } catch (IOException e) {
-            LOG.error("Failed to publish result of message {} to queue {}, rejecting", taskInformation.getInboundMessageId(), routingKey, e);
+            LOG.error("Failed to publish result of message {} to queue {}", taskInformation.getInboundMessageId(), event.getRoutingKey(), e);
             metrics.incremementErrors();
+            retryOrReject(event);
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted before publishing result of message {} to queue {}, rejecting",
+                     taskInformation.getInboundMessageId(), event.getRoutingKey());
+            reject(event);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The batch is published in chunks no larger than the confirm window. The confirmations for each chunk are registered together
+     * before the chunk is published back-to-back. If a publish fails, it and every later message in the batch are published again or,
+     * if they cannot be, their input messages are rejected.
+     */
+    @Override
+    public void handlePublishBatch(final List<WorkerPublishQueueEvent> events)
+    {
+        final int chunkSize = maxConfirmsInFlight > 0 ? Math.min(events.size(), maxConfirmsInFlight) : events.size();
+        for (int start = 0; start < events.size(); start += chunkSize) {
+            final List<WorkerPublishQueueEvent> chunk = events.subList(start, Math.min(start + chunkSize, events.size()));
+            try {
+                awaitConfirmCapacity(chunk.size());
+            } catch (final InterruptedException e) {
+                LOG.warn("Interrupted before publishing a batch of {} messages, rejecting", events.size() - start);
+                rejectAll(events.subList(start, events.size()));
+                Thread.currentThread().interrupt();
+                return;
+            }
+            final long firstSequence = channel.getNextPublishSeqNo();
+            confirmListener.registerPublishes(firstSequence, chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                final WorkerPublishQueueEvent event = chunk.get(i);
+                try {
+                    LOG.debug("Publishing message to {} with ack id {}", event.getRoutingKey(),
+                              event.getTaskInformation().getInboundMessageId());
+                    channel.basicPublish("", event.getRoutingKey(), createProperties(event.getHeaderMap()), event.getData());
+                    metrics.incrementPublished();
+                } catch (final IOException e) {
+                    LOG.error("Failed to publish result of message {} to queue {}, abandoning it and the remaining {} messages in the batch",
+                              event.getTaskInformation().getInboundMessageId(), event.getRoutingKey(), events.size() - start - i - 1, e);
+                    metrics.incremementErrors();
+                    confirmListener.deregisterResponseSequences(firstSequence + i, firstSequence + chunk.size());
+                    for (final WorkerPublishQueueEvent failed : events.subList(start + i, events.size())) {
+                        retryOrReject(failed);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void awaitConfirmCapacity(final int required)
+        throws InterruptedException
+    {
+        if (maxConfirmsInFlight == 0) {
+            return;
+        }
+        while (!confirmListener.awaitConfirmCapacity(required, maxConfirmsInFlight, CONFIRM_WAIT_MILLIS)) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            LOG.debug("Waiting for the broker to confirm {} outstanding messages", confirmListener.getOutstandingConfirmCount());
+        }
+    }
+
+    private void retryOrReject(final WorkerPublishQueueEvent event)
+    {
+        if (retryScheduler == null || !retryScheduler.retry(event)) {
+            LOG.warn("Rejecting message {} as its result could not be published", event.getTaskInformation().getInboundMessageId());
+            reject(event);
+        }
+    }
+
+    private void rejectAll(final List<WorkerPublishQueueEvent> events)
+    {
+        for (final WorkerPublishQueueEvent event : events) {
+            reject(event);
+        }
+    }
+
+    private void reject(final WorkerPublishQueueEvent event)
+    {
+        for (final RabbitTaskInformation taskInformation : event.getAllTaskInformation()) {
             consumerEvents.add(new ConsumerRejectEvent(Long.valueOf(taskInformation.getInboundMessageId())));
         }
     }
+
+    private static AMQP.BasicProperties createProperties(final Map<String, Object> headers)
+    {
+        AMQP.BasicProperties.Builder builder = new AMQP.BasicProperties().builder();
+        builder.headers(headers);
+        builder.contentType("text/plain");
+        builder.deliveryMode(2);
+        return builder.build();
+    }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.Event;
+import com.hpe.caf.util.rabbitmq.EventPoller;
+import com.hpe.caf.util.rabbitmq.MpscBlockingQueue;
+import com.hpe.caf.util.rabbitmq.QueueConsumer;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A fixed set of publisher channels, each with its own confirm listener, event queue and publisher thread, so that a slow or
+ * flow-controlled publish on one channel does not hold up the others.
+ * <p>
+ * Publish events are sharded across the channels by the inbound message they relate to, so all the messages published for one task
+ * go out on the same channel in the order they were submitted.
+ * <p>
+ * If a publish retry limit is configured, messages which cannot be published, or which the broker negatively acknowledges, are
+ * published again on the same channel after a delay, and their input messages are only rejected once the limit is reached.
+ */
+final class WorkerPublisherPool
+{
+    private final List<PublisherChannel> channels;
+    private final ScheduledExecutorService retryExecutor;
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPublisherPool.class);
+
+    /**
+     * Create the publisher channels on the supplied connection. The publisher threads are not started until {@link #start()} is
+     * called.
+     *
+     * @param conn the connection to create the channels on
+     * @param channelCount the number of publisher channels, at least 1
+     * @param metrics the metrics reporter shared by the publishers
+     * @param consumerEvents the queue of consumer events, for acking and rejecting inbound messages
+     * @param config the worker queue configuration
+     * @throws IOException if a channel cannot be created
+     */
+    public WorkerPublisherPool(
+        final Connection conn,
+        final int channelCount,
+        final RabbitMetricsReporter metrics,
+        final BlockingQueue<Event<QueueConsumer>> consumerEvents,
+        final RabbitWorkerQueueConfiguration config
+    ) throws IOException
+    {
+        if (channelCount < 1) {
+            throw new IllegalArgumentException("Publisher channel count must be at least 1");
+        }
+        this.retryExecutor = config.getPublishRetryLimit() > 0
+            ? Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "rabbit-publish-retry");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+        final List<PublisherChannel> created = new ArrayList<>(channelCount);
+        for (int i = 0; i < channelCount; i++) {
+            created.add(new PublisherChannel(conn.createChannel(), metrics, consumerEvents, config, retryExecutor));
+        }
+        this.channels = Collections.unmodifiableList(created);
+        LOG.debug("Created {} publisher channels", channelCount);
+    }
+
+    /**
+     * Queue an event for publishing. Publish events for the same inbound message always go to the same channel; events without an
+     * inbound message go to the first channel.
+     *
+     * @param event the event to queue
+     */
+    public void add(final Event<WorkerPublisher> event)
+    {
+        channels.get(shardFor(event)).eventQueue.add(event);
+    }
+
+    /**
+     * Queue a batch of publish events with a single hand-off to each publisher channel that they go to. The events for each channel
+     * are published together, in order, as they would be had they been queued one at a time.
+     *
+     * @param events the events to queue
+     */
+    public void addAll(final List<WorkerPublishQueueEvent> events)
+    {
+        if (events.size() == 1) {
+            add(events.get(0));
+            return;
+        }
+        final List<List<WorkerPublishQueueEvent>> byChannel = new ArrayList<>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            byChannel.add(new ArrayList<>());
+        }
+        for (final WorkerPublishQueueEvent event : events) {
+            byChannel.get(shardFor(event)).add(event);
+        }
+        for (int i = 0; i < channels.size(); i++) {
+            final List<WorkerPublishQueueEvent> channelEvents = byChannel.get(i);
+            if (channelEvents.size() == 1) {
+                channels.get(i).eventQueue.add(channelEvents.get(0));
+            } else if (!channelEvents.isEmpty()) {
+                channels.get(i).eventQueue.add(publisher -> publisher.handlePublishBatch(channelEvents));
+            }
+        }
+    }
+
+    /**
+     * @return a channel suitable for declaring queues on
+     */
+    public Channel getChannel()
+    {
+        return channels.get(0).channel;
+    }
+
+    /**
+     * @return the confirm listeners of all of the channels, to be cleared on connection recovery
+     */
+    public List<WorkerConfirmListener> getConfirmListeners()
+    {
+        final List<WorkerConfirmListener> listeners = new ArrayList<>(channels.size());
+        for (final PublisherChannel publisherChannel : channels) {
+            listeners.add(publisherChannel.confirmListener);
+        }
+        return listeners;
+    }
+
+    public void start()
+    {
+        for (final PublisherChannel publisherChannel : channels) {
+            publisherChannel.thread.start();
+        }
+    }
+
+    /**
+     * @return true if every publisher channel is open
+     */
+    public boolean isOpen()
+    {
+        return channels.stream().allMatch(c -> c.channel.isOpen());
+    }
+
+    /**
+     * @return true if every publisher thread is running
+     */
+    public boolean isRunning()
+    {
+        return channels.stream().allMatch(c -> c.thread.isAlive());
+    }
+
+    /**
+     * Signal all of the publisher threads to stop.
+     */
+    public void shutdown()
+    {
+        for (final PublisherChannel publisherChannel : channels) {
+            publisherChannel.poller.shutdown();
+        }
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Close all of the publisher channels.
+     *
+     * @throws IOException if a channel fails to close
+     * @throws TimeoutException if a channel does not close in time
+     */
+    public void close()
+        throws IOException, TimeoutException
+    {
+        for (final PublisherChannel publisherChannel : channels) {
+            publisherChannel.channel.close();
+        }
+    }
+
+    private int shardFor(final Event<WorkerPublisher> event)
+    {
+        if (channels.size() == 1 || !(event instanceof WorkerPublishQueueEvent)) {
+            return 0;
+        }
+        final RabbitTaskInformation taskInformation = ((WorkerPublishQueueEvent) event).getTaskInformation();
+        if (taskInformation == null) {
+            return 0;
+        }
+        return Math.floorMod(taskInformation.getInboundMessageId().hashCode(), channels.size());
+    }
+
+    private static final class PublisherChannel
+    {
+        final Channel channel;
+        final WorkerConfirmListener confirmListener;
+        final BlockingQueue<Event<WorkerPublisher>> eventQueue = new MpscBlockingQueue<>();
+        final EventPoller<WorkerPublisher> poller;
+        final Thread thread;
+
+        PublisherChannel(
+            final Channel channel,
+            final RabbitMetricsReporter metrics,
+            final BlockingQueue<Event<QueueConsumer>> consumerEvents,
+            final RabbitWorkerQueueConfiguration config,
+            final ScheduledExecutorService retryExecutor
+        ) throws IOException
+        {
+            this.channel = Objects.requireNonNull(channel);
+            final PublishRetryScheduler retryScheduler = retryExecutor == null
+                ? null
+                : new PublishRetryScheduler(config.getPublishRetryLimit(), config.getPublishRetryDelayMillis(), retryExecutor, eventQueue,
+                                            metrics);
+            this.confirmListener = new WorkerConfirmListener(consumerEvents, retryScheduler);
+            final WorkerPublisherImpl publisherImpl = new WorkerPublisherImpl(
+                channel, metrics, consumerEvents, confirmListener, config.getMaxConfirmsInFlight(), retryScheduler);
+            this.poller = config.getPublisherBatchSize() > 1
+                ? new WorkerPublisherBatchPoller(2, eventQueue, publisherImpl, config.getPublisherBatchSize())
+                : new EventPoller<>(2, eventQueue, publisherImpl);
+            this.thread = new Thread(poller);
+        }
+    }
+}
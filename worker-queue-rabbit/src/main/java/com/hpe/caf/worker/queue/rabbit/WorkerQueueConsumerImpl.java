@@ -30,11 +30,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * QueueConsumer implementation for a WorkerQueue. This QueueConsumer hands off messages to worker-core upon delivery assuming the message
@@ -47,22 +55,111 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
     private final TaskCallback callback;
     private final RabbitMetricsReporter metrics;
     private final BlockingQueue<Event<QueueConsumer>> consumerEventQueue;
-    private final BlockingQueue<Event<WorkerPublisher>> publisherEventQueue;
+    private final Consumer<Event<WorkerPublisher>> publisherEventSink;
     private final Channel channel;
     private final String retryRoutingKey;
     private final int retryLimit;
+    private final AckCoalescer ackCoalescer;
+    private final ScheduledExecutorService ackFlushScheduler;
+    private final long ackBatchDelayMillis;
+    private final ExecutorService registrationExecutor;
+    private final PayloadCompression compression;
+    private final Runnable settlementListener;
+    private final NavigableMap<Long, Runnable> acknowledgedActions = new ConcurrentSkipListMap<>();
+    private boolean ackFlushScheduled;
+    private long deliveredCount;
+    private long settledCount;
+    private volatile boolean unsettledResetRequested;
     private static final Logger LOG = LoggerFactory.getLogger(WorkerQueueConsumerImpl.class);
 
     public WorkerQueueConsumerImpl(TaskCallback callback, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> queue, Channel ch,
                                    BlockingQueue<Event<WorkerPublisher>> pubQueue, String retryKey, int retryLimit)
+    {
+        this(callback, metrics, queue, ch, Objects.requireNonNull(pubQueue)::add, retryKey, retryLimit);
+    }
+
+    /**
+     * Create a consumer which hands the events it needs published to the supplied sink, such as a pool of publisher channels.
+     */
+    public WorkerQueueConsumerImpl(TaskCallback callback, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> queue, Channel ch,
+                                   Consumer<Event<WorkerPublisher>> pubSink, String retryKey, int retryLimit)
+    {
+        this(callback, metrics, queue, ch, pubSink, retryKey, retryLimit, 1, 0);
+    }
+
+    /**
+     * Create a consumer which coalesces the acknowledgement of messages once they are ready to be acknowledged, sending a single
+     * multiple ack for a run of ready messages.
+     *
+     * @param ackBatchSize the number of ready messages at which acknowledgements are sent; 0 or 1 acknowledges each message as soon as
+     * it is ready
+     * @param ackBatchDelayMillis the maximum time to hold a ready message before acknowledging it
+     */
+    public WorkerQueueConsumerImpl(TaskCallback callback, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> queue, Channel ch,
+                                   Consumer<Event<WorkerPublisher>> pubSink, String retryKey, int retryLimit,
+                                   int ackBatchSize, long ackBatchDelayMillis)
+    {
+        this(callback, metrics, queue, ch, pubSink, retryKey, retryLimit, ackBatchSize, ackBatchDelayMillis, 0);
+    }
+
+    /**
+     * Create a consumer which registers new tasks with worker-core on a pool of threads rather than on the consumer thread, so that
+     * decoding task messages and checking job status for several deliveries can proceed in parallel. Acknowledgements and rejections
+     * are still processed in order on the consumer thread.
+     *
+     * @param registrationThreads the number of threads to register new tasks on; 0 registers them on the consumer thread
+     */
+    public WorkerQueueConsumerImpl(TaskCallback callback, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> queue, Channel ch,
+                                   Consumer<Event<WorkerPublisher>> pubSink, String retryKey, int retryLimit,
+                                   int ackBatchSize, long ackBatchDelayMillis, int registrationThreads)
+    {
+        this(callback, metrics, queue, ch, pubSink, retryKey, retryLimit, ackBatchSize, ackBatchDelayMillis, registrationThreads,
+             new PayloadCompression(null, 0, metrics), () -> {});
+    }
+
+    /**
+     * Create a consumer which decompresses the bodies of delivered messages with the supplied payload compression before registering
+     * them as new tasks.
+     *
+     * @param compression the payload compression to decompress delivered messages with
+     * @param settlementListener called on the consumer thread whenever delivered messages have been acknowledged or rejected
+     */
+    WorkerQueueConsumerImpl(TaskCallback callback, RabbitMetricsReporter metrics, BlockingQueue<Event<QueueConsumer>> queue, Channel ch,
+                            Consumer<Event<WorkerPublisher>> pubSink, String retryKey, int retryLimit,
+                            int ackBatchSize, long ackBatchDelayMillis, int registrationThreads,
+                            PayloadCompression compression, Runnable settlementListener)
     {
         this.callback = Objects.requireNonNull(callback);
         this.metrics = Objects.requireNonNull(metrics);
         this.consumerEventQueue = Objects.requireNonNull(queue);
         this.channel = Objects.requireNonNull(ch);
-        this.publisherEventQueue = Objects.requireNonNull(pubQueue);
+        this.publisherEventSink = Objects.requireNonNull(pubSink);
         this.retryRoutingKey = Objects.requireNonNull(retryKey);
         this.retryLimit = retryLimit;
+        this.compression = Objects.requireNonNull(compression);
+        this.settlementListener = Objects.requireNonNull(settlementListener);
+        this.ackBatchDelayMillis = ackBatchDelayMillis;
+        if (ackBatchSize > 1) {
+            this.ackCoalescer = new AckCoalescer(ch, metrics, ackBatchSize, ackBatchDelayMillis, this::runAcknowledgedActions);
+            this.ackFlushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "rabbit-ack-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.ackCoalescer = null;
+            this.ackFlushScheduler = null;
+        }
+        if (registrationThreads > 0) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.registrationExecutor = Executors.newFixedThreadPool(registrationThreads, r -> {
+                final Thread thread = new Thread(r, "rabbit-task-registration-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.registrationExecutor = null;
+        }
     }
 
     /**
@@ -81,6 +178,11 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
                 .getOrDefault(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_RETRY, "0")));
 
         metrics.incrementReceived();
+        applyUnsettledReset();
+        deliveredCount++;
+        if (ackCoalescer != null) {
+            ackCoalescer.delivered(delivery.getEnvelope().getDeliveryTag());
+        }
         final boolean isPoison;
         if (delivery.getEnvelope().isRedeliver()) {
             if (!delivery.getHeaders().containsKey(RabbitHeaders.RABBIT_HEADER_CAF_DELIVERY_COUNT)) {
@@ -101,22 +203,69 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
         }
 
         final RabbitTaskInformation taskInformation = new RabbitTaskInformation(String.valueOf(delivery.getEnvelope().getDeliveryTag()), isPoison);
+        if (registrationExecutor == null) {
+            registerNewTask(delivery, taskInformation);
+        } else {
+            try {
+                registrationExecutor.execute(() -> registerNewTask(delivery, taskInformation));
+            } catch (final RejectedExecutionException e) {
+                LOG.warn("Message {} not registered as the consumer is shutting down; it will be redelivered",
+                         taskInformation.getInboundMessageId());
+            }
+        }
+    }
+
+    /**
+     * Hand a delivery off to worker-core, and republish or reject it depending upon exceptions thrown. May be called from any thread.
+     */
+    private void registerNewTask(final Delivery delivery, final RabbitTaskInformation taskInformation)
+    {
         try {
             LOG.debug("Registering new message {}", taskInformation.getInboundMessageId());
-            callback.registerNewTask(taskInformation, delivery.getMessageData(), delivery.getHeaders());
+            final byte[] taskMessage;
+            try {
+                taskMessage = compression.decompress(delivery.getMessageData(), delivery.getHeaders());
+            } catch (final IOException e) {
+                throw new InvalidTaskException("Cannot decompress message body", e);
+            }
+            callback.registerNewTask(taskInformation, taskMessage, PayloadCompression.getDecompressedHeaders(delivery.getHeaders()));
         } catch (InvalidTaskException e) {
             LOG.error("Cannot register new message, rejecting {}", taskInformation.getInboundMessageId(), e);
             taskInformation.incrementResponseCount(true);
-            publisherEventQueue.add(new WorkerPublishQueueEvent(delivery.getMessageData(), retryRoutingKey, taskInformation,
-                    Collections.singletonMap(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_REJECTED, REJECTED_REASON_TASKMESSAGE)));
+            final Map<String, Object> headers = getTaskHeaders(delivery);
+            headers.put(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_REJECTED, REJECTED_REASON_TASKMESSAGE);
+            publisherEventSink.accept(new WorkerPublishQueueEvent(delivery.getMessageData(), retryRoutingKey, taskInformation,
+                    headers));
         } catch (TaskRejectedException e) {
             LOG.warn("Message {} rejected as a task at this time, returning to queue", taskInformation.getInboundMessageId(), e);
             taskInformation.incrementResponseCount(true);
-            publisherEventQueue.add(new WorkerPublishQueueEvent(delivery.getMessageData(), delivery.getEnvelope().getRoutingKey(),
-                    taskInformation));
+            publisherEventSink.accept(new WorkerPublishQueueEvent(delivery.getMessageData(), delivery.getEnvelope().getRoutingKey(),
+                    taskInformation, getTaskHeaders(delivery)));
+        } catch (RuntimeException e) {
+            // Registration may be running on another thread, so the delivery must be settled here or it would never be
+            LOG.error("Cannot register message {}, rejecting", taskInformation.getInboundMessageId(), e);
+            consumerEventQueue.add(new ConsumerRejectEvent(delivery.getEnvelope().getDeliveryTag()));
         }
     }
 
+    /**
+     * Get the headers carrying the task message fields of a delivery in the split envelope format, which must travel with the message
+     * body whenever the delivery is republished.
+     *
+     * @param delivery the delivery
+     * @return a modifiable copy of the task message headers of the delivery
+     */
+    private static Map<String, Object> getTaskHeaders(final Delivery delivery)
+    {
+        final Map<String, Object> headers = new HashMap<>();
+        for (final Map.Entry<String, Object> header : delivery.getHeaders().entrySet()) {
+            if (header.getKey().startsWith(RabbitHeaders.RABBIT_HEADER_CAF_TASK_PREFIX)) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        return headers;
+    }
+
     @Override
     public void processAck(long tag)
     {
@@ -124,9 +273,21 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
             return;
         }
 
+        if (ackCoalescer != null) {
+            ackCoalescer.acknowledge(tag);
+            scheduleAckFlush();
+            settlementListener.run();
+            return;
+        }
+
         try {
             LOG.debug("Acknowledging message {}", tag);
             channel.basicAck(tag, false);
+            metrics.incrementAcksSent();
+            metrics.incrementMessagesAcknowledged(1);
+            settledCount++;
+            runAcknowledgedActions(tag, false);
+            settlementListener.run();
         } catch (IOException e) {
             LOG.warn("Couldn't ack message {}, will retry", tag, e);
             metrics.incremementErrors();
@@ -146,6 +307,122 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
         processReject(tag, false);
     }
 
+    /**
+     * Forget the delivery tags being tracked for coalesced acknowledgements, as they no longer apply once the connection has been
+     * recovered. May be called from any thread.
+     */
+    public void resetAcknowledgements()
+    {
+        if (ackCoalescer != null) {
+            ackCoalescer.reset();
+        }
+        resetUnsettledCount();
+        // The messages will be delivered again, so must not be treated as done with
+        acknowledgedActions.clear();
+    }
+
+    /**
+     * Run an action once a delivered message has been acknowledged with the broker. The action is dropped if the message is rejected
+     * instead. May be called from any thread.
+     *
+     * @param tag the delivery tag of the message
+     * @param action the action to run on the consumer thread once the message has been acknowledged
+     */
+    void whenAcknowledged(final long tag, final Runnable action)
+    {
+        Objects.requireNonNull(action);
+        acknowledgedActions.merge(tag, action, (first, second) -> () -> {
+            first.run();
+            second.run();
+        });
+    }
+
+    private void runAcknowledgedActions(final long tag, final boolean multiple)
+    {
+        if (acknowledgedActions.isEmpty()) {
+            return;
+        }
+        final Map<Long, Runnable> acknowledged = multiple
+            ? acknowledgedActions.headMap(tag, true)
+            : acknowledgedActions.subMap(tag, true, tag, true);
+        for (final Map.Entry<Long, Runnable> entry : acknowledged.entrySet()) {
+            if (acknowledgedActions.remove(entry.getKey(), entry.getValue())) {
+                try {
+                    entry.getValue().run();
+                } catch (final RuntimeException e) {
+                    LOG.warn("Action on acknowledgement of message {} failed", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of messages delivered on the incoming channel which have not yet been acknowledged or rejected, and so still
+     * count against its prefetch. Must be called from the consumer thread.
+     *
+     * @return the number of unsettled messages
+     */
+    int getUnsettledCount()
+    {
+        applyUnsettledReset();
+        return (int) Math.max(0, deliveredCount - settledCount - getCoalescedAcknowledgedCount());
+    }
+
+    /**
+     * Stop counting the messages delivered so far as unsettled, for use when they have been returned to the queue by the broker.
+     * Takes effect the next time the count is used from the consumer thread. May be called from any thread.
+     */
+    void resetUnsettledCount()
+    {
+        unsettledResetRequested = true;
+    }
+
+    private void applyUnsettledReset()
+    {
+        if (unsettledResetRequested) {
+            unsettledResetRequested = false;
+            settledCount = deliveredCount - getCoalescedAcknowledgedCount();
+        }
+    }
+
+    private long getCoalescedAcknowledgedCount()
+    {
+        return ackCoalescer == null ? 0 : ackCoalescer.getAcknowledgedCount();
+    }
+
+    /**
+     * Stop the timer used to flush coalesced acknowledgements and the threads used to register new tasks.
+     */
+    public void shutdown()
+    {
+        if (ackFlushScheduler != null) {
+            ackFlushScheduler.shutdownNow();
+        }
+        if (registrationExecutor != null) {
+            registrationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Arrange for the coalesced acknowledgements to be flushed on the consumer thread once the maximum delay has passed, if they have
+     * not been sent by then.
+     */
+    private void scheduleAckFlush()
+    {
+        if (!ackFlushScheduled && ackCoalescer.hasPending() && !ackFlushScheduler.isShutdown()) {
+            ackFlushScheduled = true;
+            ackFlushScheduler.schedule(() -> consumerEventQueue.add(target -> flushAcks()), ackBatchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushAcks()
+    {
+        ackFlushScheduled = false;
+        ackCoalescer.flushIfDue();
+        scheduleAckFlush();
+        settlementListener.run();
+    }
+
     /**
      * Process a REJECT event. Similar to ACK, we will requeue the event if it fails, though the RabbitMQ java client should handle most of our failure cases.
      *
@@ -161,6 +438,11 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
 
         try {
             channel.basicReject(id, requeue);
+            if (ackCoalescer != null) {
+                ackCoalescer.settled(id);
+            }
+            settledCount++;
+            acknowledgedActions.remove(id);
             if (requeue) {
                 LOG.debug("Rejecting message {}", id);
                 metrics.incrementRejected();
@@ -168,6 +450,7 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
                 LOG.warn("Dropping message {}", id);
                 metrics.incrementDropped();
             }
+            settlementListener.run();
         } catch (IOException e) {
             LOG.warn("Couldn't reject message {}, will retry", id, e);
             metrics.incremementErrors();
@@ -186,10 +469,10 @@ public class WorkerQueueConsumerImpl implements QueueConsumer
                 new RabbitTaskInformation(String.valueOf(delivery.getEnvelope().getDeliveryTag()));
         LOG.debug("Received redelivered message with id {}, retry count {}, retry limit {}, republishing to retry queue",
                 delivery.getEnvelope().getDeliveryTag(), retryLimit, retries + 1);
-        final Map<String, Object> headers = new HashMap<>();
+        final Map<String, Object> headers = getTaskHeaders(delivery);
         headers.put(RabbitHeaders.RABBIT_HEADER_CAF_WORKER_RETRY, String.valueOf(retries + 1));
         taskInformation.incrementResponseCount(true);
-        publisherEventQueue.add(new WorkerPublishQueueEvent(delivery.getMessageData(), retryRoutingKey, 
+        publisherEventSink.accept(new WorkerPublishQueueEvent(delivery.getMessageData(), retryRoutingKey, 
                 taskInformation, headers));
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.rabbitmq.client.Channel;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class AckCoalescerTest
+{
+    @Test
+    public void testRunAcknowledgedWithMultipleAck()
+        throws IOException
+    {
+        Channel channel = Mockito.mock(Channel.class);
+        RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+        AckCoalescer acks = new AckCoalescer(channel, metrics, 3, 60000);
+        for (long tag = 1; tag <= 5; tag++) {
+            acks.delivered(tag);
+        }
+        acks.acknowledge(2);
+        acks.acknowledge(1);
+        acks.settled(3);
+        Mockito.verify(channel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.anyBoolean());
+        Assert.assertTrue(acks.hasPending());
+
+        acks.acknowledge(4);
+        Mockito.verify(channel).basicAck(4, true);
+        Mockito.verifyNoMoreInteractions(channel);
+        Assert.assertFalse(acks.hasPending());
+        Assert.assertEquals(metrics.getAcksSent(), 1);
+        Assert.assertEquals(metrics.getMessagesAcknowledged(), 3);
+    }
+
+    @Test
+    public void testBlockedRunAcknowledgedIndividuallyWhenDue()
+        throws IOException
+    {
+        Channel channel = Mockito.mock(Channel.class);
+        RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+        AckCoalescer acks = new AckCoalescer(channel, metrics, 3, 0);
+        for (long tag = 1; tag <= 4; tag++) {
+            acks.delivered(tag);
+        }
+        // Message 1 is still in progress, so nothing can be acknowledged with a multiple ack
+        acks.acknowledge(2);
+        acks.acknowledge(3);
+        acks.acknowledge(4);
+        Mockito.verify(channel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.anyBoolean());
+
+        acks.flushIfDue();
+        Mockito.verify(channel).basicAck(2, false);
+        Mockito.verify(channel).basicAck(3, false);
+        Mockito.verify(channel).basicAck(4, false);
+
+        acks.acknowledge(1);
+        acks.flushIfDue();
+        Mockito.verify(channel).basicAck(1, false);
+        Mockito.verifyNoMoreInteractions(channel);
+        Assert.assertEquals(metrics.getAcksSent(), 4);
+        Assert.assertEquals(metrics.getMessagesAcknowledged(), 4);
+    }
+
+    @Test
+    public void testReset()
+        throws IOException
+    {
+        Channel channel = Mockito.mock(Channel.class);
+        AckCoalescer acks = new AckCoalescer(channel, new RabbitMetricsReporter(), 2, 60000);
+        acks.delivered(1);
+        acks.delivered(2);
+        acks.acknowledge(2);
+        acks.reset();
+
+        // Tags from before the reset are not coalesced with those after it
+        acks.delivered(3);
+        acks.delivered(4);
+        acks.acknowledge(1);
+        Mockito.verify(channel).basicAck(1, false);
+        acks.acknowledge(3);
+        acks.acknowledge(4);
+        Mockito.verify(channel).basicAck(4, true);
+        Mockito.verifyNoMoreInteractions(channel);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConfirmTrackerTest
+{
+    @Test
+    public void testRemoveThroughSpansSegments()
+    {
+        final ConfirmTracker<RabbitTaskInformation> tracker = new ConfirmTracker<>();
+        for (long seq = 1; seq <= 5000; seq++) {
+            tracker.register(seq, new RabbitTaskInformation(String.valueOf(seq)));
+        }
+        Assert.assertEquals(tracker.size(), 5000);
+
+        final List<String> confirmed = new ArrayList<>();
+        tracker.removeThrough(3000, t -> confirmed.add(t.getInboundMessageId()));
+        Assert.assertEquals(confirmed.size(), 3000);
+        Assert.assertEquals(confirmed.get(0), "1");
+        Assert.assertEquals(confirmed.get(2999), "3000");
+        Assert.assertEquals(tracker.size(), 2000);
+
+        Assert.assertNull(tracker.remove(2000));
+        Assert.assertEquals(tracker.remove(4500).getInboundMessageId(), "4500");
+
+        confirmed.clear();
+        tracker.removeThrough(5000, t -> confirmed.add(t.getInboundMessageId()));
+        Assert.assertEquals(confirmed.size(), 1999);
+        Assert.assertEquals(tracker.size(), 0);
+    }
+
+    @Test
+    public void testSequenceReset()
+    {
+        final ConfirmTracker<RabbitTaskInformation> tracker = new ConfirmTracker<>();
+        for (long seq = 1; seq <= 3000; seq++) {
+            tracker.register(seq, new RabbitTaskInformation(String.valueOf(seq)));
+        }
+        tracker.removeThrough(2500, t -> {
+        });
+        tracker.register(4000, new RabbitTaskInformation("4000"));
+        Assert.assertEquals(tracker.size(), 501);
+
+        tracker.register(1, new RabbitTaskInformation("new"));
+        Assert.assertEquals(tracker.size(), 1);
+        Assert.assertEquals(tracker.remove(1).getInboundMessageId(), "new");
+        Assert.assertNull(tracker.remove(4000));
+    }
+
+    @Test
+    public void testAwaitCapacityWokenByConfirm()
+        throws InterruptedException
+    {
+        final ConfirmTracker<RabbitTaskInformation> tracker = new ConfirmTracker<>();
+        tracker.register(1, new RabbitTaskInformation("1"));
+        tracker.register(2, new RabbitTaskInformation("2"));
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicLong waited = new AtomicLong();
+        final Thread publisher = new Thread(() -> {
+            try {
+                waiting.countDown();
+                final long start = System.nanoTime();
+                if (tracker.awaitCapacity(1, 2, 10000)) {
+                    waited.set(System.nanoTime() - start);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        publisher.start();
+        waiting.await();
+        Thread.sleep(100);
+        tracker.removeThrough(1, t -> {
+        });
+        publisher.join(10000);
+
+        Assert.assertTrue(waited.get() > 0);
+        Assert.assertTrue(waited.get() < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    public void testClearFromAnotherThreadAppliedByRegisteringThread()
+        throws InterruptedException
+    {
+        final ConfirmTracker<RabbitTaskInformation> tracker = new ConfirmTracker<>();
+        tracker.register(1, new RabbitTaskInformation("1"));
+        tracker.register(2, new RabbitTaskInformation("2"));
+
+        // The publisher waiting for capacity is woken by the clear, and discards what was tracked itself
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicBoolean hadCapacity = new AtomicBoolean();
+        final Thread publisher = new Thread(() -> {
+            try {
+                waiting.countDown();
+                hadCapacity.set(tracker.awaitCapacity(1, 2, 10000));
+                tracker.register(1, new RabbitTaskInformation("new"));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        publisher.start();
+        waiting.await();
+        Thread.sleep(100);
+        tracker.clear();
+        publisher.join(10000);
+
+        Assert.assertTrue(hadCapacity.get());
+        Assert.assertEquals(tracker.size(), 1);
+        final List<String> confirmed = new ArrayList<>();
+        tracker.removeThrough(2, t -> confirmed.add(t.getInboundMessageId()));
+        Assert.assertEquals(confirmed, Collections.singletonList("new"));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+public class PayloadCompressionTest
+{
+    private static final byte[] TEXT = "{\"taskData\":\"some highly compressible text\"}".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRoundTrip()
+        throws IOException
+    {
+        for (final PayloadCompression.Encoding encoding : PayloadCompression.Encoding.values()) {
+            final RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+            final PayloadCompression compression = new PayloadCompression(encoding, 1024, metrics);
+
+            final byte[] compressed = compression.compress(TEXT, Collections.emptyMap());
+            Assert.assertTrue(compressed.length < TEXT.length, encoding.name());
+            final Map<String, Object> headers = compression.getCompressedHeaders(Collections.emptyMap());
+            Assert.assertTrue(headers.containsKey(PayloadCompression.CONTENT_ENCODING_HEADER));
+            Assert.assertEquals(metrics.getBytesBeforeCompression(), TEXT.length);
+            Assert.assertEquals(metrics.getBytesAfterCompression(), compressed.length);
+
+            // Messages are decompressed whatever encoding is configured for publishing
+            Assert.assertEquals(new PayloadCompression(null, 0, metrics).decompress(compressed, headers), TEXT);
+            Assert.assertTrue(PayloadCompression.getDecompressedHeaders(headers).isEmpty());
+        }
+    }
+
+    @Test
+    public void testMessagesLeftUncompressed()
+        throws IOException
+    {
+        final RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+        final PayloadCompression compression = new PayloadCompression(PayloadCompression.Encoding.GZIP, 1024, metrics);
+
+        // Messages below the threshold, or which are already compressed, are not compressed
+        final byte[] small = "small".getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(compression.compress(small, Collections.emptyMap()), small);
+        Assert.assertSame(compression.compress(TEXT, compression.getCompressedHeaders(Collections.emptyMap())), TEXT);
+        Assert.assertEquals(metrics.getBytesBeforeCompression(), 0);
+
+        // Messages which do not get smaller are sent as they are
+        final byte[] random = new byte[4096];
+        new Random(0).nextBytes(random);
+        Assert.assertSame(compression.compress(random, Collections.emptyMap()), random);
+
+        // Messages without a content encoding header are delivered as they are
+        Assert.assertSame(compression.decompress(TEXT, Collections.emptyMap()), TEXT);
+    }
+
+    @Test
+    public void testCorruptMessageRejected()
+    {
+        final PayloadCompression compression = new PayloadCompression(null, 0, new RabbitMetricsReporter());
+        Assert.assertThrows(IOException.class, () -> compression.decompress(
+            TEXT, Collections.singletonMap(PayloadCompression.CONTENT_ENCODING_HEADER, "gzip")));
+        Assert.assertThrows(IOException.class, () -> compression.decompress(
+            TEXT, Collections.singletonMap(PayloadCompression.CONTENT_ENCODING_HEADER, "unknown")));
+    }
+}
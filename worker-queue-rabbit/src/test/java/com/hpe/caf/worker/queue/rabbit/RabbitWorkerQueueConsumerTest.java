@@ -24,6 +24,7 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
@@ -35,6 +36,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -86,6 +88,58 @@ public class RabbitWorkerQueueConsumerTest
         consumer.shutdown();
     }
 
+    /**
+     * Send in a new message and verify that if the task registration fails unexpectedly the message is rejected rather than being
+     * left unsettled.
+     */
+    @Test
+    public void testHandleDeliveryRegistrationFailure()
+        throws IOException, InterruptedException, WorkerException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<Event<WorkerPublisher>> publisherEvents = new LinkedBlockingQueue<>();
+        Channel channel = Mockito.mock(Channel.class);
+        TaskCallback callback = Mockito.mock(TaskCallback.class);
+        Mockito.doThrow(new IllegalStateException("Task data could not be decoded"))
+            .when(callback).registerNewTask(Mockito.any(), Mockito.any(), Mockito.anyMap());
+        WorkerQueueConsumerImpl impl = new WorkerQueueConsumerImpl(callback, metrics, consumerEvents, channel, publisherEvents, retryKey, 1);
+        DefaultRabbitConsumer consumer = new DefaultRabbitConsumer(consumerEvents, impl);
+        Thread t = new Thread(consumer);
+        t.start();
+        AMQP.BasicProperties prop = Mockito.mock(AMQP.BasicProperties.class);
+        Mockito.when(prop.getHeaders()).thenReturn(Collections.emptyMap());
+        consumer.handleDelivery("consumer", newEnv, prop, data);
+        Mockito.verify(channel, Mockito.timeout(1000)).basicReject(newEnv.getDeliveryTag(), true);
+        Assert.assertTrue(publisherEvents.isEmpty());
+        consumer.shutdown();
+    }
+
+    /**
+     * Verify that an action waiting on the acknowledgement of a message is run once the acknowledgement has been sent, and that one
+     * waiting on a message which is rejected instead is never run.
+     */
+    @Test
+    public void testActionRunsOnceAcknowledged()
+        throws IOException
+    {
+        Channel channel = Mockito.mock(Channel.class);
+        WorkerQueueConsumerImpl impl = new WorkerQueueConsumerImpl(mockCallback, metrics, new LinkedBlockingQueue<>(), channel,
+                                                                   new LinkedBlockingQueue<>(), retryKey, 1);
+        Runnable acknowledgedAction = Mockito.mock(Runnable.class);
+        Runnable rejectedAction = Mockito.mock(Runnable.class);
+        impl.whenAcknowledged(101, acknowledgedAction);
+        impl.whenAcknowledged(102, rejectedAction);
+
+        impl.processReject(102);
+        Mockito.verify(acknowledgedAction, Mockito.never()).run();
+        impl.processAck(101);
+
+        InOrder inOrder = Mockito.inOrder(channel, acknowledgedAction);
+        inOrder.verify(channel).basicAck(101, false);
+        inOrder.verify(acknowledgedAction).run();
+        Mockito.verify(rejectedAction, Mockito.never()).run();
+    }
+
     /**
      * Send in a message that has been retried once with retry limit set to 1, and verify the task information marks the message as
      * poisonous.
@@ -294,6 +348,42 @@ public class RabbitWorkerQueueConsumerTest
         consumer.shutdown();
     }
 
+    /**
+     * Send in two messages with two registration threads and verify that they are registered at the same time, off the consumer
+     * thread.
+     */
+    @Test
+    public void testParallelRegistration()
+        throws InterruptedException, WorkerException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<Event<WorkerPublisher>> publisherEvents = new LinkedBlockingQueue<>();
+        Channel channel = Mockito.mock(Channel.class);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CountDownLatch latch = new CountDownLatch(2);
+        TaskCallback callback = Mockito.mock(TaskCallback.class);
+        Answer<Void> a = invocationOnMock -> {
+            // Both registrations must be in progress at once for the barrier to trip
+            barrier.await(1000, TimeUnit.MILLISECONDS);
+            latch.countDown();
+            return null;
+        };
+        Mockito.doAnswer(a).when(callback).registerNewTask(Mockito.any(), Mockito.any(), Mockito.anyMap());
+        WorkerQueueConsumerImpl impl = new WorkerQueueConsumerImpl(callback, metrics, consumerEvents, channel, publisherEvents::add,
+                                                                   retryKey, 1, 1, 0, 2);
+        DefaultRabbitConsumer consumer = new DefaultRabbitConsumer(consumerEvents, impl);
+        Thread t = new Thread(consumer);
+        t.start();
+        AMQP.BasicProperties prop = Mockito.mock(AMQP.BasicProperties.class);
+        Mockito.when(prop.getHeaders()).thenReturn(Collections.emptyMap());
+        consumer.handleDelivery("consumer", newEnv, prop, data);
+        consumer.handleDelivery("consumer", new Envelope(102, false, "", testQueue), prop, data);
+        Assert.assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(publisherEvents.isEmpty());
+        consumer.shutdown();
+        impl.shutdown();
+    }
+
     @SuppressWarnings("unchecked")
     private static ArgumentCaptor<Map<String, Object>> buildStringObjectMapCaptor()
     {
@@ -20,18 +20,23 @@ import com.hpe.caf.util.rabbitmq.Event;
 import com.hpe.caf.util.rabbitmq.EventPoller;
 import com.hpe.caf.util.rabbitmq.QueueConsumer;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RabbitWorkerQueuePublisherTest
 {
@@ -105,4 +110,134 @@ public class RabbitWorkerQueuePublisherTest
         Assert.assertEquals(0, publisherEvents.size());
         Assert.assertEquals(0, consumerEvents.size());
     }
+
+    @Test
+    public void testHandlePublishBatch()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<Event<WorkerPublisher>> publisherEvents = new LinkedBlockingQueue<>();
+        Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.isOpen()).thenReturn(true);
+        AtomicLong seqNo = new AtomicLong(1);
+        Mockito.when(channel.getNextPublishSeqNo()).thenAnswer(invocationOnMock -> seqNo.get());
+        CountDownLatch latch = new CountDownLatch(3);
+        Answer<Void> a = invocationOnMock -> {
+            seqNo.incrementAndGet();
+            latch.countDown();
+            return null;
+        };
+        Mockito.doAnswer(a).when(channel).basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+        WorkerConfirmListener listener = new WorkerConfirmListener(consumerEvents);
+        WorkerPublisher impl = new WorkerPublisherImpl(channel, metrics, consumerEvents, listener, 2);
+        for (int i = 0; i < 3; i++) {
+            RabbitTaskInformation ti = new RabbitTaskInformation(String.valueOf(100 + i));
+            ti.incrementResponseCount(true);
+            publisherEvents.add(new WorkerPublishQueueEvent(data, testQueue, ti));
+        }
+        EventPoller<WorkerPublisher> publisher = new WorkerPublisherBatchPoller(2, publisherEvents, impl, 10);
+        Thread t = new Thread(publisher);
+        t.start();
+        // The confirm window is 2, so the third message must wait for a confirm
+        Thread.sleep(500);
+        Assert.assertEquals(1, latch.getCount());
+        Assert.assertEquals(2, listener.getOutstandingConfirmCount());
+        listener.handleAck(2, true);
+        Assert.assertTrue(latch.await(5000, TimeUnit.MILLISECONDS));
+        publisher.shutdown();
+        Assert.assertEquals(0, publisherEvents.size());
+        Assert.assertEquals(1, listener.getOutstandingConfirmCount());
+        Assert.assertEquals(2, consumerEvents.size());
+    }
+
+    @Test
+    public void testHandlePublishBatchFail()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.getNextPublishSeqNo()).thenReturn(1L);
+        Mockito.doThrow(IOException.class).when(channel).basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+        WorkerConfirmListener listener = new WorkerConfirmListener(consumerEvents);
+        WorkerPublisher impl = new WorkerPublisherImpl(channel, metrics, consumerEvents, listener);
+        impl.handlePublishBatch(Arrays.asList(
+            new WorkerPublishQueueEvent(data, testQueue, new RabbitTaskInformation("101")),
+            new WorkerPublishQueueEvent(data, testQueue, new RabbitTaskInformation("102"))));
+        Mockito.verify(channel, Mockito.times(1)).basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+        Assert.assertEquals(0, listener.getOutstandingConfirmCount());
+        Assert.assertEquals(101L, ((ConsumerRejectEvent) consumerEvents.poll()).getTag());
+        Assert.assertEquals(102L, ((ConsumerRejectEvent) consumerEvents.poll()).getTag());
+    }
+
+    @Test
+    public void testPublisherPoolShardsByTask()
+        throws IOException, TimeoutException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        Channel channelA = mockSequencedChannel();
+        Channel channelB = mockSequencedChannel();
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.createChannel()).thenReturn(channelA, channelB);
+        WorkerPublisherPool pool = new WorkerPublisherPool(conn, 2, metrics, consumerEvents, new RabbitWorkerQueueConfiguration());
+        Assert.assertEquals(2, pool.getConfirmListeners().size());
+        pool.start();
+        // "100" and "101" hash to different channels, and each task's messages stay on one channel
+        RabbitTaskInformation task100 = new RabbitTaskInformation("100");
+        RabbitTaskInformation task101 = new RabbitTaskInformation("101");
+        for (int i = 0; i < 3; i++) {
+            pool.add(new WorkerPublishQueueEvent(data, testQueue, task100));
+            pool.add(new WorkerPublishQueueEvent(data, testQueue, task101));
+        }
+        Mockito.verify(channelA, Mockito.timeout(5000).times(3))
+            .basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+        Mockito.verify(channelB, Mockito.timeout(5000).times(3))
+            .basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+        Assert.assertTrue(pool.isRunning());
+        pool.shutdown();
+        pool.close();
+        Mockito.verify(channelA).close();
+        Mockito.verify(channelB).close();
+    }
+
+    @Test
+    public void testPublisherPoolAddAllHandsOffBatchPerChannel()
+        throws IOException, TimeoutException
+    {
+        BlockingQueue<Event<QueueConsumer>> consumerEvents = new LinkedBlockingQueue<>();
+        Channel channelA = mockSequencedChannel();
+        Channel channelB = mockSequencedChannel();
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.createChannel()).thenReturn(channelA, channelB);
+        WorkerPublisherPool pool = new WorkerPublisherPool(conn, 2, metrics, consumerEvents, new RabbitWorkerQueueConfiguration());
+        pool.start();
+        RabbitTaskInformation task100 = new RabbitTaskInformation("100");
+        RabbitTaskInformation task101 = new RabbitTaskInformation("101");
+        byte[] otherData = "other".getBytes(StandardCharsets.UTF_8);
+        // Each channel publishes its share of the batch, in the order it was added
+        pool.addAll(Arrays.asList(new WorkerPublishQueueEvent(data, testQueue, task100),
+                                  new WorkerPublishQueueEvent(data, testQueue, task101),
+                                  new WorkerPublishQueueEvent(otherData, testQueue, task100),
+                                  new WorkerPublishQueueEvent(otherData, testQueue, task101)));
+        for (Channel channel : Arrays.asList(channelA, channelB)) {
+            Mockito.verify(channel, Mockito.timeout(5000))
+                .basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(otherData));
+            InOrder inOrder = Mockito.inOrder(channel);
+            inOrder.verify(channel).basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(data));
+            inOrder.verify(channel).basicPublish(Mockito.any(), Mockito.eq(testQueue), Mockito.any(), Mockito.eq(otherData));
+        }
+        pool.shutdown();
+        pool.close();
+    }
+
+    private static Channel mockSequencedChannel()
+        throws IOException
+    {
+        Channel channel = Mockito.mock(Channel.class);
+        AtomicLong seqNo = new AtomicLong(1);
+        Mockito.when(channel.isOpen()).thenReturn(true);
+        Mockito.when(channel.getNextPublishSeqNo()).thenAnswer(invocationOnMock -> seqNo.get());
+        Mockito.doAnswer(invocationOnMock -> seqNo.incrementAndGet())
+            .when(channel).basicPublish(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        return channel;
+    }
 }
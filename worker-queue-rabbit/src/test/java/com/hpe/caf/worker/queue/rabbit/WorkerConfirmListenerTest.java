@@ -19,12 +19,20 @@ import com.hpe.caf.util.rabbitmq.ConsumerAckEvent;
 import com.hpe.caf.util.rabbitmq.ConsumerRejectEvent;
 import com.hpe.caf.util.rabbitmq.Event;
 import com.hpe.caf.util.rabbitmq.QueueConsumer;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class WorkerConfirmListenerTest
@@ -45,6 +53,77 @@ public class WorkerConfirmListenerTest
         Assert.assertEquals(100, ((ConsumerAckEvent) e).getTag());
     }
 
+    @Test
+    public void testAckSharedPublish()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        WorkerConfirmListener conf = new WorkerConfirmListener(q);
+        RabbitTaskInformation first = new RabbitTaskInformation("100");
+        RabbitTaskInformation second = new RabbitTaskInformation("101");
+        first.incrementResponseCount(false);
+        second.incrementResponseCount(false);
+        conf.registerPublish(1, new WorkerPublishQueueEvent(new byte[0], "tracking", Arrays.asList(first, second),
+                                                            Collections.emptyMap()));
+        first.incrementResponseCount(true);
+        conf.registerResponseSequence(2, first);
+        second.incrementResponseCount(true);
+        conf.registerResponseSequence(3, second);
+
+        // Neither message is acked until the message published on behalf of both of them is confirmed
+        conf.handleAck(2, false);
+        conf.handleAck(3, false);
+        Assert.assertNull(q.poll(100, TimeUnit.MILLISECONDS));
+        conf.handleAck(1, false);
+        Event<QueueConsumer> e = q.poll(1000, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(e instanceof ConsumerAckEvent);
+        Assert.assertEquals(100, ((ConsumerAckEvent) e).getTag());
+        e = q.poll(1000, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(e instanceof ConsumerAckEvent);
+        Assert.assertEquals(101, ((ConsumerAckEvent) e).getTag());
+    }
+
+    @Test
+    public void testAckConfirmedConcurrentlyOnTwoChannels()
+        throws Exception
+    {
+        final BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 500; i++) {
+                // The task's two responses were published on different channels, whose confirm threads ack them at the same time
+                final WorkerConfirmListener first = new WorkerConfirmListener(q);
+                final WorkerConfirmListener second = new WorkerConfirmListener(q);
+                final RabbitTaskInformation taskInformation = new RabbitTaskInformation("100");
+                taskInformation.incrementResponseCount(false);
+                taskInformation.incrementResponseCount(true);
+                first.registerResponseSequence(1, taskInformation);
+                second.registerResponseSequence(1, taskInformation);
+
+                final CyclicBarrier barrier = new CyclicBarrier(2);
+                final Future<?> firstAck = executor.submit(() -> {
+                    barrier.await();
+                    first.handleAck(1, false);
+                    return null;
+                });
+                final Future<?> secondAck = executor.submit(() -> {
+                    barrier.await();
+                    second.handleAck(1, false);
+                    return null;
+                });
+                firstAck.get(5, TimeUnit.SECONDS);
+                secondAck.get(5, TimeUnit.SECONDS);
+
+                final Event<QueueConsumer> e = q.poll();
+                Assert.assertTrue(e instanceof ConsumerAckEvent);
+                Assert.assertEquals(100, ((ConsumerAckEvent) e).getTag());
+                Assert.assertNull(q.poll(), "The input message must only be acked once");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void testAckSingleMissing()
         throws IOException, InterruptedException
@@ -346,4 +425,97 @@ public class WorkerConfirmListenerTest
         Assert.assertEquals(100L, ((ConsumerRejectEvent) e).getTag());
         conf.handleNack(2, false);
     }
+
+    @Test
+    public void testRegisterRange()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        WorkerConfirmListener conf = new WorkerConfirmListener(q);
+        RabbitTaskInformation rabbitTaskInfo_100 = new RabbitTaskInformation("100");
+        RabbitTaskInformation rabbitTaskInfo_200 = new RabbitTaskInformation("200");
+        rabbitTaskInfo_100.incrementResponseCount(false);
+        rabbitTaskInfo_100.incrementResponseCount(true);
+        rabbitTaskInfo_200.incrementResponseCount(true);
+        conf.registerResponseSequences(3, Arrays.asList(rabbitTaskInfo_100, rabbitTaskInfo_100, rabbitTaskInfo_200));
+        Assert.assertEquals(3, conf.getOutstandingConfirmCount());
+        conf.handleAck(4, true);
+        Event<QueueConsumer> e = q.poll(1000, TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(e);
+        Assert.assertTrue(e instanceof ConsumerAckEvent);
+        Assert.assertEquals(100L, ((ConsumerAckEvent) e).getTag());
+        conf.deregisterResponseSequences(5, 6);
+        Assert.assertEquals(0, conf.getOutstandingConfirmCount());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRegisterRangeDuplicate()
+    {
+        BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        WorkerConfirmListener conf = new WorkerConfirmListener(q);
+        conf.registerResponseSequence(2, new RabbitTaskInformation("100"));
+        conf.registerResponseSequences(1, Arrays.asList(new RabbitTaskInformation("200"), new RabbitTaskInformation("300")));
+    }
+
+    @Test
+    public void testAwaitConfirmCapacity()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        WorkerConfirmListener conf = new WorkerConfirmListener(q);
+        conf.registerResponseSequences(1, Arrays.asList(new RabbitTaskInformation("100"), new RabbitTaskInformation("200")));
+        Assert.assertTrue(conf.awaitConfirmCapacity(1, 0, 0));
+        Assert.assertTrue(conf.awaitConfirmCapacity(1, 3, 0));
+        Assert.assertFalse(conf.awaitConfirmCapacity(2, 3, 100));
+        conf.handleAck(1, false);
+        Assert.assertTrue(conf.awaitConfirmCapacity(2, 3, 100));
+        conf.clearConfirmations();
+        Assert.assertTrue(conf.awaitConfirmCapacity(10, 3, 0));
+    }
+
+    @Test
+    public void testNackRepublishedUntilRetryLimit()
+        throws IOException, InterruptedException
+    {
+        BlockingQueue<Event<QueueConsumer>> q = new LinkedBlockingQueue<>();
+        BlockingQueue<Event<WorkerPublisher>> publishQueue = new LinkedBlockingQueue<>();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        RabbitMetricsReporter metrics = new RabbitMetricsReporter();
+        WorkerConfirmListener conf = new WorkerConfirmListener(q, new PublishRetryScheduler(1, 1, executor, publishQueue, metrics));
+        WorkerPublisher publisher = Mockito.mock(WorkerPublisher.class);
+        try {
+            // The first NACK of a response publishes it again, and the input message is acked once that is confirmed
+            RabbitTaskInformation task100 = new RabbitTaskInformation("100");
+            task100.incrementResponseCount(true);
+            WorkerPublishQueueEvent publish100 = new WorkerPublishQueueEvent(new byte[]{1}, "out", task100);
+            conf.registerPublish(1, publish100);
+            conf.handleNack(1, false);
+            Event<WorkerPublisher> republish = publishQueue.poll(1000, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(republish);
+            republish.handleEvent(publisher);
+            Mockito.verify(publisher).handleRepublish(publish100);
+            Assert.assertTrue(q.isEmpty());
+            conf.registerPublish(2, publish100);
+            conf.handleAck(2, false);
+            Event<QueueConsumer> e = q.poll(1000, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(e instanceof ConsumerAckEvent);
+            Assert.assertEquals(100, ((ConsumerAckEvent) e).getTag());
+
+            // Once the retry limit is reached the input message is rejected
+            RabbitTaskInformation task200 = new RabbitTaskInformation("200");
+            task200.incrementResponseCount(true);
+            WorkerPublishQueueEvent publish200 = new WorkerPublishQueueEvent(new byte[]{2}, "out", task200);
+            conf.registerPublish(3, publish200);
+            conf.handleNack(3, false);
+            Assert.assertNotNull(publishQueue.poll(1000, TimeUnit.MILLISECONDS));
+            conf.registerPublish(4, publish200);
+            conf.handleNack(4, false);
+            e = q.poll(1000, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(e instanceof ConsumerRejectEvent);
+            Assert.assertEquals(200, ((ConsumerRejectEvent) e).getTag());
+            Assert.assertEquals(2, metrics.getMessagesRepublished());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
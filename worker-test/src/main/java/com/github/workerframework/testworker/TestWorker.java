@@ -63,7 +63,16 @@ final class TestWorker implements Worker
             // Used to test graceful shutdown in the ShutdownDeveloperTest
             Thread.sleep(testWorkerTask.getDelaySeconds() * 1000L);
         }
-        
+        if (testWorkerTask.getDelayMillis() > 0) {
+            // Used to simulate the task duration in the LoadHarnessTest
+            Thread.sleep(testWorkerTask.getDelayMillis());
+        }
+
+        for (int i = 0; i < testWorkerTask.getSubTaskCount(); i++) {
+            workerTask.addResponse(
+                new WorkerResponse(outputQueue, TaskStatus.RESULT_SUCCESS, TEST_WORKER_RESULT, "TestWorkerSubTask", 1, null), false);
+        }
+
         return new WorkerResponse(
             outputQueue,
             TaskStatus.RESULT_SUCCESS,
@@ -23,6 +23,21 @@ public class TestWorkerTask {
      */
     private int delaySeconds;
 
+    /**
+     * Configurable delay in processing a message, in addition to any delay in seconds
+     */
+    private int delayMillis;
+
+    /**
+     * The number of sub-task responses to send before the final response
+     */
+    private int subTaskCount;
+
+    /**
+     * Padding which the worker ignores, used to control the size of the message
+     */
+    private String data;
+
     public boolean isPoison() {
         return isPoison;
     }
@@ -38,4 +53,28 @@ public class TestWorkerTask {
     public void setDelaySeconds(int delaySeconds) {
         this.delaySeconds = delaySeconds;
     }
+
+    public int getDelayMillis() {
+        return delayMillis;
+    }
+
+    public void setDelayMillis(int delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int getSubTaskCount() {
+        return subTaskCount;
+    }
+
+    public void setSubTaskCount(int subTaskCount) {
+        this.subTaskCount = subTaskCount;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.workerframework.testworker;
+
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.CodecException;
+import com.hpe.caf.api.ConfigurationException;
+import com.hpe.caf.api.ConfigurationSource;
+import com.hpe.caf.api.worker.TaskMessage;
+import com.hpe.caf.api.worker.TaskStatus;
+import com.hpe.caf.api.worker.WorkerException;
+import com.hpe.caf.codec.JsonCodec;
+import com.hpe.caf.util.rabbitmq.QueueCreator;
+import com.hpe.caf.worker.core.EmbeddedWorker;
+import com.hpe.caf.worker.queue.rabbit.EmbeddedAmqpBroker;
+import com.hpe.caf.worker.queue.rabbit.RabbitWorkerQueueConfiguration;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the test worker, with the real RabbitWorkerQueue and WorkerCore, against an EmbeddedAmqpBroker, and measures its throughput and
+ * the latency of its tasks under a LoadProfile. Needing no RabbitMQ server, Docker or network, it can be run on a laptop or an isolated
+ * build machine.
+ * <p>
+ * The latency of a task runs from when it was due to be sent to when its final response is received from the output queue. Measuring
+ * from when it was due rather than when it was sent means that tasks held up behind a slow publish are not left out of the figures when
+ * tasks are sent at a fixed rate.
+ */
+final class LoadHarness
+{
+    static final String INPUT_QUEUE = "loadharness-in";
+    static final String OUTPUT_QUEUE = "loadharness-out";
+
+    private static final Codec CODEC = new JsonCodec();
+
+    private LoadHarness()
+    {
+    }
+
+    /**
+     * Run the profile through a new worker and broker.
+     *
+     * @param profile the load to put on the worker
+     * @return the measurements, which cover only the tasks completed if they were not all completed in the profile's timeout
+     * @throws Exception if the worker or broker cannot be started, or the tasks cannot be sent
+     */
+    public static LoadReport run(final LoadProfile profile)
+        throws Exception
+    {
+        final EmbeddedAmqpBroker broker = new EmbeddedAmqpBroker();
+        final EmbeddedWorker worker = new EmbeddedWorker(
+            CODEC, createWorkerFactory(profile), maxTasks -> broker.createWorkerQueue(createQueueConfiguration(), maxTasks));
+        worker.start();
+
+        final int messageCount = profile.getMessageCount();
+        final long[] dueNanos = new long[messageCount];
+        final long[] latencyNanos = new long[messageCount];
+        final CountDownLatch completed = new CountDownLatch(messageCount);
+        final AtomicLong outputMessages = new AtomicLong();
+        final AtomicLong lastCompletedNanos = new AtomicLong();
+
+        final Connection connection = broker.newConnection();
+        try {
+            final Channel channel = connection.createChannel();
+            final Map<String, Object> queueArgs = new HashMap<>();
+            queueArgs.put(QueueCreator.RABBIT_PROP_QUEUE_TYPE, QueueCreator.RABBIT_PROP_QUEUE_TYPE_QUORUM);
+            channel.queueDeclare(OUTPUT_QUEUE, true, false, false, queueArgs);
+            channel.basicConsume(OUTPUT_QUEUE, true, new DefaultConsumer(channel) {
+                // Deliveries are handled on a single thread, and the due times are published to it through the broker
+                @Override
+                public void handleDelivery(final String consumerTag, final Envelope envelope, final AMQP.BasicProperties properties,
+                                           final byte[] body)
+                    throws IOException
+                {
+                    final long now = System.nanoTime();
+                    outputMessages.incrementAndGet();
+                    final String taskId;
+                    try {
+                        taskId = CODEC.deserialise(body, TaskMessage.class).getTaskId();
+                    } catch (final CodecException e) {
+                        throw new IOException(e);
+                    }
+                    // Sub-task responses have ".n" appended to the task id, and the final response ".n*" if there were any
+                    final int suffix = taskId.indexOf('.');
+                    if (suffix == -1 || taskId.endsWith("*")) {
+                        final int index = Integer.parseInt(suffix == -1 ? taskId : taskId.substring(0, suffix));
+                        if (latencyNanos[index] == 0) {
+                            latencyNanos[index] = Math.max(1, now - dueNanos[index]);
+                            lastCompletedNanos.set(now);
+                            completed.countDown();
+                        }
+                    }
+                }
+            });
+
+            final long startNanos = System.nanoTime();
+            sendTasks(channel, profile, startNanos, dueNanos);
+            completed.await(profile.getTimeoutSeconds(), TimeUnit.SECONDS);
+
+            final long[] completedLatencyNanos = Arrays.stream(latencyNanos).filter(latency -> latency != 0).toArray();
+            final long elapsedNanos = completedLatencyNanos.length == 0 ? 0 : lastCompletedNanos.get() - startNanos;
+            return new LoadReport(profile, outputMessages.get(), elapsedNanos, completedLatencyNanos);
+        } finally {
+            worker.stop();
+            connection.close();
+        }
+    }
+
+    private static void sendTasks(final Channel channel, final LoadProfile profile, final long startNanos, final long[] dueNanos)
+        throws CodecException, IOException
+    {
+        final TestWorkerTask task = new TestWorkerTask();
+        task.setDelayMillis(profile.getTaskDurationMillis());
+        task.setSubTaskCount(profile.getFanOut());
+        task.setData("x".repeat(profile.getMessageSize()));
+        final byte[] taskData = CODEC.serialise(task);
+
+        final AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .deliveryMode(2)
+            .build();
+        final long intervalNanos = profile.getPublishRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / profile.getPublishRate() : 0;
+
+        for (int i = 0; i < dueNanos.length; i++) {
+            final long due = startNanos + i * intervalNanos;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            dueNanos[i] = intervalNanos == 0 ? System.nanoTime() : due;
+            final TaskMessage message = new TaskMessage(Integer.toString(i), "TestWorker", 1, taskData, TaskStatus.NEW_TASK,
+                                                        new HashMap<>(), INPUT_QUEUE);
+            channel.basicPublish("", INPUT_QUEUE, properties, CODEC.serialise(message));
+        }
+    }
+
+    private static TestWorkerFactory createWorkerFactory(final LoadProfile profile)
+        throws WorkerException
+    {
+        final TestWorkerConfiguration config = new TestWorkerConfiguration();
+        config.setOutputQueue(OUTPUT_QUEUE);
+        config.setThreads(profile.getWorkerThreads());
+        final ConfigurationSource configSource = new ConfigurationSource()
+        {
+            @Override
+            public <T> T getConfiguration(final Class<T> configClass)
+                throws ConfigurationException
+            {
+                if (!configClass.isInstance(config)) {
+                    throw new ConfigurationException("No configuration for " + configClass.getName());
+                }
+                return configClass.cast(config);
+            }
+        };
+        return new TestWorkerFactory(configSource, null, CODEC);
+    }
+
+    private static RabbitWorkerQueueConfiguration createQueueConfiguration()
+    {
+        final RabbitWorkerQueueConfiguration config = new RabbitWorkerQueueConfiguration();
+        config.setInputQueue(INPUT_QUEUE);
+        config.setRetryQueue(INPUT_QUEUE);
+        config.setRejectedQueue("loadharness-rejected");
+        config.setRetryLimit(1);
+        config.setQueueType(QueueCreator.RABBIT_PROP_QUEUE_TYPE_QUORUM);
+        return config;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.workerframework.testworker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Runs load through the test worker against the embedded broker. The profile of the first test can be set with system properties, for
+ * example {@code mvn test -pl worker-test -Dtest=LoadHarnessTest -Dloadharness.messageCount=100000 -Dloadharness.fanOut=5}.
+ */
+public class LoadHarnessTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LoadHarnessTest.class);
+
+    @Test
+    public void testLoadProfile()
+        throws Exception
+    {
+        final LoadProfile profile = LoadProfile.fromSystemProperties();
+        final LoadReport report = LoadHarness.run(profile);
+        LOG.info("{}", report);
+
+        Assert.assertEquals(report.getCompletedTasks(), profile.getMessageCount());
+        Assert.assertEquals(report.getOutputMessages(), (long) profile.getMessageCount() * (profile.getFanOut() + 1));
+        Assert.assertTrue(report.getLatencyMillis(50) <= report.getLatencyMillis(99.9));
+    }
+
+    @Test
+    public void testFanOutWithTaskDuration()
+        throws Exception
+    {
+        final LoadProfile profile = new LoadProfile();
+        profile.setMessageCount(200);
+        profile.setFanOut(3);
+        profile.setTaskDurationMillis(2);
+        profile.setPublishRate(1000);
+        final LoadReport report = LoadHarness.run(profile);
+        LOG.info("{}", report);
+
+        Assert.assertEquals(report.getCompletedTasks(), 200);
+        Assert.assertEquals(report.getOutputMessages(), 800);
+        // No task can be completed in less time than the worker spends on it
+        Assert.assertTrue(report.getLatencyMillis(0) >= 2, report.toString());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.workerframework.testworker;
+
+/**
+ * The load that the LoadHarness puts on the test worker.
+ */
+final class LoadProfile
+{
+    private static final String PROPERTY_PREFIX = "loadharness.";
+
+    /**
+     * The number of tasks to send.
+     */
+    private int messageCount = 2000;
+
+    /**
+     * The number of characters of padding in the data of each task.
+     */
+    private int messageSize = 1024;
+
+    /**
+     * The number of sub-task responses the worker sends for each task, in addition to its final response.
+     */
+    private int fanOut;
+
+    /**
+     * The time in milliseconds the worker spends on each task.
+     */
+    private int taskDurationMillis;
+
+    /**
+     * The number of tasks to send per second, or 0 to send them all as fast as possible.
+     */
+    private int publishRate;
+
+    /**
+     * The number of worker threads.
+     */
+    private int workerThreads = 4;
+
+    /**
+     * The maximum time in seconds to wait for the tasks to be completed.
+     */
+    private int timeoutSeconds = 300;
+
+    /**
+     * Get the default profile, with any of its settings overridden by system properties named after them with a "loadharness." prefix,
+     * such as {@code -Dloadharness.messageCount=100000}.
+     *
+     * @return the profile
+     */
+    public static LoadProfile fromSystemProperties()
+    {
+        final LoadProfile profile = new LoadProfile();
+        profile.messageCount = Integer.getInteger(PROPERTY_PREFIX + "messageCount", profile.messageCount);
+        profile.messageSize = Integer.getInteger(PROPERTY_PREFIX + "messageSize", profile.messageSize);
+        profile.fanOut = Integer.getInteger(PROPERTY_PREFIX + "fanOut", profile.fanOut);
+        profile.taskDurationMillis = Integer.getInteger(PROPERTY_PREFIX + "taskDurationMillis", profile.taskDurationMillis);
+        profile.publishRate = Integer.getInteger(PROPERTY_PREFIX + "publishRate", profile.publishRate);
+        profile.workerThreads = Integer.getInteger(PROPERTY_PREFIX + "workerThreads", profile.workerThreads);
+        profile.timeoutSeconds = Integer.getInteger(PROPERTY_PREFIX + "timeoutSeconds", profile.timeoutSeconds);
+        return profile;
+    }
+
+    public int getMessageCount()
+    {
+        return messageCount;
+    }
+
+    public void setMessageCount(final int messageCount)
+    {
+        this.messageCount = messageCount;
+    }
+
+    public int getMessageSize()
+    {
+        return messageSize;
+    }
+
+    public void setMessageSize(final int messageSize)
+    {
+        this.messageSize = messageSize;
+    }
+
+    public int getFanOut()
+    {
+        return fanOut;
+    }
+
+    public void setFanOut(final int fanOut)
+    {
+        this.fanOut = fanOut;
+    }
+
+    public int getTaskDurationMillis()
+    {
+        return taskDurationMillis;
+    }
+
+    public void setTaskDurationMillis(final int taskDurationMillis)
+    {
+        this.taskDurationMillis = taskDurationMillis;
+    }
+
+    public int getPublishRate()
+    {
+        return publishRate;
+    }
+
+    public void setPublishRate(final int publishRate)
+    {
+        this.publishRate = publishRate;
+    }
+
+    public int getWorkerThreads()
+    {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(final int workerThreads)
+    {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getTimeoutSeconds()
+    {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(final int timeoutSeconds)
+    {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "messageCount=" + messageCount + ", messageSize=" + messageSize + ", fanOut=" + fanOut
+            + ", taskDurationMillis=" + taskDurationMillis + ", publishRate=" + publishRate + ", workerThreads=" + workerThreads;
+    }
+}
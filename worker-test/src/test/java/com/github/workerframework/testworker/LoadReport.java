@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.workerframework.testworker;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and latency measured by a LoadHarness run.
+ */
+final class LoadReport
+{
+    private final LoadProfile profile;
+    private final long outputMessages;
+    private final long elapsedNanos;
+    private final long[] sortedLatencyNanos;
+
+    /**
+     * @param profile the profile that was run
+     * @param outputMessages the number of messages the worker published
+     * @param elapsedNanos the time from the first task being sent to the last task being completed
+     * @param latencyNanos the latency of each completed task
+     */
+    public LoadReport(final LoadProfile profile, final long outputMessages, final long elapsedNanos, final long[] latencyNanos)
+    {
+        this.profile = profile;
+        this.outputMessages = outputMessages;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencyNanos = latencyNanos.clone();
+        Arrays.sort(sortedLatencyNanos);
+    }
+
+    public int getCompletedTasks()
+    {
+        return sortedLatencyNanos.length;
+    }
+
+    public long getOutputMessages()
+    {
+        return outputMessages;
+    }
+
+    public double getTasksPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : sortedLatencyNanos.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds at the percentile, or 0 if no tasks were completed
+     */
+    public double getLatencyMillis(final double percentile)
+    {
+        if (sortedLatencyNanos.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percentile / 100 * sortedLatencyNanos.length);
+        return sortedLatencyNanos[Math.max(0, Math.min(rank, sortedLatencyNanos.length) - 1)] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT,
+                             "%s: %d/%d tasks completed, %d messages output, %.1f tasks/s, latency p50=%.3fms p99=%.3fms p999=%.3fms",
+                             profile, getCompletedTasks(), profile.getMessageCount(), outputMessages, getTasksPerSecond(),
+                             getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9));
+    }
+}
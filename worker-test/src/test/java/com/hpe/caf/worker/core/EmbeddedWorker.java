@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.core;
+
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.hpe.caf.api.Codec;
+import com.hpe.caf.api.worker.ManagedWorkerQueue;
+import com.hpe.caf.api.worker.QueueException;
+import com.hpe.caf.api.worker.WorkerFactory;
+import com.hpe.caf.naming.ServicePath;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import javax.naming.InvalidNameException;
+
+/**
+ * Runs a worker in-process, wiring its factory, thread pool, queue and WorkerCore together as WorkerApplication does, but without the
+ * Dropwizard application, configuration sources or data store around them.
+ */
+public final class EmbeddedWorker
+{
+    private final WorkerFactory factory;
+    private final WorkerThreadPool threadPool;
+    private final ManagedWorkerQueue queue;
+    private final WorkerCore core;
+
+    /**
+     * @param codec the codec the worker uses for task messages
+     * @param factory the factory for the worker's tasks
+     * @param queueFactory creates the worker's queue from the maximum number of tasks the thread pool runs at once
+     * @throws InvalidNameException if the worker's service path is invalid
+     */
+    public EmbeddedWorker(final Codec codec, final WorkerFactory factory, final IntFunction<ManagedWorkerQueue> queueFactory)
+        throws InvalidNameException
+    {
+        this.factory = factory;
+        this.threadPool = WorkerThreadPool.create(factory);
+        this.queue = queueFactory.apply(threadPool.getMaxConcurrentTasks());
+        threadPool.setBackpressureQueue(queue);
+        this.core = new WorkerCore(codec, threadPool, queue, factory, new ServicePath("/embedded/worker"), new HealthCheckRegistry(),
+                                   new TransientHealthCheck());
+    }
+
+    public void start()
+        throws QueueException
+    {
+        core.start();
+    }
+
+    public ManagedWorkerQueue getWorkerQueue()
+    {
+        return queue;
+    }
+
+    /**
+     * Stop taking tasks, allow the tasks already taken to finish, and then shut the queue and the worker down.
+     *
+     * @throws InterruptedException if interrupted while waiting for the tasks to finish
+     */
+    public void stop()
+        throws InterruptedException
+    {
+        queue.shutdownIncoming();
+        while (!threadPool.isIdle()) {
+            Thread.sleep(10);
+        }
+        threadPool.shutdown();
+        threadPool.awaitTermination(10, TimeUnit.SECONDS);
+        core.shutdown();
+        queue.shutdown();
+        factory.shutdown();
+    }
+}
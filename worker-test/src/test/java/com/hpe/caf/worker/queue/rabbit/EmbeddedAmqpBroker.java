@@ -0,0 +1,573 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.util.rabbitmq.QueueCreator;
+import com.hpe.caf.util.rabbitmq.RabbitHeaders;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.MessageProperties;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.impl.AMQImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for a RabbitMQ broker, for running the real RabbitWorkerQueue where there is no broker or network, such as in
+ * load tests on a laptop or build machine.
+ * <p>
+ * Rather than speaking AMQP 0-9-1 over a socket, the stand-in implements the parts of the AMQP model that the worker queue relies on
+ * behind the RabbitMQ client's Connection and Channel interfaces: queues on the default exchange, consumers limited by the prefetch of
+ * their channel, acknowledgements, rejections and recovery with redelivery, and publisher confirms. Messages redelivered from quorum
+ * queues carry an incremented x-delivery-count header, as they do from RabbitMQ. Messages are only held in memory, and messages
+ * published to a queue which has not been declared are dropped, as they are by the default exchange. Consumer callbacks and confirms
+ * for a channel are made in order on a thread of its own, as they are by the client library. The rest of the client API is not
+ * supported.
+ */
+public final class EmbeddedAmqpBroker
+{
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedAmqpBroker.class);
+
+    private final Object lock = new Object();
+    private final Map<String, BrokerQueue> queues = new HashMap<>();
+    private final AtomicInteger nextChannelId = new AtomicInteger();
+    private final AtomicInteger nextConsumerTag = new AtomicInteger();
+
+    /**
+     * @return a new connection to the broker, which also implements Recoverable
+     */
+    public Connection newConnection()
+    {
+        return new BrokerConnection().asConnection();
+    }
+
+    /**
+     * Create a worker queue which connects to this broker rather than to the RabbitMQ server in its configuration.
+     *
+     * @param config the worker queue configuration
+     * @param maxTasks the maximum number of tasks the worker runs at once
+     * @return the worker queue, which is not yet started
+     */
+    public RabbitWorkerQueue createWorkerQueue(final RabbitWorkerQueueConfiguration config, final int maxTasks)
+    {
+        return new RabbitWorkerQueue(config, maxTasks, this::newConnection);
+    }
+
+    /**
+     * @param queueName the name of a queue
+     * @return the number of messages on the queue which are waiting to be delivered, or 0 if the queue has not been declared
+     */
+    public int getMessageCount(final String queueName)
+    {
+        synchronized (lock) {
+            final BrokerQueue queue = queues.get(queueName);
+            return queue == null ? 0 : queue.ready.size();
+        }
+    }
+
+    private static final class Message
+    {
+        final byte[] body;
+        final AMQP.BasicProperties properties;
+        final boolean isRedelivered;
+
+        Message(final byte[] body, final AMQP.BasicProperties properties, final boolean isRedelivered)
+        {
+            this.body = body;
+            this.properties = properties;
+            this.isRedelivered = isRedelivered;
+        }
+
+        Message redeliver(final boolean countDeliveries)
+        {
+            if (!countDeliveries) {
+                return new Message(body, properties, true);
+            }
+            final Map<String, Object> headers = properties.getHeaders() == null
+                ? new HashMap<>()
+                : new HashMap<>(properties.getHeaders());
+            final Object deliveryCount = headers.get(RabbitHeaders.RABBIT_HEADER_CAF_DELIVERY_COUNT);
+            headers.put(RabbitHeaders.RABBIT_HEADER_CAF_DELIVERY_COUNT,
+                        deliveryCount == null ? 1 : Integer.parseInt(deliveryCount.toString()) + 1);
+            return new Message(body, properties.builder().headers(headers).build(), true);
+        }
+    }
+
+    private static final class BrokerQueue
+    {
+        final String name;
+        final boolean isQuorum;
+        final Deque<Message> ready = new ArrayDeque<>();
+        final List<Subscription> consumers = new ArrayList<>();
+        int nextConsumer;
+
+        BrokerQueue(final String name, final boolean isQuorum)
+        {
+            this.name = name;
+            this.isQuorum = isQuorum;
+        }
+
+        /**
+         * Get the next consumer in turn which may be sent another message, or null if none may.
+         */
+        Subscription nextAvailableConsumer()
+        {
+            for (int i = 0; i < consumers.size(); i++) {
+                final Subscription subscription = consumers.get((nextConsumer + i) % consumers.size());
+                if (subscription.hasCapacity()) {
+                    nextConsumer = (nextConsumer + i + 1) % consumers.size();
+                    return subscription;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Subscription
+    {
+        final BrokerChannel channel;
+        final String consumerTag;
+        final Consumer consumer;
+        final boolean autoAck;
+        final int prefetch;
+        int unacknowledged;
+
+        Subscription(final BrokerChannel channel, final String consumerTag, final Consumer consumer, final boolean autoAck)
+        {
+            this.channel = channel;
+            this.consumerTag = consumerTag;
+            this.consumer = consumer;
+            this.autoAck = autoAck;
+            // As with RabbitMQ, the prefetch applies to consumers started after it is set
+            this.prefetch = channel.prefetch;
+        }
+
+        boolean hasCapacity()
+        {
+            return autoAck || prefetch == 0 || unacknowledged < prefetch;
+        }
+    }
+
+    private static final class Unacknowledged
+    {
+        final BrokerQueue queue;
+        final Message message;
+        final Subscription subscription;
+
+        Unacknowledged(final BrokerQueue queue, final Message message, final Subscription subscription)
+        {
+            this.queue = queue;
+            this.message = message;
+            this.subscription = subscription;
+        }
+    }
+
+    /**
+     * Deliver the ready messages on a queue to its consumers, for as long as any of them may be sent more. Must be called holding the
+     * lock.
+     */
+    private static void dispatch(final BrokerQueue queue)
+    {
+        while (!queue.ready.isEmpty()) {
+            final Subscription subscription = queue.nextAvailableConsumer();
+            if (subscription == null) {
+                return;
+            }
+            subscription.channel.deliver(subscription, queue, queue.ready.poll());
+        }
+    }
+
+    private final class BrokerConnection implements InvocationHandler
+    {
+        private final List<BrokerChannel> channels = new CopyOnWriteArrayList<>();
+        private volatile boolean isOpen = true;
+        private Connection connection;
+
+        Connection asConnection()
+        {
+            connection = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class, Recoverable.class}, this);
+            return connection;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable
+        {
+            switch (method.getName()) {
+                case "createChannel":
+                    if (!isOpen) {
+                        throw new IOException("Connection is closed");
+                    }
+                    final BrokerChannel channel = new BrokerChannel(connection, nextChannelId.incrementAndGet());
+                    channels.add(channel);
+                    return channel.asChannel();
+                case "isOpen":
+                    return isOpen;
+                case "close":
+                case "abort":
+                    isOpen = false;
+                    for (final BrokerChannel c : channels) {
+                        c.close();
+                    }
+                    return null;
+                case "addRecoveryListener":
+                case "removeRecoveryListener":
+                case "addShutdownListener":
+                case "removeShutdownListener":
+                    // The connection never fails, so it is never recovered
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "EmbeddedAmqpBroker connection";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private final class BrokerChannel implements InvocationHandler
+    {
+        private final Connection connection;
+        private final int channelNumber;
+        private final ExecutorService callbackExecutor;
+        private final Map<String, Subscription> subscriptions = new HashMap<>();
+        private final NavigableMap<Long, Unacknowledged> unacknowledged = new TreeMap<>();
+        private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+        private volatile boolean isOpen = true;
+        private boolean isConfirmSelected;
+        private long nextPublishSeqNo = 1;
+        private long nextDeliveryTag = 1;
+        private int prefetch;
+
+        BrokerChannel(final Connection connection, final int channelNumber)
+        {
+            this.connection = connection;
+            this.channelNumber = channelNumber;
+            this.callbackExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "embedded-amqp-channel-" + channelNumber);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Channel asChannel()
+        {
+            return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class}, this);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable
+        {
+            switch (method.getName()) {
+                case "queueDeclare":
+                    if (args == null || args.length != 5) {
+                        throw new UnsupportedOperationException("Server-named queues are not supported");
+                    }
+                    return queueDeclare((String) args[0], (Map<?, ?>) args[4]);
+                case "queueDeclarePassive":
+                    return queueDeclarePassive((String) args[0]);
+                case "basicQos":
+                    synchronized (lock) {
+                        prefetch = (Integer) args[args.length == 3 ? 1 : 0];
+                    }
+                    return null;
+                case "basicConsume":
+                    return basicConsume(args);
+                case "basicCancel":
+                    basicCancel((String) args[0]);
+                    return null;
+                case "basicAck":
+                    settle((Long) args[0], (Boolean) args[1], false, false);
+                    return null;
+                case "basicReject":
+                    settle((Long) args[0], false, true, (Boolean) args[1]);
+                    return null;
+                case "basicNack":
+                    settle((Long) args[0], (Boolean) args[1], true, (Boolean) args[2]);
+                    return null;
+                case "basicRecover":
+                    recover();
+                    return null;
+                case "basicPublish":
+                    basicPublish((String) args[0], (String) args[1], (AMQP.BasicProperties) args[args.length - 2],
+                                 (byte[]) args[args.length - 1]);
+                    return null;
+                case "confirmSelect":
+                    synchronized (lock) {
+                        isConfirmSelected = true;
+                    }
+                    return null;
+                case "addConfirmListener":
+                    if (args.length != 1) {
+                        throw new UnsupportedOperationException("Confirm callbacks are not supported");
+                    }
+                    confirmListeners.add((ConfirmListener) args[0]);
+                    return args[0];
+                case "getNextPublishSeqNo":
+                    synchronized (lock) {
+                        return isConfirmSelected ? nextPublishSeqNo : 0L;
+                    }
+                case "isOpen":
+                    return isOpen;
+                case "close":
+                case "abort":
+                    close();
+                    return null;
+                case "getChannelNumber":
+                    return channelNumber;
+                case "getConnection":
+                    return connection;
+                case "addShutdownListener":
+                case "removeShutdownListener":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "EmbeddedAmqpBroker channel " + channelNumber;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private AMQP.Queue.DeclareOk queueDeclare(final String queueName, final Map<?, ?> arguments)
+            throws IOException
+        {
+            checkOpen();
+            final boolean isQuorum = arguments != null
+                && QueueCreator.RABBIT_PROP_QUEUE_TYPE_QUORUM.equals(arguments.get(QueueCreator.RABBIT_PROP_QUEUE_TYPE));
+            synchronized (lock) {
+                final BrokerQueue queue = queues.computeIfAbsent(queueName, name -> new BrokerQueue(name, isQuorum));
+                return new AMQImpl.Queue.DeclareOk(queue.name, queue.ready.size(), queue.consumers.size());
+            }
+        }
+
+        private AMQP.Queue.DeclareOk queueDeclarePassive(final String queueName)
+            throws IOException
+        {
+            checkOpen();
+            synchronized (lock) {
+                final BrokerQueue queue = getQueue(queueName);
+                return new AMQImpl.Queue.DeclareOk(queue.name, queue.ready.size(), queue.consumers.size());
+            }
+        }
+
+        private String basicConsume(final Object[] args)
+            throws IOException
+        {
+            checkOpen();
+            if (!(args[args.length - 1] instanceof Consumer)) {
+                throw new UnsupportedOperationException("Only Consumer callbacks are supported");
+            }
+            final Consumer consumer = (Consumer) args[args.length - 1];
+            final boolean autoAck = args.length > 2 && args[1] instanceof Boolean && (Boolean) args[1];
+            final String consumerTag = args.length > 3 && args[2] instanceof String && !((String) args[2]).isEmpty()
+                ? (String) args[2]
+                : "amq.ctag-" + nextConsumerTag.incrementAndGet();
+            synchronized (lock) {
+                final BrokerQueue queue = getQueue((String) args[0]);
+                final Subscription subscription = new Subscription(this, consumerTag, consumer, autoAck);
+                subscriptions.put(consumerTag, subscription);
+                queue.consumers.add(subscription);
+                callbackExecutor.execute(() -> consumer.handleConsumeOk(consumerTag));
+                dispatch(queue);
+            }
+            return consumerTag;
+        }
+
+        private void basicCancel(final String consumerTag)
+            throws IOException
+        {
+            synchronized (lock) {
+                final Subscription subscription = subscriptions.remove(consumerTag);
+                if (subscription == null) {
+                    throw new IOException("Unknown consumerTag " + consumerTag);
+                }
+                for (final BrokerQueue queue : queues.values()) {
+                    queue.consumers.remove(subscription);
+                }
+                callbackExecutor.execute(() -> subscription.consumer.handleCancelOk(consumerTag));
+            }
+        }
+
+        /**
+         * Acknowledge or reject delivered messages. Rejected messages which are requeued go back to the head of their queues, in the
+         * order they were delivered.
+         */
+        private void settle(final long deliveryTag, final boolean multiple, final boolean reject, final boolean requeue)
+            throws IOException
+        {
+            synchronized (lock) {
+                final Map<Long, Unacknowledged> settled = multiple
+                    ? unacknowledged.headMap(deliveryTag, true)
+                    : unacknowledged.subMap(deliveryTag, true, deliveryTag, true);
+                if (settled.isEmpty()) {
+                    throw new IOException("Unknown delivery tag " + deliveryTag);
+                }
+                final List<Unacknowledged> messages = new ArrayList<>(settled.values());
+                settled.clear();
+                release(messages, reject && requeue);
+            }
+        }
+
+        private void recover()
+        {
+            synchronized (lock) {
+                final List<Unacknowledged> messages = new ArrayList<>(unacknowledged.values());
+                unacknowledged.clear();
+                release(messages, true);
+            }
+        }
+
+        /**
+         * Free the capacity of the consumers of settled messages, requeuing the messages if required, and dispatch to their queues.
+         * Must be called holding the lock.
+         */
+        private void release(final List<Unacknowledged> messages, final boolean requeue)
+        {
+            final Set<BrokerQueue> affected = new LinkedHashSet<>();
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                final Unacknowledged message = messages.get(i);
+                message.subscription.unacknowledged--;
+                if (requeue) {
+                    message.queue.ready.addFirst(message.message.redeliver(message.queue.isQuorum));
+                }
+                affected.add(message.queue);
+            }
+            affected.forEach(EmbeddedAmqpBroker::dispatch);
+        }
+
+        private void basicPublish(final String exchange, final String routingKey, final AMQP.BasicProperties properties,
+                                  final byte[] body)
+            throws IOException
+        {
+            checkOpen();
+            if (!exchange.isEmpty()) {
+                throw new UnsupportedOperationException("Only the default exchange is supported");
+            }
+            synchronized (lock) {
+                final BrokerQueue queue = queues.get(routingKey);
+                if (queue != null) {
+                    queue.ready.add(new Message(body, properties == null ? MessageProperties.MINIMAL_BASIC : properties, false));
+                    dispatch(queue);
+                }
+                if (isConfirmSelected) {
+                    final long seqNo = nextPublishSeqNo++;
+                    callbackExecutor.execute(() -> confirm(seqNo));
+                }
+            }
+        }
+
+        private void confirm(final long seqNo)
+        {
+            for (final ConfirmListener listener : confirmListeners) {
+                try {
+                    listener.handleAck(seqNo, false);
+                } catch (final IOException e) {
+                    LOG.warn("Confirm listener failed to handle ack {}", seqNo, e);
+                }
+            }
+        }
+
+        /**
+         * Send a message to a consumer on this channel. Must be called holding the lock.
+         */
+        void deliver(final Subscription subscription, final BrokerQueue queue, final Message message)
+        {
+            final long deliveryTag = nextDeliveryTag++;
+            if (!subscription.autoAck) {
+                unacknowledged.put(deliveryTag, new Unacknowledged(queue, message, subscription));
+                subscription.unacknowledged++;
+            }
+            final Envelope envelope = new Envelope(deliveryTag, message.isRedelivered, "", queue.name);
+            callbackExecutor.execute(() -> {
+                try {
+                    subscription.consumer.handleDelivery(subscription.consumerTag, envelope, message.properties, message.body);
+                } catch (final IOException | RuntimeException e) {
+                    LOG.warn("Consumer {} failed to handle delivery {}", subscription.consumerTag, deliveryTag, e);
+                }
+            });
+        }
+
+        /**
+         * Close the channel, cancelling its consumers and requeuing the messages it has not acknowledged, as the broker does.
+         */
+        void close()
+        {
+            synchronized (lock) {
+                if (!isOpen) {
+                    return;
+                }
+                isOpen = false;
+                final Collection<Subscription> cancelled = subscriptions.values();
+                for (final BrokerQueue queue : queues.values()) {
+                    queue.consumers.removeAll(cancelled);
+                }
+                subscriptions.clear();
+                recover();
+            }
+            callbackExecutor.shutdown();
+        }
+
+        private BrokerQueue getQueue(final String queueName)
+            throws IOException
+        {
+            final BrokerQueue queue = queues.get(queueName);
+            if (queue == null) {
+                throw new IOException("No queue '" + queueName + "'");
+            }
+            return queue;
+        }
+
+        private void checkOpen()
+            throws IOException
+        {
+            if (!isOpen) {
+                throw new IOException("Channel " + channelNumber + " is closed");
+            }
+        }
+    }
+}
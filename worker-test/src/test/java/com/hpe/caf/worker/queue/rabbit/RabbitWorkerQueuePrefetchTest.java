@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015-2024 Open Text.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.caf.worker.queue.rabbit;
+
+import com.hpe.caf.api.worker.TaskCallback;
+import com.hpe.caf.api.worker.TaskInformation;
+import com.hpe.caf.util.rabbitmq.QueueCreator;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the number of messages the worker queue holds unacknowledged never exceeds its prefetch, however its consumer is
+ * restarted, using the embedded broker.
+ */
+public class RabbitWorkerQueuePrefetchTest
+{
+    private static final String INPUT_QUEUE = "prefetch-in";
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long SETTLE_MILLIS = 300;
+
+    @Test
+    public void testResumeDoesNotExceedPrefetch()
+        throws Exception
+    {
+        final EmbeddedAmqpBroker broker = new EmbeddedAmqpBroker();
+        final RecordingCallback callback = new RecordingCallback();
+        final RabbitWorkerQueue queue = broker.createWorkerQueue(createConfiguration(), 2);
+        queue.start(callback);
+        try {
+            publish(broker, 10);
+            callback.awaitInFlight(2);
+
+            queue.pauseIncoming();
+            queue.resumeIncoming();
+            // Both messages delivered before the pause are still unacknowledged, so no more can be delivered until one of them is
+            Thread.sleep(SETTLE_MILLIS);
+            Assert.assertEquals(callback.getReceived(), 2);
+
+            callback.acknowledge(queue);
+            callback.awaitInFlight(2);
+            Thread.sleep(SETTLE_MILLIS);
+            Assert.assertEquals(callback.getReceived(), 3);
+
+            callback.acknowledgeUntilReceived(queue, 10);
+            Assert.assertEquals(callback.getMaxInFlight(), 2);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrefetchAdjustmentsDoNotExceedTarget()
+        throws Exception
+    {
+        final EmbeddedAmqpBroker broker = new EmbeddedAmqpBroker();
+        final RecordingCallback callback = new RecordingCallback();
+        final RabbitWorkerQueue queue = broker.createWorkerQueue(createConfiguration(), 2);
+        queue.start(callback);
+        try {
+            publish(broker, 20);
+            callback.awaitInFlight(2);
+
+            // Raising the prefetch only lets in as many more messages as the increase
+            Assert.assertTrue(queue.setPrefetch(4));
+            callback.awaitInFlight(4);
+            Thread.sleep(SETTLE_MILLIS);
+            Assert.assertEquals(callback.getReceived(), 4);
+            Assert.assertEquals(callback.getMaxInFlight(), 4);
+
+            // Lowering it below the messages in flight holds back further messages until there is room under the new prefetch
+            Assert.assertTrue(queue.setPrefetch(3));
+            callback.acknowledge(queue);
+            Thread.sleep(SETTLE_MILLIS);
+            Assert.assertEquals(callback.getReceived(), 4);
+            callback.acknowledge(queue);
+            callback.resetMaxInFlight();
+            callback.awaitInFlight(3);
+            Thread.sleep(SETTLE_MILLIS);
+            Assert.assertEquals(callback.getReceived(), 5);
+
+            callback.acknowledgeUntilReceived(queue, 20);
+            Assert.assertEquals(callback.getMaxInFlight(), 3);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    private static RabbitWorkerQueueConfiguration createConfiguration()
+    {
+        final RabbitWorkerQueueConfiguration config = new RabbitWorkerQueueConfiguration();
+        config.setInputQueue(INPUT_QUEUE);
+        config.setRetryQueue(INPUT_QUEUE);
+        config.setRejectedQueue("prefetch-rejected");
+        config.setRetryLimit(1);
+        config.setQueueType(QueueCreator.RABBIT_PROP_QUEUE_TYPE_QUORUM);
+        return config;
+    }
+
+    private static void publish(final EmbeddedAmqpBroker broker, final int messageCount)
+        throws Exception
+    {
+        final Connection connection = broker.newConnection();
+        try {
+            final Channel channel = connection.createChannel();
+            for (int i = 0; i < messageCount; i++) {
+                channel.basicPublish("", INPUT_QUEUE, null, ("message " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Holds the tasks it is given until the test acknowledges them, recording the most that were held at once.
+     */
+    private static final class RecordingCallback implements TaskCallback
+    {
+        private final BlockingQueue<TaskInformation> held = new LinkedBlockingQueue<>();
+        private final AtomicInteger received = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public void registerNewTask(final TaskInformation taskInformation, final byte[] taskData, final Map<String, Object> headers)
+        {
+            received.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            held.add(taskInformation);
+        }
+
+        @Override
+        public void abortTasks()
+        {
+        }
+
+        int getReceived()
+        {
+            return received.get();
+        }
+
+        int getMaxInFlight()
+        {
+            return maxInFlight.get();
+        }
+
+        void resetMaxInFlight()
+        {
+            maxInFlight.set(inFlight.get());
+        }
+
+        void awaitInFlight(final int count)
+            throws InterruptedException
+        {
+            final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (inFlight.get() < count) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + count + " messages in flight");
+                Thread.sleep(10);
+            }
+        }
+
+        /**
+         * Acknowledge the oldest held task. It stops counting as in flight before the acknowledgement reaches the broker, so a message
+         * delivered in its place is never counted alongside it.
+         */
+        void acknowledge(final RabbitWorkerQueue queue)
+            throws InterruptedException
+        {
+            final TaskInformation taskInformation = held.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(taskInformation, "Timed out waiting for a message");
+            inFlight.decrementAndGet();
+            queue.acknowledgeTask(taskInformation);
+        }
+
+        void acknowledgeUntilReceived(final RabbitWorkerQueue queue, final int count)
+            throws InterruptedException
+        {
+            while (received.get() < count || !held.isEmpty()) {
+                acknowledge(queue);
+            }
+        }
+    }
+}